@@ -10,6 +10,22 @@ plugins {
     `java-library`
 }
 
+sourceSets {
+    // microbenchmarks, run with the jmh task
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+val jmhImplementation: Configuration by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+
+val jmhRuntimeOnly: Configuration by configurations.getting {
+    extendsFrom(configurations.runtimeOnly.get())
+}
+
 repositories {
     // Use Maven Central for resolving dependencies.
     mavenCentral()
@@ -19,6 +35,7 @@ dependencies {
     implementation("org.slf4j:slf4j-api:2.0.13")
     implementation("com.fasterxml.jackson.core:jackson-databind:2.17.1")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jdk8:2.17.1")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor:2.17.1")
     implementation("io.netty:netty-all:4.1.109.Final")
 
     testImplementation(libs.junit.jupiter)
@@ -26,6 +43,9 @@ dependencies {
     testImplementation("ch.qos.logback:logback-classic:1.5.6")
     testImplementation("org.projectlombok:lombok:1.18.32")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    jmhImplementation("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 // Apply a specific Java toolchain to ease working on different environments.
@@ -39,3 +59,10 @@ tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
 }
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks. Pass JMH options with --args, e.g. --args='-f 1 Signing'."
+    group = "verification"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+}
@@ -0,0 +1,59 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.KeyPair;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs and verifies per second for each key type, going through the pooled digests, signatures and ciphers the keys
+ * keep. Run with several threads, e.g. {@code -t 4}, to see the pools under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningBenchmark {
+
+    public enum KeyType {
+        RSA, ECDSA, ED25519
+    }
+
+    @Param
+    public KeyType keyType;
+
+    @Param("512")
+    public int messageSize;
+
+    private KeyPair keyPair;
+    private Bytes data;
+    private Bytes signature;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        keyPair = switch(keyType) {
+            case RSA -> Keys.generateKeyPair();
+            case ECDSA -> Keys.generateEcdsaKeyPair();
+            case ED25519 -> Keys.generateEd25519KeyPair();
+        };
+        var bytes = new byte[messageSize];
+        new Random(0).nextBytes(bytes);
+        data = Bytes.wrap(bytes);
+        signature = keyPair.privateKey().sign(data);
+    }
+
+    @Benchmark
+    public Bytes sign() {
+        return keyPair.privateKey().sign(data);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return keyPair.publicKey().verify(data, signature);
+    }
+}
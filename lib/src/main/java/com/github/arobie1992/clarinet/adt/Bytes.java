@@ -1,30 +1,95 @@
 package com.github.arobie1992.clarinet.adt;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * An immutable byte array that implements equality based on the contents.
+ * <p>
+ * {@link #of(byte[])} and {@link #bytes()} copy so that callers can never mutate the contents. Code that produces a
+ * fresh array it will not touch again, e.g. the output of a digest or a deserializer, should use {@link #wrap(byte[])}
+ * instead, and code that only needs to read the contents should use the view methods such as
+ * {@link #update(MessageDigest)} or {@link #writeTo(OutputStream)} so that large payloads are never copied.
  */
-public record Bytes(byte[] bytes) {
+public final class Bytes {
+    @JsonProperty("bytes")
+    private final byte[] bytes;
+
     public Bytes(byte[] bytes) {
         this.bytes = Arrays.copyOf(bytes, bytes.length);
     }
 
+    private Bytes(byte[] bytes, @SuppressWarnings("unused") boolean owned) {
+        this.bytes = Objects.requireNonNull(bytes);
+    }
+
     public static Bytes of(byte[] bytes) {
         return new Bytes(bytes);
     }
 
+    /**
+     * Creates an instance that takes ownership of {@code bytes} without copying it. The caller must not modify the
+     * array afterward.
+     * @param bytes The contents.
+     * @return An instance backed by {@code bytes}.
+     */
+    @JsonCreator
+    public static Bytes wrap(@JsonProperty("bytes") byte[] bytes) {
+        return new Bytes(bytes, true);
+    }
+
+    /**
+     * @return A copy of the contents.
+     */
     public byte[] bytes() {
         return Arrays.copyOf(bytes, bytes.length);
     }
 
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * @return A read-only view of the contents positioned at the start.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A stream over the contents.
+     */
+    public InputStream asInputStream() {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /**
+     * Feeds the contents into {@code digest}.
+     * @param digest The digest to update.
+     */
+    public void update(MessageDigest digest) {
+        digest.update(bytes);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Bytes bytes1 = (Bytes) o;
-        return Objects.deepEquals(bytes, bytes1.bytes);
+        return Arrays.equals(bytes, bytes1.bytes);
     }
 
     @Override
@@ -0,0 +1,30 @@
+package com.github.arobie1992.clarinet.core;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for combining the messages sent on a connection into {@link MessageBatch}es.
+ * @param maxBatchSize The most messages to put in one batch. A batch is sent as soon as it is full. Defaults to 64.
+ * @param linger How long to wait for more messages after the first message of a batch before sending the batch anyway.
+ *               Defaults to 5 milliseconds.
+ * @param signing How the messages in each batch are signed. Defaults to {@link BatchSigning#PER_MESSAGE}.
+ */
+public record BatchOptions(Optional<Integer> maxBatchSize, Optional<Duration> linger, Optional<BatchSigning> signing) {
+    public BatchOptions {
+        maxBatchSize.ifPresent(max -> {
+            if(max < 1) {
+                throw new IllegalArgumentException("maxBatchSize must be positive");
+            }
+        });
+        linger.ifPresent(l -> {
+            if(l.isNegative()) {
+                throw new IllegalArgumentException("linger must be non-negative");
+            }
+        });
+    }
+
+    public BatchOptions() {
+        this(Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.arobie1992.clarinet.core;
+
+/**
+ * How the sender and witness sign the messages in a {@link MessageBatch}.
+ */
+public enum BatchSigning {
+    /**
+     * Every message is signed on its own, exactly as if it had been sent without batching.
+     */
+    PER_MESSAGE,
+    /**
+     * A single signature covers the root of a Merkle tree over the whole batch, and each message's signature is that
+     * root signature plus the message's inclusion proof. See
+     * {@link com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures}.
+     * <p>
+     * Signing the root needs a key that {@link com.github.arobie1992.clarinet.crypto.PrivateKey#supportsPrehash()
+     * supports} signing a hash. A sender or witness without one signs each message on its own instead, as with
+     * {@link #PER_MESSAGE}.
+     */
+    MERKLE_ROOT
+}
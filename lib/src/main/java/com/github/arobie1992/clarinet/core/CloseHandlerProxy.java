@@ -11,10 +11,12 @@ class CloseHandlerProxy implements SendHandler<CloseRequest> {
 
     private final SendHandler<CloseRequest> userHandler;
     private final ConnectionStore connectionStore;
+    private final SimpleNode node;
 
-    CloseHandlerProxy(SendHandler<CloseRequest> userHandler, ConnectionStore connectionStore) {
+    CloseHandlerProxy(SendHandler<CloseRequest> userHandler, ConnectionStore connectionStore, SimpleNode node) {
         this.userHandler = userHandler == null ? DEFAULT_HANDLER : userHandler;
         this.connectionStore = Objects.requireNonNull(connectionStore);
+        this.node = Objects.requireNonNull(node);
     }
 
     @Override
@@ -25,6 +27,7 @@ class CloseHandlerProxy implements SendHandler<CloseRequest> {
                 throw new NoSuchConnectionException(message.connectionId());
             }
             connection.setStatus(Connection.Status.CLOSED);
+            node.connectionClosed(message.connectionId());
         }
         return THE_NONE;
     }
@@ -24,12 +24,17 @@ class ConnectHandlerProxy implements ExchangeHandler<ConnectRequest, ConnectResp
         peer.addresses().addAll(remoteInformation.peer().addresses());
         node.peerStore().save(peer);
 
+        var hashAlgorithm = message.options().hashAlgorithm().orElse(ConnectionOptions.DEFAULT_HASH_ALGORITHM);
+        if(!node.hashAlgorithms().permits(hashAlgorithm)) {
+            return new Some<>(new ConnectResponse(true, "Unsupported hash algorithm " + hashAlgorithm));
+        }
+
         var resp = Objects.requireNonNull(userHandler.handle(remoteInformation, message), "User handler returned a null ConnectResponse");
         if(!resp.value().rejected()) {
             var status = message.options().witnessSelector().equals(node.id())
                     ? Connection.Status.REQUESTING_WITNESS
                     : Connection.Status.AWAITING_WITNESS;
-            try(var ref = connectionStore.accept(message.connectionId(), message.sender(), node.id(), status)) {
+            try(var ref = connectionStore.accept(message.connectionId(), message.sender(), node.id(), status, hashAlgorithm)) {
                 if(!(ref instanceof Writeable(ConnectionImpl conn))) {
                     throw new IllegalStateException("Failed to accept connection " + message.connectionId());
                 }
@@ -37,6 +42,8 @@ class ConnectHandlerProxy implements ExchangeHandler<ConnectRequest, ConnectResp
                     node.selectWitness(remoteInformation.peer(), conn, new TransportOptions());
                 }
             }
+            // the sender's keys are needed to check every message on the connection, so start fetching them now
+            node.prefetchKeys(peer);
         }
 
         return resp;
@@ -12,6 +12,11 @@ public sealed interface Connection permits ConnectionImpl {
     PeerId receiver();
     Connection.Status status();
 
+    /**
+     * @return The hash algorithm the participants agreed on when establishing the connection.
+     */
+    String hashAlgorithm();
+
     long nextSequenceNumber();
 
     List<PeerId> participants();
@@ -18,6 +18,14 @@ public class ConnectionId {
         return new ConnectionId(UUID.fromString(id));
     }
 
+    public static ConnectionId fromUUID(UUID id) {
+        return new ConnectionId(Objects.requireNonNull(id));
+    }
+
+    public UUID asUUID() {
+        return id;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -5,6 +5,8 @@ import com.github.arobie1992.clarinet.peer.PeerId;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -12,23 +14,35 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * <p>
  * Connections consist of a sender, a witness, and a receiver. The sender and receiver are fixed upon creation of the
  * connection. Witnesses must be requested contingent upon the sender and receiver so cannot be fixed at time of creation.
- * Once a witness is set, it cannot be updated.
+ * Once a witness is set, it cannot be updated. The hash algorithm is agreed on as part of the connect request and is
+ * also fixed.
+ * <p>
+ * The status and witness are held together in an immutable {@link State} that is swapped atomically, so they can
+ * always be read consistently without taking the lock. Sequence numbers come from an atomic counter, so any number of
+ * threads holding the read lock can send on the connection at once.
  */
 non-sealed class ConnectionImpl implements Connection {
 
     private final ConnectionId id;
     private final PeerId sender;
-    private PeerId witness;
     private final PeerId receiver;
-    private Status status;
+    private final String hashAlgorithm;
+    private final AtomicReference<State> state;
     final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
-    private long nextSeqNo = 0;
+    private final AtomicLong nextSeqNo = new AtomicLong();
+
+    private record State(Status status, PeerId witness) {}
 
     ConnectionImpl(ConnectionId id, PeerId sender, PeerId receiver, Status status) {
+        this(id, sender, receiver, status, ConnectionOptions.DEFAULT_HASH_ALGORITHM);
+    }
+
+    ConnectionImpl(ConnectionId id, PeerId sender, PeerId receiver, Status status, String hashAlgorithm) {
         this.id = Objects.requireNonNull(id);
         this.sender = Objects.requireNonNull(sender);
         this.receiver = Objects.requireNonNull(receiver);
-        this.status = Objects.requireNonNull(status);
+        this.hashAlgorithm = Objects.requireNonNull(hashAlgorithm);
+        this.state = new AtomicReference<>(new State(Objects.requireNonNull(status), null));
     }
 
     @Override
@@ -43,15 +57,17 @@ non-sealed class ConnectionImpl implements Connection {
 
     void setWitness(PeerId witness) {
         assertWriteLocked();
-        if(this.witness != null) {
-            throw new UnsupportedOperationException("Cannot update witness once it has been set.");
-        }
-        this.witness = witness;
+        state.updateAndGet(current -> {
+            if(current.witness() != null) {
+                throw new UnsupportedOperationException("Cannot update witness once it has been set.");
+            }
+            return new State(current.status(), witness);
+        });
     }
 
     @Override
     public Optional<PeerId> witness() {
-        return Optional.ofNullable(witness);
+        return Optional.ofNullable(state.get().witness());
     }
 
     @Override
@@ -61,27 +77,32 @@ non-sealed class ConnectionImpl implements Connection {
 
     void setStatus(Status status) {
         assertWriteLocked();
-        this.status = status;
+        state.updateAndGet(current -> new State(status, current.witness()));
     }
 
     @Override
     public Status status() {
-        return status;
+        return state.get().status();
+    }
+
+    @Override
+    public String hashAlgorithm() {
+        return hashAlgorithm;
     }
 
     @Override
     public long nextSequenceNumber() {
-        assertWriteLocked();
-        if(nextSeqNo < 0) {
-            throw new ArithmeticException("nextSequenceNumber overflow");
-        }
-        var seqNo = nextSeqNo;
-        nextSeqNo++;
-        return seqNo;
+        return nextSeqNo.getAndUpdate(seqNo -> {
+            if(seqNo < 0) {
+                throw new ArithmeticException("nextSequenceNumber overflow");
+            }
+            return seqNo + 1;
+        });
     }
 
     @Override
     public List<PeerId> participants() {
+        var witness = state.get().witness();
         return witness == null ? List.of(sender, receiver) : List.of(sender, witness, receiver);
     }
 
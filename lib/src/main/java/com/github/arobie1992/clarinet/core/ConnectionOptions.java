@@ -3,9 +3,41 @@ package com.github.arobie1992.clarinet.core;
 import com.github.arobie1992.clarinet.peer.PeerId;
 
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * @param witnessSelector The participant responsible for selecting the witness.
+ * @param batchOptions If present, messages the sender sends on the connection are combined into
+ *                     {@link MessageBatch}es. This is purely a choice of the sender, so it is not shared with the
+ *                     other participants.
+ * @param hashAlgorithm The {@link java.security.MessageDigest} algorithm the participants hash messages with, e.g. when
+ *                      answering queries. It must be one of {@link #SECURE_HASH_ALGORITHMS} or one every participant
+ *                      opted into with {@link NodeBuilder#additionalHashAlgorithms(Set)}; the receiver and witness
+ *                      reject the connection otherwise. Defaults to {@value #DEFAULT_HASH_ALGORITHM}.
+ */
+public record ConnectionOptions(PeerId witnessSelector, Optional<BatchOptions> batchOptions, Optional<String> hashAlgorithm) {
+    public static final String DEFAULT_HASH_ALGORITHM = "SHA-256";
+    /**
+     * The hash algorithms every node agrees to use. Others, such as MD5 or SHA-1, are only used by nodes that opt into
+     * them, since a participant that can find collisions could answer queries with a hash that matches a different
+     * message.
+     */
+    public static final Set<String> SECURE_HASH_ALGORITHMS = Set.of(
+            "SHA-256", "SHA-384", "SHA-512", "SHA-512/256", "SHA3-224", "SHA3-256", "SHA3-384", "SHA3-512"
+    );
 
-public record ConnectionOptions(PeerId witnessSelector) {
     public ConnectionOptions {
         Objects.requireNonNull(witnessSelector);
+        Objects.requireNonNull(batchOptions);
+        Objects.requireNonNull(hashAlgorithm);
+    }
+
+    public ConnectionOptions(PeerId witnessSelector, Optional<BatchOptions> batchOptions) {
+        this(witnessSelector, batchOptions, Optional.empty());
+    }
+
+    public ConnectionOptions(PeerId witnessSelector) {
+        this(witnessSelector, Optional.empty());
     }
 }
@@ -12,23 +12,27 @@ import java.util.concurrent.locks.Lock;
 class ConnectionStore {
     private final Map<ConnectionId, Connection> connections = new ConcurrentHashMap<>();
 
-    WriteableReference create(PeerId sender, PeerId receiver, Connection.Status status) {
+    WriteableReference create(PeerId sender, PeerId receiver, Connection.Status status, String hashAlgorithm) {
         var connectionId = ConnectionId.random();
-        return accept(connectionId, sender, receiver, status);
+        return accept(connectionId, sender, receiver, status, hashAlgorithm);
     }
 
-    WriteableReference accept(ConnectionId connectionId, PeerId sender, PeerId receiver, Connection.Status status) {
+    WriteableReference accept(ConnectionId connectionId, PeerId sender, PeerId receiver, Connection.Status status, String hashAlgorithm) {
         var connection = connections.compute(connectionId, (id, existing) -> {
             if (existing != null) {
                 throw new ExistingConnectionIdException(id);
             }
-            var conn = new ConnectionImpl(connectionId, sender, receiver, status);
+            var conn = new ConnectionImpl(connectionId, sender, receiver, status, hashAlgorithm);
             conn.lock.writeLock().lock();
             return conn;
         });
         return new Writeable((ConnectionImpl) connection);
     }
 
+    boolean contains(ConnectionId connectionId) {
+        return connections.containsKey(Objects.requireNonNull(connectionId));
+    }
+
     Connection.ReadableReference findForRead(ConnectionId connectionId) {
         return findForRead(connectionId, Duration.ofSeconds(10));
     }
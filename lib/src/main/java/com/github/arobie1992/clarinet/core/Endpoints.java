@@ -10,7 +10,8 @@ public enum Endpoints {
     QUERY,
     CLOSE,
     MESSAGE_FORWARD,
-    QUERY_FORWARD;
+    QUERY_FORWARD,
+    MESSAGE_BATCH;
 
     static boolean isEndpoint(String endpoint) {
         for (Endpoints e : Endpoints.values()) {
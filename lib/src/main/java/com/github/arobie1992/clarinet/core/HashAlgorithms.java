@@ -0,0 +1,25 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.impl.crypto.Digests;
+
+import java.util.Set;
+
+/**
+ * The hash algorithms a node agrees to use for its connections: {@link ConnectionOptions#SECURE_HASH_ALGORITHMS} plus
+ * any the user opted into with {@link NodeBuilder#additionalHashAlgorithms(Set)}.
+ */
+class HashAlgorithms {
+    private final Set<String> additional;
+
+    HashAlgorithms(Set<String> additional) {
+        this.additional = Set.copyOf(additional);
+    }
+
+    /**
+     * @return Whether {@code algorithm} is allowed and supported by an installed provider.
+     */
+    boolean permits(String algorithm) {
+        return (ConnectionOptions.SECURE_HASH_ALGORITHMS.contains(algorithm) || additional.contains(algorithm))
+                && Digests.supports(algorithm);
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.crypto.KeyStore;
+import com.github.arobie1992.clarinet.crypto.PublicKey;
+import com.github.arobie1992.clarinet.peer.Peer;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.peer.PeerStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Resolves the public keys of peers, fetching them from the peer itself when the {@link KeyStore} doesn't have any.
+ * <p>
+ * Concurrent resolutions for the same peer share a single fetch: the first caller fetches while the rest wait for its
+ * result. A peer whose keys can't be fetched, either because the request fails or because none of the returned keys
+ * are usable, isn't asked again until a backoff has passed. Until then, resolving its keys fails the same way the last
+ * fetch did without contacting the peer.
+ * <p>
+ * Failures are forgotten once the peer has gone a full maximum backoff past its retry time without being asked again,
+ * so peers that are never asked about again don't stay tracked forever. A later failure starts over from the initial
+ * backoff. At most {@link KeyResolverOptions#maxPrefetches()} prefetches run at once; the rest are skipped.
+ */
+class KeyResolver {
+    private static final Logger log = LoggerFactory.getLogger(KeyResolver.class);
+    private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+    private static final int DEFAULT_MAX_PREFETCHES = 16;
+
+    /**
+     * A failed fetch.
+     * @param failures The number of consecutive fetches that have failed.
+     * @param retryAt When the peer may be asked for its keys again.
+     * @param requestFailed Whether the request itself failed as opposed to the peer returning no usable keys.
+     */
+    private record Failure(int failures, long retryAt, boolean requestFailed) {}
+
+    private final KeyStore keyStore;
+    private final PeerStore peerStore;
+    private final Function<Peer, Collection<PublicKey>> fetcher;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final LongSupplier nanoClock;
+    private final Executor prefetcher;
+    private final Semaphore prefetchPermits;
+    private final AtomicLong nextPrune;
+    private final Map<PeerId, CompletableFuture<Collection<PublicKey>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<PeerId, Failure> failures = new ConcurrentHashMap<>();
+
+    /**
+     * @param fetcher Requests the keys from the peer and converts them to {@link PublicKey}s, throwing if the request
+     *                fails.
+     */
+    KeyResolver(KeyStore keyStore, PeerStore peerStore, Function<Peer, Collection<PublicKey>> fetcher, KeyResolverOptions options) {
+        this(keyStore, peerStore, fetcher, options, System::nanoTime, Thread::startVirtualThread);
+    }
+
+    KeyResolver(
+            KeyStore keyStore,
+            PeerStore peerStore,
+            Function<Peer, Collection<PublicKey>> fetcher,
+            KeyResolverOptions options,
+            LongSupplier nanoClock,
+            Executor prefetcher
+    ) {
+        this.keyStore = Objects.requireNonNull(keyStore);
+        this.peerStore = Objects.requireNonNull(peerStore);
+        this.fetcher = Objects.requireNonNull(fetcher);
+        this.initialBackoffNanos = options.initialBackoff().orElse(DEFAULT_INITIAL_BACKOFF).toNanos();
+        this.maxBackoffNanos = Math.max(initialBackoffNanos, options.maxBackoff().orElse(DEFAULT_MAX_BACKOFF).toNanos());
+        this.nanoClock = Objects.requireNonNull(nanoClock);
+        this.prefetcher = Objects.requireNonNull(prefetcher);
+        this.prefetchPermits = new Semaphore(options.maxPrefetches().orElse(DEFAULT_MAX_PREFETCHES));
+        this.nextPrune = new AtomicLong(nanoClock.getAsLong() + maxBackoffNanos);
+    }
+
+    /**
+     * Returns the public keys of the peer, fetching them from the peer if they aren't known yet.
+     * @param peerId The peer whose keys to resolve.
+     * @return The peer's keys. Empty if the peer returned no usable keys.
+     * @throws NoSuchPeerException If the keys aren't known and this node doesn't know how to reach the peer.
+     * @throws KeysRequestException If the peer didn't respond, either now or on a recent attempt that is still backing
+     * off.
+     */
+    Collection<PublicKey> resolve(PeerId peerId) {
+        var keys = keyStore.findPublicKeys(peerId);
+        if(!keys.isEmpty()) {
+            return keys;
+        }
+        var failure = failures.get(peerId);
+        if(failure != null && backingOff(failure)) {
+            if(failure.requestFailed()) {
+                throw new KeysRequestException(peerId);
+            }
+            return keys;
+        }
+        var peer = peerStore.find(peerId).orElseThrow(() -> new NoSuchPeerException(peerId));
+        return await(fetch(peer, Runnable::run));
+    }
+
+    /**
+     * Starts fetching the peer's keys in the background so they are known by the time they are needed. Does nothing if
+     * the keys are already known, are already being fetched, the peer is backing off, or too many prefetches are
+     * already running. Failures are only recorded for the backoff.
+     * @param peer The peer whose keys to fetch.
+     */
+    void prefetch(Peer peer) {
+        if(inFlight.containsKey(peer.id()) || !keyStore.findPublicKeys(peer.id()).isEmpty()) {
+            return;
+        }
+        var failure = failures.get(peer.id());
+        if(failure != null && backingOff(failure)) {
+            return;
+        }
+        // prefetching is only a head start, so skip it rather than queue behind the others
+        if(!prefetchPermits.tryAcquire()) {
+            return;
+        }
+        try {
+            fetch(peer, prefetcher).whenComplete((keys, e) -> prefetchPermits.release());
+        } catch(RuntimeException e) {
+            prefetchPermits.release();
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Collection<PublicKey>> fetch(Peer peer, Executor executor) {
+        var future = new CompletableFuture<Collection<PublicKey>>();
+        var existing = inFlight.putIfAbsent(peer.id(), future);
+        if(existing != null) {
+            return existing;
+        }
+        executor.execute(() -> {
+            try {
+                future.complete(load(peer));
+            } catch(RuntimeException e) {
+                log.debug("Failed to fetch keys for {}", peer.id(), e);
+                future.completeExceptionally(e);
+            } finally {
+                inFlight.remove(peer.id(), future);
+            }
+        });
+        return future;
+    }
+
+    private Collection<PublicKey> load(Peer peer) {
+        // another fetch may have finished between the caller checking the key store and this one starting
+        var known = keyStore.findPublicKeys(peer.id());
+        if(!known.isEmpty()) {
+            return known;
+        }
+        Collection<PublicKey> keys;
+        try {
+            keys = fetcher.apply(peer);
+        } catch(RuntimeException e) {
+            recordFailure(peer.id(), true);
+            throw e;
+        }
+        if(keys.isEmpty()) {
+            recordFailure(peer.id(), false);
+        } else {
+            keys.forEach(k -> keyStore.addPublicKey(peer.id(), k));
+            failures.remove(peer.id());
+        }
+        return keys;
+    }
+
+    private void recordFailure(PeerId peerId, boolean requestFailed) {
+        var now = nanoClock.getAsLong();
+        failures.compute(peerId, (id, previous) -> {
+            var count = previous == null || stale(previous, now) ? 1 : previous.failures() + 1;
+            return new Failure(count, now + backoffNanos(count), requestFailed);
+        });
+        var prune = nextPrune.get();
+        if(now - prune >= 0 && nextPrune.compareAndSet(prune, now + maxBackoffNanos)) {
+            failures.values().removeIf(failure -> stale(failure, now));
+        }
+    }
+
+    // kept for a maximum backoff past its retry time so a peer that fails again when retried keeps backing off longer
+    private boolean stale(Failure failure, long now) {
+        return now - failure.retryAt() - maxBackoffNanos >= 0;
+    }
+
+    int trackedFailures() {
+        return failures.size();
+    }
+
+    private long backoffNanos(int failures) {
+        var backoff = initialBackoffNanos;
+        for(int i = 1; i < failures && backoff < maxBackoffNanos; i++) {
+            backoff = backoff > maxBackoffNanos / 2 ? maxBackoffNanos : backoff * 2;
+        }
+        return Math.min(backoff, maxBackoffNanos);
+    }
+
+    private boolean backingOff(Failure failure) {
+        return nanoClock.getAsLong() - failure.retryAt() < 0;
+    }
+
+    private static Collection<PublicKey> await(CompletableFuture<Collection<PublicKey>> keys) {
+        try {
+            return keys.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.arobie1992.clarinet.core;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for how a node resolves the public keys of other peers.
+ * <p>
+ * A peer whose keys couldn't be fetched isn't asked again until a backoff has passed. The backoff starts at
+ * {@code initialBackoff} and doubles with each consecutive failure up to {@code maxBackoff}.
+ * @param initialBackoff How long to wait before asking a peer for its keys again after the first failure. Defaults to 1
+ *                       second.
+ * @param maxBackoff The longest to wait before asking a peer for its keys again. Defaults to 5 minutes, or
+ *                   {@code initialBackoff} if that is longer.
+ * @param maxPrefetches The most peers whose keys may be fetched in the background at once. Prefetches past this are
+ *                      skipped and the keys are fetched when they're needed instead. Defaults to 16.
+ */
+public record KeyResolverOptions(Optional<Duration> initialBackoff, Optional<Duration> maxBackoff, Optional<Integer> maxPrefetches) {
+    public KeyResolverOptions {
+        initialBackoff.ifPresent(backoff -> {
+            if(backoff.isNegative() || backoff.isZero()) {
+                throw new IllegalArgumentException("initialBackoff must be positive");
+            }
+        });
+        maxBackoff.ifPresent(backoff -> {
+            if(backoff.isNegative() || backoff.isZero()) {
+                throw new IllegalArgumentException("maxBackoff must be positive");
+            }
+        });
+        if(initialBackoff.isPresent() && maxBackoff.isPresent() && maxBackoff.get().compareTo(initialBackoff.get()) < 0) {
+            throw new IllegalArgumentException("maxBackoff must not be less than initialBackoff");
+        }
+        maxPrefetches.ifPresent(max -> {
+            if(max < 1) {
+                throw new IllegalArgumentException("maxPrefetches must be positive");
+            }
+        });
+    }
+
+    public KeyResolverOptions(Optional<Duration> initialBackoff, Optional<Duration> maxBackoff) {
+        this(initialBackoff, maxBackoff, Optional.empty());
+    }
+
+    public KeyResolverOptions() {
+        this(Optional.empty(), Optional.empty());
+    }
+}
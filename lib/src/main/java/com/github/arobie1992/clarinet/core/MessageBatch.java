@@ -0,0 +1,29 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.DataMessage;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Several {@link DataMessage}s on the same connection sent as one unit. Each message still carries its own signatures,
+ * so everything after delivery, e.g. queries, works the same as for messages sent on their own.
+ * @param connectionId The connection all the messages belong to.
+ * @param messages The messages in the order they were sent.
+ * @param signing How the sender signed the messages. The witness signs them the same way.
+ */
+public record MessageBatch(ConnectionId connectionId, List<DataMessage> messages, BatchSigning signing) {
+    public MessageBatch {
+        Objects.requireNonNull(connectionId);
+        Objects.requireNonNull(signing);
+        messages = List.copyOf(messages);
+        if(messages.isEmpty()) {
+            throw new IllegalArgumentException("messages must not be empty");
+        }
+        for(var message : messages) {
+            if(!connectionId.equals(message.messageId().connectionId())) {
+                throw new IllegalArgumentException("Message " + message.messageId() + " is not on connection " + connectionId);
+            }
+        }
+    }
+}
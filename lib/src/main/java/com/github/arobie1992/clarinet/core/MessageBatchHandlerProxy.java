@@ -0,0 +1,32 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.None;
+import com.github.arobie1992.clarinet.transport.RemoteInformation;
+import com.github.arobie1992.clarinet.transport.SendHandler;
+
+import java.util.Objects;
+
+/**
+ * Handles {@link MessageBatch}es by passing them to the {@link MessageHandlerProxy} registered for single messages so
+ * that both paths share the same user handlers and behavior.
+ */
+class MessageBatchHandlerProxy implements SendHandler<MessageBatch> {
+    private static final None<Void> THE_NONE = new None<>();
+
+    private final MessageHandlerProxy messageHandler;
+
+    MessageBatchHandlerProxy(MessageHandlerProxy messageHandler) {
+        this.messageHandler = Objects.requireNonNull(messageHandler);
+    }
+
+    @Override
+    public None<Void> handle(RemoteInformation remoteInformation, MessageBatch batch) {
+        messageHandler.handleBatch(remoteInformation, batch);
+        return THE_NONE;
+    }
+
+    @Override
+    public Class<MessageBatch> inputType() {
+        return MessageBatch.class;
+    }
+}
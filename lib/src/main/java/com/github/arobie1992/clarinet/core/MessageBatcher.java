@@ -0,0 +1,158 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.transport.TransportOptions;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * Collects the messages sent on a connection into {@link MessageBatch}es.
+ * <p>
+ * A batch is sent once it reaches the maximum size or once the linger time has passed since its first message was
+ * added, whichever comes first. Each batch is sent with the {@link TransportOptions} of its first message.
+ */
+class MessageBatcher {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final Duration DEFAULT_LINGER = Duration.ofMillis(5);
+
+    private final ConnectionId connectionId;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final BatchSigning signing;
+    private final BiFunction<MessageBatch, TransportOptions, CompletableFuture<Void>> sender;
+    private final ReentrantLock lock = new ReentrantLock();
+    private Pending pending;
+    private RuntimeException failure;
+
+    private record Pending(List<DataMessage> messages, TransportOptions transportOptions, CompletableFuture<Void> sent) {}
+
+    /**
+     * @param sender Sends a full batch and completes once it has been sent.
+     */
+    MessageBatcher(
+            ConnectionId connectionId,
+            BatchOptions options,
+            BiFunction<MessageBatch, TransportOptions, CompletableFuture<Void>> sender
+    ) {
+        this.connectionId = Objects.requireNonNull(connectionId);
+        this.maxBatchSize = options.maxBatchSize().orElse(DEFAULT_MAX_BATCH_SIZE);
+        this.lingerNanos = options.linger().orElse(DEFAULT_LINGER).toNanos();
+        this.signing = options.signing().orElse(BatchSigning.PER_MESSAGE);
+        this.sender = Objects.requireNonNull(sender);
+    }
+
+    BatchSigning signing() {
+        return signing;
+    }
+
+    /**
+     * @return A future that completes once the batch containing {@code message} has been sent, or fails with the cause
+     * the batcher was {@link #fail(RuntimeException) failed} with.
+     */
+    CompletableFuture<Void> add(DataMessage message, TransportOptions transportOptions) {
+        Pending full = null;
+        Pending started = null;
+        CompletableFuture<Void> sent;
+        lock.lock();
+        try {
+            if(failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            if(pending == null) {
+                pending = new Pending(new ArrayList<>(), transportOptions, new CompletableFuture<>());
+                started = pending;
+            }
+            pending.messages().add(message);
+            sent = pending.sent();
+            if(pending.messages().size() >= maxBatchSize) {
+                full = pending;
+                pending = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if(full != null) {
+            send(full);
+        } else if(started != null) {
+            var batch = started;
+            CompletableFuture.runAsync(() -> flush(batch), CompletableFuture.delayedExecutor(lingerNanos, TimeUnit.NANOSECONDS, Thread::startVirtualThread));
+        }
+        return sent;
+    }
+
+    /**
+     * Sends the current batch without waiting for the linger time.
+     * @return A future that completes once the batch has been sent, or immediately if there was nothing to send.
+     */
+    CompletableFuture<Void> flush() {
+        Pending current;
+        lock.lock();
+        try {
+            current = pending;
+            pending = null;
+        } finally {
+            lock.unlock();
+        }
+        if(current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        send(current);
+        return current.sent();
+    }
+
+    /**
+     * Fails the batch still waiting to be sent, and any message added afterward, with {@code cause}. Used once the
+     * connection has been closed by another participant, since they would reject the batch anyway.
+     */
+    void fail(RuntimeException cause) {
+        Pending current;
+        lock.lock();
+        try {
+            failure = cause;
+            current = pending;
+            pending = null;
+        } finally {
+            lock.unlock();
+        }
+        if(current != null) {
+            current.sent().completeExceptionally(cause);
+        }
+    }
+
+    private void flush(Pending batch) {
+        lock.lock();
+        try {
+            // the batch filled up or was flushed explicitly before the linger time ran out
+            if(pending != batch) {
+                return;
+            }
+            pending = null;
+        } finally {
+            lock.unlock();
+        }
+        send(batch);
+    }
+
+    private void send(Pending batch) {
+        CompletableFuture<Void> result;
+        try {
+            result = sender.apply(new MessageBatch(connectionId, batch.messages(), signing), batch.transportOptions());
+        } catch(RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((ignored, e) -> {
+            if(e == null) {
+                batch.sent().complete(null);
+            } else {
+                batch.sent().completeExceptionally(e);
+            }
+        });
+    }
+}
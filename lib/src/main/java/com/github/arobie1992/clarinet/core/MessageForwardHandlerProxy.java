@@ -38,6 +38,7 @@ class MessageForwardHandlerProxy implements SendHandler<MessageForward> {
         try {
             PeerId recId;
             PeerId witId;
+            String hashAlgorithm;
             try(var ref = connectionStore.findForRead(connectionId)) {
                 if(!(ref instanceof Connection.Readable(Connection connection))) {
                     throw new HandlerException("from " + receiver + " for a message on connection "
@@ -52,6 +53,7 @@ class MessageForwardHandlerProxy implements SendHandler<MessageForward> {
                 witId = connection.witness().orElseThrow(() ->
                         new HandlerException("for a message on connection " + connectionId + " that does not have witness"));
                 recId = connection.receiver();
+                hashAlgorithm = connection.hashAlgorithm();
             }
 
             if(!node.checkSignatureHash(message.summary().hash(), witId, message.summary().witnessSignature())) {
@@ -70,7 +72,14 @@ class MessageForwardHandlerProxy implements SendHandler<MessageForward> {
                 throw new HandlerException("for a message on connection " + connectionId + " that there is no record of");
             }
 
-            var hash = node.hash(storedMsg.get().witnessParts(), message.summary().hashAlgorithm());
+            if(!hashAlgorithm.equals(message.summary().hashAlgorithm())) {
+                // the witness signed the hash, but the receiver is the one that says which algorithm it used
+                var assessment = node.assessmentStore().find(recId, message.summary().messageId());
+                node.assessmentStore().save(assessment.updateStatus(Assessment.Status.STRONG_PENALTY), node.reputationService()::update);
+                throw new HandlerException("for a message on connection " + connectionId + " with hash algorithm "
+                        + message.summary().hashAlgorithm() + " rather than the connection's " + hashAlgorithm);
+            }
+            var hash = node.witnessHash(storedMsg.get(), hashAlgorithm);
             if(!Objects.equals(hash, message.summary().hash())) {
                 var assessment = node.assessmentStore().find(witId, message.summary().messageId());
                 node.assessmentStore().save(assessment.updateStatus(Assessment.Status.STRONG_PENALTY), node.reputationService()::update);
@@ -1,7 +1,8 @@
 package com.github.arobie1992.clarinet.core;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.adt.None;
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.MessageForward;
 import com.github.arobie1992.clarinet.message.MessageSummary;
@@ -11,20 +12,49 @@ import com.github.arobie1992.clarinet.transport.RemoteInformation;
 import com.github.arobie1992.clarinet.transport.SendHandler;
 import com.github.arobie1992.clarinet.transport.TransportOptions;
 
-import java.io.UncheckedIOException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 
+/**
+ * Handles incoming data messages, both as the witness and as the receiver.
+ * <p>
+ * Signature checks are handed to the node's verifier, which runs at most one task per available processor at a time,
+ * so a flood of messages queues up rather than running unbounded crypto in parallel.
+ * <p>
+ * Messages are verified concurrently, but the results for messages on the same connection are stored, assessed and
+ * handed to the user's handler in sequence number order through the node's {@link MessageOrder}.
+ */
 class MessageHandlerProxy implements SendHandler<DataMessage> {
     private static final None<Void> THE_NONE = new None<>();
-    private static final String HASH_ALG = "SHA-256";
+    // runs the task on the calling thread, for work that is already on the verifier
+    private static final Executor INLINE = Runnable::run;
 
     private final SendHandler<DataMessage> userWitnessHandler;
     private final SendHandler<DataMessage> userReceiveHandler;
     private final ConnectionStore connectionStore;
     private final SimpleNode node;
+    private final Executor verifier;
+    private final MessageOrder order;
 
-    MessageHandlerProxy(SendHandler<DataMessage> userWitnessHandler, SendHandler<DataMessage> userReceiveHandler, ConnectionStore connectionStore, SimpleNode node) {
+    /**
+     * @param verifier Where signatures are checked. Owned by the node, which shuts it down.
+     * @param order Puts the results of each connection's messages back in sequence number order.
+     */
+    MessageHandlerProxy(
+            SendHandler<DataMessage> userWitnessHandler,
+            SendHandler<DataMessage> userReceiveHandler,
+            ConnectionStore connectionStore,
+            SimpleNode node,
+            Executor verifier,
+            MessageOrder order
+    ) {
+        this.verifier = Objects.requireNonNull(verifier);
+        this.order = Objects.requireNonNull(order);
         this.userWitnessHandler = userWitnessHandler == null ? DEFAULT_HANDLER : userWitnessHandler;
         this.userReceiveHandler = userReceiveHandler == null ? DEFAULT_HANDLER : userReceiveHandler;
         this.connectionStore = Objects.requireNonNull(connectionStore);
@@ -33,13 +63,104 @@ class MessageHandlerProxy implements SendHandler<DataMessage> {
 
     @Override
     public None<Void> handle(RemoteInformation remoteInformation, DataMessage message) {
+        savePeer(remoteInformation);
+
+        var connectionId = message.messageId().connectionId();
+        var participants = participants(connectionId);
+
+        // the participants of an open connection never change, so none of the work below needs the connection locked
+        var isWitness = node.id().equals(participants.witness());
+        var crypto = crypto(isWitness, participants, message, verifier, new VerifiedRoots());
+
+        apply(remoteInformation, isWitness, participants, message, crypto);
+        if(isWitness) {
+            // TODO add ability for user to set transport options for handler
+            node.sendInternal(participants.receiver(), message, new TransportOptions());
+        }
+        return THE_NONE;
+    }
+
+    /**
+     * Handles each message in the batch the same way as {@link #handle(RemoteInformation, DataMessage)} except that the
+     * connection is checked once for the whole batch, all the messages are verified concurrently, and the witness
+     * forwards the messages to the receiver as a single batch. If the batch uses {@link BatchSigning#MERKLE_ROOT}, the
+     * witness also signs the batch with a single signature rather than signing each message. Root signatures shared by
+     * several messages are only verified once per batch.
+     */
+    void handleBatch(RemoteInformation remoteInformation, MessageBatch batch) {
+        savePeer(remoteInformation);
+
+        var participants = participants(batch.connectionId());
+        var isWitness = node.id().equals(participants.witness());
+        // with Merkle signing the witness signs the batch as a whole once every sender signature has been checked
+        var signBatch = isWitness && batch.signing() == BatchSigning.MERKLE_ROOT;
+        // a batch signed as a whole only needs its root signature verified once
+        var verifiedRoots = new VerifiedRoots();
+        var pending = batch.messages().stream()
+                // each message is already on the verifier, so its own checks run inline rather than waiting on another slot
+                .map(message -> CompletableFuture.supplyAsync(
+                        () -> signBatch
+                                ? new Crypto(checkSender(participants.sender(), message, verifiedRoots), true)
+                                : crypto(isWitness, participants, message, INLINE, verifiedRoots),
+                        verifier
+                ))
+                .toList();
+        var crypto = pending.stream().map(MessageHandlerProxy::join).toList();
+        if(signBatch) {
+            List<Bytes> signatures;
+            if(node.canSignHash()) {
+                var hashes = batch.messages().stream().map(message -> node.signatureHash(message.witnessParts())).toList();
+                signatures = MerkleSignatures.sign(hashes, node::genSignatureHash);
+            } else {
+                // there is no key to sign the root with, so each message is signed as if it weren't batched
+                signatures = batch.messages().stream().map(message -> node.genSignature(message.witnessParts())).toList();
+            }
+            for(int i = 0; i < batch.messages().size(); i++) {
+                batch.messages().get(i).setWitnessSignature(signatures.get(i));
+            }
+        }
+
+        // a message waits for the ones before it, so this thread has to apply its own in order too
+        var inOrder = IntStream.range(0, batch.messages().size())
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> batch.messages().get(i).messageId().sequenceNumber()))
+                .toList();
+        for(var i : inOrder) {
+            apply(remoteInformation, isWitness, participants, batch.messages().get(i), crypto.get(i));
+        }
+        if(isWitness) {
+            // TODO add ability for user to set transport options for handler
+            node.sendBatchInternal(participants.receiver(), batch, new TransportOptions());
+        }
+    }
+
+    /**
+     * Stores and assesses the message and hands it to the user's handler once the messages before it on the connection
+     * have been.
+     */
+    private void apply(RemoteInformation remoteInformation, boolean isWitness, Participants participants, DataMessage message, Crypto crypto) {
+        order.apply(message.messageId(), () -> {
+            // drop messages for connections that closed while they were being verified or waiting their turn
+            participants(message.messageId().connectionId());
+            if(isWitness) {
+                recordAsWitness(remoteInformation, participants, message, crypto);
+            } else {
+                handleAsReceiver(remoteInformation, participants, message, crypto);
+            }
+        });
+    }
+
+    private void savePeer(RemoteInformation remoteInformation) {
         var peer = node.peerStore().find(remoteInformation.peer().id()).orElse(remoteInformation.peer());
         peer.addresses().addAll(remoteInformation.peer().addresses());
         node.peerStore().save(peer);
+    }
 
-        var connectionId = message.messageId().connectionId();
-        try(var ref = connectionStore.findForWrite(connectionId)) {
-            if(!(ref instanceof Writeable(ConnectionImpl connection))) {
+    private record Participants(PeerId sender, PeerId witness, PeerId receiver, String hashAlgorithm) {}
+
+    private Participants participants(ConnectionId connectionId) {
+        try(var ref = connectionStore.findForRead(connectionId)) {
+            if(!(ref instanceof Connection.Readable(Connection connection))) {
                 throw new NoSuchConnectionException(connectionId);
             }
             if(!connection.status().equals(Connection.Status.OPEN)) {
@@ -49,54 +170,104 @@ class MessageHandlerProxy implements SendHandler<DataMessage> {
             if(!connection.receiver().equals(node.id()) && !witness.equals(node.id())) {
                 throw new IllegalArgumentException("Connection is not through or to " + node.id());
             }
+            return new Participants(connection.sender(), witness, connection.receiver(), connection.hashAlgorithm());
+        }
+    }
+
+    /**
+     * The results of the signature operations for a message, computed without the connection locked.
+     * @param senderSigValid Whether the sender's signature is valid.
+     * @param witnessSigValid Whether the witness's signature is valid. Always true when this node is the witness.
+     */
+    private record Crypto(boolean senderSigValid, boolean witnessSigValid) {}
+
+    /**
+     * @param senderVerifier Where to check the sender's signature while this thread does the rest of the work.
+     * @param verifiedRoots The batch roots already verified for the other messages in the same batch.
+     */
+    private Crypto crypto(
+            boolean isWitness,
+            Participants participants,
+            DataMessage message,
+            Executor senderVerifier,
+            VerifiedRoots verifiedRoots
+    ) {
+        return isWitness
+                ? witnessCrypto(participants.sender(), message, senderVerifier, verifiedRoots)
+                : receiverCrypto(participants.sender(), participants.witness(), message, senderVerifier, verifiedRoots);
+    }
+
+    private Crypto witnessCrypto(PeerId sender, DataMessage message, Executor senderVerifier, VerifiedRoots verifiedRoots) {
+        var senderSigValid = verifySenderAsync(sender, message, senderVerifier, verifiedRoots);
+        message.setWitnessSignature(node.genSignature(message.witnessParts()));
+        return new Crypto(join(senderSigValid), true);
+    }
+
+    private Crypto receiverCrypto(
+            PeerId sender,
+            PeerId witness,
+            DataMessage message,
+            Executor senderVerifier,
+            VerifiedRoots verifiedRoots
+    ) {
+        var senderSigValid = verifySenderAsync(sender, message, senderVerifier, verifiedRoots);
+        var witnessSigValid = node.checkSignature(message.witnessParts(), witness, message.witnessSignature(), verifiedRoots);
+        return new Crypto(join(senderSigValid), witnessSigValid);
+    }
+
+    private CompletableFuture<Boolean> verifySenderAsync(
+            PeerId sender,
+            DataMessage message,
+            Executor senderVerifier,
+            VerifiedRoots verifiedRoots
+    ) {
+        return CompletableFuture.supplyAsync(() -> checkSender(sender, message, verifiedRoots), senderVerifier);
+    }
+
+    private boolean checkSender(PeerId sender, DataMessage message, VerifiedRoots verifiedRoots) {
+        return node.checkSignature(message.senderParts(), sender, message.senderSignature(), verifiedRoots);
+    }
 
-            try {
-                if(node.id().equals(witness)) {
-                    handleAsWitness(remoteInformation, connection, message);
-                } else {
-                    handleAsReceiver(remoteInformation, connection, witness, message);
-                }
-            } catch (JsonProcessingException e) {
-                throw new UncheckedIOException(e);
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException re) {
+                throw re;
             }
+            throw e;
         }
-        return THE_NONE;
     }
 
-    private void handleAsWitness(RemoteInformation remoteInformation, Connection connection, DataMessage message) throws JsonProcessingException {
-        message.setWitnessSignature(node.genSignature(message.witnessParts()));
+    private void recordAsWitness(RemoteInformation remoteInformation, Participants participants, DataMessage message, Crypto crypto) {
         node.messageStore().add(message);
+        // computed once up front so answering queries about this message is a lookup
+        node.witnessHash(message, participants.hashAlgorithm());
 
-        var assessment = node.assessmentStore().find(connection.sender(), message.messageId());
-        var status = node.checkSignature(message.senderParts(), connection.sender(), message.senderSignature())
-                ? Assessment.Status.REWARD
-                : Assessment.Status.STRONG_PENALTY;
+        var assessment = node.assessmentStore().find(participants.sender(), message.messageId());
+        var status = crypto.senderSigValid() ? Assessment.Status.REWARD : Assessment.Status.STRONG_PENALTY;
         node.assessmentStore().save(assessment.updateStatus(status), node.reputationService()::update);
 
         userWitnessHandler.handle(remoteInformation, message);
-        // TODO add ability for user to set transport options for handler
-        node.sendInternal(connection.receiver(), message, new TransportOptions());
     }
 
-    private void handleAsReceiver(RemoteInformation remoteInformation, Connection connection, PeerId witness, DataMessage message) throws JsonProcessingException {
+    private void handleAsReceiver(RemoteInformation remoteInformation, Participants participants, DataMessage message, Crypto crypto) {
         node.messageStore().add(message);
+        var hash = node.witnessHash(message, participants.hashAlgorithm());
 
-        var witAssessment = node.assessmentStore().find(witness, message.messageId());
-        if(node.checkSignature(message.witnessParts(), witness, message.witnessSignature())) {
-            var sendAssessment = node.assessmentStore().find(connection.sender(), message.messageId());
-            if(node.checkSignature(message.senderParts(), connection.sender(), message.senderSignature())) {
+        var witAssessment = node.assessmentStore().find(participants.witness(), message.messageId());
+        if(crypto.witnessSigValid()) {
+            var sendAssessment = node.assessmentStore().find(participants.sender(), message.messageId());
+            if(crypto.senderSigValid()) {
                 witAssessment = witAssessment.updateStatus(Assessment.Status.REWARD);
                 sendAssessment = sendAssessment.updateStatus(Assessment.Status.REWARD);
             } else {
                 witAssessment = witAssessment.updateStatus(Assessment.Status.WEAK_PENALTY);
                 sendAssessment = sendAssessment.updateStatus(Assessment.Status.WEAK_PENALTY);
-                /* FIXME this isn't going to work in a real impl because the witness could've used a different hashing algorithm
-                   but should work for this prototype; long term would probably be to have the nodes agree upon a hash algorithm
-                   as part of the connection */
-                var hash = node.hash(message.witnessParts(), HASH_ALG);
-                var summary = new MessageSummary(message.messageId(), hash, HASH_ALG, message.witnessSignature().orElseThrow());
+                // all participants agreed on the hash algorithm when connecting, so the sender can check the hash as is
+                var summary = new MessageSummary(message.messageId(), hash, participants.hashAlgorithm(), message.witnessSignature().orElseThrow());
                 var sig = node.genSignature(summary);
-                var sender = node.peerStore().find(connection.sender()).orElseThrow(() -> new NoSuchPeerException(connection.sender()));
+                var sender = node.peerStore().find(participants.sender()).orElseThrow(() -> new NoSuchPeerException(participants.sender()));
                 node.sendForPeer(sender, Endpoints.MESSAGE_FORWARD.name(), new MessageForward(summary, sig), new TransportOptions());
             }
             node.assessmentStore().save(sendAssessment, node.reputationService()::update);
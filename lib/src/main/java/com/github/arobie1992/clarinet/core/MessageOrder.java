@@ -0,0 +1,104 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.MessageId;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies the results for each connection's messages in sequence number order even though the messages are received and
+ * verified concurrently.
+ * <p>
+ * A message that arrives ahead of one of its predecessors waits for the predecessor to be applied, but only for up to
+ * {@code maxWait}, since the predecessor may never come, for example because the sender gave up on it. After that the
+ * missing messages are skipped, and any of them that do turn up later are applied as soon as they arrive. The wait is on
+ * the handling thread, which is virtual.
+ */
+final class MessageOrder {
+    static final Duration DEFAULT_MAX_WAIT = Duration.ofMillis(500);
+
+    private static final class Sequence {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition advanced = lock.newCondition();
+        // the sequence numbers of the messages waiting their turn
+        private final TreeSet<Long> waiting = new TreeSet<>();
+        private long next;
+    }
+
+    private final long maxWaitNanos;
+    private final Map<ConnectionId, Sequence> sequences = new ConcurrentHashMap<>();
+
+    MessageOrder() {
+        this(DEFAULT_MAX_WAIT);
+    }
+
+    MessageOrder(Duration maxWait) {
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Runs {@code apply} once every message on the connection before this one has been applied or given up on. No other
+     * message on the connection is applied while it runs.
+     */
+    void apply(MessageId messageId, Runnable apply) {
+        var sequence = sequences.computeIfAbsent(messageId.connectionId(), k -> new Sequence());
+        var sequenceNumber = messageId.sequenceNumber();
+        sequence.lock.lock();
+        try {
+            await(sequence, sequenceNumber);
+            try {
+                apply.run();
+            } finally {
+                // late messages were already skipped over, so only ones at or past the next sequence number move it on
+                if(sequenceNumber >= sequence.next) {
+                    sequence.next = sequenceNumber + 1;
+                    sequence.advanced.signalAll();
+                }
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to apply " + messageId, e);
+        } finally {
+            sequence.lock.unlock();
+        }
+    }
+
+    private void await(Sequence sequence, long sequenceNumber) throws InterruptedException {
+        sequence.waiting.add(sequenceNumber);
+        try {
+            var remaining = maxWaitNanos;
+            while(sequenceNumber > sequence.next) {
+                if(remaining > 0) {
+                    remaining = sequence.advanced.awaitNanos(remaining);
+                    continue;
+                }
+                // give up on the gap, but only up to the earliest waiting message so the rest still go in order
+                var earliest = sequence.waiting.first();
+                if(earliest > sequence.next) {
+                    sequence.next = earliest;
+                    sequence.advanced.signalAll();
+                }
+                if(sequenceNumber > sequence.next) {
+                    sequence.advanced.awaitNanos(maxWaitNanos);
+                }
+            }
+        } finally {
+            sequence.waiting.remove(sequenceNumber);
+        }
+    }
+
+    /**
+     * Forgets the connection's position once it is closed.
+     */
+    void connectionClosed(ConnectionId connectionId) {
+        sequences.remove(connectionId);
+    }
+
+    int tracked() {
+        return sequences.size();
+    }
+}
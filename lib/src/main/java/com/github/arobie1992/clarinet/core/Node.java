@@ -12,6 +12,8 @@ import com.github.arobie1992.clarinet.transport.SendHandler;
 import com.github.arobie1992.clarinet.transport.Transport;
 import com.github.arobie1992.clarinet.transport.TransportOptions;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface Node {
     PeerId id();
     PeerStore peerStore();
@@ -27,6 +29,11 @@ public interface Node {
 
     KeyStore keyStore();
 
+    /**
+     * @return The current activity of the cache the node uses to answer repeated queries without signing again.
+     */
+    QueryCacheStats queryCacheStats();
+
     /**
      * Establishes an outgoing communication channel with the specified node at the specified address.
      * <p>
@@ -44,8 +51,36 @@ public interface Node {
      */
     ConnectionId connect(PeerId receiver, ConnectionOptions connectionOptions, TransportOptions transportOptions);
 
+    /**
+     * Non-blocking variant of {@link #connect(PeerId, ConnectionOptions, TransportOptions)}.
+     * <p>
+     * Exceptions {@code connect} would throw are instead used to complete the returned future exceptionally.
+     */
+    CompletableFuture<ConnectionId> connectAsync(PeerId receiver, ConnectionOptions connectionOptions, TransportOptions transportOptions);
+
     MessageId send(ConnectionId connectionId, Bytes data, TransportOptions transportOptions);
 
+    /**
+     * Non-blocking variant of {@link #send(ConnectionId, Bytes, TransportOptions)}.
+     * <p>
+     * Exceptions {@code send} would throw are instead used to complete the returned future exceptionally.
+     */
+    CompletableFuture<MessageId> sendAsync(ConnectionId connectionId, Bytes data, TransportOptions transportOptions);
+
+    /**
+     * Pipelined variant of {@link #sendAsync(ConnectionId, Bytes, TransportOptions)} for sustained streams of messages.
+     * <p>
+     * The message is signed and stored on the calling thread and then handed to the transport, so the caller can move
+     * on to the next message without waiting for the witness. The number of sends in flight on each connection is
+     * bounded by the node's {@link SendWindowOptions}; what happens when the window is full depends on its
+     * {@link SendWindowOptions.Policy}.
+     * <p>
+     * Exceptions {@code send} would throw are instead used to complete the returned future exceptionally, as is
+     * {@link SendWindowFullException} if the window has no room. If the message is dropped to make room for a newer
+     * one, the returned future is cancelled.
+     */
+    CompletableFuture<MessageId> sendPipelined(ConnectionId connectionId, Bytes data, TransportOptions transportOptions);
+
     void close(ConnectionId connectionId, CloseOptions closeOptions, TransportOptions transportOptions);
 
     /**
@@ -67,6 +102,13 @@ public interface Node {
      */
     QueryResult query(PeerId peerId, MessageId messageId, TransportOptions transportOptions);
 
+    /**
+     * Non-blocking variant of {@link #query(PeerId, MessageId, TransportOptions)}.
+     * <p>
+     * Exceptions {@code query} would throw are instead used to complete the returned future exceptionally.
+     */
+    CompletableFuture<QueryResult> queryAsync(PeerId peerId, MessageId messageId, TransportOptions transportOptions);
+
     /**
      * Process the query result and update the assessment corresponding to the queried peer and message.
      * <p>
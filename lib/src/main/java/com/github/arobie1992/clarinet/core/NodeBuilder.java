@@ -10,6 +10,7 @@ import com.github.arobie1992.clarinet.transport.ExchangeHandler;
 import com.github.arobie1992.clarinet.transport.SendHandler;
 import com.github.arobie1992.clarinet.transport.Transport;
 
+import java.util.Set;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -137,5 +138,41 @@ public interface NodeBuilder {
 
     NodeBuilder queryForwardHandler(SendHandler<QueryForward> queryForwardHandler);
 
+    /**
+     * Configuration for the cache of signed responses the node uses to answer repeated {@link QueryRequest}s for the
+     * same message. <b>This field is optional; however, if not specified, the defaults in
+     * {@link QueryCacheOptions} are used.</b> The cache is not used when a {@link #queryHandler(ExchangeHandler)} is
+     * provided.
+     * @param queryCacheOptions The cache configuration.
+     * @return {@code this} builder for fluent building.
+     */
+    NodeBuilder queryCacheOptions(QueryCacheOptions queryCacheOptions);
+
+    /**
+     * Configuration for the per-connection window that bounds
+     * {@link Node#sendPipelined(ConnectionId, com.github.arobie1992.clarinet.adt.Bytes, TransportOptions)}. <b>This
+     * field is optional; however, if not specified, the defaults in {@link SendWindowOptions} are used.</b>
+     * @param sendWindowOptions The window configuration.
+     * @return {@code this} builder for fluent building.
+     */
+    NodeBuilder sendWindowOptions(SendWindowOptions sendWindowOptions);
+
+    /**
+     * Configuration for how the node backs off from peers whose public keys it couldn't fetch. <b>This field is
+     * optional; however, if not specified, the defaults in {@link KeyResolverOptions} are used.</b>
+     * @param keyResolverOptions The key resolution configuration.
+     * @return {@code this} builder for fluent building.
+     */
+    NodeBuilder keyResolverOptions(KeyResolverOptions keyResolverOptions);
+
+    /**
+     * Hash algorithms beyond {@link ConnectionOptions#SECURE_HASH_ALGORITHMS} that the node agrees to use for
+     * connections, both ones it opens and ones it is asked to receive or witness. <b>This field is optional; however,
+     * if not specified, only {@link ConnectionOptions#SECURE_HASH_ALGORITHMS} are used.</b>
+     * @param hashAlgorithms The additional {@link java.security.MessageDigest} algorithms.
+     * @return {@code this} builder for fluent building.
+     */
+    NodeBuilder additionalHashAlgorithms(Set<String> hashAlgorithms);
+
     Node build();
 }
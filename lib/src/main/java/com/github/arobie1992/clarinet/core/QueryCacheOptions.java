@@ -0,0 +1,30 @@
+package com.github.arobie1992.clarinet.core;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for the cache of signed {@link com.github.arobie1992.clarinet.message.QueryResponse}s a node uses to
+ * answer repeated queries for the same message without signing the response again.
+ * @param maxEntries The maximum number of responses to keep. The least recently used response is evicted once the
+ *                   cache is full. Defaults to 1024. Zero disables the cache.
+ * @param timeToLive How long a response may be served from the cache after it was signed. Defaults to 10 minutes.
+ */
+public record QueryCacheOptions(Optional<Integer> maxEntries, Optional<Duration> timeToLive) {
+    public QueryCacheOptions {
+        maxEntries.ifPresent(max -> {
+            if(max < 0) {
+                throw new IllegalArgumentException("maxEntries must be non-negative");
+            }
+        });
+        timeToLive.ifPresent(ttl -> {
+            if(ttl.isNegative() || ttl.isZero()) {
+                throw new IllegalArgumentException("timeToLive must be positive");
+            }
+        });
+    }
+
+    public QueryCacheOptions() {
+        this(Optional.empty(), Optional.empty());
+    }
+}
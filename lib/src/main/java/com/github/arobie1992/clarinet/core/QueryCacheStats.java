@@ -0,0 +1,11 @@
+package com.github.arobie1992.clarinet.core;
+
+/**
+ * A snapshot of the activity of a node's signed query response cache.
+ * @param hits The number of queries answered from the cache.
+ * @param misses The number of queries that required signing a new response.
+ * @param evictions The number of responses removed because the cache was full or they expired.
+ * @param size The number of responses currently cached.
+ */
+public record QueryCacheStats(long hits, long misses, long evictions, int size) {
+}
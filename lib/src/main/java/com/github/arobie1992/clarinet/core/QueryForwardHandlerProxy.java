@@ -1,6 +1,5 @@
 package com.github.arobie1992.clarinet.core;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.adt.None;
 import com.github.arobie1992.clarinet.message.QueryForward;
@@ -9,7 +8,6 @@ import com.github.arobie1992.clarinet.reputation.Assessment;
 import com.github.arobie1992.clarinet.transport.RemoteInformation;
 import com.github.arobie1992.clarinet.transport.SendHandler;
 
-import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Objects;
 
@@ -42,11 +40,13 @@ class QueryForwardHandlerProxy implements SendHandler<QueryForward> {
         }
 
         List<PeerId> participants;
+        String hashAlgorithm;
         try(var ref = connectionStore.findForRead(resp.messageDetails().messageId().connectionId())) {
             if(!(ref instanceof Connection.Readable(Connection connection))) {
                 return new None<>();
             }
             participants = connection.participants();
+            hashAlgorithm = connection.hashAlgorithm();
         }
 
         var opt = node.messageStore().find(resp.messageDetails().messageId());
@@ -56,9 +56,7 @@ class QueryForwardHandlerProxy implements SendHandler<QueryForward> {
             userHandler.handle(remoteInformation, message);
             return new None<>();
         }
-        var expected = node.hash(opt.get().witnessParts(), resp.hashAlgorithm());
-        var hash = resp.messageDetails().messageHash();
-        if(Objects.equals(expected, hash)) {
+        if(node.witnessHashMatches(opt.get(), hashAlgorithm, resp.hashAlgorithm(), resp.messageDetails().messageHash())) {
             var assessment = node.assessmentStore().find(message.queriedPeer(), resp.messageDetails().messageId());
             node.assessmentStore().save(assessment.updateStatus(Assessment.Status.REWARD), node.reputationService()::update);
         } else {
@@ -78,11 +76,7 @@ class QueryForwardHandlerProxy implements SendHandler<QueryForward> {
     }
 
     private boolean invalidSig(Object data, PeerId peerId, Bytes signature) {
-        try {
-            return !node.checkSignature(data, peerId, signature);
-        } catch (JsonProcessingException e) {
-            throw new UncheckedIOException(e);
-        }
+        return !node.checkSignature(data, peerId, signature);
     }
 
     @Override
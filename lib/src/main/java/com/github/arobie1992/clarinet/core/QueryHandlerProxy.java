@@ -10,14 +10,14 @@ import com.github.arobie1992.clarinet.transport.RemoteInformation;
 import java.util.Objects;
 
 class QueryHandlerProxy implements ExchangeHandler<QueryRequest, QueryResponse> {
-    private static final String HASH_ALG = "SHA-256";
-
     private final ExchangeHandler<QueryRequest, QueryResponse> userHandler;
     private final SimpleNode node;
+    private final QueryResponseCache cache;
 
-    QueryHandlerProxy(ExchangeHandler<QueryRequest, QueryResponse> userHandler, SimpleNode node) {
+    QueryHandlerProxy(ExchangeHandler<QueryRequest, QueryResponse> userHandler, SimpleNode node, QueryResponseCache cache) {
         this.userHandler = userHandler;
         this.node = node;
+        this.cache = Objects.requireNonNull(cache);
     }
 
     @Override
@@ -32,10 +32,13 @@ class QueryHandlerProxy implements ExchangeHandler<QueryRequest, QueryResponse>
         }
 
         var storedMessage = opt.get();
-        var hash = node.hash(storedMessage.witnessParts(), HASH_ALG);
-        var messageDetails = new MessageDetails(storedMessage.messageId(), hash);
-        var sig = node.genSignature(messageDetails);
-        return new Some<>(new QueryResponse(messageDetails, sig, HASH_ALG));
+        var hashAlgorithm = node.hashAlgorithm(storedMessage.messageId().connectionId());
+        return new Some<>(cache.get(storedMessage.messageId(), hashAlgorithm, () -> {
+            var hash = node.witnessHash(storedMessage, hashAlgorithm);
+            var messageDetails = new MessageDetails(storedMessage.messageId(), hash);
+            var sig = node.genSignature(messageDetails);
+            return new QueryResponse(messageDetails, sig, hashAlgorithm);
+        }));
     }
 
     @Override
@@ -0,0 +1,138 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.QueryResponse;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A bounded LRU cache of signed {@link QueryResponse}s keyed by message and hash algorithm.
+ * <p>
+ * Concurrent queries for the same uncached message share a single signing operation: the first caller signs while
+ * the rest wait for its result. A response that fails to be produced is not cached.
+ */
+class QueryResponseCache {
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private record Key(MessageId messageId, String hashAlgorithm) {}
+    private record Entry(CompletableFuture<QueryResponse> response, long expiresAt) {}
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Key, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    QueryResponseCache(QueryCacheOptions options) {
+        this(options, System::nanoTime);
+    }
+
+    QueryResponseCache(QueryCacheOptions options, LongSupplier nanoClock) {
+        this.maxEntries = options.maxEntries().orElse(DEFAULT_MAX_ENTRIES);
+        this.timeToLiveNanos = options.timeToLive().orElse(DEFAULT_TIME_TO_LIVE).toNanos();
+        this.nanoClock = nanoClock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if(size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached response for the message, signing a new one with {@code signer} if there is none.
+     * @param messageId The queried message.
+     * @param hashAlgorithm The hash algorithm the response uses.
+     * @param signer Produces the signed response on a miss.
+     * @return The cached or newly signed response.
+     */
+    QueryResponse get(MessageId messageId, String hashAlgorithm, Supplier<QueryResponse> signer) {
+        if(maxEntries == 0) {
+            misses.increment();
+            return signer.get();
+        }
+
+        var key = new Key(messageId, hashAlgorithm);
+        CompletableFuture<QueryResponse> cached = null;
+        CompletableFuture<QueryResponse> pending = null;
+        lock.lock();
+        try {
+            var entry = entries.get(key);
+            if(entry != null && nanoClock.getAsLong() - entry.expiresAt() < 0) {
+                hits.increment();
+                cached = entry.response();
+            } else {
+                if(entry != null) {
+                    entries.remove(key);
+                    evictions.increment();
+                }
+                misses.increment();
+                pending = new CompletableFuture<>();
+                entries.put(key, new Entry(pending, nanoClock.getAsLong() + timeToLiveNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if(cached != null) {
+            return await(cached);
+        }
+        try {
+            var response = signer.get();
+            pending.complete(response);
+            return response;
+        } catch(RuntimeException e) {
+            remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void remove(Key key, CompletableFuture<QueryResponse> response) {
+        lock.lock();
+        try {
+            var entry = entries.get(key);
+            if(entry != null && entry.response() == response) {
+                entries.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    QueryCacheStats stats() {
+        lock.lock();
+        try {
+            return new QueryCacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static QueryResponse await(CompletableFuture<QueryResponse> response) {
+        try {
+            return response.join();
+        } catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+}
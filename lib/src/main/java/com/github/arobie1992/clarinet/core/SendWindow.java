@@ -0,0 +1,130 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.MessageId;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounds the number of pipelined sends in flight on a single connection.
+ * <p>
+ * A send takes a slot before its message is created and gives it back when the slot's future completes, however that
+ * happens. Slots are kept in the order they were taken so {@link SendWindowOptions.Policy#DROP_OLDEST} can find the
+ * oldest.
+ */
+class SendWindow {
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    private static final Duration DEFAULT_BLOCK_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ConnectionId connectionId;
+    private final int maxInFlight;
+    private final SendWindowOptions.Policy policy;
+    private final long blockTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final ArrayDeque<CompletableFuture<MessageId>> inFlight = new ArrayDeque<>();
+    private RuntimeException failure;
+
+    SendWindow(ConnectionId connectionId, SendWindowOptions options) {
+        this.connectionId = Objects.requireNonNull(connectionId);
+        this.maxInFlight = options.maxInFlight().orElse(DEFAULT_MAX_IN_FLIGHT);
+        this.policy = options.policy().orElse(SendWindowOptions.Policy.BLOCK);
+        this.blockTimeoutNanos = options.blockTimeout().orElse(DEFAULT_BLOCK_TIMEOUT).toNanos();
+    }
+
+    /**
+     * Takes a slot in the window, applying the configured policy if the window is full.
+     * @return The future the send must complete once it is done. Completing it in any way frees the slot.
+     * @throws SendWindowFullException If the policy is {@link SendWindowOptions.Policy#FAIL_FAST} and the window is
+     * full, or {@link SendWindowOptions.Policy#BLOCK} and no slot freed up in time.
+     * @throws RuntimeException The cause the window was {@link #fail(RuntimeException) failed} with, if it was.
+     */
+    CompletableFuture<MessageId> acquire() {
+        CompletableFuture<MessageId> dropped = null;
+        var slot = new CompletableFuture<MessageId>();
+        lock.lock();
+        try {
+            if(failure != null) {
+                throw failure;
+            }
+            if(inFlight.size() >= maxInFlight) {
+                switch(policy) {
+                    case BLOCK -> awaitSpace();
+                    case FAIL_FAST -> throw new SendWindowFullException(connectionId);
+                    case DROP_OLDEST -> dropped = inFlight.poll();
+                }
+            }
+            inFlight.add(slot);
+        } finally {
+            lock.unlock();
+        }
+        // run the dropped send's callbacks without holding the lock
+        if(dropped != null) {
+            dropped.cancel(false);
+        }
+        slot.whenComplete((ignored, e) -> release(slot));
+        return slot;
+    }
+
+    private void awaitSpace() {
+        var remaining = blockTimeoutNanos;
+        try {
+            while(failure == null && inFlight.size() >= maxInFlight) {
+                if(remaining <= 0) {
+                    throw new SendWindowFullException(connectionId);
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            // failing the window frees the slots it fails, so check even if space opened up
+            if(failure != null) {
+                throw failure;
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SendWindowFullException(connectionId);
+        }
+    }
+
+    /**
+     * Fails every send still in the window and any taken afterward with {@code cause}, and wakes any sends waiting for
+     * a slot so they fail too. Used once the connection is closed, since none of them can be delivered.
+     */
+    void fail(RuntimeException cause) {
+        List<CompletableFuture<MessageId>> failed;
+        lock.lock();
+        try {
+            failure = cause;
+            failed = List.copyOf(inFlight);
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        // completing a slot releases it, which takes the lock
+        failed.forEach(slot -> slot.completeExceptionally(cause));
+    }
+
+    private void release(CompletableFuture<MessageId> slot) {
+        lock.lock();
+        try {
+            if(inFlight.remove(slot)) {
+                notFull.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int inFlight() {
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
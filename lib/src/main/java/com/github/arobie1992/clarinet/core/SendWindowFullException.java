@@ -0,0 +1,14 @@
+package com.github.arobie1992.clarinet.core;
+
+public class SendWindowFullException extends RuntimeException {
+    private final ConnectionId connectionId;
+
+    public SendWindowFullException(ConnectionId connectionId) {
+        super("Send window is full for connection " + connectionId);
+        this.connectionId = connectionId;
+    }
+
+    public ConnectionId connectionId() {
+        return connectionId;
+    }
+}
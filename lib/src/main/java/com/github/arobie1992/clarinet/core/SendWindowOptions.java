@@ -0,0 +1,47 @@
+package com.github.arobie1992.clarinet.core;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for the per-connection window that bounds how many
+ * {@link Node#sendPipelined(ConnectionId, com.github.arobie1992.clarinet.adt.Bytes, com.github.arobie1992.clarinet.transport.TransportOptions)}
+ * sends may be in flight at once.
+ * @param maxInFlight The maximum number of sends that may be awaiting transmission on a connection. Defaults to 64.
+ * @param policy What to do when a send is attempted while the window is full. Defaults to {@link Policy#BLOCK}.
+ * @param blockTimeout How long {@link Policy#BLOCK} waits for space before giving up. Defaults to 10 seconds.
+ */
+public record SendWindowOptions(Optional<Integer> maxInFlight, Optional<Policy> policy, Optional<Duration> blockTimeout) {
+    public enum Policy {
+        /**
+         * Wait on the calling thread until an earlier send completes.
+         */
+        BLOCK,
+        /**
+         * Fail the send with a {@link SendWindowFullException} without signing or storing the message.
+         */
+        FAIL_FAST,
+        /**
+         * Cancel the future of the oldest send still in flight to make room. The oldest message may still be delivered;
+         * its caller is just no longer told about it.
+         */
+        DROP_OLDEST
+    }
+
+    public SendWindowOptions {
+        maxInFlight.ifPresent(max -> {
+            if(max < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+        });
+        blockTimeout.ifPresent(timeout -> {
+            if(timeout.isNegative()) {
+                throw new IllegalArgumentException("blockTimeout must be non-negative");
+            }
+        });
+    }
+
+    public SendWindowOptions() {
+        this(Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
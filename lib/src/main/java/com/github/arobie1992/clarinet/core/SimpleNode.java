@@ -1,14 +1,12 @@
 package com.github.arobie1992.clarinet.core;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.crypto.*;
-import com.github.arobie1992.clarinet.impl.netty.ConnectionIdSerializer;
-import com.github.arobie1992.clarinet.impl.netty.PeerIdSerializer;
+import com.github.arobie1992.clarinet.impl.crypto.Digests;
+import com.github.arobie1992.clarinet.impl.crypto.KeyedSignatures;
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
 import com.github.arobie1992.clarinet.message.*;
+import com.github.arobie1992.clarinet.peer.Address;
 import com.github.arobie1992.clarinet.peer.Peer;
 import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.peer.PeerStore;
@@ -22,14 +20,14 @@ import com.github.arobie1992.clarinet.transport.TransportOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.UncheckedIOException;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -39,6 +37,7 @@ import java.util.stream.Stream;
 class SimpleNode implements Node {
 
     private static final Logger log = LoggerFactory.getLogger(SimpleNode.class);
+    private static final String SIGNATURE_HASH_ALG = "SHA-256";
 
     private final PeerId id;
     private final PeerStore peerStore;
@@ -49,7 +48,18 @@ class SimpleNode implements Node {
     private final ReputationService reputationService;
     private final MessageStore messageStore;
     private final KeyStore keyStore;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final KeyResolver keyResolver;
+    final QueryResponseCache queryResponseCache;
+    private final SendWindowOptions sendWindowOptions;
+    private final HashAlgorithms hashAlgorithms;
+    private final Map<ConnectionId, SendWindow> sendWindows = new ConcurrentHashMap<>();
+    private final Map<ConnectionId, MessageBatcher> batchers = new ConcurrentHashMap<>();
+    // checks message signatures at most one per processor at a time; shut down with the transport
+    final ExecutorService verifier = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofVirtual().name("message-verifier-", 0).factory()
+    );
+    final MessageOrder messageOrder = new MessageOrder();
 
     private SendHandler<DataMessage> witnessHandler;
     private SendHandler<DataMessage> receiveHandler;
@@ -58,8 +68,11 @@ class SimpleNode implements Node {
         this.id = Objects.requireNonNull(builder.id);
         this.peerStore = Objects.requireNonNull(builder.peerStore);
         this.reputationService = Objects.requireNonNull(builder.reputationService);
+        this.queryResponseCache = new QueryResponseCache(Objects.requireNonNull(builder.queryCacheOptions));
+        this.sendWindowOptions = Objects.requireNonNull(builder.sendWindowOptions);
+        this.hashAlgorithms = new HashAlgorithms(builder.additionalHashAlgorithms);
 
-        this.transport = new TransportProxy(Objects.requireNonNull(builder.transportFactory.get()));
+        this.transport = new TransportProxy(Objects.requireNonNull(builder.transportFactory.get()), verifier::shutdown);
         this.transport.addInternal(Endpoints.CONNECT.name(), new ConnectHandlerProxy(builder.connectHandler, connectionStore, this));
         this.transport.addInternal(
                 Endpoints.WITNESS.name(),
@@ -71,14 +84,11 @@ class SimpleNode implements Node {
         );
         this.witnessHandler = builder.witnessHandler;
         this.receiveHandler = builder.receiveHandler;
-        this.transport.addInternal(
-                Endpoints.MESSAGE.name(),
-                new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, this)
-        );
+        registerMessageHandlers();
         this.transport.addInternal(Endpoints.REQUEST_PEERS.name(), new PeersRequestHandlerProxy(builder.peersRequestHandler, this));
         this.transport.addInternal(Endpoints.REQUEST_KEYS.name(), new KeysRequestHandlerProxy(builder.keysRequestHandler, this));
-        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(builder.queryHandler, this));
-        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(builder.closeHandler, connectionStore));
+        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(builder.queryHandler, this, queryResponseCache));
+        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(builder.closeHandler, connectionStore, this));
         this.transport.addInternal(
                 Endpoints.MESSAGE_FORWARD.name(),
                 new MessageForwardHandlerProxy(builder.messageForwardHandler, connectionStore, this)
@@ -92,12 +102,7 @@ class SimpleNode implements Node {
         this.assessmentStore = Objects.requireNonNull(builder.assessmentStore);
         this.messageStore = Objects.requireNonNull(builder.messageStore);
         this.keyStore = Objects.requireNonNull(builder.keyStore);
-
-        var module = new SimpleModule();
-        module.addSerializer(PeerId.class, new PeerIdSerializer());
-        module.addSerializer(ConnectionId.class, new ConnectionIdSerializer());
-        objectMapper.registerModule(module);
-        objectMapper.registerModule(new Jdk8Module());
+        this.keyResolver = new KeyResolver(keyStore, peerStore, this::fetchKeys, Objects.requireNonNull(builder.keyResolverOptions));
     }
 
     @Override
@@ -140,6 +145,11 @@ class SimpleNode implements Node {
         return keyStore;
     }
 
+    @Override
+    public QueryCacheStats queryCacheStats() {
+        return queryResponseCache.stats();
+    }
+
     private <T> Stream<T> exchangeForPeer(
             Peer peer,
             String endpoint,
@@ -160,6 +170,42 @@ class SimpleNode implements Node {
         }).filter(Objects::nonNull);
     }
 
+    private <T> CompletableFuture<Optional<T>> exchangeForPeerAsync(
+            Peer peer,
+            String endpoint,
+            Object request,
+            Class<T> responseType,
+            TransportOptions transportOptions
+    ) {
+        return exchangeForPeerAsync(peer, List.copyOf(peer.addresses()).iterator(), endpoint, request, responseType, transportOptions);
+    }
+
+    // tries the addresses one at a time, same as the blocking version, but without parking a thread between attempts
+    private <T> CompletableFuture<Optional<T>> exchangeForPeerAsync(
+            Peer peer,
+            Iterator<? extends Address> addresses,
+            String endpoint,
+            Object request,
+            Class<T> responseType,
+            TransportOptions transportOptions
+    ) {
+        if(!addresses.hasNext()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        var addr = addresses.next();
+        return transport.exchangeAsync(addr, endpoint, request, responseType, transportOptions)
+                .handle((resp, e) -> {
+                    if(e != null) {
+                        log.warn("Encountered error while sending exchange to peer {} at address {} for endpoint {}", peer, addr, endpoint, e);
+                        return Optional.<T>empty();
+                    }
+                    return Optional.ofNullable(resp);
+                })
+                .thenCompose(resp -> resp.isPresent()
+                        ? CompletableFuture.completedFuture(resp)
+                        : exchangeForPeerAsync(peer, addresses, endpoint, request, responseType, transportOptions));
+    }
+
     void sendForPeer(Peer peer, String endpoint, Object request, TransportOptions transportOptions) {
         for(var addr : peer.addresses()) {
             try {
@@ -176,6 +222,74 @@ class SimpleNode implements Node {
         throw new PeerSendException(peer.id());
     }
 
+    CompletableFuture<Void> sendForPeerAsync(Peer peer, String endpoint, Object request, TransportOptions transportOptions) {
+        return sendForPeerAsync(peer, List.copyOf(peer.addresses()).iterator(), endpoint, request, transportOptions);
+    }
+
+    private CompletableFuture<Void> sendForPeerAsync(
+            Peer peer,
+            Iterator<? extends Address> addresses,
+            String endpoint,
+            Object request,
+            TransportOptions transportOptions
+    ) {
+        if(!addresses.hasNext()) {
+            return CompletableFuture.failedFuture(new PeerSendException(peer.id()));
+        }
+        var addr = addresses.next();
+        return transport.sendAsync(addr, endpoint, request, transportOptions)
+                .handle((ignored, e) -> {
+                    if(e != null) {
+                        log.warn("Encountered error while sending to peer {} at address {} for endpoint {}", peer, addr, endpoint, e);
+                    }
+                    return e == null;
+                })
+                // return for the first address that is successful
+                .thenCompose(sent -> sent
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : sendForPeerAsync(peer, addresses, endpoint, request, transportOptions));
+    }
+
+    void sendBatchInternal(PeerId peerId, MessageBatch batch, TransportOptions transportOptions) {
+        var peer = peerStore().find(peerId).orElseThrow(() -> new NoSuchPeerException(peerId));
+        sendForPeer(peer, Endpoints.MESSAGE_BATCH.name(), batch, transportOptions);
+    }
+
+    private CompletableFuture<Void> sendBatchAsync(MessageBatch batch, TransportOptions transportOptions) {
+        // the witness may not have been known yet when the batcher was created, so look it up now
+        PeerId witness;
+        String hashAlgorithm;
+        try(var ref = connectionStore.findForRead(batch.connectionId())) {
+            if(!(ref instanceof Connection.Readable(Connection connection))) {
+                return CompletableFuture.failedFuture(new NoSuchConnectionException(batch.connectionId()));
+            }
+            witness = connection.witness().orElseThrow();
+            hashAlgorithm = connection.hashAlgorithm();
+        }
+        if(batch.signing() == BatchSigning.MERKLE_ROOT) {
+            try {
+                List<Bytes> signatures;
+                if(canSignHash()) {
+                    var hashes = batch.messages().stream().map(m -> signatureHash(m.senderParts())).toList();
+                    signatures = MerkleSignatures.sign(hashes, this::genSignatureHash);
+                } else {
+                    // there is no key to sign the root with, so each message is signed as if it weren't batched
+                    signatures = batch.messages().stream().map(m -> genSignature(m.senderParts())).toList();
+                }
+                for(int i = 0; i < batch.messages().size(); i++) {
+                    store(batch.messages().get(i), signatures.get(i), hashAlgorithm);
+                }
+            } catch(RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        var peer = peerStore.find(witness);
+        if(peer.isEmpty()) {
+            return CompletableFuture.failedFuture(new NoSuchPeerException(witness));
+        }
+        return sendForPeerAsync(peer.get(), Endpoints.MESSAGE_BATCH.name(), batch, transportOptions);
+    }
+
     void sendInternal(PeerId peerId, DataMessage message, TransportOptions transportOptions) {
         var peer = peerStore().find(peerId).orElseThrow(() -> new NoSuchPeerException(peerId));
         sendForPeer(peer, Endpoints.MESSAGE.name(), message, transportOptions);
@@ -183,8 +297,12 @@ class SimpleNode implements Node {
 
     @Override
     public ConnectionId connect(PeerId receiver, ConnectionOptions connectionOptions, TransportOptions transportOptions) {
+        var hashAlgorithm = connectionOptions.hashAlgorithm().orElse(ConnectionOptions.DEFAULT_HASH_ALGORITHM);
+        if(!hashAlgorithms.permits(hashAlgorithm)) {
+            throw new IllegalArgumentException("Unsupported hash algorithm " + hashAlgorithm);
+        }
         // have to do everything inside the write lock to prevent other threads modifying connection while connect operations are occurring.
-        try(var ref = connectionStore.create(id(), receiver, Connection.Status.REQUESTING_RECEIVER)) {
+        try(var ref = connectionStore.create(id(), receiver, Connection.Status.REQUESTING_RECEIVER, hashAlgorithm)) {
             if (!(ref instanceof Writeable(ConnectionImpl connection))) {
                 throw new RuntimeException("Failed to creation connection");
             }
@@ -194,7 +312,12 @@ class SimpleNode implements Node {
             ConnectResponse connectResponse = exchangeForPeer(
                     peer,
                     Endpoints.CONNECT.name(),
-                    new ConnectRequest(connectionId, id(), connectionOptions),
+                    // batching is only of interest to this node so don't share it
+                    new ConnectRequest(
+                            connectionId,
+                            id(),
+                            new ConnectionOptions(connectionOptions.witnessSelector(), Optional.empty(), Optional.of(hashAlgorithm))
+                    ),
                     ConnectResponse.class,
                     transportOptions
             ).findFirst().orElseThrow(ConnectFailureException::new);
@@ -208,11 +331,28 @@ class SimpleNode implements Node {
             } else {
                 connection.setStatus(Connection.Status.AWAITING_WITNESS);
             }
+            connectionOptions.batchOptions().ifPresent(batchOptions ->
+                    batchers.put(connectionId, new MessageBatcher(connectionId, batchOptions, this::sendBatchAsync))
+            );
 
             return connectionId;
         }
     }
 
+    /**
+     * The connection's write lock is owned by the thread that obtains it, and connecting holds it across several
+     * round trips, so this runs {@link #connect(PeerId, ConnectionOptions, TransportOptions)} on its own virtual thread
+     * rather than being composed from async transport calls.
+     */
+    @Override
+    public CompletableFuture<ConnectionId> connectAsync(
+            PeerId receiver,
+            ConnectionOptions connectionOptions,
+            TransportOptions transportOptions
+    ) {
+        return CompletableFuture.supplyAsync(() -> connect(receiver, connectionOptions, transportOptions), Thread::startVirtualThread);
+    }
+
     void selectWitness(Peer peerToNotify, ConnectionImpl connection, TransportOptions transportOptions) {
         connection.setStatus(Connection.Status.REQUESTING_WITNESS);
 
@@ -238,7 +378,7 @@ class SimpleNode implements Node {
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .map(p -> {
-                    var req = new WitnessRequest(connection.id(), sender, receiver);
+                    var req = new WitnessRequest(connection.id(), sender, receiver, connection.hashAlgorithm());
                     return exchangeForPeer(p, Endpoints.WITNESS.name(), req, WitnessResponse.class, transportOptions)
                             .map(wr -> new PeerAndResponse(p, wr));
                 }).flatMap(r -> r.filter(par -> par.witnessResponse != null))
@@ -257,19 +397,33 @@ class SimpleNode implements Node {
     }
 
     Bytes genSignature(Object parts) {
-        Bytes serialized;
-        try {
-            serialized = Bytes.of(objectMapper.writeValueAsBytes(parts));
-        } catch (JsonProcessingException e) {
-            throw new UncheckedIOException(e);
-        }
-        return genSignature(serialized);
+        // only encode the parts if a key turns out not to support signing the hash
+        return genSignature(signatureHash(parts), () -> CanonicalEncoding.encode(parts));
     }
 
-    Bytes genSignature(final Bytes data) {
-        return keyStore.findPrivateKeys(id).stream().map(k -> {
+    /**
+     * Signs a hash, such as the root of a Merkle tree, with one of this node's keys that
+     * {@link PrivateKey#supportsPrehash() supports} it. Check {@link #canSignHash()} first.
+     */
+    Bytes genSignatureHash(final Bytes hash) {
+        return genSignature(hash, null);
+    }
+
+    /**
+     * @return Whether any of this node's keys can sign a hash, and so whether it can sign Merkle batches.
+     */
+    boolean canSignHash() {
+        return keyStore.findPrivateKeys(id).stream().anyMatch(PrivateKey::supportsPrehash);
+    }
+
+    private Bytes genSignature(Bytes hash, Supplier<Bytes> data) {
+        return keyStore.findPrivateKeys(id).stream()
+                // without the data only keys that can sign the hash are any use
+                .filter(k -> data != null || k.supportsPrehash())
+                .map(k -> {
             try {
-                return k.sign(data);
+                var signature = k.supportsPrehash() ? k.signHash(hash) : k.sign(data.get());
+                return keyStore.findFingerprint(id, k).map(f -> KeyedSignatures.wrap(f, signature)).orElse(signature);
             } catch(SigningException e) {
                 log.info("Encountered error while attempting to sign", e);
                 // TODO error handler here too
@@ -280,24 +434,143 @@ class SimpleNode implements Node {
 
     @Override
     public MessageId send(ConnectionId connectionId, Bytes data, TransportOptions transportOptions) {
-        try(var ref = connectionStore.findForWrite(connectionId)) {
-            if(!(ref instanceof Writeable(ConnectionImpl connection))) {
+        var prepared = prepareSend(connectionId, data);
+        var batcher = batchers.get(connectionId);
+        if(batcher == null) {
+            signIfDeferred(prepared);
+            sendInternal(prepared.witness(), prepared.message(), transportOptions);
+        } else {
+            try {
+                batcher.add(prepared.message(), transportOptions).join();
+            } catch(CompletionException e) {
+                if(e.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw e;
+            }
+        }
+        return prepared.message().messageId();
+    }
+
+    private record PreparedSend(DataMessage message, PeerId witness, String hashAlgorithm) {}
+
+    /* Only the read lock is needed: sequence numbers are allocated atomically, so any number of threads can send on a
+       connection at once while the write lock still keeps the connection from closing underneath them. The network
+       send happens after the lock is released. */
+    private PreparedSend prepareSend(ConnectionId connectionId, Bytes data) {
+        try(var ref = connectionStore.findForRead(connectionId)) {
+            if(!(ref instanceof Connection.Readable(Connection connection))) {
                 throw new NoSuchConnectionException(connectionId);
             }
-            if(!connection.status().equals(Connection.Status.OPEN)) {
-                throw new ConnectionStatusException(connectionId, "send", connection.status(), List.of(Connection.Status.OPEN));
+            var batcher = batchers.get(connectionId);
+            // messages in Merkle signed batches are signed and stored once the batch is complete
+            var sign = batcher == null || batcher.signing() != BatchSigning.MERKLE_ROOT;
+            return new PreparedSend(createMessage(connection, data, sign), connection.witness().orElseThrow(), connection.hashAlgorithm());
+        }
+    }
+
+    private DataMessage createMessage(Connection connection, Bytes data, boolean sign) {
+        if(!connection.status().equals(Connection.Status.OPEN)) {
+            throw new ConnectionStatusException(connection.id(), "send", connection.status(), List.of(Connection.Status.OPEN));
+        }
+        var messageId = new MessageId(connection.id(), connection.nextSequenceNumber());
+        var message = new DataMessage(messageId, data);
+        if(sign) {
+            store(message, genSignature(message.senderParts()), connection.hashAlgorithm());
+        }
+        return message;
+    }
+
+    private void store(DataMessage message, Bytes senderSignature, String hashAlgorithm) {
+        message.setSenderSignature(senderSignature);
+        messageStore.add(message);
+        witnessHash(message, hashAlgorithm);
+    }
+
+    private void signIfDeferred(PreparedSend prepared) {
+        // the batcher was removed by a close after the message was created, so it has to go out on its own
+        var message = prepared.message();
+        if(message.senderSignature().isEmpty()) {
+            store(message, genSignature(message.senderParts()), prepared.hashAlgorithm());
+        }
+    }
+
+    @Override
+    public CompletableFuture<MessageId> sendAsync(ConnectionId connectionId, Bytes data, TransportOptions transportOptions) {
+        PreparedSend prepared;
+        try {
+            prepared = prepareSend(connectionId, data);
+        } catch(RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return transmit(prepared, transportOptions);
+    }
+
+    private CompletableFuture<MessageId> transmit(PreparedSend prepared, TransportOptions transportOptions) {
+        var messageId = prepared.message().messageId();
+        var batcher = batchers.get(messageId.connectionId());
+        if(batcher != null) {
+            return batcher.add(prepared.message(), transportOptions).thenApply(ignored -> messageId);
+        }
+        try {
+            signIfDeferred(prepared);
+        } catch(RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var peer = peerStore.find(prepared.witness());
+        if(peer.isEmpty()) {
+            return CompletableFuture.failedFuture(new NoSuchPeerException(prepared.witness()));
+        }
+        var message = prepared.message();
+        return sendForPeerAsync(peer.get(), Endpoints.MESSAGE.name(), message, transportOptions).thenApply(ignored -> message.messageId());
+    }
+
+    @Override
+    public CompletableFuture<MessageId> sendPipelined(ConnectionId connectionId, Bytes data, TransportOptions transportOptions) {
+        if(!connectionStore.contains(connectionId)) {
+            return CompletableFuture.failedFuture(new NoSuchConnectionException(connectionId));
+        }
+        CompletableFuture<MessageId> slot;
+        try {
+            // take the slot first so a full window never costs a sequence number or a signature
+            slot = sendWindows.computeIfAbsent(connectionId, id -> new SendWindow(id, sendWindowOptions)).acquire();
+        } catch(RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        PreparedSend prepared;
+        try {
+            prepared = prepareSend(connectionId, data);
+        } catch(RuntimeException e) {
+            if(e instanceof ConnectionStatusException || e instanceof NoSuchConnectionException) {
+                // the connection was closed by another participant, so there won't be any more sends to bound
+                sendWindows.remove(connectionId);
             }
-            var messageId = new MessageId(connectionId, connection.nextSequenceNumber());
-            var message = new DataMessage(messageId, data);
-            message.setSenderSignature(genSignature(message.senderParts()));
-            messageStore.add(message);
-            sendInternal(connection.witness().orElseThrow(), message, transportOptions);
-            return message.messageId();
+            slot.completeExceptionally(e);
+            return slot;
         }
+        transmit(prepared, transportOptions).whenComplete((messageId, e) -> {
+            if(e == null) {
+                slot.complete(messageId);
+            } else {
+                slot.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return slot;
     }
 
     @Override
     public void close(ConnectionId connectionId, CloseOptions closeOptions, TransportOptions transportOptions) {
+        /* send whatever is still waiting to be batched before the close so the other participants don't reject it;
+           this has to happen before taking the write lock since sending a batch needs the read lock */
+        var batcher = batchers.remove(connectionId);
+        if(batcher != null) {
+            batcher.flush().handle((ignored, e) -> {
+                if(e != null) {
+                    log.warn("Failed to send final batch of connection {} before closing", connectionId, e);
+                }
+                return null;
+            }).join();
+        }
         try(var ref = connectionStore.findForWrite(connectionId, closeOptions.connectionObtainTimeout().orElse(Duration.ofSeconds(10)))) {
             if(!(ref instanceof Writeable(ConnectionImpl connection))) {
                 throw new NoSuchConnectionException(connectionId);
@@ -320,9 +593,30 @@ class SimpleNode implements Node {
                         }
                     });
             connection.setStatus(Connection.Status.CLOSED);
+            connectionClosed(connectionId);
         }
     }
 
+    /**
+     * Fails the sends still waiting to be batched or pipelined on the connection and lets the stores drop what they
+     * kept for it, now that it is closed, whichever participant closed it.
+     */
+    void connectionClosed(ConnectionId connectionId) {
+        var closed = new ConnectionStatusException(connectionId, "send", Connection.Status.CLOSED, List.of(Connection.Status.OPEN));
+        // a local close already flushed and removed the batcher, so this is only for closes from another participant
+        var batcher = batchers.remove(connectionId);
+        if(batcher != null) {
+            batcher.fail(closed);
+        }
+        var window = sendWindows.remove(connectionId);
+        if(window != null) {
+            window.fail(closed);
+        }
+        messageOrder.connectionClosed(connectionId);
+        messageStore.connectionClosed(connectionId);
+        assessmentStore.connectionClosed(connectionId);
+    }
+
     @Override
     public QueryResult query(PeerId peerId, MessageId messageId, TransportOptions transportOptions) {
         var peer = peerStore.find(peerId).orElseThrow(() -> new NoSuchPeerException(peerId));
@@ -331,16 +625,28 @@ class SimpleNode implements Node {
         return new QueryResult(peerId, messageId, resp);
     }
 
+    @Override
+    public CompletableFuture<QueryResult> queryAsync(PeerId peerId, MessageId messageId, TransportOptions transportOptions) {
+        var peer = peerStore.find(peerId);
+        if(peer.isEmpty()) {
+            return CompletableFuture.failedFuture(new NoSuchPeerException(peerId));
+        }
+        return exchangeForPeerAsync(peer.get(), Endpoints.QUERY.name(), new QueryRequest(messageId), QueryResponse.class, transportOptions)
+                .thenApply(resp -> new QueryResult(peerId, messageId, resp.orElseThrow(QueryException::new)));
+    }
+
     @Override
     public boolean processQueryResult(QueryResult queryResult, TransportOptions transportOptions) {
         var assessment = assessmentStore.find(queryResult.queriedPeer(), queryResult.queriedMessage());
         var resp = queryResult.queryResponse();
         List<PeerId> participants;
+        String hashAlgorithm;
         try(var ref = connectionStore.findForRead(queryResult.queriedMessage().connectionId())) {
             if (!(ref instanceof Connection.Readable(Connection connection))) {
                 throw new NoSuchConnectionException(queryResult.queriedMessage().connectionId());
             }
             participants = connection.participants();
+            hashAlgorithm = connection.hashAlgorithm();
         }
         var messageOpt = messageStore.find(queryResult.queriedMessage());
 
@@ -355,7 +661,7 @@ class SimpleNode implements Node {
         } else if(messageOpt.isEmpty()) {
             forward(otherParticipant, queryResult, transportOptions);
             return false;
-        } else if(!responseMatches(messageOpt.get(), queryResult.queryResponse())) {
+        } else if(!witnessHashMatches(messageOpt.get(), hashAlgorithm, resp.hashAlgorithm(), resp.messageDetails().messageHash())) {
             if(directCommunication(queryResult.queriedPeer(), participants)) {
                 assessment = assessment.updateStatus(Assessment.Status.STRONG_PENALTY);
             } else {
@@ -385,16 +691,17 @@ class SimpleNode implements Node {
         if (queryResponse.signature() == null) {
             return queryResponse.messageDetails().messageHash() != null;
         } else {
-            try {
-                return !checkSignature(queryResponse.messageDetails(), queriedPeer, queryResponse.signature());
-            } catch (JsonProcessingException e) {
-                throw new UncheckedIOException(e);
-            }
+            return !checkSignature(queryResponse.messageDetails(), queriedPeer, queryResponse.signature());
         }
     }
 
-    private boolean responseMatches(DataMessage message, QueryResponse queryResponse) {
-        return Objects.equals(hash(message.witnessParts(), queryResponse.hashAlgorithm()), queryResponse.messageDetails().messageHash());
+    /**
+     * Checks a hash a peer sent for {@code message} against the one this node computes with the connection's hash
+     * algorithm. The peer also says which algorithm it used; if that isn't the connection's, the hash doesn't match
+     * regardless of its value, since the participants agreed on the algorithm when connecting.
+     */
+    boolean witnessHashMatches(DataMessage message, String connectionAlgorithm, String claimedAlgorithm, Bytes hash) {
+        return connectionAlgorithm.equals(claimedAlgorithm) && Objects.equals(witnessHash(message, connectionAlgorithm), hash);
     }
 
     PeerId getOtherParticipant(List<PeerId> participants, PeerId queriedPeer) {
@@ -423,99 +730,157 @@ class SimpleNode implements Node {
         return Math.abs(selfPos - otherPos) == 1;
     }
 
+    /**
+     * The hash of a stored message's witness parts. The hash is computed at most once per algorithm and cached in the
+     * message store since the witness parts of a stored message never change.
+     */
+    Bytes witnessHash(DataMessage message, String algorithm) {
+        var cached = messageStore.findHash(message.messageId(), algorithm);
+        if(cached.isPresent()) {
+            return cached.get();
+        }
+        var hash = hash(message.witnessParts(), algorithm);
+        messageStore.addHash(message.messageId(), algorithm, hash);
+        return hash;
+    }
+
+    /**
+     * The hash signatures are computed over. This is always {@value #SIGNATURE_HASH_ALG} regardless of the connection's
+     * hash algorithm since that is what {@link PrivateKey#signHash(Bytes)} expects.
+     */
+    Bytes signatureHash(Object parts) {
+        return hash(parts, SIGNATURE_HASH_ALG);
+    }
+
+    HashAlgorithms hashAlgorithms() {
+        return hashAlgorithms;
+    }
+
+    /**
+     * @return The hash algorithm of the connection, or {@link ConnectionOptions#DEFAULT_HASH_ALGORITHM} if this node
+     * doesn't know about the connection.
+     */
+    String hashAlgorithm(ConnectionId connectionId) {
+        try(var ref = connectionStore.findForRead(connectionId)) {
+            return ref instanceof Connection.Readable(Connection connection)
+                    ? connection.hashAlgorithm()
+                    : ConnectionOptions.DEFAULT_HASH_ALGORITHM;
+        }
+    }
+
     Bytes hash(Object data, String algorithm) {
         try {
-            var enc = objectMapper.writeValueAsBytes(data);
-            var digest = MessageDigest.getInstance(algorithm);
-            return Bytes.of(digest.digest(enc));
+            return Digests.digest(algorithm, digest -> CanonicalEncoding.digest(data, digest));
         } catch (NoSuchAlgorithmException e) {
             throw new HashingException(e);
-        } catch (JsonProcessingException e) {
-            throw new UncheckedIOException(e);
         }
     }
 
-    boolean checkSignature(Bytes data, PeerId peerId, Bytes signature) {
-        var keys = getOrLoadKeys(peerId);
-        return  keys.stream()
-                .map(k -> {
-                    try {
-                        return k.verify(data, signature);
-                    } catch (RuntimeException e) {
-                        log.debug("Encountered error for key {}", k, e);
-                        return false;
-                    }
-                })
-                .filter(v -> v)
-                .findFirst()
-                .orElse(false);
+    boolean checkSignatureHash(Bytes hash, PeerId peerId, Bytes signature) {
+        return checkSignatureHash(hash, peerId, signature, new VerifiedRoots());
     }
 
-    boolean checkSignatureHash(Bytes hash, PeerId peerId, Bytes signature) {
-        var keys = getOrLoadKeys(peerId);
-        return  keys.stream()
-                .map(k -> {
-                    try {
-                        return k.verifyHash(hash, signature);
-                    } catch (RuntimeException e) {
-                        log.debug("Encountered error for key {}", k, e);
-                        return false;
-                    }
-                })
-                .filter(v -> v)
-                .findFirst()
+    /**
+     * @param verifiedRoots The batch roots already verified for other messages in the same batch.
+     */
+    boolean checkSignatureHash(Bytes hash, PeerId peerId, Bytes signature, VerifiedRoots verifiedRoots) {
+        if(!MerkleSignatures.isBatch(signature)) {
+            return verifyHash(peerId, hash, signature);
+        }
+        // the root is domain tagged, so a batch signature is only ever valid as one and there's nothing to fall back to
+        return MerkleSignatures.open(hash, signature)
+                .map(batch -> verifiedRoots.verify(peerId, batch, opened -> verifyHash(peerId, opened.root(), opened.rootSignature())))
                 .orElse(false);
     }
 
-    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    boolean checkSignature(Bytes data, PeerId peerId, Optional<Bytes> signature) {
-        return signature.map(sig -> checkSignature(data, peerId, sig)).orElse(false);
+    private boolean verifyHash(PeerId peerId, Bytes hash, Bytes signature) {
+        var keyed = KeyedSignatures.open(signature);
+        if(keyed.isPresent()) {
+            var key = keyStore.findPublicKey(peerId, keyed.get().fingerprint());
+            if(key.isPresent()) {
+                return verifyHash(key.get(), hash, keyed.get().signature());
+            }
+            signature = keyed.get().signature();
+        }
+        // the peer's keys are only resolved, which may mean fetching them, when the fingerprint didn't identify one
+        var raw = signature;
+        return getOrLoadKeys(peerId).stream().anyMatch(k -> verifyHash(k, hash, raw));
+    }
+
+    private static boolean verifyHash(PublicKey key, Bytes hash, Bytes signature) {
+        try {
+            return key.verifyHash(hash, signature);
+        } catch (RuntimeException e) {
+            log.debug("Encountered error for key {}", key, e);
+            return false;
+        }
     }
 
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
-    boolean checkSignature(Object parts, PeerId peerId, Optional<Bytes> signature) throws JsonProcessingException {
-        var data = Bytes.of(objectMapper.writeValueAsBytes(parts));
-        return checkSignature(data, peerId, signature);
+    boolean checkSignature(Object parts, PeerId peerId, Optional<Bytes> signature) {
+        return signature.map(sig -> checkSignature(parts, peerId, sig)).orElse(false);
     }
 
-    boolean checkSignature(Object parts, PeerId peerId, Bytes signature) throws JsonProcessingException {
-        var data = Bytes.of(objectMapper.writeValueAsBytes(parts));
-        return checkSignature(data, peerId, signature);
+    boolean checkSignature(Object parts, PeerId peerId, Bytes signature) {
+        return checkSignatureHash(signatureHash(parts), peerId, signature);
+    }
+
+    /**
+     * Same as {@link #checkSignature(Object, PeerId, Optional)} except that batch roots already verified for other
+     * messages in the same batch aren't verified again.
+     */
+    @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+    boolean checkSignature(Object parts, PeerId peerId, Optional<Bytes> signature, VerifiedRoots verifiedRoots) {
+        return signature.map(sig -> checkSignatureHash(signatureHash(parts), peerId, sig, verifiedRoots)).orElse(false);
     }
 
     private Collection<PublicKey> getOrLoadKeys(PeerId peerId) {
-        var keys = keyStore().findPublicKeys(peerId);
-        if(keys.isEmpty()) {
-            keys = requestKeys(peerId, new KeysRequest(), new TransportOptions()).keys()
-                    .stream()
-                    .map(k -> keyStore().providers()
-                            .filter(p -> p instanceof PublicKeyProvider)
-                            .map(p -> (PublicKeyProvider) p)
-                            .filter(p -> p.supports(k.algorithm()))
-                            .map(p -> {
-                                try {
-                                    return p.create(k.bytes());
-                                } catch (RuntimeException e) {
-                                    log.debug("Encountered error creating key for RawKey {}", k.algorithm(), e);
-                                    return null;
-                                }
-                            })
-                            .filter(Objects::nonNull)
-                            .findFirst())
-                    .filter(Optional::isPresent)
-                    .map(Optional::get)
-                    .toList();
-            keys.forEach(k -> keyStore().addPublicKey(peerId, k));
+        return keyResolver.resolve(peerId);
+    }
+
+    /**
+     * Starts fetching the keys of a peer this node just learned about so they are known by the time its signatures
+     * need to be checked.
+     */
+    void prefetchKeys(Peer peer) {
+        if(!peer.id().equals(id) && !peer.addresses().isEmpty()) {
+            keyResolver.prefetch(peer);
         }
-        return keys;
+    }
+
+    private Collection<PublicKey> fetchKeys(Peer peer) {
+        return exchangeForPeer(peer, Endpoints.REQUEST_KEYS.name(), new KeysRequest(), KeysResponse.class, new TransportOptions())
+                .findFirst()
+                .orElseThrow(() -> new KeysRequestException(peer.id()))
+                .keys()
+                .stream()
+                .map(k -> keyStore().providers()
+                        .filter(p -> p instanceof PublicKeyProvider)
+                        .map(p -> (PublicKeyProvider) p)
+                        .filter(p -> p.supports(k.algorithm()))
+                        .map(p -> {
+                            try {
+                                return p.create(k.bytes());
+                            } catch (RuntimeException e) {
+                                log.debug("Encountered error creating key for RawKey {}", k.algorithm(), e);
+                                return null;
+                            }
+                        })
+                        .filter(Objects::nonNull)
+                        .findFirst())
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .toList();
     }
 
     @Override
     public PeersResponse requestPeers(PeerId requestee, PeersRequest request, TransportOptions transportOptions) {
         var peer = peerStore.find(requestee).orElseThrow(() -> new NoSuchPeerException(requestee));
-        return exchangeForPeer(peer, Endpoints.REQUEST_PEERS.name(), request, PeersResponse.class, transportOptions)
+        var response = exchangeForPeer(peer, Endpoints.REQUEST_PEERS.name(), request, PeersResponse.class, transportOptions)
                 .findFirst()
                 .orElseThrow(() -> new PeersRequestException(requestee));
+        response.peers().forEach(this::prefetchKeys);
+        return response;
     }
 
     @Override
@@ -575,37 +940,31 @@ class SimpleNode implements Node {
     @Override
     public void addWitnessHandler(SendHandler<DataMessage> witnessHandler) {
         this.witnessHandler = witnessHandler;
-        this.transport.addInternal(
-                Endpoints.MESSAGE.name(),
-                new MessageHandlerProxy(this.witnessHandler, receiveHandler, connectionStore, this)
-        );
+        registerMessageHandlers();
     }
 
     @Override
     public void removeWitnessHandler() {
         this.witnessHandler = null;
-        this.transport.addInternal(
-                Endpoints.MESSAGE.name(),
-                new MessageHandlerProxy(null, receiveHandler, connectionStore, this)
-        );
+        registerMessageHandlers();
     }
 
     @Override
     public void addReceiveHandler(SendHandler<DataMessage> receiveHandler) {
         this.receiveHandler = receiveHandler;
-        this.transport.addInternal(
-                Endpoints.MESSAGE.name(),
-                new MessageHandlerProxy(witnessHandler, this.receiveHandler, connectionStore, this)
-        );
+        registerMessageHandlers();
     }
 
     @Override
     public void removeReceiveHandler() {
         this.receiveHandler = null;
-        this.transport.addInternal(
-                Endpoints.MESSAGE.name(),
-                new MessageHandlerProxy(witnessHandler, null, connectionStore, this)
-        );
+        registerMessageHandlers();
+    }
+
+    private void registerMessageHandlers() {
+        var messageHandler = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, this, verifier, messageOrder);
+        this.transport.addInternal(Endpoints.MESSAGE.name(), messageHandler);
+        this.transport.addInternal(Endpoints.MESSAGE_BATCH.name(), new MessageBatchHandlerProxy(messageHandler));
     }
 
     @Override
@@ -620,22 +979,22 @@ class SimpleNode implements Node {
 
     @Override
     public void addQueryHandler(ExchangeHandler<QueryRequest, QueryResponse> queryHandler) {
-        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(queryHandler, this));
+        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(queryHandler, this, queryResponseCache));
     }
 
     @Override
     public void removeQueryHandler() {
-        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(null, this));
+        this.transport.addInternal(Endpoints.QUERY.name(), new QueryHandlerProxy(null, this, queryResponseCache));
     }
 
     @Override
     public void addCloseHandler(SendHandler<CloseRequest> closeHandler) {
-        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(closeHandler, connectionStore));
+        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(closeHandler, connectionStore, this));
     }
 
     @Override
     public void removeCloseHandler() {
-        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(null, connectionStore));
+        this.transport.addInternal(Endpoints.CLOSE.name(), new CloseHandlerProxy(null, connectionStore, this));
     }
 
     @Override
@@ -690,6 +1049,10 @@ class SimpleNode implements Node {
         private SendHandler<CloseRequest> closeHandler;
         private SendHandler<MessageForward> messageForwardHandler;
         private SendHandler<QueryForward> queryForwardHandler;
+        private QueryCacheOptions queryCacheOptions = new QueryCacheOptions();
+        private SendWindowOptions sendWindowOptions = new SendWindowOptions();
+        private KeyResolverOptions keyResolverOptions = new KeyResolverOptions();
+        private Set<String> additionalHashAlgorithms = Set.of();
 
         @Override
         public NodeBuilder id(PeerId id) {
@@ -805,6 +1168,30 @@ class SimpleNode implements Node {
             return this;
         }
 
+        @Override
+        public NodeBuilder queryCacheOptions(QueryCacheOptions queryCacheOptions) {
+            this.queryCacheOptions = queryCacheOptions;
+            return this;
+        }
+
+        @Override
+        public NodeBuilder sendWindowOptions(SendWindowOptions sendWindowOptions) {
+            this.sendWindowOptions = sendWindowOptions;
+            return this;
+        }
+
+        @Override
+        public NodeBuilder keyResolverOptions(KeyResolverOptions keyResolverOptions) {
+            this.keyResolverOptions = keyResolverOptions;
+            return this;
+        }
+
+        @Override
+        public NodeBuilder additionalHashAlgorithms(Set<String> hashAlgorithms) {
+            this.additionalHashAlgorithms = hashAlgorithms;
+            return this;
+        }
+
         @Override
         public Node build() {
             return new SimpleNode(this);
@@ -7,12 +7,23 @@ import com.github.arobie1992.clarinet.transport.TransportOptions;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 class TransportProxy implements Transport {
     private final Transport transport;
+    private final Runnable onShutdown;
 
     TransportProxy(Transport transport) {
+        this(transport, () -> {});
+    }
+
+    /**
+     * @param onShutdown Releases what the node holds onto for as long as its transport is up, run after the transport
+     *                   shuts down.
+     */
+    TransportProxy(Transport transport, Runnable onShutdown) {
         this.transport = transport;
+        this.onShutdown = onShutdown;
     }
 
     @Override
@@ -65,8 +76,28 @@ class TransportProxy implements Transport {
         transport.send(address, endpoint, message, options);
     }
 
+    @Override
+    public <T> CompletableFuture<T> exchangeAsync(
+            Address address,
+            String endpoint,
+            Object message,
+            Class<T> responseType,
+            TransportOptions options
+    ) {
+        return transport.exchangeAsync(address, endpoint, message, responseType, options);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Address address, String endpoint, Object message, TransportOptions options) {
+        return transport.sendAsync(address, endpoint, message, options);
+    }
+
     @Override
     public void shutdown() {
-        transport.shutdown();
+        try {
+            transport.shutdown();
+        } finally {
+            onShutdown.run();
+        }
     }
 }
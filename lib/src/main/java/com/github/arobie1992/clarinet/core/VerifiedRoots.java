@@ -0,0 +1,42 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
+import com.github.arobie1992.clarinet.peer.PeerId;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * The batch signature roots checked while handling a single {@link MessageBatch}.
+ * <p>
+ * Every message in a batch signed with {@link BatchSigning#MERKLE_ROOT} carries the same root signature, so it only
+ * needs to be verified once per signer. Each message's inclusion proof is still checked against the root on its own.
+ * Messages in a batch are verified concurrently, so a message whose root is already being verified waits for that
+ * result rather than verifying it again.
+ */
+class VerifiedRoots {
+    private record Root(PeerId signer, MerkleSignatures.Opened opened) {}
+
+    private final Map<Root, CompletableFuture<Boolean>> results = new ConcurrentHashMap<>();
+
+    /**
+     * @param verify Verifies the root signature. Only called if no other message has verified the same root.
+     * @return Whether {@code opened}'s root signature is valid for {@code signer}.
+     */
+    boolean verify(PeerId signer, MerkleSignatures.Opened opened, Predicate<MerkleSignatures.Opened> verify) {
+        var result = new CompletableFuture<Boolean>();
+        var existing = results.putIfAbsent(new Root(signer, opened), result);
+        if(existing != null) {
+            return existing.join();
+        }
+        try {
+            result.complete(verify.test(opened));
+        } catch(RuntimeException e) {
+            result.completeExceptionally(e);
+            throw e;
+        }
+        return result.join();
+    }
+}
@@ -2,5 +2,17 @@ package com.github.arobie1992.clarinet.core;
 
 import com.github.arobie1992.clarinet.peer.PeerId;
 
-public record WitnessRequest(ConnectionId connectionId, PeerId sender, PeerId receiver) {
+import java.util.Objects;
+
+/**
+ * @param hashAlgorithm The hash algorithm the sender and receiver agreed on for the connection.
+ */
+public record WitnessRequest(ConnectionId connectionId, PeerId sender, PeerId receiver, String hashAlgorithm) {
+    public WitnessRequest {
+        Objects.requireNonNull(hashAlgorithm);
+    }
+
+    public WitnessRequest(ConnectionId connectionId, PeerId sender, PeerId receiver) {
+        this(connectionId, sender, receiver, ConnectionOptions.DEFAULT_HASH_ALGORITHM);
+    }
 }
@@ -9,9 +9,9 @@ import java.util.Objects;
 class WitnessRequestHandlerProxy implements ExchangeHandler<WitnessRequest, WitnessResponse> {
     private final ExchangeHandler<WitnessRequest, WitnessResponse> userHandler;
     private final ConnectionStore connectionStore;
-    private final Node node;
+    private final SimpleNode node;
 
-    WitnessRequestHandlerProxy(ExchangeHandler<WitnessRequest, WitnessResponse> userHandler, ConnectionStore connectionStore, Node node) {
+    WitnessRequestHandlerProxy(ExchangeHandler<WitnessRequest, WitnessResponse> userHandler, ConnectionStore connectionStore, SimpleNode node) {
         this.userHandler = userHandler == null ? DEFAULT_HANDLER : userHandler;
         this.connectionStore = Objects.requireNonNull(connectionStore);
         this.node = Objects.requireNonNull(node);
@@ -23,9 +23,13 @@ class WitnessRequestHandlerProxy implements ExchangeHandler<WitnessRequest, Witn
         peer.addresses().addAll(remoteInformation.peer().addresses());
         node.peerStore().save(peer);
 
+        if(!node.hashAlgorithms().permits(message.hashAlgorithm())) {
+            return new Some<>(new WitnessResponse(true, "Unsupported hash algorithm " + message.hashAlgorithm()));
+        }
+
         var resp = Objects.requireNonNull(userHandler.handle(remoteInformation, message), "User handler returned a null WitnessResponse");
         if(!resp.value().rejected()) {
-            try(var ref = connectionStore.accept(message.connectionId(), message.sender(), message.receiver(), Connection.Status.OPEN)) {
+            try(var ref = connectionStore.accept(message.connectionId(), message.sender(), message.receiver(), Connection.Status.OPEN, message.hashAlgorithm())) {
                 switch (ref) {
                     // setWitness automatically persists back to the reference so no need to do any saving
                     case Writeable(ConnectionImpl conn) -> conn.setWitness(node.id());
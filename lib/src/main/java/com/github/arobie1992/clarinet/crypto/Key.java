@@ -2,7 +2,34 @@ package com.github.arobie1992.clarinet.crypto;
 
 import com.github.arobie1992.clarinet.adt.Bytes;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
 public interface Key {
+    int FINGERPRINT_LENGTH = 8;
+
     String algorithm();
     Bytes bytes();
+
+    /**
+     * A short identifier for this key that can be sent alongside the signatures it makes so the verifier can go
+     * straight to the right key rather than trying each of the signer's keys in turn.
+     * <p>
+     * The fingerprint is the first {@value #FINGERPRINT_LENGTH} bytes of the SHA-256 hash of the algorithm, a zero
+     * byte, and the key's bytes. It is recomputed on each call, so callers that need it repeatedly should hold on to it.
+     * @return The fingerprint of this key.
+     */
+    default Bytes fingerprint() {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(algorithm().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            bytes().update(digest);
+            return Bytes.wrap(Arrays.copyOf(digest.digest(), FINGERPRINT_LENGTH));
+        } catch(NoSuchAlgorithmException e) {
+            throw new HashingException(e);
+        }
+    }
 }
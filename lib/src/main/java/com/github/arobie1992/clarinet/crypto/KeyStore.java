@@ -1,8 +1,10 @@
 package com.github.arobie1992.clarinet.crypto;
 
+import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.peer.PeerId;
 
 import java.util.Collection;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 public interface KeyStore {
@@ -13,4 +15,31 @@ public interface KeyStore {
     Collection<PublicKey> findPublicKeys(PeerId peerId);
     void addProvider(KeyProvider keyProvider);
     Stream<KeyProvider> providers();
+
+    /**
+     * Finds the public key of the peer with the given {@link Key#fingerprint()}.
+     * <p>
+     * The default implementation searches all of the peer's keys. Implementations should index keys by fingerprint
+     * when they are added.
+     * @param peerId The peer the key belongs to.
+     * @param fingerprint The fingerprint of the key.
+     * @return The key, or empty if the peer has no key with that fingerprint.
+     */
+    default Optional<PublicKey> findPublicKey(PeerId peerId, Bytes fingerprint) {
+        return findPublicKeys(peerId).stream().filter(k -> k.fingerprint().equals(fingerprint)).findFirst();
+    }
+
+    /**
+     * Finds the fingerprint to send alongside signatures made with {@code privateKey}, which is the fingerprint of the
+     * public key it was added with in a {@link KeyPair}.
+     * <p>
+     * The default implementation returns empty, in which case signatures are sent without a fingerprint and verifiers
+     * try each of the signer's keys.
+     * @param peerId The peer the key belongs to.
+     * @param privateKey The key used to sign.
+     * @return The fingerprint of the paired public key, or empty if the private key was not added as part of a pair.
+     */
+    default Optional<Bytes> findFingerprint(PeerId peerId, PrivateKey privateKey) {
+        return Optional.empty();
+    }
 }
@@ -4,4 +4,31 @@ import com.github.arobie1992.clarinet.adt.Bytes;
 
 public interface PrivateKey extends Key {
     Bytes sign(Bytes data);
+
+    /**
+     * Whether this key can sign data that is already hashed with {@link PrivateKey#signHash(Bytes)}.
+     * <p>
+     * Keys that can't still sign individual messages through {@link PrivateKey#sign(Bytes)}. Batch and Merkle
+     * signatures only ever have the root hash to sign, though, so a node whose keys can't sign hashes signs each
+     * message in a batch on its own instead.
+     * @return {@code true} if {@link PrivateKey#signHash(Bytes)} is supported, {@code false} otherwise, which is the
+     * default.
+     */
+    default boolean supportsPrehash() {
+        return false;
+    }
+
+    /**
+     * Equivalent to {@link PrivateKey#sign(Bytes)} except the data is already hashed.
+     * <p>
+     * This is the signing counterpart to {@link PublicKey#verifyHash(Bytes, Bytes)}, `signHash(hash(x)) = sign(x)`. It
+     * allows callers to stream data into a digest rather than building the full byte representation just to sign it.
+     * Keys that implement this must also override {@link PrivateKey#supportsPrehash()} to return {@code true}.
+     * @param hash the hash of the data to sign, computed with the hash algorithm this key uses.
+     * @return the cryptographic signature of the data.
+     * @throws UnsupportedOperationException if {@link PrivateKey#supportsPrehash()} is {@code false}.
+     */
+    default Bytes signHash(Bytes hash) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support signing pre-hashed data");
+    }
 }
@@ -0,0 +1,57 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Shared, pooled {@link MessageDigest} instances keyed by algorithm.
+ */
+public class Digests {
+    private static final Map<String, InstancePool<MessageDigest, NoSuchAlgorithmException>> POOLS = new ConcurrentHashMap<>();
+
+    private Digests() {}
+
+    /**
+     * Computes a digest using a pooled instance.
+     * @param algorithm The digest algorithm, e.g. {@code SHA-256}.
+     * @param input Feeds the data to hash into the digest.
+     * @return The digest of everything {@code input} wrote.
+     * @throws NoSuchAlgorithmException If {@code algorithm} is not supported.
+     */
+    public static Bytes digest(String algorithm, Consumer<MessageDigest> input) throws NoSuchAlgorithmException {
+        return pool(algorithm).apply(digest -> {
+            input.accept(digest);
+            return Bytes.wrap(digest.digest());
+        });
+    }
+
+    /**
+     * Checks whether {@code algorithm} can be used, e.g. before agreeing to use it for a connection. This also sets up
+     * the pool for the algorithm so it is ready for the first digest.
+     * @param algorithm The digest algorithm, e.g. {@code SHA-256}.
+     * @return {@code true} if {@code algorithm} is supported by an installed provider.
+     */
+    public static boolean supports(String algorithm) {
+        try {
+            pool(algorithm);
+            return true;
+        } catch (NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    private static InstancePool<MessageDigest, NoSuchAlgorithmException> pool(String algorithm) throws NoSuchAlgorithmException {
+        var pool = POOLS.get(algorithm);
+        if(pool != null) {
+            return pool;
+        }
+        // only remember algorithms that exist so callers can't grow the map with arbitrary names
+        MessageDigest.getInstance(algorithm);
+        return POOLS.computeIfAbsent(algorithm, a -> new InstancePool<>(() -> MessageDigest.getInstance(a)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of reusable instances of a class that is expensive to create and not thread-safe, such as
+ * {@link java.security.MessageDigest} or {@link javax.crypto.Cipher}.
+ * <p>
+ * This is used instead of a {@link ThreadLocal} because most work runs on virtual threads, which are never reused, so
+ * a per-thread cache would never hit. Instances are only returned to the pool when the action completes normally; an
+ * instance whose action threw is discarded since its state is unknown.
+ * @param <T> The pooled type.
+ * @param <E> The checked exception creating and using an instance may throw.
+ */
+class InstancePool<T, E extends Exception> {
+    interface Factory<T, E extends Exception> {
+        T create() throws E;
+    }
+
+    interface Action<T, R, E extends Exception> {
+        R apply(T instance) throws E;
+    }
+
+    private final Factory<T, E> factory;
+    private final int maxIdle;
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    InstancePool(Factory<T, E> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    InstancePool(Factory<T, E> factory, int maxIdle) {
+        if(maxIdle < 0) {
+            throw new IllegalArgumentException("maxIdle must be non-negative");
+        }
+        this.factory = Objects.requireNonNull(factory);
+        this.maxIdle = maxIdle;
+    }
+
+    <R> R apply(Action<T, R, E> action) throws E {
+        var instance = idle.poll();
+        if(instance == null) {
+            instance = factory.create();
+        } else {
+            idleCount.decrementAndGet();
+        }
+        var result = action.apply(instance);
+        release(instance);
+        return result;
+    }
+
+    int idle() {
+        return idleCount.get();
+    }
+
+    private void release(T instance) {
+        if(idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(instance);
+    }
+}
@@ -31,7 +31,51 @@ public class KeyProviders {
         }
     };
 
+    private static final PublicKeyProvider Sha256Ed25519PublicKeyProvider = new PublicKeyProvider() {
+        private static final Sha256Ed25519PrivateKey REF_KEY = new Sha256Ed25519PrivateKey(null);
+        @Override
+        public PublicKey create(Bytes keyBytes) {
+            try {
+                var kf = KeyFactory.getInstance("Ed25519");
+                var publicKey = kf.generatePublic(new X509EncodedKeySpec(keyBytes.bytes()));
+                return new Sha256Ed25519PublicKey(publicKey);
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                throw new KeyCreationException(e);
+            }
+        }
+        @Override
+        public boolean supports(String algorithm) {
+            return REF_KEY.algorithm().equals(algorithm);
+        }
+    };
+
+    private static final PublicKeyProvider Sha256EcdsaPublicKeyProvider = new PublicKeyProvider() {
+        private static final Sha256EcdsaPrivateKey REF_KEY = new Sha256EcdsaPrivateKey(null);
+        @Override
+        public PublicKey create(Bytes keyBytes) {
+            try {
+                var kf = KeyFactory.getInstance("EC");
+                var publicKey = kf.generatePublic(new X509EncodedKeySpec(keyBytes.bytes()));
+                return new Sha256EcdsaPublicKey(publicKey);
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+                throw new KeyCreationException(e);
+            }
+        }
+        @Override
+        public boolean supports(String algorithm) {
+            return REF_KEY.algorithm().equals(algorithm);
+        }
+    };
+
     public static PublicKeyProvider Sha256RsaPublicKeyProvider() {
         return Sha256RsaPublicKeyProvider;
     }
+
+    public static PublicKeyProvider Sha256Ed25519PublicKeyProvider() {
+        return Sha256Ed25519PublicKeyProvider;
+    }
+
+    public static PublicKeyProvider Sha256EcdsaPublicKeyProvider() {
+        return Sha256EcdsaPublicKeyProvider;
+    }
 }
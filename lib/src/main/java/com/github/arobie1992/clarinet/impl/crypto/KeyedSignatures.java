@@ -0,0 +1,65 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.Key;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Signatures that carry the {@link Key#fingerprint()} of the key that made them so the verifier can look up that key
+ * directly instead of trying each of the signer's keys:
+ * <ul>
+ *     <li>the 4 byte magic {@code KFPR}</li>
+ *     <li>the {@value Key#FINGERPRINT_LENGTH} byte fingerprint</li>
+ *     <li>the signature itself</li>
+ * </ul>
+ */
+public final class KeyedSignatures {
+    private static final int MAGIC = 0x4B465052;
+
+    private KeyedSignatures() {}
+
+    /**
+     * The fingerprint of the signing key along with the signature it made.
+     * @param fingerprint The fingerprint of the key that made {@code signature}.
+     * @param signature The signature as produced by the key.
+     */
+    public record Opened(Bytes fingerprint, Bytes signature) {}
+
+    /**
+     * Attaches the fingerprint of the signing key to a signature.
+     * @param fingerprint The fingerprint of the key that made {@code signature}.
+     * @param signature The signature as produced by the key.
+     * @return The signature with the fingerprint attached.
+     * @throws IllegalArgumentException If {@code fingerprint} is not {@value Key#FINGERPRINT_LENGTH} bytes.
+     */
+    public static Bytes wrap(Bytes fingerprint, Bytes signature) {
+        if(fingerprint.length() != Key.FINGERPRINT_LENGTH) {
+            throw new IllegalArgumentException("fingerprint must be " + Key.FINGERPRINT_LENGTH + " bytes");
+        }
+        var buf = ByteBuffer.allocate(Integer.BYTES + Key.FINGERPRINT_LENGTH + signature.length());
+        buf.putInt(MAGIC);
+        buf.put(fingerprint.asReadOnlyBuffer());
+        buf.put(signature.asReadOnlyBuffer());
+        return Bytes.wrap(buf.array());
+    }
+
+    /**
+     * Separates the fingerprint from a signature made by {@link #wrap(Bytes, Bytes)}.
+     * @param signature The signature to open.
+     * @return The fingerprint and the signature as produced by the key, or empty if {@code signature} has no fingerprint
+     * attached.
+     */
+    public static Optional<Opened> open(Bytes signature) {
+        var buf = signature.asReadOnlyBuffer();
+        if(buf.remaining() <= Integer.BYTES + Key.FINGERPRINT_LENGTH || buf.getInt() != MAGIC) {
+            return Optional.empty();
+        }
+        var fingerprint = new byte[Key.FINGERPRINT_LENGTH];
+        buf.get(fingerprint);
+        var raw = new byte[buf.remaining()];
+        buf.get(raw);
+        return Optional.of(new Opened(Bytes.wrap(fingerprint), Bytes.wrap(raw)));
+    }
+}
@@ -1,10 +1,13 @@
 package com.github.arobie1992.clarinet.impl.crypto;
 
+import com.github.arobie1992.clarinet.crypto.KeyCreationException;
 import com.github.arobie1992.clarinet.crypto.KeyPair;
 
+import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
 
 public class Keys {
     private Keys() {}
@@ -18,4 +21,33 @@ public class Keys {
                 new Sha256RsaPrivateKey(keyPair.getPrivate())
         );
     }
+
+    /**
+     * Signing with Ed25519 is much cheaper than with RSA and the signatures are 64 bytes rather than 256.
+     */
+    public static KeyPair generateEd25519KeyPair() throws NoSuchAlgorithmException {
+        var keyPair = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        return new KeyPair(
+                new Sha256Ed25519PublicKey(keyPair.getPublic()),
+                new Sha256Ed25519PrivateKey(keyPair.getPrivate())
+        );
+    }
+
+    /**
+     * Generates a key pair on the NIST P-256 curve.
+     * @throws KeyCreationException If the curve is not supported.
+     */
+    public static KeyPair generateEcdsaKeyPair() throws NoSuchAlgorithmException {
+        var gen = KeyPairGenerator.getInstance("EC");
+        try {
+            gen.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom());
+        } catch (InvalidAlgorithmParameterException e) {
+            throw new KeyCreationException(e);
+        }
+        var keyPair = gen.generateKeyPair();
+        return new KeyPair(
+                new Sha256EcdsaPublicKey(keyPair.getPublic()),
+                new Sha256EcdsaPrivateKey(keyPair.getPrivate())
+        );
+    }
 }
@@ -0,0 +1,185 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.HashingException;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+/**
+ * Signatures that cover a whole batch of hashes with a single signature over the root of a Merkle tree.
+ * <p>
+ * Each hash in the batch gets its own signature consisting of the root signature and the inclusion proof for that
+ * hash, so every signature can be checked on its own without the rest of the batch:
+ * <ul>
+ *     <li>the 4 byte magic {@code MRKL}</li>
+ *     <li>the length of the root signature as a 4 byte big-endian int followed by the root signature</li>
+ *     <li>the number of proof steps as a 4 byte big-endian int followed by the steps from the leaf up, each a one byte
+ *     side ({@code 0} if the sibling is on the left, {@code 1} if it is on the right) and the 32 byte sibling hash</li>
+ * </ul>
+ * Leaves are {@code SHA-256(0xF0 || hash)} and interior nodes are {@code SHA-256(0xF1 || left || right)} so that a
+ * leaf can never be passed off as an interior node. A node without a sibling is carried up to the next level as is.
+ * What gets signed is not the root itself but {@code SHA-256(0xF2 || root)}. The prefixes are outside the tags of
+ * {@link com.github.arobie1992.clarinet.message.CanonicalEncoding}, so neither a root signature nor any node of the
+ * tree can be passed off as a signature or hash of message parts, or the other way around.
+ */
+public final class MerkleSignatures {
+    private static final String ALGORITHM = "SHA-256";
+    private static final int HASH_LENGTH = 32;
+    private static final int MAGIC = 0x4D524B4C;
+    private static final byte LEAF = (byte) 0xF0;
+    private static final byte INTERIOR = (byte) 0xF1;
+    private static final byte ROOT = (byte) 0xF2;
+    private static final byte SIBLING_LEFT = 0;
+    private static final byte SIBLING_RIGHT = 1;
+
+    private MerkleSignatures() {}
+
+    /**
+     * The root the batch signature covers along with the signature over it.
+     * @param root The domain-tagged root of the tree, which is what {@code rootSignature} is over.
+     * @param rootSignature The signature over {@code root}.
+     */
+    public record Opened(Bytes root, Bytes rootSignature) {}
+
+    /**
+     * Signs all of {@code hashes} at once.
+     * @param hashes The SHA-256 hashes to sign.
+     * @param signRoot Produces the signature over the domain-tagged root of the tree, e.g. using {@link
+     *                 com.github.arobie1992.clarinet.crypto.PrivateKey#signHash(Bytes)}.
+     * @return The signature for each hash, in the same order as {@code hashes}.
+     * @throws IllegalArgumentException If {@code hashes} is empty or any hash is not 32 bytes.
+     */
+    public static List<Bytes> sign(List<Bytes> hashes, UnaryOperator<Bytes> signRoot) {
+        if(hashes.isEmpty()) {
+            throw new IllegalArgumentException("hashes must not be empty");
+        }
+        var levels = new ArrayList<List<Bytes>>();
+        var level = new ArrayList<Bytes>(hashes.size());
+        for(var hash : hashes) {
+            if(hash.length() != HASH_LENGTH) {
+                throw new IllegalArgumentException("hash is not a valid SHA-256");
+            }
+            level.add(leaf(hash));
+        }
+        levels.add(level);
+        while(level.size() > 1) {
+            var next = new ArrayList<Bytes>((level.size() + 1) / 2);
+            for(int i = 0; i < level.size(); i += 2) {
+                next.add(i + 1 < level.size() ? interior(level.get(i), level.get(i + 1)) : level.get(i));
+            }
+            levels.add(next);
+            level = next;
+        }
+        var rootSignature = signRoot.apply(root(level.getFirst()));
+
+        var signatures = new ArrayList<Bytes>(hashes.size());
+        for(int leaf = 0; leaf < hashes.size(); leaf++) {
+            var sides = new ArrayList<Byte>();
+            var siblings = new ArrayList<Bytes>();
+            var index = leaf;
+            for(var nodes : levels.subList(0, levels.size() - 1)) {
+                var sibling = index ^ 1;
+                if(sibling < nodes.size()) {
+                    sides.add(sibling < index ? SIBLING_LEFT : SIBLING_RIGHT);
+                    siblings.add(nodes.get(sibling));
+                }
+                index /= 2;
+            }
+            signatures.add(encode(rootSignature, sides, siblings));
+        }
+        return signatures;
+    }
+
+    /**
+     * Checks only the magic, so it is cheap enough to call on every signature before deciding how to verify it.
+     * @param signature The signature to check.
+     * @return Whether {@code signature} is in the batch signature format. A signature carrying a
+     * {@link KeyedSignatures fingerprint} never is.
+     */
+    public static boolean isBatch(Bytes signature) {
+        var buf = signature.asReadOnlyBuffer();
+        return buf.remaining() >= Integer.BYTES && buf.getInt() == MAGIC;
+    }
+
+    /**
+     * Recomputes the root {@code signature} claims to cover {@code hash}.
+     * @param hash The hash the signature is for.
+     * @param signature The signature to open.
+     * @return The root and its signature, or empty if {@code signature} is not a batch signature. The caller still has
+     * to verify the root signature.
+     */
+    public static Optional<Opened> open(Bytes hash, Bytes signature) {
+        var buf = signature.asReadOnlyBuffer();
+        if(buf.remaining() < 3 * Integer.BYTES || buf.getInt() != MAGIC) {
+            return Optional.empty();
+        }
+        var sigLength = buf.getInt();
+        if(sigLength < 0 || sigLength > buf.remaining() - Integer.BYTES) {
+            return Optional.empty();
+        }
+        var rootSignature = new byte[sigLength];
+        buf.get(rootSignature);
+        var steps = buf.getInt();
+        if(steps < 0 || (long) steps * (1 + HASH_LENGTH) != buf.remaining()) {
+            return Optional.empty();
+        }
+        var node = leaf(hash);
+        var sibling = new byte[HASH_LENGTH];
+        for(int i = 0; i < steps; i++) {
+            var side = buf.get();
+            buf.get(sibling);
+            switch(side) {
+                case SIBLING_LEFT -> node = interior(Bytes.of(sibling), node);
+                case SIBLING_RIGHT -> node = interior(node, Bytes.of(sibling));
+                default -> {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(new Opened(root(node), Bytes.wrap(rootSignature)));
+    }
+
+    private static Bytes encode(Bytes rootSignature, List<Byte> sides, List<Bytes> siblings) {
+        var buf = ByteBuffer.allocate(3 * Integer.BYTES + rootSignature.length() + sides.size() * (1 + HASH_LENGTH));
+        buf.putInt(MAGIC);
+        buf.putInt(rootSignature.length());
+        buf.put(rootSignature.asReadOnlyBuffer());
+        buf.putInt(sides.size());
+        for(int i = 0; i < sides.size(); i++) {
+            buf.put(sides.get(i));
+            buf.put(siblings.get(i).asReadOnlyBuffer());
+        }
+        return Bytes.wrap(buf.array());
+    }
+
+    private static Bytes leaf(Bytes hash) {
+        return digest(LEAF, hash, null);
+    }
+
+    private static Bytes interior(Bytes left, Bytes right) {
+        return digest(INTERIOR, left, right);
+    }
+
+    private static Bytes root(Bytes root) {
+        return digest(ROOT, root, null);
+    }
+
+    private static Bytes digest(byte prefix, Bytes first, Bytes second) {
+        try {
+            return Digests.digest(ALGORITHM, digest -> {
+                digest.update(prefix);
+                first.update(digest);
+                if(second != null) {
+                    second.update(digest);
+                }
+            });
+        } catch(NoSuchAlgorithmException e) {
+            throw new HashingException(e);
+        }
+    }
+}
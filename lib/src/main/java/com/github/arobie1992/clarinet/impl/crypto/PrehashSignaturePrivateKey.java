@@ -0,0 +1,81 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.PrivateKey;
+import com.github.arobie1992.clarinet.crypto.SigningException;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Signature;
+
+/**
+ * Signs the SHA-256 hash of the data with a JCA signature algorithm that takes the hash as its message, so that
+ * {@code signHash(hash(x)) = sign(x)}.
+ */
+abstract class PrehashSignaturePrivateKey implements PrivateKey {
+
+    private final java.security.PrivateKey javaKey;
+    private final String algorithm;
+    private final InstancePool<MessageDigest, GeneralSecurityException> digests;
+    private final InstancePool<Signature, GeneralSecurityException> signatures;
+
+    /**
+     * @param jcaAlgorithm The JCA signature algorithm to sign the hash with.
+     * @param algorithm The name {@link #algorithm()} reports.
+     */
+    PrehashSignaturePrivateKey(java.security.PrivateKey javaKey, String jcaAlgorithm, String algorithm) {
+        this.javaKey = javaKey;
+        this.algorithm = algorithm;
+        this.digests = new InstancePool<>(() -> MessageDigest.getInstance("SHA-256"));
+        // sign resets the signature to its initialized state, so pooled signatures stay bound to this key
+        this.signatures = new InstancePool<>(() -> {
+            var signature = Signature.getInstance(jcaAlgorithm);
+            signature.initSign(javaKey);
+            return signature;
+        });
+    }
+
+    @Override
+    public Bytes sign(Bytes data) {
+        Bytes enc;
+        try {
+            enc = digests.apply(digest -> {
+                data.update(digest);
+                return Bytes.wrap(digest.digest());
+            });
+        } catch (GeneralSecurityException e) {
+            throw new SigningException(e);
+        }
+        return signHash(enc);
+    }
+
+    @Override
+    public boolean supportsPrehash() {
+        return true;
+    }
+
+    @Override
+    public Bytes signHash(Bytes hash) {
+        if(hash.length() != 32) {
+            throw new SigningException("hash is not a valid SHA-256");
+        }
+        try {
+            return signatures.apply(signature -> {
+                signature.update(hash.bytes());
+                return Bytes.wrap(signature.sign());
+            });
+        } catch (GeneralSecurityException e) {
+            throw new SigningException(e);
+        }
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Bytes bytes() {
+        return Bytes.wrap(javaKey.getEncoded());
+    }
+}
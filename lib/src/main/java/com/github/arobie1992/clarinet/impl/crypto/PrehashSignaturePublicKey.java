@@ -0,0 +1,75 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.PublicKey;
+import com.github.arobie1992.clarinet.crypto.VerificationException;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Signature;
+
+/**
+ * Verifies signatures created by a {@link PrehashSignaturePrivateKey} with the same JCA signature algorithm.
+ */
+abstract class PrehashSignaturePublicKey implements PublicKey {
+
+    private final java.security.PublicKey javaKey;
+    private final String algorithm;
+    private final InstancePool<MessageDigest, GeneralSecurityException> digests;
+    private final InstancePool<Signature, GeneralSecurityException> signatures;
+
+    /**
+     * @param jcaAlgorithm The JCA signature algorithm to verify the hash with.
+     * @param algorithm The name {@link #algorithm()} reports.
+     */
+    PrehashSignaturePublicKey(java.security.PublicKey javaKey, String jcaAlgorithm, String algorithm) {
+        this.javaKey = javaKey;
+        this.algorithm = algorithm;
+        this.digests = new InstancePool<>(() -> MessageDigest.getInstance("SHA-256"));
+        // verify resets the signature to its initialized state, so pooled signatures stay bound to this key
+        this.signatures = new InstancePool<>(() -> {
+            var signature = Signature.getInstance(jcaAlgorithm);
+            signature.initVerify(javaKey);
+            return signature;
+        });
+    }
+
+    @Override
+    public boolean verify(Bytes data, Bytes signature) {
+        Bytes enc;
+        try {
+            enc = digests.apply(digest -> {
+                data.update(digest);
+                return Bytes.wrap(digest.digest());
+            });
+        } catch (GeneralSecurityException e) {
+            throw new VerificationException(e);
+        }
+        return verifyHash(enc, signature);
+    }
+
+    @Override
+    public boolean verifyHash(Bytes hash, Bytes signature) {
+        if(hash.length() != 32) {
+            throw new VerificationException("hash is not a valid SHA-256");
+        }
+        try {
+            return signatures.apply(verifier -> {
+                verifier.update(hash.bytes());
+                return verifier.verify(signature.bytes());
+            });
+        } catch (GeneralSecurityException e) {
+            throw new VerificationException(e);
+        }
+    }
+
+    @Override
+    public String algorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public Bytes bytes() {
+        return Bytes.wrap(javaKey.getEncoded());
+    }
+}
@@ -0,0 +1,14 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+/**
+ * ECDSA signatures with SHA-256, e.g. on the P-256 curve from {@link Keys#generateEcdsaKeyPair()}.
+ * <p>
+ * Signatures are DER encoded, the same as Java's {@code SHA256withECDSA}, so they can be checked by anything that
+ * supports that algorithm.
+ */
+public class Sha256EcdsaPrivateKey extends PrehashSignaturePrivateKey {
+    public Sha256EcdsaPrivateKey(java.security.PrivateKey javaKey) {
+        // the data is hashed up front so the signature must not hash it again
+        super(javaKey, "NONEwithECDSA", "SHA256withECDSA");
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+/**
+ * Verifies signatures created by {@link Sha256EcdsaPrivateKey} or Java's {@code SHA256withECDSA}.
+ */
+public class Sha256EcdsaPublicKey extends PrehashSignaturePublicKey {
+    public Sha256EcdsaPublicKey(java.security.PublicKey javaKey) {
+        super(javaKey, "NONEwithECDSA", "SHA256withECDSA");
+    }
+}
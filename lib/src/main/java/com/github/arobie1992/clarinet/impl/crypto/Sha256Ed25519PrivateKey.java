@@ -0,0 +1,14 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+/**
+ * Ed25519 signatures over the SHA-256 hash of the data.
+ * <p>
+ * Ed25519 hashes its input internally, so unlike RSA and ECDSA it cannot sign a precomputed hash directly. Nodes
+ * exchange hashes rather than full messages though, so the signed message is always the SHA-256 hash of the data. This
+ * keeps {@code signHash(hash(x)) = sign(x)} and makes the signatures a quarter the size of 2048-bit RSA ones.
+ */
+public class Sha256Ed25519PrivateKey extends PrehashSignaturePrivateKey {
+    public Sha256Ed25519PrivateKey(java.security.PrivateKey javaKey) {
+        super(javaKey, "Ed25519", "SHA256withEd25519");
+    }
+}
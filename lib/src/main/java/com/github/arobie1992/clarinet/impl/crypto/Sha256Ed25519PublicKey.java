@@ -0,0 +1,10 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+/**
+ * Verifies signatures created by {@link Sha256Ed25519PrivateKey}.
+ */
+public class Sha256Ed25519PublicKey extends PrehashSignaturePublicKey {
+    public Sha256Ed25519PublicKey(java.security.PublicKey javaKey) {
+        super(javaKey, "Ed25519", "SHA256withEd25519");
+    }
+}
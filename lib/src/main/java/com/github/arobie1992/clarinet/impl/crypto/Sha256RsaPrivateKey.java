@@ -4,31 +4,63 @@ import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.crypto.PrivateKey;
 import com.github.arobie1992.clarinet.crypto.SigningException;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import java.security.*;
 
+/**
+ * Signs by encrypting the SHA-256 hash of the data with the RSA private key.
+ * <p>
+ * This uses a raw RSA {@link Cipher} rather than {@link java.security.Signature}, since {@code SHA256withRSA} would wrap
+ * the hash in a DigestInfo and change the signature format. RSA keys therefore pool initialized ciphers instead of
+ * signatures; only the ECDSA and Ed25519 keys pool {@link java.security.Signature} instances.
+ */
 public class Sha256RsaPrivateKey implements PrivateKey {
 
     private final java.security.PrivateKey javaKey;
+    private final InstancePool<MessageDigest, GeneralSecurityException> digests;
+    private final InstancePool<Cipher, GeneralSecurityException> ciphers;
 
     public Sha256RsaPrivateKey(java.security.PrivateKey javaKey) {
         this.javaKey = javaKey;
+        this.digests = new InstancePool<>(() -> MessageDigest.getInstance("SHA-256"));
+        // doFinal resets the cipher to its initialized state, so pooled ciphers stay bound to this key
+        this.ciphers = new InstancePool<>(() -> {
+            var cipher = Cipher.getInstance("RSA");
+            cipher.init(Cipher.ENCRYPT_MODE, javaKey);
+            return cipher;
+        });
     }
 
     @Override
     public Bytes sign(Bytes data) {
+        Bytes enc;
         try {
-            var digest = MessageDigest.getInstance("SHA-256");
-            digest.update(data.bytes());
-            var enc = digest.digest();
-            var cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.ENCRYPT_MODE, javaKey);
-            cipher.update(enc);
-            return Bytes.of(cipher.doFinal());
-        } catch (NoSuchAlgorithmException|NoSuchPaddingException|InvalidKeyException|IllegalBlockSizeException|BadPaddingException e) {
+            enc = digests.apply(digest -> {
+                data.update(digest);
+                return Bytes.wrap(digest.digest());
+            });
+        } catch (GeneralSecurityException e) {
+            throw new SigningException(e);
+        }
+        return signHash(enc);
+    }
+
+    @Override
+    public boolean supportsPrehash() {
+        return true;
+    }
+
+    @Override
+    public Bytes signHash(Bytes hash) {
+        if(hash.length() != 32) {
+            throw new SigningException("hash is not a valid SHA-256");
+        }
+        try {
+            return ciphers.apply(cipher -> {
+                cipher.update(hash.bytes());
+                return Bytes.wrap(cipher.doFinal());
+            });
+        } catch (GeneralSecurityException e) {
             throw new SigningException(e);
         }
     }
@@ -40,6 +72,6 @@ public class Sha256RsaPrivateKey implements PrivateKey {
 
     @Override
     public Bytes bytes() {
-        return Bytes.of(javaKey.getEncoded());
+        return Bytes.wrap(javaKey.getEncoded());
     }
 }
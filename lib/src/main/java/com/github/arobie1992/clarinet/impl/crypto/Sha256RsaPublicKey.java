@@ -4,45 +4,57 @@ import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.crypto.PublicKey;
 import com.github.arobie1992.clarinet.crypto.VerificationException;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import java.security.*;
-import java.util.Arrays;
 
+/**
+ * Verifies signatures from a {@link Sha256RsaPrivateKey} by decrypting them with the RSA public key and comparing the
+ * result to the SHA-256 hash of the data. Like the private key, this pools initialized {@link Cipher}s rather than
+ * {@link java.security.Signature}s.
+ */
 public class Sha256RsaPublicKey implements PublicKey {
 
     private final java.security.PublicKey javaKey;
+    private final InstancePool<MessageDigest, GeneralSecurityException> digests;
+    private final InstancePool<Cipher, GeneralSecurityException> ciphers;
 
     public Sha256RsaPublicKey(java.security.PublicKey javaKey) {
         this.javaKey = javaKey;
+        this.digests = new InstancePool<>(() -> MessageDigest.getInstance("SHA-256"));
+        // doFinal resets the cipher to its initialized state, so pooled ciphers stay bound to this key
+        this.ciphers = new InstancePool<>(() -> {
+            var cipher = Cipher.getInstance("RSA");
+            cipher.init(Cipher.DECRYPT_MODE, javaKey);
+            return cipher;
+        });
     }
 
     @Override
     public boolean verify(Bytes data, Bytes signature) {
+        Bytes enc;
         try {
-            var digest = MessageDigest.getInstance("SHA-256");
-            digest.update(data.bytes());
-            var enc = Bytes.of(digest.digest());
-            return verifyHash(enc, signature);
-        } catch (NoSuchAlgorithmException e) {
+            enc = digests.apply(digest -> {
+                data.update(digest);
+                return Bytes.wrap(digest.digest());
+            });
+        } catch (GeneralSecurityException e) {
             throw new VerificationException(e);
         }
+        return verifyHash(enc, signature);
     }
 
     @Override
     public boolean verifyHash(Bytes hash, Bytes signature) {
-        if(hash.bytes().length != 32) {
+        if(hash.length() != 32) {
             throw new VerificationException("hash is not a valid SHA-256");
         }
         try {
-            var cipher = Cipher.getInstance("RSA");
-            cipher.init(Cipher.DECRYPT_MODE, javaKey);
-            cipher.update(signature.bytes());
-            var dec = cipher.doFinal();
-            return Arrays.equals(hash.bytes(), dec);
-        } catch (NoSuchAlgorithmException|NoSuchPaddingException|InvalidKeyException|IllegalBlockSizeException|BadPaddingException e) {
+            var dec = ciphers.apply(cipher -> {
+                cipher.update(signature.bytes());
+                return cipher.doFinal();
+            });
+            return hash.equals(Bytes.wrap(dec));
+        } catch (GeneralSecurityException e) {
             throw new VerificationException(e);
         }
     }
@@ -54,6 +66,6 @@ public class Sha256RsaPublicKey implements PublicKey {
 
     @Override
     public Bytes bytes() {
-        return Bytes.of(javaKey.getEncoded());
+        return Bytes.wrap(javaKey.getEncoded());
     }
 }
@@ -0,0 +1,365 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.impl.peer.StringPeerId;
+import com.github.arobie1992.clarinet.impl.reputation.ProportionalReputation;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.reputation.AssessmentStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * An {@link AssessmentStore} that keeps its assessments across restarts.
+ * <p>
+ * Assessments are held in memory and every change is appended to a write-ahead log, which is synced to disk in groups
+ * every {@link JournalOptions#syncInterval()}. {@link #save(Assessment, ReputationCallback)} doesn't wait for the sync,
+ * so a crash can lose the most recent changes. A snapshot of all assessments is taken in the background every
+ * {@link JournalOptions#snapshotEvery()} changes so that opening the store only has to replay the changes since.
+ * <p>
+ * Each change is logged along with the status it replaced, so the store also keeps the reputation each peer has from
+ * its assessments, which a {@link FileReputationService} built on the store serves. An assessment and its effect on
+ * reputation are in the same record, so a crash loses both or neither and they can't disagree after a restart. For the
+ * same reason the service only accepts updates passed to it by a save to this store.
+ * <p>
+ * Of the {@link RetentionPolicy} limits, only {@link RetentionPolicy#evictOnConnectionClose()} is supported. With it
+ * set, closing a connection drops its assessments and logs that it did, and later saves for its messages are ignored,
+ * including after a restart. Otherwise assessments are never evicted.
+ */
+public class FileAssessmentStore implements AssessmentStore, AutoCloseable {
+    private static final String NAME = "assessments";
+    private static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofMillis(50);
+    private static final int DEFAULT_SNAPSHOT_EVERY = 100_000;
+    private static final Assessment.Status[] STATUS_VALUES = Assessment.Status.values();
+    private static final byte SAVED = 0;
+    private static final byte CLOSED = 1;
+    private static final byte ABSENT = -1;
+
+    private record ID(PeerId peerId, long sequenceNumber) {}
+
+    private final Map<ConnectionId, Map<ID, Assessment.Status>> assessments = new ConcurrentHashMap<>();
+    private final Map<PeerId, ProportionalReputation> reputations = new ConcurrentHashMap<>();
+    // only tracked when evicting on close
+    private final Set<ConnectionId> closedConnections = ConcurrentHashMap.newKeySet();
+    // the assessment each thread is saving while it runs the reputation callback
+    private final ThreadLocal<Assessment> saving = new ThreadLocal<>();
+    private final Function<String, PeerId> peerIdParser;
+    private final int snapshotEvery;
+    private final boolean evictOnConnectionClose;
+    // saves share the read lock; the write lock keeps them out while the state is captured for a snapshot or a
+    // connection's assessments are dropped
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final Journal journal;
+    private volatile boolean closed;
+
+    /**
+     * Opens the store, recovering the assessments kept in the directory.
+     * @throws UncheckedIOException If the directory or the files in it can't be read.
+     */
+    public FileAssessmentStore(JournalOptions options) {
+        this(options, new RetentionPolicy());
+    }
+
+    /**
+     * Opens the store, recovering the assessments kept in the directory.
+     * @throws UncheckedIOException If the directory or the files in it can't be read.
+     * @throws IllegalArgumentException If the policy sets any limit other than
+     * {@link RetentionPolicy#evictOnConnectionClose()}.
+     */
+    public FileAssessmentStore(JournalOptions options, RetentionPolicy retentionPolicy) {
+        Objects.requireNonNull(retentionPolicy);
+        if(retentionPolicy.maxAge().isPresent() || retentionPolicy.maxCount().isPresent() || retentionPolicy.maxPerConnection().isPresent()) {
+            throw new IllegalArgumentException("Only evictOnConnectionClose is supported");
+        }
+        this.evictOnConnectionClose = retentionPolicy.evictOnConnectionClose().orElse(false);
+        this.peerIdParser = options.peerIdParser().orElse(StringPeerId::new);
+        this.snapshotEvery = options.snapshotEvery().orElse(DEFAULT_SNAPSHOT_EVERY);
+        try {
+            this.journal = Journal.open(
+                    options.directory(),
+                    NAME,
+                    options.syncInterval().orElse(DEFAULT_SYNC_INTERVAL),
+                    this::loadSnapshot,
+                    this::replay
+            );
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean save(Assessment assessment, ReputationCallback reputationCallback) {
+        if(closed) {
+            throw new IllegalStateException("Assessment store is closed");
+        }
+        var persisted = new AtomicBoolean(false);
+        stateLock.readLock().lock();
+        try {
+            // a close holds the write lock, so it can't happen between this and the save
+            if(closedConnections.contains(assessment.messageId().connectionId())) {
+                return false;
+            }
+            var connection = assessments.computeIfAbsent(assessment.messageId().connectionId(), k -> new ConcurrentHashMap<>());
+            connection.compute(new ID(assessment.peerId(), assessment.messageId().sequenceNumber()), (id, existing) -> {
+                if(existing != null && assessment.status().comparePriority(existing) < 0) {
+                    return existing;
+                }
+                saving.set(assessment);
+                try {
+                    reputationCallback.update(existing == null ? null : new Assessment(id.peerId(), assessment.messageId(), existing), assessment);
+                } finally {
+                    saving.remove();
+                }
+                journal.append(encodeSaved(assessment, existing));
+                persisted.set(true);
+                return assessment.status();
+            });
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        if(persisted.get()) {
+            snapshotWhenDue();
+        }
+        return persisted.get();
+    }
+
+    /**
+     * Returns the stored assessment, or a {@link Assessment.Status#NONE} default that isn't persisted.
+     */
+    @Override
+    public Assessment find(PeerId peerId, MessageId messageId) {
+        var connection = assessments.get(messageId.connectionId());
+        var status = connection == null ? null : connection.get(new ID(peerId, messageId.sequenceNumber()));
+        return new Assessment(peerId, messageId, status == null ? Assessment.Status.NONE : status);
+    }
+
+    /**
+     * Drops the connection's assessments if the store evicts on close and ignores any later saves for its messages.
+     * Saves are held off while it does, so none can land in the dropped assessments or be logged after the drop.
+     */
+    @Override
+    public void connectionClosed(ConnectionId connectionId) {
+        if(!evictOnConnectionClose || closed) {
+            return;
+        }
+        var dropped = false;
+        stateLock.writeLock().lock();
+        try {
+            if(closedConnections.add(connectionId)) {
+                assessments.remove(connectionId);
+                journal.append(encodeClosed(connectionId));
+                dropped = true;
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        if(dropped) {
+            snapshotWhenDue();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every assessment and reputation so they don't need to be replayed from the log on the next
+     * open. This happens automatically every {@link JournalOptions#snapshotEvery()} changes.
+     * @throws UncheckedIOException If the snapshot can't be written.
+     */
+    public void snapshot() {
+        snapshotLock.lock();
+        try {
+            if(closed) {
+                throw new IllegalStateException("Assessment store is closed");
+            }
+            long generation;
+            var encoded = new ArrayList<ByteBuffer>();
+            Map<PeerId, ProportionalReputation> reputationsCopy;
+            List<ConnectionId> closedCopy;
+            stateLock.writeLock().lock();
+            try {
+                generation = journal.rotate();
+                assessments.forEach((connectionId, connection) -> connection.forEach((id, status) ->
+                        encoded.add(encodeAssessment(id.peerId(), connectionId, id.sequenceNumber(), status))
+                ));
+                reputationsCopy = new HashMap<>(reputations);
+                closedCopy = List.copyOf(closedConnections);
+            } finally {
+                stateLock.writeLock().unlock();
+            }
+            var peerIds = new HashMap<PeerId, String>();
+            reputationsCopy.keySet().forEach(peerId -> peerIds.put(peerId, Objects.requireNonNull(peerId.asString())));
+            var state = ByteBuffer.allocate(
+                    2 * Integer.BYTES
+                    + encoded.stream().mapToInt(ByteBuffer::remaining).sum()
+                    + peerIds.values().stream().mapToInt(id -> Journal.stringBytes(id) + 2 * Double.BYTES).sum()
+                    + Integer.BYTES + closedCopy.size() * 2 * Long.BYTES
+            );
+            state.putInt(encoded.size());
+            encoded.forEach(state::put);
+            state.putInt(reputationsCopy.size());
+            reputationsCopy.forEach((peerId, reputation) -> {
+                Journal.putString(state, peerIds.get(peerId));
+                state.putDouble(reputation.good());
+                state.putDouble(reputation.total());
+            });
+            state.putInt(closedCopy.size());
+            closedCopy.forEach(connectionId -> putConnectionId(state, connectionId));
+            journal.writeSnapshot(generation, state.flip());
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Syncs every change saved so far to disk.
+     * @throws UncheckedIOException If the changes can't be written.
+     */
+    public void sync() {
+        journal.sync();
+    }
+
+    /**
+     * Syncs any outstanding changes and closes the log. Assessments can't be saved once the store is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        snapshotLock.lock();
+        try {
+            journal.close();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * @return The reputation the peer has from the assessments saved to the store.
+     */
+    double reputation(PeerId peerId) {
+        var reputation = reputations.get(peerId);
+        return reputation == null ? new ProportionalReputation().value() : reputation.value();
+    }
+
+    /**
+     * Applies a change to an assessment to its peer's reputation. It has to be made by the reputation callback of a save
+     * of {@code updated} to this store, since the save's record is what gets replayed after a restart.
+     * @throws IllegalStateException If {@code updated} isn't being saved to this store on the calling thread.
+     */
+    void updateReputation(Assessment existing, Assessment updated) {
+        if(saving.get() != updated) {
+            throw new IllegalStateException("Reputation updates must come from saving the assessment to the store");
+        }
+        applyReputation(updated.peerId(), existing == null ? null : existing.status(), updated.status());
+    }
+
+    private void applyReputation(PeerId peerId, Assessment.Status existing, Assessment.Status updated) {
+        reputations.compute(peerId, (k, reputation) -> (reputation == null ? new ProportionalReputation() : reputation).apply(existing, updated));
+    }
+
+    private void snapshotWhenDue() {
+        // the journal closes after this does, so it can't tell a snapshot racing close() not to bother
+        journal.snapshotWhenDue(snapshotEvery, () -> {
+            if(!closed) {
+                snapshot();
+            }
+        });
+    }
+
+    private void loadSnapshot(ByteBuffer state) {
+        var count = state.getInt();
+        for(int i = 0; i < count; i++) {
+            var peerId = peerIdParser.apply(Journal.getString(state));
+            var connectionId = getConnectionId(state);
+            var sequenceNumber = state.getLong();
+            assessments.computeIfAbsent(connectionId, k -> new ConcurrentHashMap<>()).put(new ID(peerId, sequenceNumber), STATUS_VALUES[state.get()]);
+        }
+        count = state.getInt();
+        for(int i = 0; i < count; i++) {
+            var peerId = peerIdParser.apply(Journal.getString(state));
+            reputations.put(peerId, new ProportionalReputation(state.getDouble(), state.getDouble()));
+        }
+        count = state.getInt();
+        for(int i = 0; i < count; i++) {
+            closedConnections.add(getConnectionId(state));
+        }
+    }
+
+    // the most recent change to an assessment is always the one to keep, since changes are logged in the order they were made
+    private void replay(ByteBuffer record) {
+        if(record.get() == CLOSED) {
+            var connectionId = getConnectionId(record);
+            assessments.remove(connectionId);
+            closedConnections.add(connectionId);
+            return;
+        }
+        var peerId = peerIdParser.apply(Journal.getString(record));
+        var connectionId = getConnectionId(record);
+        var sequenceNumber = record.getLong();
+        var existing = record.get();
+        var updated = STATUS_VALUES[record.get()];
+        assessments.computeIfAbsent(connectionId, k -> new ConcurrentHashMap<>()).put(new ID(peerId, sequenceNumber), updated);
+        applyReputation(peerId, existing == ABSENT ? null : STATUS_VALUES[existing], updated);
+    }
+
+    /*
+     * SAVED, the peer ID as a 4 byte length and its UTF-8 bytes, the connection ID as its most and least significant
+     * UUID bits, the 8 byte sequence number, then the replaced status's ordinal, or ABSENT if there wasn't one, and the
+     * new status's ordinal as single bytes
+     */
+    private static ByteBuffer encodeSaved(Assessment assessment, Assessment.Status existing) {
+        var peerId = Objects.requireNonNull(assessment.peerId().asString());
+        var buf = ByteBuffer.allocate(1 + Journal.stringBytes(peerId) + 3 * Long.BYTES + 2);
+        buf.put(SAVED);
+        Journal.putString(buf, peerId);
+        putConnectionId(buf, assessment.messageId().connectionId());
+        buf.putLong(assessment.messageId().sequenceNumber());
+        buf.put(existing == null ? ABSENT : (byte) existing.ordinal());
+        buf.put((byte) assessment.status().ordinal());
+        return buf.flip();
+    }
+
+    // CLOSED, then the connection ID as its most and least significant UUID bits
+    private static ByteBuffer encodeClosed(ConnectionId connectionId) {
+        var buf = ByteBuffer.allocate(1 + 2 * Long.BYTES);
+        buf.put(CLOSED);
+        putConnectionId(buf, connectionId);
+        return buf.flip();
+    }
+
+    // as a saved record without the type and replaced status, for snapshots
+    private static ByteBuffer encodeAssessment(PeerId peerId, ConnectionId connectionId, long sequenceNumber, Assessment.Status status) {
+        var id = Objects.requireNonNull(peerId.asString());
+        var buf = ByteBuffer.allocate(Journal.stringBytes(id) + 3 * Long.BYTES + 1);
+        Journal.putString(buf, id);
+        putConnectionId(buf, connectionId);
+        buf.putLong(sequenceNumber);
+        buf.put((byte) status.ordinal());
+        return buf.flip();
+    }
+
+    private static void putConnectionId(ByteBuffer buf, ConnectionId connectionId) {
+        var uuid = connectionId.asUUID();
+        buf.putLong(uuid.getMostSignificantBits());
+        buf.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static ConnectionId getConnectionId(ByteBuffer buf) {
+        return ConnectionId.fromUUID(new UUID(buf.getLong(), buf.getLong()));
+    }
+}
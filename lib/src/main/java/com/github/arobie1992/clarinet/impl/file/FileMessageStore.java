@@ -0,0 +1,242 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.ExistingMessageIdException;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.MessageStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link MessageStore} that keeps messages in an append-only log on disk so they survive restarts and don't take up
+ * heap.
+ * <p>
+ * The log is split into segment files of a fixed size that are memory-mapped, so reading a message is a copy out of
+ * the page cache. Only an index from {@link MessageId} to the message's place in the log is kept on the heap, and it
+ * is rebuilt from the segments when the store is opened. Opening the store carries on appending to the last segment,
+ * unless the process died partway through writing to it or its messages are past the maximum age, in which case a new
+ * segment is started.
+ * <p>
+ * Messages are written to the page cache when they are added and to disk when their segment fills up or the store is
+ * closed. A message survives the process dying as soon as {@link #add(DataMessage)} returns, but may not survive the
+ * machine going down until then.
+ * <p>
+ * Hashes added with {@link #addHash(MessageId, String, Bytes)} are only cached in memory and are not kept across
+ * restarts.
+ */
+public class FileMessageStore implements MessageStore, AutoCloseable {
+    private static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{20})\\.segment");
+
+    private record Location(Segment segment, int offset) {}
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxAgeMillis;
+    private final long maxBytes;
+    private final Clock clock;
+    private final Map<MessageId, Location> index = new ConcurrentHashMap<>();
+    private final Map<MessageId, Map<String, Bytes>> hashes = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // oldest first; the last segment is the one being appended to
+    private final List<Segment> segments = new ArrayList<>();
+    private long nextSegmentNumber;
+    private boolean closed;
+
+    /**
+     * Opens the store, reading the index back from any segments already in the directory.
+     * @throws UncheckedIOException If the directory or its segments can't be read.
+     */
+    public FileMessageStore(FileMessageStoreOptions options) {
+        this(options, Clock.systemUTC());
+    }
+
+    FileMessageStore(FileMessageStoreOptions options, Clock clock) {
+        this.directory = options.directory();
+        this.segmentBytes = options.segmentBytes().orElse(DEFAULT_SEGMENT_BYTES);
+        this.maxAgeMillis = options.maxAge().map(Duration::toMillis).orElse(Long.MAX_VALUE);
+        this.maxBytes = options.maxBytes().orElse(Long.MAX_VALUE);
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            recover();
+            if(segments.isEmpty() || !appendable(segments.getLast())) {
+                segments.add(newSegment(0));
+            }
+            enforceRetention();
+        } catch(IOException e) {
+            segments.forEach(FileMessageStore::closeQuietly);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void recover() throws IOException {
+        var files = new TreeMap<Long, Path>();
+        try(var paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                var matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if(matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        }
+        for(var file : files.entrySet()) {
+            var offsets = new ArrayList<Integer>();
+            // only the last segment can have room left, so it's the only one worth appending to
+            var segment = Segment.open(file.getValue(), file.getKey().equals(files.lastKey()), offsets::add);
+            segments.add(segment);
+            for(var offset : offsets) {
+                index.put(MessageRecords.messageId(segment.read(offset)), new Location(segment, offset));
+            }
+            nextSegmentNumber = file.getKey() + 1;
+        }
+    }
+
+    // an expired segment would otherwise be kept as the one being written to, and with it all its messages
+    private boolean appendable(Segment segment) {
+        return segment.endsCleanly() && clock.millis() - segment.lastAppendAt() <= maxAgeMillis;
+    }
+
+    private Segment newSegment(int recordBytes) throws IOException {
+        var capacity = Math.max(segmentBytes, Segment.HEADER_BYTES + Segment.RECORD_HEADER_BYTES + recordBytes);
+        var path = directory.resolve(String.format("%020d.segment", nextSegmentNumber));
+        var segment = Segment.create(path, capacity, clock.millis());
+        nextSegmentNumber++;
+        return segment;
+    }
+
+    @Override
+    public void add(DataMessage message) {
+        var record = MessageRecords.encode(message);
+        lock.lock();
+        try {
+            if(closed) {
+                throw new IllegalStateException("Message store is closed");
+            }
+            if(index.containsKey(message.messageId())) {
+                throw new ExistingMessageIdException(message.messageId());
+            }
+            var active = segments.getLast();
+            var now = clock.millis();
+            var offset = active.append(record, now);
+            if(offset < 0) {
+                active.force();
+                active = newSegment(record.remaining());
+                segments.add(active);
+                offset = active.append(record, now);
+                enforceRetention();
+            }
+            index.put(message.messageId(), new Location(active, offset));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<DataMessage> find(MessageId messageId) {
+        var location = index.get(messageId);
+        if(location == null) {
+            return Optional.empty();
+        }
+        // a segment removed by retention after the lookup is still mapped, so this can't read a deleted file
+        return Optional.of(MessageRecords.decode(location.segment().read(location.offset())));
+    }
+
+    @Override
+    public void addHash(MessageId messageId, String algorithm, Bytes hash) {
+        Objects.requireNonNull(algorithm);
+        Objects.requireNonNull(hash);
+        if(index.containsKey(messageId)) {
+            hashes.computeIfAbsent(messageId, id -> new ConcurrentHashMap<>()).put(algorithm, hash);
+        }
+    }
+
+    @Override
+    public Optional<Bytes> findHash(MessageId messageId, String algorithm) {
+        var messageHashes = hashes.get(messageId);
+        if(messageHashes == null || algorithm == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(messageHashes.get(algorithm));
+    }
+
+    /**
+     * Removes the oldest segments that are past the {@link FileMessageStoreOptions#maxAge()} or over the
+     * {@link FileMessageStoreOptions#maxBytes()}. This happens automatically whenever a segment fills up and when the
+     * store is opened, but can also be called to apply the age limit to a store that isn't being written to.
+     * @throws UncheckedIOException If a segment file can't be deleted.
+     */
+    public void enforceRetention() {
+        lock.lock();
+        try {
+            var totalBytes = segments.stream().mapToLong(Segment::capacity).sum();
+            var now = clock.millis();
+            while(segments.size() > 1) {
+                var oldest = segments.getFirst();
+                var expired = now - oldest.lastAppendAt() > maxAgeMillis;
+                if(!expired && totalBytes <= maxBytes) {
+                    break;
+                }
+                segments.removeFirst();
+                totalBytes -= oldest.capacity();
+                drop(oldest);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drop(Segment segment) throws IOException {
+        segment.forEach(offset -> {
+            var messageId = MessageRecords.messageId(segment.read(offset));
+            if(index.remove(messageId, new Location(segment, offset))) {
+                hashes.remove(messageId);
+            }
+        });
+        segment.delete();
+    }
+
+    /**
+     * Writes any buffered messages to disk and closes the segment files. Messages can't be added once the store is
+     * closed.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            for(var segment : segments) {
+                segment.close();
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.close();
+        } catch(IOException ignored) {
+            // already failing to open the store
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Configuration for a {@link FileMessageStore}.
+ * @param directory The directory the store's segment files are kept in. It is created if it doesn't exist.
+ * @param segmentBytes The size of each segment file. A message too large to fit in a segment gets a segment of its own
+ *                     sized to fit it. Defaults to 64 MiB.
+ * @param maxAge How long to keep messages. Messages are removed a whole segment at a time, so a message is kept until
+ *               the newest message in its segment is older than this. Defaults to keeping messages regardless of age.
+ * @param maxBytes The most disk space the segment files may use. Segment files take up their full size from the moment
+ *                 they're created. The oldest segments are removed to get back under this each time a segment fills
+ *                 up, so usage can exceed it by up to a segment in between. Defaults to no limit.
+ */
+public record FileMessageStoreOptions(Path directory, Optional<Integer> segmentBytes, Optional<Duration> maxAge, Optional<Long> maxBytes) {
+    static final int MIN_SEGMENT_BYTES = 1024;
+
+    public FileMessageStoreOptions {
+        Objects.requireNonNull(directory);
+        segmentBytes.ifPresent(bytes -> {
+            if(bytes < MIN_SEGMENT_BYTES) {
+                throw new IllegalArgumentException("segmentBytes must be at least " + MIN_SEGMENT_BYTES);
+            }
+        });
+        maxAge.ifPresent(age -> {
+            if(age.isNegative() || age.isZero()) {
+                throw new IllegalArgumentException("maxAge must be positive");
+            }
+        });
+        maxBytes.ifPresent(bytes -> {
+            if(bytes < 1) {
+                throw new IllegalArgumentException("maxBytes must be positive");
+            }
+        });
+    }
+
+    public FileMessageStoreOptions(Path directory) {
+        this(directory, Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.impl.reputation.ProportionalReputation;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.reputation.ReputationService;
+
+import java.util.Objects;
+
+/**
+ * A {@link ReputationService} that keeps reputations across restarts, so a restarted node still distrusts the peers it
+ * had caught misbehaving.
+ * <p>
+ * Reputations are computed the same way as by
+ * {@link com.github.arobie1992.clarinet.impl.reputation.ProportionalReputationService}, through
+ * {@link ProportionalReputation}. They're kept by a {@link FileAssessmentStore}, which logs each assessment's effect on
+ * reputation in the same record as the assessment itself and rebuilds the reputations when it is opened. That way a
+ * crash can't leave the reputations counting an assessment the store lost or missing one it kept. Use it together with
+ * its store, which the node's saves pass each update through. Updates made any other way would be lost on restart, so
+ * they are rejected.
+ */
+public class FileReputationService implements ReputationService {
+    private final FileAssessmentStore store;
+
+    public FileReputationService(FileAssessmentStore store) {
+        this.store = Objects.requireNonNull(store);
+    }
+
+    /**
+     * @throws IllegalStateException If the update isn't passed in by a save of {@code updated} to the service's store.
+     */
+    @Override
+    public void update(Assessment existing, Assessment updated) {
+        Objects.requireNonNull(updated);
+        if(existing != null) {
+            if(!updated.peerId().equals(existing.peerId())) {
+                throw new IllegalArgumentException("existing and updated refer to different peers");
+            }
+            if(!updated.messageId().equals(existing.messageId())) {
+                throw new IllegalArgumentException("existing and updated refer to different messages");
+            }
+        }
+        store.updateReputation(existing, updated);
+    }
+
+    @Override
+    public double get(PeerId peerId) {
+        return store.reputation(peerId);
+    }
+}
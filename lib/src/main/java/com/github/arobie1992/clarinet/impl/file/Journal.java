@@ -0,0 +1,428 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * A write-ahead log with snapshots that keeps some in-memory state durable.
+ * <p>
+ * Every change to the state is appended as a record. Appends go to a buffer that a background thread writes and syncs
+ * to disk every sync interval, so many changes share one sync. The log is split into numbered generations. Taking a
+ * snapshot starts a new generation and writes the state as of the end of the previous ones, after which the generations
+ * before the previous snapshot are deleted. To recover, the newest snapshot is loaded and the records of every
+ * generation from it on are replayed. If the newest snapshot can't be read, the previous one is loaded instead and the
+ * records from it on are replayed, which the kept generations still cover.
+ * <p>
+ * Files are named {@code <name>-<generation>.wal} and {@code <name>-<generation>.snapshot}, so several journals can
+ * share a directory. Each log file starts with the magic {@code CLJL} and the format version, followed by records that
+ * are each a 4 byte length, the 4 byte CRC32C of the body, and the body. A record that was only partly written when the
+ * process died ends the replay of its file. A snapshot file is the magic {@code CLSN}, the format version, and a single
+ * record holding the whole state.
+ * <p>
+ * The owner must make sure no records are appended while it calls {@link #rotate()} and captures the state for the
+ * snapshot, otherwise the snapshot and the log can disagree.
+ */
+final class Journal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(Journal.class);
+    private static final int LOG_MAGIC = 0x434C4A4C;
+    private static final int SNAPSHOT_MAGIC = 0x434C534E;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final Path directory;
+    private final String name;
+    // guards the log file and the generation
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // guards the pending records
+    private final ReentrantLock bufferLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    // guards the generation of the newest snapshot
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private long snapshotGeneration;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long recordsSinceSnapshot;
+    private FileChannel channel;
+    private long generation;
+    private volatile boolean closed;
+
+    private Journal(Path directory, String name, long generation, long snapshotGeneration, Duration syncInterval) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.generation = generation;
+        this.snapshotGeneration = snapshotGeneration;
+        this.channel = createLog(generation);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name(name + "-journal").factory());
+        var nanos = syncInterval.toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Recovers the state kept in the directory and opens a new generation to append to.
+     * @param snapshot Receives the body of the newest readable snapshot, if there is one.
+     * @param records Receives the body of each record logged since that snapshot, in order.
+     * @throws IOException If there are snapshots but none of them can be read.
+     */
+    static Journal open(Path directory, String name, Duration syncInterval, Consumer<ByteBuffer> snapshot, Consumer<ByteBuffer> records) throws IOException {
+        Files.createDirectories(directory);
+        var pattern = Pattern.compile(Pattern.quote(name) + "-(\\d{20})\\.(wal|snapshot)");
+        var logs = new TreeMap<Long, Path>();
+        var snapshots = new TreeMap<Long, Path>();
+        try(var paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                var matcher = pattern.matcher(path.getFileName().toString());
+                if(matcher.matches()) {
+                    (matcher.group(2).equals("wal") ? logs : snapshots).put(Long.parseLong(matcher.group(1)), path);
+                }
+            });
+        }
+
+        long first = 0;
+        IOException unreadable = null;
+        for(var entry : snapshots.descendingMap().entrySet()) {
+            ByteBuffer state;
+            try {
+                state = readSnapshot(entry.getValue());
+            } catch(IOException e) {
+                log.warn("Skipping unreadable snapshot {}", entry.getValue(), e);
+                if(unreadable == null) {
+                    unreadable = e;
+                } else {
+                    unreadable.addSuppressed(e);
+                }
+                continue;
+            }
+            first = entry.getKey();
+            snapshot.accept(state);
+            unreadable = null;
+            break;
+        }
+        if(unreadable != null) {
+            throw unreadable;
+        }
+        for(var entry : logs.tailMap(first, true).values()) {
+            replay(entry, records);
+        }
+
+        var last = Math.max(logs.isEmpty() ? -1 : logs.lastKey(), snapshots.isEmpty() ? -1 : snapshots.lastKey());
+        var journal = new Journal(directory, name, last + 1, first, syncInterval);
+        // the snapshot before the one loaded stays as the fallback in case the loaded one is damaged later
+        var previous = snapshots.lowerKey(first);
+        journal.deleteBefore(previous == null ? first : previous);
+        return journal;
+    }
+
+    /**
+     * Adds a record to be written at the next sync.
+     * @throws IllegalStateException If the journal is closed.
+     */
+    void append(ByteBuffer body) {
+        var length = body.remaining();
+        var frame = ByteBuffer.allocate(RECORD_HEADER_BYTES + length);
+        frame.putInt(length);
+        frame.putInt(crc(body.duplicate()));
+        frame.put(body.duplicate());
+        bufferLock.lock();
+        try {
+            if(closed) {
+                throw new IllegalStateException("Journal " + name + " is closed");
+            }
+            pending.writeBytes(frame.array());
+            recordsSinceSnapshot++;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of records appended since the last {@link #rotate()}.
+     */
+    long recordsSinceSnapshot() {
+        bufferLock.lock();
+        try {
+            return recordsSinceSnapshot;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Takes a snapshot in the background once enough records have been appended since the last one, unless one is
+     * already underway. Failures are logged rather than thrown since nothing is waiting on the snapshot.
+     * @param every The number of records after which to take a snapshot.
+     * @param snapshot Takes the snapshot, normally through {@link #rotate()} and {@link #writeSnapshot(long, ByteBuffer)}.
+     */
+    void snapshotWhenDue(int every, Runnable snapshot) {
+        if(recordsSinceSnapshot() < every || !snapshotScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                if(!closed) {
+                    snapshot.run();
+                }
+            } catch(RuntimeException e) {
+                log.warn("Failed to snapshot {}", name, e);
+            } finally {
+                snapshotScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes and syncs every record appended so far.
+     * @throws UncheckedIOException If the records can't be written. They are kept to try again on the next sync.
+     */
+    void sync() {
+        writeLock.lock();
+        try {
+            flush();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flush() throws IOException {
+        byte[] bytes;
+        bufferLock.lock();
+        try {
+            bytes = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+        } finally {
+            bufferLock.unlock();
+        }
+        if(bytes.length == 0) {
+            return;
+        }
+        var position = channel.position();
+        try {
+            var buf = ByteBuffer.wrap(bytes);
+            while(buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        } catch(IOException e) {
+            // put the records back ahead of any appended since, and drop whatever part of them made it to the file
+            bufferLock.lock();
+            try {
+                var retry = new ByteArrayOutputStream(bytes.length + pending.size());
+                retry.writeBytes(bytes);
+                retry.writeBytes(pending.toByteArray());
+                pending = retry;
+            } finally {
+                bufferLock.unlock();
+            }
+            channel.truncate(position);
+            channel.position(position);
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            sync();
+        } catch(RuntimeException e) {
+            log.warn("Failed to sync journal {}", name, e);
+        }
+    }
+
+    /**
+     * Syncs the records appended so far and starts a new generation for later records.
+     * @return The new generation, which is the one to pass to {@link #writeSnapshot(long, ByteBuffer)}.
+     */
+    long rotate() {
+        writeLock.lock();
+        try {
+            flush();
+            var next = createLog(generation + 1);
+            channel.close();
+            channel = next;
+            generation++;
+            bufferLock.lock();
+            try {
+                recordsSinceSnapshot = 0;
+            } finally {
+                bufferLock.unlock();
+            }
+            return generation;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Durably writes a snapshot and then deletes the files older than the previous snapshot, which is kept along with
+     * the generations since in case this one can't be read.
+     * @param generation The generation returned by the {@link #rotate()} made when the state was captured.
+     * @param state The state as of the end of the generations before {@code generation}.
+     */
+    void writeSnapshot(long generation, ByteBuffer state) {
+        var path = directory.resolve(fileName(generation, "snapshot"));
+        var temp = directory.resolve(fileName(generation, "snapshot.tmp"));
+        var length = state.remaining();
+        var buf = ByteBuffer.allocate(FILE_HEADER_BYTES + RECORD_HEADER_BYTES + length);
+        buf.putInt(SNAPSHOT_MAGIC).putInt(VERSION).putInt(length).putInt(crc(state.duplicate())).put(state.duplicate()).flip();
+        snapshotLock.lock();
+        try {
+            try(var out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while(buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            var previous = snapshotGeneration;
+            snapshotGeneration = generation;
+            deleteBefore(previous);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void deleteBefore(long generation) throws IOException {
+        var pattern = Pattern.compile(Pattern.quote(name) + "-(\\d{20})\\.(wal|snapshot|snapshot\\.tmp)");
+        try(var paths = Files.list(directory)) {
+            for(var path : (Iterable<Path>) paths::iterator) {
+                var matcher = pattern.matcher(path.getFileName().toString());
+                if(matcher.matches() && (Long.parseLong(matcher.group(1)) < generation || matcher.group(2).endsWith("tmp"))) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the background syncs and syncs whatever is left. Records can't be appended once the journal is closed.
+     */
+    @Override
+    public void close() {
+        bufferLock.lock();
+        try {
+            if(closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            bufferLock.unlock();
+        }
+        flusher.shutdown();
+        writeLock.lock();
+        try {
+            flush();
+            channel.close();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private FileChannel createLog(long generation) throws IOException {
+        var channel = FileChannel.open(directory.resolve(fileName(generation, "wal")), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            var header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(LOG_MAGIC).putInt(VERSION).flip();
+            while(header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            return channel;
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private String fileName(long generation, String extension) {
+        return String.format("%s-%020d.%s", name, generation, extension);
+    }
+
+    private static ByteBuffer readSnapshot(Path path) throws IOException {
+        var buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        if(buf.remaining() < FILE_HEADER_BYTES + RECORD_HEADER_BYTES || buf.getInt() != SNAPSHOT_MAGIC || buf.getInt() != VERSION) {
+            throw new IOException("Not a snapshot file: " + path);
+        }
+        var length = buf.getInt();
+        var crc = buf.getInt();
+        if(length != buf.remaining() || crc(buf.duplicate()) != crc) {
+            throw new IOException("Corrupt snapshot file: " + path);
+        }
+        return buf.slice();
+    }
+
+    private static void replay(Path path, Consumer<ByteBuffer> records) throws IOException {
+        try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var size = channel.size();
+            if(size < FILE_HEADER_BYTES) {
+                // died while creating the file
+                return;
+            }
+            var buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if(buf.getInt() != LOG_MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Not a journal file: " + path);
+            }
+            while(buf.remaining() >= RECORD_HEADER_BYTES) {
+                var length = buf.getInt();
+                var crc = buf.getInt();
+                if(length < 0 || length > buf.remaining()) {
+                    break;
+                }
+                var body = buf.slice(buf.position(), length);
+                if(crc(body.duplicate()) != crc) {
+                    break;
+                }
+                records.accept(body.asReadOnlyBuffer());
+                buf.position(buf.position() + length);
+            }
+        }
+    }
+
+    private static int crc(ByteBuffer bytes) {
+        var crc = new CRC32C();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    static void putString(ByteBuffer buf, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    static String getString(ByteBuffer buf) {
+        var bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int stringBytes(String value) {
+        return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
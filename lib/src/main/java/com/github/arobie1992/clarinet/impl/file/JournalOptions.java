@@ -0,0 +1,45 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.peer.PeerId;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Configuration for the journal that keeps a {@link FileAssessmentStore}, and the reputations of any
+ * {@link FileReputationService} built on it, durable.
+ * @param directory The directory the journal's files are kept in. It is created if it doesn't exist.
+ * @param syncInterval How often changes are synced to disk. Every change made in an interval is synced together, so a
+ *                     crash loses at most about this much of the most recent changes. Defaults to 50 milliseconds.
+ * @param snapshotEvery The number of changes after which a snapshot is taken, which bounds how much has to be replayed
+ *                      on startup. Defaults to 100,000.
+ * @param peerIdParser Turns the {@link PeerId#asString()} of the peers in the journal back into {@code PeerId}s when
+ *                     recovering. Defaults to creating a {@link com.github.arobie1992.clarinet.impl.peer.StringPeerId}.
+ */
+public record JournalOptions(
+        Path directory,
+        Optional<Duration> syncInterval,
+        Optional<Integer> snapshotEvery,
+        Optional<Function<String, PeerId>> peerIdParser
+) {
+    public JournalOptions {
+        Objects.requireNonNull(directory);
+        syncInterval.ifPresent(interval -> {
+            if(interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("syncInterval must be positive");
+            }
+        });
+        snapshotEvery.ifPresent(count -> {
+            if(count < 1) {
+                throw new IllegalArgumentException("snapshotEvery must be positive");
+            }
+        });
+    }
+
+    public JournalOptions(Path directory) {
+        this(directory, Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.MessageId;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * The binary encoding of a {@link DataMessage} in a {@link Segment}:
+ * <ul>
+ *     <li>the connection ID as its most and least significant UUID bits, each an 8 byte long</li>
+ *     <li>the sequence number as an 8 byte long</li>
+ *     <li>the data, sender signature, and witness signature, each as a 4 byte length followed by the bytes. Absent
+ *     signatures have a length of {@code -1}.</li>
+ * </ul>
+ * All numbers are big-endian.
+ */
+final class MessageRecords {
+    private static final int ID_BYTES = 3 * Long.BYTES;
+    private static final int ABSENT = -1;
+
+    private MessageRecords() {}
+
+    static ByteBuffer encode(DataMessage message) {
+        var data = message.data();
+        var senderSignature = message.senderSignature().orElse(null);
+        var witnessSignature = message.witnessSignature().orElse(null);
+        var buf = ByteBuffer.allocate(ID_BYTES + 3 * Integer.BYTES + length(data) + length(senderSignature) + length(witnessSignature));
+        var uuid = message.messageId().connectionId().asUUID();
+        buf.putLong(uuid.getMostSignificantBits());
+        buf.putLong(uuid.getLeastSignificantBits());
+        buf.putLong(message.messageId().sequenceNumber());
+        put(buf, data);
+        put(buf, senderSignature);
+        put(buf, witnessSignature);
+        return buf.flip();
+    }
+
+    static MessageId messageId(ByteBuffer record) {
+        var connectionId = ConnectionId.fromUUID(new UUID(record.getLong(0), record.getLong(Long.BYTES)));
+        return new MessageId(connectionId, record.getLong(2 * Long.BYTES));
+    }
+
+    static DataMessage decode(ByteBuffer record) {
+        var buf = record.duplicate().position(ID_BYTES);
+        var message = new DataMessage(messageId(record), get(buf));
+        var senderSignature = get(buf);
+        if(senderSignature != null) {
+            message.setSenderSignature(senderSignature);
+        }
+        var witnessSignature = get(buf);
+        if(witnessSignature != null) {
+            message.setWitnessSignature(witnessSignature);
+        }
+        return message;
+    }
+
+    private static int length(Bytes bytes) {
+        return bytes == null ? 0 : bytes.length();
+    }
+
+    private static void put(ByteBuffer buf, Bytes bytes) {
+        if(bytes == null) {
+            buf.putInt(ABSENT);
+        } else {
+            buf.putInt(bytes.length());
+            buf.put(bytes.asReadOnlyBuffer());
+        }
+    }
+
+    private static Bytes get(ByteBuffer buf) {
+        var length = buf.getInt();
+        if(length == ABSENT) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buf.get(bytes);
+        return Bytes.wrap(bytes);
+    }
+}
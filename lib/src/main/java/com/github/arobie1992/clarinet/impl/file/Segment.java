@@ -0,0 +1,207 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of a {@link FileMessageStore}'s log. The whole file is mapped into memory when it is opened.
+ * <p>
+ * The file starts with a 16 byte header: the magic {@code CLSG}, the format version, and the time the segment was
+ * created in milliseconds since the epoch. Records follow, each a 4 byte length of the body, the 4 byte CRC32C of the
+ * rest of the record, the time the record was appended as an 8 byte count of milliseconds since the epoch, and the
+ * body. A length of zero marks the end of the records. The length is written last, so a record that was only partly
+ * written when the process died reads as the end of the segment.
+ * <p>
+ * Appends must not happen concurrently with each other, but reads are safe from any thread.
+ */
+final class Segment {
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    private static final int CRC_OFFSET = Integer.BYTES;
+    private static final int TIME_OFFSET = 2 * Integer.BYTES;
+    private static final int MAGIC = 0x434C5347;
+    private static final int VERSION = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int size;
+    private volatile long lastAppendAt;
+
+    private Segment(Path path, FileChannel channel, MappedByteBuffer buffer, long createdAt) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.size = HEADER_BYTES;
+        this.lastAppendAt = createdAt;
+    }
+
+    /**
+     * Creates a new, empty segment that records can be appended to.
+     * @param path The file to create. It must not already exist.
+     * @param capacity The size of the file, which limits how many records fit.
+     * @param createdAt The current time in milliseconds since the epoch.
+     */
+    static Segment create(Path path, int capacity, long createdAt) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(Integer.BYTES, VERSION);
+            buffer.putLong(2 * Integer.BYTES, createdAt);
+            return new Segment(path, channel, buffer, createdAt);
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing segment and finds the end of its records.
+     * @param path The segment's file.
+     * @param writable Whether records may be appended after the ones already in the segment.
+     * @param records Receives the offset of each intact record in order.
+     */
+    static Segment open(Path path, boolean writable, IntConsumer records) throws IOException {
+        var channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            var length = channel.size();
+            if(length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            var buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, length);
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Not a segment file: " + path);
+            }
+            var segment = new Segment(path, channel, buffer, buffer.getLong(2 * Integer.BYTES));
+            segment.scan(offset -> {
+                segment.size = offset + RECORD_HEADER_BYTES + buffer.getInt(offset);
+                segment.lastAppendAt = Math.max(segment.lastAppendAt, buffer.getLong(offset + TIME_OFFSET));
+                records.accept(offset);
+            });
+            return segment;
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a record.
+     * @param body The record body, from its position to its limit. Its position is not changed.
+     * @param now The current time in milliseconds since the epoch.
+     * @return The offset of the record, or {@code -1} if there is not enough room left in the segment.
+     */
+    int append(ByteBuffer body, long now) {
+        var offset = size;
+        var length = body.remaining();
+        if(length == 0 || (long) offset + RECORD_HEADER_BYTES + length > buffer.capacity()) {
+            return -1;
+        }
+        buffer.putLong(offset + TIME_OFFSET, now);
+        buffer.put(offset + RECORD_HEADER_BYTES, body, body.position(), length);
+        buffer.putInt(offset + CRC_OFFSET, crc(offset, length));
+        buffer.putInt(offset, length);
+        size = offset + RECORD_HEADER_BYTES + length;
+        lastAppendAt = Math.max(lastAppendAt, now);
+        return offset;
+    }
+
+    /**
+     * @param offset The offset of a record as returned by {@link #append(ByteBuffer, long)} or reported when the segment was
+     *               opened.
+     * @return A read-only view of the record's body.
+     */
+    ByteBuffer read(int offset) {
+        return buffer.slice(offset + RECORD_HEADER_BYTES, buffer.getInt(offset)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Reports the offset of every record in the segment in order.
+     */
+    void forEach(IntConsumer records) {
+        scan(records);
+    }
+
+    private int crc(int offset, int length) {
+        var crc = new CRC32C();
+        crc.update(buffer.slice(offset + TIME_OFFSET, Long.BYTES + length));
+        return (int) crc.getValue();
+    }
+
+    private void scan(IntConsumer records) {
+        var offset = HEADER_BYTES;
+        while(offset <= buffer.capacity() - RECORD_HEADER_BYTES) {
+            var length = buffer.getInt(offset);
+            if(length <= 0 || length > buffer.capacity() - offset - RECORD_HEADER_BYTES) {
+                break;
+            }
+            if(crc(offset, length) != buffer.getInt(offset + CRC_OFFSET)) {
+                break;
+            }
+            records.accept(offset);
+            offset += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * @return The number of bytes in use, including the header.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The size of the file.
+     */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return Whether the records end with the zero length that marks the end rather than a record that was only partly
+     * written. Appending after a partly written record could leave the rest of it to be read back as a record.
+     */
+    boolean endsCleanly() {
+        return size > buffer.capacity() - Integer.BYTES || buffer.getInt(size) == 0;
+    }
+
+    /**
+     * @return The time the newest record was appended, or the time the segment was created if it has no records, in
+     * milliseconds since the epoch.
+     */
+    long lastAppendAt() {
+        return lastAppendAt;
+    }
+
+    /**
+     * Writes appended records through to the file.
+     */
+    void force() {
+        if(!buffer.isReadOnly()) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Closes the file. Records already read stay valid, and the mapping itself is released once nothing references it.
+     */
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+}
@@ -1,49 +1,215 @@
 package com.github.arobie1992.clarinet.impl.inmemory;
 
+import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
 import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.reputation.Assessment;
 import com.github.arobie1992.clarinet.reputation.AssessmentStore;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
+/**
+ * An {@link AssessmentStore} that keeps assessments on the heap. Assessments are kept forever unless the store is given
+ * a {@link RetentionPolicy}, in which case {@link #sweep()} must be called periodically, for example with a
+ * {@link RetentionSweeper}, to apply the policy's age and count limits.
+ * <p>
+ * {@link #find(PeerId, MessageId)} doesn't persist the {@link Assessment.Status#NONE} default it returns for messages
+ * that haven't been assessed, so the store only grows with assessments that are actually saved. Each is kept as its
+ * status under a key made of small ordinals for its peer and connection plus the message's sequence number, rather than
+ * holding on to the IDs themselves. A peer or connection's ordinal is dropped along with its last assessment.
+ * <p>
+ * An assessment's effect on reputation has already been applied by the time it could be evicted, so an assessment
+ * evicted for its age or the count limits leaves its final status behind under its key. Later saves for the message are
+ * applied against that status rather than counted again, and {@link #find(PeerId, MessageId)} still returns it; only
+ * the bookkeeping for the retention limits is freed. When the policy evicts on connection close, the connection's
+ * assessments and leftover statuses are dropped entirely and later saves for its messages are ignored.
+ */
 public class InMemoryAssessmentStore implements AssessmentStore {
 
-    private record ID(PeerId peerId, MessageId messageId) {
-        private ID {
-            Objects.requireNonNull(peerId);
-            Objects.requireNonNull(messageId);
-        }
+    private record Key(int peer, int connection, long sequenceNumber) {}
+
+    // the ticket stays with the slot across updates so eviction can tell it apart from a later slot for the same key
+    private record Slot(Assessment.Status status, RetentionTracker.Ticket<Key> ticket) {}
+
+    private final Ordinals<PeerId> peers = new Ordinals<>();
+    private final Ordinals<ConnectionId> connections = new Ordinals<>();
+    private final Map<Key, Slot> assessments = new ConcurrentHashMap<>();
+    // the final statuses of evicted assessments by connection ordinal, each still holding its ordinals
+    private final Map<Integer, Map<Key, Assessment.Status>> evicted = new ConcurrentHashMap<>();
+    private final Set<ConnectionId> closed = ConcurrentHashMap.newKeySet();
+    private final boolean evictOnConnectionClose;
+    private final RetentionTracker<Key> retention;
+
+    public InMemoryAssessmentStore() {
+        this(new RetentionPolicy());
+    }
+
+    public InMemoryAssessmentStore(RetentionPolicy retentionPolicy) {
+        this(retentionPolicy, System::nanoTime);
     }
 
-    private final Map<ID, Assessment> assessments = new ConcurrentHashMap<>();
+    InMemoryAssessmentStore(RetentionPolicy retentionPolicy, LongSupplier nanoClock) {
+        Objects.requireNonNull(retentionPolicy);
+        this.evictOnConnectionClose = retentionPolicy.evictOnConnectionClose().orElse(false);
+        this.retention = new RetentionTracker<>(retentionPolicy, assessments::size, this::evict, nanoClock);
+    }
 
     @Override
     public boolean save(Assessment assessment, ReputationCallback reputationCallback) {
         final AtomicBoolean persisted = new AtomicBoolean(false);
-        assessments.compute(new ID(assessment.peerId(), assessment.messageId()), (id, existing) -> {
-            if(existing == null) {
-                reputationCallback.update(null, assessment);
-                persisted.set(true);
-                return assessment;
+        final AtomicBoolean added = new AtomicBoolean(false);
+        var connectionId = assessment.messageId().connectionId();
+        if(closed.contains(connectionId)) {
+            return false;
+        }
+        // the ordinals are acquired up front so they can't be dropped before the assessment is in place
+        var key = new Key(peers.acquire(assessment.peerId()), connections.acquire(connectionId), assessment.messageId().sequenceNumber());
+        var ticket = retention.issue(key, connectionId);
+        Slot slot;
+        try {
+            slot = assessments.compute(key, (k, existing) -> {
+                if(existing == null) {
+                    if(saveEvicted(k, assessment, reputationCallback, persisted)) {
+                        return null;
+                    }
+                    reputationCallback.update(null, assessment);
+                    persisted.set(true);
+                    added.set(true);
+                    return new Slot(assessment.status(), ticket);
+                }
+                boolean persist = assessment.status().comparePriority(existing.status()) >= 0;
+                if(persist) {
+                    reputationCallback.update(new Assessment(assessment.peerId(), assessment.messageId(), existing.status()), assessment);
+                    persisted.set(true);
+                    return new Slot(assessment.status(), existing.ticket());
+                }
+                return existing;
+            });
+        } finally {
+            if(!added.get()) {
+                release(key);
             }
-            boolean persist = assessment.status().comparePriority(existing.status()) >= 0;
-            if(persist) {
-                reputationCallback.update(existing, assessment);
-                persisted.set(true);
-                return assessment;
+        }
+        if(slot != null && slot.ticket() == ticket) {
+            retention.track(ticket);
+            // the connection closed after the check above, so evict what its close missed
+            if(closed.contains(connectionId)) {
+                retention.connectionClosed(connectionId);
             }
-            return existing;
-        });
+        }
         return persisted.get();
     }
 
+    /**
+     * Applies {@code assessment} against the final status left behind by an evicted assessment for the same key.
+     * @return Whether there was such a status.
+     */
+    private boolean saveEvicted(Key key, Assessment assessment, ReputationCallback reputationCallback, AtomicBoolean persisted) {
+        var found = new AtomicBoolean(false);
+        evicted.computeIfPresent(key.connection(), (connection, statuses) -> {
+            statuses.computeIfPresent(key, (k, existing) -> {
+                found.set(true);
+                if(assessment.status().comparePriority(existing) < 0) {
+                    return existing;
+                }
+                reputationCallback.update(new Assessment(assessment.peerId(), assessment.messageId(), existing), assessment);
+                persisted.set(true);
+                return assessment.status();
+            });
+            return statuses;
+        });
+        return found.get();
+    }
+
     @Override
     public Assessment find(PeerId peerId, MessageId messageId) {
-        return assessments.computeIfAbsent(new ID(peerId, messageId), k -> new Assessment(peerId, messageId, Assessment.Status.NONE));
+        var peer = peers.find(peerId);
+        var connection = connections.find(messageId.connectionId());
+        if(peer == null || connection == null) {
+            return new Assessment(peerId, messageId, Assessment.Status.NONE);
+        }
+        var key = new Key(peer, connection, messageId.sequenceNumber());
+        var slot = assessments.get(key);
+        if(slot != null) {
+            return new Assessment(peerId, messageId, slot.status());
+        }
+        var statuses = evicted.get(connection);
+        var status = statuses == null ? null : statuses.get(key);
+        return new Assessment(peerId, messageId, status == null ? Assessment.Status.NONE : status);
+    }
+
+    @Override
+    public void connectionClosed(ConnectionId connectionId) {
+        if(!evictOnConnectionClose) {
+            return;
+        }
+        // marked first so that neither saves nor evictions leave anything behind for the connection
+        closed.add(connectionId);
+        retention.connectionClosed(connectionId);
+        var connection = connections.find(connectionId);
+        var statuses = connection == null ? null : evicted.remove(connection);
+        if(statuses != null) {
+            statuses.keySet().forEach(this::release);
+        }
+    }
+
+    /**
+     * Removes the assessments that are past the {@link RetentionPolicy#maxAge()} or over the
+     * {@link RetentionPolicy#maxCount()}, oldest first.
+     */
+    public void sweep() {
+        retention.sweep();
+    }
+
+    private boolean evict(RetentionTracker.Ticket<Key> ticket) {
+        var removed = new AtomicBoolean(false);
+        var kept = new AtomicBoolean(false);
+        assessments.computeIfPresent(ticket.key(), (key, slot) -> {
+            if(slot.ticket() != ticket) {
+                return slot;
+            }
+            removed.set(true);
+            kept.set(keepStatus(key, slot.status(), ticket.connectionId()));
+            return null;
+        });
+        if(removed.get() && !kept.get()) {
+            release(ticket.key());
+        }
+        return removed.get();
+    }
+
+    /**
+     * Leaves an evicted assessment's status behind unless its connection has closed.
+     * @return Whether the status was kept, in which case it keeps the key's ordinals.
+     */
+    private boolean keepStatus(Key key, Assessment.Status status, ConnectionId connectionId) {
+        var kept = new AtomicBoolean(false);
+        // checked under the connection's entry so a close can't remove the statuses between the check and the put
+        evicted.compute(key.connection(), (connection, statuses) -> {
+            if(closed.contains(connectionId)) {
+                return statuses;
+            }
+            statuses = statuses == null ? new ConcurrentHashMap<>() : statuses;
+            statuses.put(key, status);
+            kept.set(true);
+            return statuses;
+        });
+        return kept.get();
+    }
+
+    private void release(Key key) {
+        peers.release(key.peer());
+        connections.release(key.connection());
+    }
+
+    int ordinals() {
+        return peers.size() + connections.size();
     }
 
 }
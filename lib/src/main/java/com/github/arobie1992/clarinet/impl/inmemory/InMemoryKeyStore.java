@@ -1,56 +1,89 @@
 package com.github.arobie1992.clarinet.impl.inmemory;
 
+import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.crypto.*;
 import com.github.arobie1992.clarinet.peer.PeerId;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
+/**
+ * Keys are looked up far more often than they are added, so each peer's keys are kept in immutable snapshots that are
+ * replaced on add. Lookups return the snapshot as is rather than copying it.
+ */
 public class InMemoryKeyStore implements KeyStore {
-    private final Map<PeerId, Collection<PrivateKey>> privKeys = new ConcurrentHashMap<>();
-    private final Map<PeerId, Collection<PublicKey>> pubKeys = new ConcurrentHashMap<>();
+    private record PrivateKeys(List<PrivateKey> keys, Map<PrivateKey, Bytes> fingerprints) {
+        private static final PrivateKeys EMPTY = new PrivateKeys(List.of(), Map.of());
+
+        PrivateKeys with(PrivateKey key, Bytes fingerprint) {
+            var fingerprints = this.fingerprints;
+            if(fingerprint != null) {
+                var updated = new HashMap<>(fingerprints);
+                updated.put(key, fingerprint);
+                fingerprints = Collections.unmodifiableMap(updated);
+            }
+            return new PrivateKeys(append(keys, key), fingerprints);
+        }
+    }
+
+    private record PublicKeys(List<PublicKey> keys, Map<Bytes, PublicKey> byFingerprint) {
+        private static final PublicKeys EMPTY = new PublicKeys(List.of(), Map.of());
+
+        PublicKeys with(PublicKey key, Bytes fingerprint) {
+            var byFingerprint = new HashMap<>(this.byFingerprint);
+            byFingerprint.putIfAbsent(fingerprint, key);
+            return new PublicKeys(append(keys, key), Collections.unmodifiableMap(byFingerprint));
+        }
+    }
+
+    private final Map<PeerId, PrivateKeys> privKeys = new ConcurrentHashMap<>();
+    private final Map<PeerId, PublicKeys> pubKeys = new ConcurrentHashMap<>();
     private final List<KeyProvider> keyProviders = new ArrayList<>();
 
     @Override
     public void addKeyPair(PeerId peerId, KeyPair keyPair) {
-        addPrivateKey(peerId, keyPair.privateKey());
-        addPublicKey(peerId, keyPair.publicKey());
+        var fingerprint = keyPair.publicKey().fingerprint();
+        addPrivateKey(peerId, keyPair.privateKey(), fingerprint);
+        addPublicKey(peerId, keyPair.publicKey(), fingerprint);
     }
 
     @Override
     public void addPrivateKey(PeerId peerId, PrivateKey privateKey) {
-        privKeys.compute(peerId, (k, existing) -> {
-            if (existing == null) {
-                existing = new ArrayList<>();
-            }
-            existing.add(privateKey);
-            return existing;
-        });
+        addPrivateKey(peerId, privateKey, null);
+    }
+
+    private void addPrivateKey(PeerId peerId, PrivateKey privateKey, Bytes fingerprint) {
+        privKeys.compute(peerId, (k, existing) -> (existing == null ? PrivateKeys.EMPTY : existing).with(privateKey, fingerprint));
     }
 
     @Override
     public Collection<PrivateKey> findPrivateKeys(PeerId peerId) {
-        return List.copyOf(privKeys.computeIfAbsent(peerId, k -> new ArrayList<>()));
+        return privKeys.getOrDefault(peerId, PrivateKeys.EMPTY).keys();
+    }
+
+    @Override
+    public Optional<Bytes> findFingerprint(PeerId peerId, PrivateKey privateKey) {
+        return Optional.ofNullable(privKeys.getOrDefault(peerId, PrivateKeys.EMPTY).fingerprints().get(privateKey));
     }
 
     @Override
     public void addPublicKey(PeerId peerId, PublicKey publicKey) {
-        pubKeys.compute(peerId, (k, existing) -> {
-            if (existing == null) {
-                existing = new ArrayList<>();
-            }
-            existing.add(publicKey);
-            return existing;
-        });
+        addPublicKey(peerId, publicKey, publicKey.fingerprint());
+    }
+
+    private void addPublicKey(PeerId peerId, PublicKey publicKey, Bytes fingerprint) {
+        pubKeys.compute(peerId, (k, existing) -> (existing == null ? PublicKeys.EMPTY : existing).with(publicKey, fingerprint));
     }
 
     @Override
     public Collection<PublicKey> findPublicKeys(PeerId peerId) {
-        return List.copyOf(pubKeys.computeIfAbsent(peerId, k -> new ArrayList<>()));
+        return pubKeys.getOrDefault(peerId, PublicKeys.EMPTY).keys();
+    }
+
+    @Override
+    public Optional<PublicKey> findPublicKey(PeerId peerId, Bytes fingerprint) {
+        return Optional.ofNullable(pubKeys.getOrDefault(peerId, PublicKeys.EMPTY).byFingerprint().get(fingerprint));
     }
 
     @Override
@@ -62,4 +95,11 @@ public class InMemoryKeyStore implements KeyStore {
     public Stream<KeyProvider> providers() {
         return keyProviders.stream();
     }
+
+    private static <T> List<T> append(List<T> list, T element) {
+        var appended = new ArrayList<T>(list.size() + 1);
+        appended.addAll(list);
+        appended.add(element);
+        return Collections.unmodifiableList(appended);
+    }
 }
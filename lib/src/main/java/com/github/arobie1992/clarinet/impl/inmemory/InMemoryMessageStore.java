@@ -1,33 +1,97 @@
 package com.github.arobie1992.clarinet.impl.inmemory;
 
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.ExistingMessageIdException;
 import com.github.arobie1992.clarinet.message.MessageId;
 import com.github.arobie1992.clarinet.message.MessageStore;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
 
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
 
+/**
+ * A {@link MessageStore} that keeps messages on the heap. Messages are kept forever unless the store is given a
+ * {@link RetentionPolicy}, in which case {@link #sweep()} must be called periodically, for example with a
+ * {@link RetentionSweeper}, to apply the policy's age and count limits.
+ */
 public class InMemoryMessageStore implements MessageStore {
-    private final ConcurrentHashMap<MessageId, DataMessage> messages = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MessageId, Entry> messages = new ConcurrentHashMap<>();
+    private final RetentionTracker<MessageId> retention;
+
+    private record Entry(DataMessage message, ConcurrentHashMap<String, Bytes> hashes, RetentionTracker.Ticket<MessageId> ticket) {}
+
+    public InMemoryMessageStore() {
+        this(new RetentionPolicy());
+    }
+
+    public InMemoryMessageStore(RetentionPolicy retentionPolicy) {
+        this(retentionPolicy, System::nanoTime);
+    }
+
+    InMemoryMessageStore(RetentionPolicy retentionPolicy, LongSupplier nanoClock) {
+        this.retention = new RetentionTracker<>(Objects.requireNonNull(retentionPolicy), messages::size, this::evict, nanoClock);
+    }
 
     @Override
     public void add(DataMessage message) {
+        var ticket = retention.issue(message.messageId(), message.messageId().connectionId());
         messages.compute(message.messageId(), (id, existing) -> {
             if (existing != null) {
                 throw new ExistingMessageIdException(message.messageId());
             }
-            return copy(message);
+            return new Entry(copy(message), new ConcurrentHashMap<>(), ticket);
         });
+        retention.track(ticket);
     }
 
     @Override
     public Optional<DataMessage> find(MessageId messageId) {
-        var message = messages.get(messageId);
-        if (message == null) {
+        var entry = messages.get(messageId);
+        if (entry == null) {
             return Optional.empty();
         }
-        return Optional.of(copy(message));
+        return Optional.of(copy(entry.message()));
+    }
+
+    @Override
+    public void addHash(MessageId messageId, String algorithm, Bytes hash) {
+        Objects.requireNonNull(algorithm);
+        Objects.requireNonNull(hash);
+        var entry = messages.get(messageId);
+        if (entry != null) {
+            entry.hashes().put(algorithm, hash);
+        }
+    }
+
+    @Override
+    public Optional<Bytes> findHash(MessageId messageId, String algorithm) {
+        var entry = messages.get(messageId);
+        if (entry == null || algorithm == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(entry.hashes().get(algorithm));
+    }
+
+    @Override
+    public void connectionClosed(ConnectionId connectionId) {
+        retention.connectionClosed(connectionId);
+    }
+
+    /**
+     * Removes the messages that are past the {@link RetentionPolicy#maxAge()} or over the
+     * {@link RetentionPolicy#maxCount()}, oldest first.
+     */
+    public void sweep() {
+        retention.sweep();
+    }
+
+    private boolean evict(RetentionTracker.Ticket<MessageId> ticket) {
+        var entry = messages.get(ticket.key());
+        return entry != null && entry.ticket() == ticket && messages.remove(ticket.key(), entry);
     }
 
     private DataMessage copy(DataMessage message) {
@@ -0,0 +1,69 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out small ordinals for IDs so a store can key its entries by them rather than holding on to the IDs, and forgets
+ * an ID once none of the store's entries use its ordinal.
+ * <p>
+ * Each entry stored under an ordinal is counted by the {@link #acquire(Object)} that returned it and uncounted by a
+ * {@link #release(int)} once the entry is gone. An ordinal is never handed out again after it's forgotten, so an ID
+ * that comes back gets a new one and can't be confused with entries stored under the old one.
+ */
+final class Ordinals<K> {
+
+    private record Ordinal(int value, int entries) {}
+
+    private final Map<K, Ordinal> ordinals = new ConcurrentHashMap<>();
+    private final Map<Integer, K> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Counts an entry for the ID, giving it an ordinal if it doesn't have one.
+     * @return The ID's ordinal.
+     */
+    int acquire(K id) {
+        return ordinals.compute(id, (k, ordinal) -> {
+            if(ordinal == null) {
+                var value = next.getAndIncrement();
+                ids.put(value, k);
+                return new Ordinal(value, 1);
+            }
+            return new Ordinal(ordinal.value(), ordinal.entries() + 1);
+        }).value();
+    }
+
+    /**
+     * Uncounts an entry stored under the ordinal, forgetting the ordinal if it was the last one.
+     */
+    void release(int value) {
+        var id = ids.get(value);
+        if(id == null) {
+            return;
+        }
+        ordinals.computeIfPresent(id, (k, ordinal) -> {
+            if(ordinal.value() != value) {
+                return ordinal;
+            }
+            if(ordinal.entries() > 1) {
+                return new Ordinal(value, ordinal.entries() - 1);
+            }
+            ids.remove(value);
+            return null;
+        });
+    }
+
+    /**
+     * @return The ID's ordinal, or {@code null} if none of the store's entries use it.
+     */
+    Integer find(K id) {
+        var ordinal = ordinals.get(id);
+        return ordinal == null ? null : ordinal.value();
+    }
+
+    int size() {
+        return ordinals.size();
+    }
+}
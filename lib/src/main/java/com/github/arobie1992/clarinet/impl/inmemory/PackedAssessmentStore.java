@@ -0,0 +1,251 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.reputation.AssessmentStore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link AssessmentStore} for nodes that assess many messages, which keeps each assessment as a single byte.
+ * <p>
+ * Peers and connections are given small ordinals the first time one of their assessments is saved. Statuses are kept
+ * in pages, each covering a run of {@value #PAGE_SIZE} consecutive sequence numbers for one peer and connection. A page
+ * starts out holding only the sequence numbers that have been assessed and becomes a fixed array of bytes once it holds
+ * {@value #SPARSE_MAX} of them. Since sequence numbers within a connection are dense, most pages end up as arrays whose
+ * overhead is spread across hundreds of assessments, while scattered sequence numbers, whether sparse or chosen by a
+ * hostile peer, cost a few bytes each rather than a whole array apiece.
+ * <p>
+ * Reads take no locks. Saves lock one of a fixed set of stripes chosen by page. The lock is held while
+ * {@link ReputationCallback} runs, so callbacks for the same assessment happen in the order its status changed. The
+ * cost is that a slow callback also holds up saves to every other page on its stripe, which with many connections
+ * means unrelated peers and connections, so callbacks should stay as cheap as an in-memory reputation update.
+ * Like {@link InMemoryAssessmentStore}, {@link #find(PeerId, MessageId)} doesn't persist the default it returns.
+ * <p>
+ * Of the {@link RetentionPolicy} limits, only {@link RetentionPolicy#evictOnConnectionClose()} is supported. With it
+ * set, closing a connection drops its pages, later saves for its messages are ignored, and a peer or connection's
+ * ordinal is dropped along with its last page. Otherwise assessments are never evicted.
+ */
+public class PackedAssessmentStore implements AssessmentStore {
+    private static final int PAGE_BITS = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int SPARSE_MAX = 32;
+    private static final int STRIPES = 64;
+    private static final VarHandle STATUSES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final Assessment.Status[] STATUS_VALUES = Assessment.Status.values();
+    // 0 marks a sequence number with no assessment, so statuses are stored as their ordinal plus one
+    private static final byte ABSENT = 0;
+
+    private record PageKey(int peer, int connection, long page) {}
+
+    private sealed interface Page permits SparsePage, DensePage {
+        byte get(int index);
+    }
+
+    /**
+     * The assessed sequence numbers of a page and their statuses. It is replaced rather than modified, so readers always
+     * see a consistent copy.
+     */
+    private record SparsePage(byte[] indexes, byte[] statuses) implements Page {
+        private static final SparsePage EMPTY = new SparsePage(new byte[0], new byte[0]);
+
+        @Override
+        public byte get(int index) {
+            for(int i = 0; i < indexes.length; i++) {
+                if(Byte.toUnsignedInt(indexes[i]) == index) {
+                    return statuses[i];
+                }
+            }
+            return ABSENT;
+        }
+
+        Page with(int index, byte status) {
+            for(int i = 0; i < indexes.length; i++) {
+                if(Byte.toUnsignedInt(indexes[i]) == index) {
+                    var updated = statuses.clone();
+                    updated[i] = status;
+                    return new SparsePage(indexes, updated);
+                }
+            }
+            if(indexes.length < SPARSE_MAX) {
+                var grownIndexes = Arrays.copyOf(indexes, indexes.length + 1);
+                var grownStatuses = Arrays.copyOf(statuses, statuses.length + 1);
+                grownIndexes[indexes.length] = (byte) index;
+                grownStatuses[statuses.length] = status;
+                return new SparsePage(grownIndexes, grownStatuses);
+            }
+            var dense = new byte[PAGE_SIZE];
+            for(int i = 0; i < indexes.length; i++) {
+                dense[Byte.toUnsignedInt(indexes[i])] = statuses[i];
+            }
+            dense[index] = status;
+            return new DensePage(dense);
+        }
+    }
+
+    private record DensePage(byte[] statuses) implements Page {
+        @Override
+        public byte get(int index) {
+            return (byte) STATUSES.getVolatile(statuses, index);
+        }
+    }
+
+    private final boolean evictOnConnectionClose;
+    private final Ordinals<PeerId> peers = new Ordinals<>();
+    private final Ordinals<ConnectionId> connections = new Ordinals<>();
+    private final Map<PageKey, Page> pages = new ConcurrentHashMap<>();
+    // only tracked when evicting on close
+    private final Map<Integer, Set<PageKey>> pagesByConnection = new ConcurrentHashMap<>();
+    private final Set<ConnectionId> closed = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public PackedAssessmentStore() {
+        this(new RetentionPolicy());
+    }
+
+    /**
+     * @throws IllegalArgumentException If the policy sets any limit other than
+     * {@link RetentionPolicy#evictOnConnectionClose()}.
+     */
+    public PackedAssessmentStore(RetentionPolicy retentionPolicy) {
+        Objects.requireNonNull(retentionPolicy);
+        if(retentionPolicy.maxAge().isPresent() || retentionPolicy.maxCount().isPresent() || retentionPolicy.maxPerConnection().isPresent()) {
+            throw new IllegalArgumentException("Only evictOnConnectionClose is supported");
+        }
+        this.evictOnConnectionClose = retentionPolicy.evictOnConnectionClose().orElse(false);
+        for(int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public boolean save(Assessment assessment, ReputationCallback reputationCallback) {
+        var messageId = assessment.messageId();
+        if(closed.contains(messageId.connectionId())) {
+            return false;
+        }
+        var index = (int) (messageId.sequenceNumber() & (PAGE_SIZE - 1));
+        // the ordinals are acquired up front for a new page so they can't be dropped before it is in place
+        var key = new PageKey(
+                peers.acquire(assessment.peerId()),
+                connections.acquire(messageId.connectionId()),
+                messageId.sequenceNumber() >> PAGE_BITS
+        );
+        var added = false;
+        var stripe = stripe(key);
+        stripe.lock();
+        try {
+            // a close marks the connection before taking any stripe, so one that missed this page is still to come
+            if(closed.contains(messageId.connectionId())) {
+                return false;
+            }
+            var page = pages.get(key);
+            var stored = page == null ? ABSENT : page.get(index);
+            Assessment existing = null;
+            if(stored != ABSENT) {
+                var existingStatus = STATUS_VALUES[stored - 1];
+                if(assessment.status().comparePriority(existingStatus) < 0) {
+                    return false;
+                }
+                existing = new Assessment(assessment.peerId(), messageId, existingStatus);
+            }
+            reputationCallback.update(existing, assessment);
+            var status = (byte) (assessment.status().ordinal() + 1);
+            if(page instanceof DensePage dense) {
+                STATUSES.setVolatile(dense.statuses(), index, status);
+            } else {
+                pages.put(key, (page == null ? SparsePage.EMPTY : (SparsePage) page).with(index, status));
+            }
+            if(page == null) {
+                added = true;
+                if(evictOnConnectionClose) {
+                    pagesByConnection.computeIfAbsent(key.connection(), k -> ConcurrentHashMap.newKeySet()).add(key);
+                }
+            }
+            return true;
+        } finally {
+            stripe.unlock();
+            if(!added) {
+                release(key);
+            }
+        }
+    }
+
+    @Override
+    public Assessment find(PeerId peerId, MessageId messageId) {
+        var peer = peers.find(peerId);
+        var connection = connections.find(messageId.connectionId());
+        var page = peer == null || connection == null
+                ? null
+                : pages.get(new PageKey(peer, connection, messageId.sequenceNumber() >> PAGE_BITS));
+        var stored = page == null ? ABSENT : page.get((int) (messageId.sequenceNumber() & (PAGE_SIZE - 1)));
+        return new Assessment(peerId, messageId, stored == ABSENT ? Assessment.Status.NONE : STATUS_VALUES[stored - 1]);
+    }
+
+    /**
+     * Drops the connection's pages if the store evicts on close and ignores any later saves for its messages.
+     */
+    @Override
+    public void connectionClosed(ConnectionId connectionId) {
+        if(!evictOnConnectionClose) {
+            return;
+        }
+        closed.add(connectionId);
+        var connection = connections.find(connectionId);
+        if(connection == null) {
+            return;
+        }
+        // once a stripe has been locked here, saves on it see the connection is closed and can't add pages for it
+        for(var stripe : stripes) {
+            stripe.lock();
+            try {
+                var keys = pagesByConnection.get(connection);
+                if(keys != null) {
+                    keys.removeIf(key -> stripe(key) == stripe && remove(key));
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+        pagesByConnection.remove(connection);
+    }
+
+    private boolean remove(PageKey key) {
+        if(pages.remove(key) == null) {
+            return false;
+        }
+        release(key);
+        return true;
+    }
+
+    private void release(PageKey key) {
+        peers.release(key.peer());
+        connections.release(key.connection());
+    }
+
+    private ReentrantLock stripe(PageKey key) {
+        return stripes[(key.hashCode() ^ (key.hashCode() >>> 16)) & (STRIPES - 1)];
+    }
+
+    int ordinals() {
+        return peers.size() + connections.size();
+    }
+
+    int pageCount() {
+        return pages.size();
+    }
+
+    int densePageCount() {
+        return (int) pages.values().stream().filter(page -> page instanceof DensePage).count();
+    }
+}
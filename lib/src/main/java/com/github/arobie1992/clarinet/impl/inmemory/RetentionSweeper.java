@@ -0,0 +1,62 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically sweeps stores to apply their {@link com.github.arobie1992.clarinet.message.RetentionPolicy}, for example
+ * {@code new RetentionSweeper(Duration.ofMinutes(1), messageStore::sweep, assessmentStore::sweep)}.
+ * <p>
+ * The sweeps run one after another on a single background thread. A sweep that throws is logged and tried again at the
+ * next interval.
+ */
+public class RetentionSweeper implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RetentionSweeper.class);
+
+    private final List<Runnable> sweeps;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Starts sweeping.
+     * @param interval The time between the end of one round of sweeps and the start of the next.
+     * @param sweeps The sweeps to run, such as {@link InMemoryMessageStore#sweep()}.
+     */
+    public RetentionSweeper(Duration interval, Runnable... sweeps) {
+        Objects.requireNonNull(interval);
+        if(interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.sweeps = List.of(sweeps);
+        this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("retention-sweeper").factory());
+        var nanos = interval.toNanos();
+        executor.scheduleWithFixedDelay(this::sweep, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs every sweep once on the calling thread.
+     */
+    public void sweep() {
+        for(var sweep : sweeps) {
+            try {
+                sweep.run();
+            } catch(RuntimeException e) {
+                log.warn("Retention sweep failed", e);
+            }
+        }
+    }
+
+    /**
+     * Stops sweeping. A round of sweeps that is already running is allowed to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Keeps track of the order entries were added to a store so they can be removed per a {@link RetentionPolicy}.
+ * <p>
+ * The store keeps the {@link Ticket} issued for each entry alongside it and removes the entry when asked to only if it
+ * still holds that ticket. That way a ticket for an entry that was since removed and added again can't remove the new
+ * entry. Nothing is tracked for limits the policy doesn't set.
+ */
+final class RetentionTracker<K> {
+
+    static final class Ticket<K> {
+        private final K key;
+        private final ConnectionId connectionId;
+        private final long addedAt;
+        private volatile boolean removed;
+
+        private Ticket(K key, ConnectionId connectionId, long addedAt) {
+            this.key = key;
+            this.connectionId = connectionId;
+            this.addedAt = addedAt;
+        }
+
+        K key() {
+            return key;
+        }
+
+        ConnectionId connectionId() {
+            return connectionId;
+        }
+    }
+
+    private final long maxAgeNanos;
+    private final int maxCount;
+    private final int maxPerConnection;
+    private final boolean evictOnConnectionClose;
+    private final IntSupplier size;
+    private final Predicate<Ticket<K>> remover;
+    private final LongSupplier nanoClock;
+    private final Queue<Ticket<K>> order;
+    private final Map<ConnectionId, ArrayDeque<Ticket<K>>> byConnection;
+
+    /**
+     * @param size The number of entries in the store.
+     * @param remover Removes the entry the ticket was issued for if the store still holds it, returning whether it did.
+     */
+    RetentionTracker(RetentionPolicy policy, IntSupplier size, Predicate<Ticket<K>> remover, LongSupplier nanoClock) {
+        this.maxAgeNanos = policy.maxAge().map(age -> age.toNanos()).orElse(Long.MAX_VALUE);
+        this.maxCount = policy.maxCount().orElse(Integer.MAX_VALUE);
+        this.maxPerConnection = policy.maxPerConnection().orElse(Integer.MAX_VALUE);
+        this.evictOnConnectionClose = policy.evictOnConnectionClose().orElse(false);
+        this.size = size;
+        this.remover = remover;
+        this.nanoClock = nanoClock;
+        this.order = policy.maxAge().isPresent() || policy.maxCount().isPresent() ? new ConcurrentLinkedQueue<>() : null;
+        this.byConnection = policy.maxPerConnection().isPresent() || evictOnConnectionClose ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * @return A ticket for a new entry, or {@code null} if the policy doesn't need entries tracked.
+     */
+    Ticket<K> issue(K key, ConnectionId connectionId) {
+        return order == null && byConnection == null ? null : new Ticket<>(key, connectionId, nanoClock.getAsLong());
+    }
+
+    /**
+     * Starts tracking a ticket once its entry is in the store, removing the connection's oldest entries if it is now
+     * over {@link RetentionPolicy#maxPerConnection()}.
+     */
+    void track(Ticket<K> ticket) {
+        if(ticket == null) {
+            return;
+        }
+        if(order != null) {
+            order.add(ticket);
+        }
+        if(byConnection != null) {
+            byConnection.compute(ticket.connectionId, (id, tickets) -> {
+                tickets = tickets == null ? new ArrayDeque<>() : tickets;
+                tickets.add(ticket);
+                // removed tickets are always the oldest, so skipping them never removes more live entries than needed
+                while(tickets.size() > maxPerConnection) {
+                    remove(tickets.poll());
+                }
+                return tickets;
+            });
+        }
+    }
+
+    /**
+     * Removes entries past {@link RetentionPolicy#maxAge()} or over {@link RetentionPolicy#maxCount()}, and forgets
+     * tickets whose entries are gone.
+     */
+    void sweep() {
+        if(order != null) {
+            var now = nanoClock.getAsLong();
+            Ticket<K> oldest;
+            while((oldest = order.peek()) != null && (oldest.removed || now - oldest.addedAt > maxAgeNanos || size.getAsInt() > maxCount)) {
+                if(order.remove(oldest)) {
+                    remove(oldest);
+                }
+            }
+        }
+        if(byConnection != null) {
+            for(var connectionId : byConnection.keySet()) {
+                byConnection.computeIfPresent(connectionId, (id, tickets) -> {
+                    tickets.removeIf(ticket -> ticket.removed);
+                    return tickets.isEmpty() ? null : tickets;
+                });
+            }
+        }
+    }
+
+    /**
+     * Removes all of the connection's entries if the policy evicts on close.
+     */
+    void connectionClosed(ConnectionId connectionId) {
+        if(!evictOnConnectionClose) {
+            return;
+        }
+        byConnection.computeIfPresent(connectionId, (id, tickets) -> {
+            tickets.forEach(this::remove);
+            return null;
+        });
+    }
+
+    private void remove(Ticket<K> ticket) {
+        if(!ticket.removed && remover.test(ticket)) {
+            ticket.removed = true;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Configuration for the client channels {@link NettyTransport} keeps open to each remote address.
+ * @param maxConnections The maximum number of channels kept open to a single address. Defaults to 4.
+ * @param idleTimeout How long a pooled channel may sit unused before it is closed. Defaults to the lesser of 5 seconds
+ *                    and half the transport's receive timeout so that the client evicts idle channels before the
+ *                    remote side times them out.
+ */
+public record ChannelPoolOptions(Optional<Integer> maxConnections, Optional<Duration> idleTimeout) {
+    public ChannelPoolOptions() {
+        this(Optional.empty(), Optional.empty());
+    }
+}
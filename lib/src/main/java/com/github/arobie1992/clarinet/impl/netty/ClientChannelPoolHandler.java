@@ -0,0 +1,27 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
+
+class ClientChannelPoolHandler extends AbstractChannelPoolHandler {
+    private final long idleTimeoutMillis;
+
+    ClientChannelPoolHandler(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public void channelCreated(Channel ch) {
+        ch.pipeline().addLast(
+                NettyTransport.frameDecoder(),
+                new LengthFieldPrepender(NettyTransport.LENGTH_FIELD_LENGTH),
+                new FrameCodec(),
+                new IdleStateHandler(0, 0, idleTimeoutMillis, TimeUnit.MILLISECONDS),
+                new ResponseHandler()
+        );
+    }
+}
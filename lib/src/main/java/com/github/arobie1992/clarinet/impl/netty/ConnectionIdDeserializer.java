@@ -1,15 +1,29 @@
 package com.github.arobie1992.clarinet.impl.netty;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.github.arobie1992.clarinet.core.ConnectionId;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
 
 public class ConnectionIdDeserializer extends JsonDeserializer<ConnectionId> {
     @Override
     public ConnectionId deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if(p.currentToken() == JsonToken.VALUE_EMBEDDED_OBJECT) {
+            return fromBytes(p.getBinaryValue(), ctxt);
+        }
         return ConnectionId.fromString(p.getText());
     }
+
+    static ConnectionId fromBytes(byte[] bytes, DeserializationContext ctxt) throws IOException {
+        if(bytes.length != ConnectionIdSerializer.UUID_LENGTH) {
+            throw ctxt.weirdStringException(null, ConnectionId.class, "Expected 16 bytes but got " + bytes.length);
+        }
+        var buf = ByteBuffer.wrap(bytes);
+        return ConnectionId.fromUUID(new UUID(buf.getLong(), buf.getLong()));
+    }
 }
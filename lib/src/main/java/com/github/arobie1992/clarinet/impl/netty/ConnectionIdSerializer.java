@@ -6,10 +6,22 @@ import com.fasterxml.jackson.databind.SerializerProvider;
 import com.github.arobie1992.clarinet.core.ConnectionId;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class ConnectionIdSerializer extends JsonSerializer<ConnectionId> {
+    static final int UUID_LENGTH = 2 * Long.BYTES;
+
     @Override
     public void serialize(ConnectionId value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
-        gen.writeString(value.toString());
+        if(gen.canWriteBinaryNatively()) {
+            // 16 raw bytes instead of the 36 character string form
+            var uuid = value.asUUID();
+            var buf = ByteBuffer.allocate(UUID_LENGTH)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits());
+            gen.writeBinary(buf.array());
+        } else {
+            gen.writeString(value.toString());
+        }
     }
 }
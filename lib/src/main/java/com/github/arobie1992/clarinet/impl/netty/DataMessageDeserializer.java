@@ -1,26 +1,27 @@
 package com.github.arobie1992.clarinet.impl.netty;
 
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.TreeNode;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.node.IntNode;
-import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.MessageId;
 
 import java.io.IOException;
-import java.util.Base64;
 
 public class DataMessageDeserializer extends JsonDeserializer<DataMessage> {
     @Override
     public DataMessage deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-        var tree = p.getCodec().readTree(p);
-        var connectionIdStr = ((TextNode) tree.get("connectionId")).textValue();
-        var seqNo = ((IntNode) tree.get("sequenceNumber")).longValue();
-        var messageId = new MessageId(ConnectionId.fromString(connectionIdStr), seqNo);
+        JsonNode tree = p.readValueAsTree();
+        var connectionIdNode = tree.get("connectionId");
+        // binary formats carry the raw UUID bytes, textual ones the string form
+        var connectionId = connectionIdNode.isBinary()
+                ? ConnectionIdDeserializer.fromBytes(connectionIdNode.binaryValue(), ctxt)
+                : ConnectionId.fromString(connectionIdNode.textValue());
+        var seqNo = tree.get("sequenceNumber").longValue();
+        var messageId = new MessageId(connectionId, seqNo);
         var data = decodeBytes(tree, "data");
         var message = new DataMessage(messageId, data);
         var senderSignature = decodeBytes(tree, "senderSignature");
@@ -34,12 +35,12 @@ public class DataMessageDeserializer extends JsonDeserializer<DataMessage> {
         return message;
     }
 
-    private Bytes decodeBytes(TreeNode tree, String fieldName) {
+    // binaryValue decodes Base64 for text nodes and returns binary nodes as-is
+    private Bytes decodeBytes(JsonNode tree, String fieldName) throws IOException {
         var node = tree.get(fieldName);
         if(node == null) {
             return null;
         }
-        var str = ((TextNode) node).textValue();
-        return Bytes.of(Base64.getDecoder().decode(str));
+        return Bytes.wrap(node.binaryValue());
     }
 }
@@ -7,13 +7,15 @@ import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.message.DataMessage;
 
 import java.io.IOException;
-import java.util.Base64;
 
 public class DataMessageSerializer extends JsonSerializer<DataMessage> {
+    private final ConnectionIdSerializer connectionIdSerializer = new ConnectionIdSerializer();
+
     @Override
     public void serialize(DataMessage value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
         gen.writeStartObject();
-        gen.writeStringField("connectionId", value.messageId().connectionId().toString());
+        gen.writeFieldName("connectionId");
+        connectionIdSerializer.serialize(value.messageId().connectionId(), gen, serializers);
         gen.writeNumberField("sequenceNumber", value.messageId().sequenceNumber());
         writeBytes("data", value.data(), gen);
         if(value.senderSignature().isPresent()) {
@@ -25,8 +27,9 @@ public class DataMessageSerializer extends JsonSerializer<DataMessage> {
         gen.writeEndObject();
     }
 
+    // Base64 for textual formats, raw bytes for binary ones
     private void writeBytes(String fieldName, Bytes bytes, JsonGenerator gen) throws IOException {
-        var encoded = Base64.getEncoder().encodeToString(bytes.bytes());
-        gen.writeStringField(fieldName, encoded);
+        gen.writeFieldName(fieldName);
+        gen.writeBinary(bytes.asInputStream(), bytes.length());
     }
 }
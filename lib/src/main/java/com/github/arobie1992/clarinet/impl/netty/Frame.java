@@ -0,0 +1,61 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import java.util.Objects;
+
+/**
+ * A single unit on the wire. Each frame carries the id of the request it belongs to so that any number of requests
+ * can be in flight on the same channel and their responses can arrive in any order.
+ * @param type What the frame is.
+ * @param format How the payload is encoded.
+ * @param requestId The id the sender assigned to the request. Responses and errors echo the id of their request.
+ * @param payload The encoded body.
+ */
+record Frame(Type type, WireFormat format, long requestId, byte[] payload) {
+    /**
+     * Size of the type, format, and request id that precede the payload.
+     */
+    static final int HEADER_LENGTH = Byte.BYTES + Byte.BYTES + Long.BYTES;
+
+    /**
+     * Request id used for errors that can't be attributed to a particular request, e.g. read timeouts.
+     */
+    static final long NO_REQUEST = 0;
+
+    enum Type {
+        /**
+         * A message for which the sender does not expect a response.
+         */
+        SEND((byte) 0),
+        /**
+         * A message for which the sender expects a {@link #RESPONSE} or {@link #ERROR}.
+         */
+        REQUEST((byte) 1),
+        RESPONSE((byte) 2),
+        ERROR((byte) 3);
+
+        private final byte code;
+
+        Type(byte code) {
+            this.code = code;
+        }
+
+        byte code() {
+            return code;
+        }
+
+        static Type fromCode(byte code) {
+            for(var type : values()) {
+                if(type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown frame type: " + code);
+        }
+    }
+
+    Frame {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(payload);
+    }
+}
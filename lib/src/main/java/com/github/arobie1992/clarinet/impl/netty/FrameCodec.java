@@ -0,0 +1,37 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.util.List;
+
+/**
+ * Converts between length delimited {@link ByteBuf}s and {@link Frame}s. Expects to sit directly after the length
+ * field decoder and prepender.
+ */
+class FrameCodec extends MessageToMessageCodec<ByteBuf, Frame> {
+    @Override
+    protected void encode(ChannelHandlerContext ctx, Frame frame, List<Object> out) {
+        var buf = ctx.alloc().buffer(Frame.HEADER_LENGTH + frame.payload().length);
+        buf.writeByte(frame.type().code());
+        buf.writeByte(frame.format().code());
+        buf.writeLong(frame.requestId());
+        buf.writeBytes(frame.payload());
+        out.add(buf);
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
+        if(buf.readableBytes() < Frame.HEADER_LENGTH) {
+            throw new CorruptedFrameException("Frame shorter than header: " + buf.readableBytes());
+        }
+        var type = Frame.Type.fromCode(buf.readByte());
+        var format = WireFormat.fromCode(buf.readByte());
+        var requestId = buf.readLong();
+        var payload = new byte[buf.readableBytes()];
+        buf.readBytes(payload);
+        out.add(new Frame(type, format, requestId, payload));
+    }
+}
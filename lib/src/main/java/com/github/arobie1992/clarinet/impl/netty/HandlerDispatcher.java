@@ -1,52 +1,61 @@
 package com.github.arobie1992.clarinet.impl.netty;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.github.arobie1992.clarinet.adt.Option;
 import com.github.arobie1992.clarinet.adt.Some;
-import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.impl.peer.UriAddress;
-import com.github.arobie1992.clarinet.message.DataMessage;
-import com.github.arobie1992.clarinet.peer.Address;
 import com.github.arobie1992.clarinet.peer.Peer;
-import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.transport.ErrorResponse;
 import com.github.arobie1992.clarinet.transport.Handler;
-import com.github.arobie1992.clarinet.transport.Message;
 import com.github.arobie1992.clarinet.transport.RemoteInformation;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
-import io.netty.handler.timeout.ReadTimeoutException;
+import io.netty.handler.timeout.IdleStateEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
-// TODO deal with receive timeout: https://stackoverflow.com/questions/37271523/netty-configure-timeouts-on-tcp-server
+/**
+ * Hands each request on a server channel to the executor so that a slow handler doesn't hold up the others multiplexed
+ * on the channel.
+ * <p>
+ * Requests are handled concurrently, so they may complete in a different order than they arrived in, even for the same
+ * endpoint. Since a client also spreads its requests across several pooled channels, the transport makes no ordering
+ * guarantees at all; anything that depends on order, such as data messages within a connection, has to restore it from
+ * the sequence numbers it carries.
+ * <p>
+ * Once a channel has {@code maxInFlight} requests being handled, reading from it is suspended until half of them have
+ * finished. This pushes back on the sender through TCP rather than letting it queue unbounded work on this node.
+ */
 class HandlerDispatcher extends ChannelInboundHandlerAdapter {
     private static final Logger log = LoggerFactory.getLogger(HandlerDispatcher.class);
+    static final int DEFAULT_MAX_IN_FLIGHT = 64;
 
     private final Map<String, Handler<Object, Object>> handlers;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Executor executor;
+    private final int maxInFlight;
+    private final int resumeAt;
+    private final AtomicInteger inFlight = new AtomicInteger();
 
-    HandlerDispatcher(Map<String, Handler<Object, Object>> handlers) {
+    HandlerDispatcher(Map<String, Handler<Object, Object>> handlers, Executor executor) {
+        this(handlers, executor, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    HandlerDispatcher(Map<String, Handler<Object, Object>> handlers, Executor executor, int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
         this.handlers = handlers;
-        var module = new SimpleModule();
-        module.addSerializer(ConnectionId.class, new ConnectionIdSerializer());
-        module.addSerializer(PeerId.class, new PeerIdSerializer());
-        module.addSerializer(Address.class, new AddressSerializer());
-        module.addDeserializer(PeerId.class, new PeerIdDeserializer());
-        module.addDeserializer(ConnectionId.class, new ConnectionIdDeserializer());
-        module.addDeserializer(DataMessage.class, new DataMessageDeserializer());
-        objectMapper.registerModule(module);
-        objectMapper.registerModule(new Jdk8Module());
-        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.resumeAt = maxInFlight / 2;
     }
 
     @Override
@@ -54,46 +63,100 @@ class HandlerDispatcher extends ChannelInboundHandlerAdapter {
             // IntelliJ was complaining about these being marked as @NotNull, and it didn't seem worth adding the annotations dependency
             @SuppressWarnings("NullableProblems") ChannelHandlerContext ctx,
             @SuppressWarnings("NullableProblems") Object msg
-    ) throws JsonProcessingException, URISyntaxException {
-        var message = (Message) msg;
+    ) {
+        var request = (Request) msg;
+        var remoteAddr = ctx.channel().remoteAddress();
+        // reads happen on the event loop, so this can't race with resuming
+        if(inFlight.incrementAndGet() >= maxInFlight) {
+            ctx.channel().config().setAutoRead(false);
+        }
+        executor.execute(() -> {
+            try {
+                var resp = dispatch(request, (InetSocketAddress) remoteAddr);
+                if(request.expectsResponse() && resp instanceof Some<Object>(Object data)) {
+                    writeFrame(ctx, Frame.Type.RESPONSE, request.format(), request.requestId(), data);
+                }
+            } catch (Exception e) {
+                log.warn("Encountered error while handling incoming", e);
+                if(request.expectsResponse()) {
+                    writeError(ctx, request.format(), request.requestId(), e.getMessage());
+                }
+            } finally {
+                // counts only move by one, so anything that drained past resumeAt passed through it
+                if(inFlight.decrementAndGet() == resumeAt) {
+                    ctx.channel().eventLoop().execute(() -> resume(ctx));
+                }
+            }
+        });
+    }
+
+    // more requests may have been read since the count dropped, so check again now that we're on the event loop
+    private void resume(ChannelHandlerContext ctx) {
+        var config = ctx.channel().config();
+        if(!config.isAutoRead() && inFlight.get() <= resumeAt) {
+            config.setAutoRead(true);
+        }
+    }
+
+    private Option<Object> dispatch(Request request, InetSocketAddress remoteAddr) throws IOException, URISyntaxException {
+        var message = request.envelope();
         var handler = handlers.get(message.endpoint());
         if (handler == null) {
             throw new NoSuchEndpointException(message.endpoint());
         }
-        // Make sure that the contents is parsed as the type the handler is expecting.
-        // This is a pretty awful approach, but it should work for now.
-        Object contents = objectMapper.readValue(objectMapper.writeValueAsString(message.contents()), handler.inputType());
-        var remoteAddr = (InetSocketAddress) ctx.channel().remoteAddress();
+        // bind the buffered contents straight to the type the handler is expecting
+        Object contents = null;
+        if(message.contents() != null) {
+            var objectMapper = ObjectMappers.forFormat(request.format());
+            try(var parser = message.contents().asParser(objectMapper)) {
+                contents = objectMapper.readValue(parser, handler.inputType());
+            }
+        }
         var remotePeer = new Peer(message.sender());
         remotePeer.addresses().addAll(message.contactAt());
         var remoteInformation = new RemoteInformation(
                 remotePeer,
                 new UriAddress(new URI("tcp://" + remoteAddr.getHostName() + ":" + remoteAddr.getPort()))
         );
-        var resp = handler.handle(remoteInformation, contents);
-        if(resp instanceof Some<Object>(Object data)) {
-            writeResponse(ctx, data);
+        return handler.handle(remoteInformation, contents);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        // requests still being handled count as activity; the client has its own timeout for those
+        if(evt instanceof IdleStateEvent && inFlight.get() == 0) {
+            writeError(ctx, WireFormat.JSON, Frame.NO_REQUEST, "Read timeout");
+            ctx.close();
+            return;
         }
-        ctx.close();
+        super.userEventTriggered(ctx, evt);
     }
 
     // Only need to handle errors here because it is the last in the pipeline
     // If this changes, will have to revisit
     @Override
-    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws JsonProcessingException {
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // anything that gets here couldn't be tied to a request, so the channel is in an unknown state
         log.warn("Encountered error while handling incoming", cause);
-        var message = cause.getMessage();
-        if(message == null && cause instanceof ReadTimeoutException) {
-            message = "Read timeout";
-        }
-        writeResponse(ctx, new ErrorResponse(message == null ? "Unspecified error" : message));
+        writeError(ctx, WireFormat.JSON, Frame.NO_REQUEST, cause.getMessage());
         ctx.close();
     }
 
-    private void writeResponse(ChannelHandlerContext ctx, Object response) throws JsonProcessingException {
-        var respBytes = objectMapper.writeValueAsBytes(response);
-        var encoded = ctx.alloc().buffer(respBytes.length);
-        encoded.writeBytes(respBytes);
-        ctx.writeAndFlush(encoded);
+    private void writeError(ChannelHandlerContext ctx, WireFormat format, long requestId, String message) {
+        try {
+            writeFrame(ctx, Frame.Type.ERROR, format, requestId, new ErrorResponse(message == null ? "Unspecified error" : message));
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize error response", e);
+        }
+    }
+
+    private void writeFrame(
+            ChannelHandlerContext ctx,
+            Frame.Type type,
+            WireFormat format,
+            long requestId,
+            Object response
+    ) throws JsonProcessingException {
+        ctx.writeAndFlush(new Frame(type, format, requestId, ObjectMappers.forFormat(format).writeValueAsBytes(response)));
     }
 }
@@ -1,53 +1,87 @@
 package com.github.arobie1992.clarinet.impl.netty;
 
-import com.fasterxml.jackson.annotation.JsonAutoDetect;
-import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.github.arobie1992.clarinet.core.ConnectionId;
-import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.peer.Address;
 import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.transport.*;
+import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.json.JsonObjectDecoder;
-import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.Future;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class NettyTransport implements Transport, AutoCloseable {
+    static final int LENGTH_FIELD_LENGTH = 4;
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
 
     private final Map<Address, ChannelFuture> channels = new ConcurrentHashMap<>();
     private final Map<String, Handler<Object, Object>> handlers = new ConcurrentHashMap<>();
     private final EventLoopGroup bossGroup = new NioEventLoopGroup();
     private final EventLoopGroup workerGroup = new NioEventLoopGroup();
+    /*
+     Client channels get their own group so that a handler blocking a worker thread on an outgoing exchange can never
+     be waiting on I/O that has to run on that same thread.
+     */
+    private final EventLoopGroup clientGroup = new NioEventLoopGroup();
+    // handlers can block on exchanges of their own, so they get a thread each rather than tying up the worker group
+    private final ExecutorService handlerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Executor callbackExecutor = Thread::startVirtualThread;
+    private final AtomicLong requestIds = new AtomicLong();
     private final ServerBootstrap serverBootstrap;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AbstractChannelPoolMap<Address, FixedChannelPool> clientPools;
+    private final WireFormat wireFormat;
     private final PeerId nodeId;
 
     public NettyTransport(PeerId nodeId, TransportOptions transportOptions) {
+        this(nodeId, transportOptions, new ChannelPoolOptions());
+    }
+
+    public NettyTransport(PeerId nodeId, TransportOptions transportOptions, ChannelPoolOptions channelPoolOptions) {
+        this(nodeId, transportOptions, channelPoolOptions, WireFormat.CBOR);
+    }
+
+    /**
+     * @param wireFormat The format to encode outgoing requests in. Incoming requests are accepted in any format.
+     */
+    public NettyTransport(
+            PeerId nodeId,
+            TransportOptions transportOptions,
+            ChannelPoolOptions channelPoolOptions,
+            WireFormat wireFormat
+    ) {
         this.nodeId = nodeId;
+        this.wireFormat = Objects.requireNonNull(wireFormat);
         var handlerReceiveTimeout = timeoutMillis(transportOptions.receiveTimeout());
         serverBootstrap = new ServerBootstrap().group(bossGroup, workerGroup)
                 .channel(NioServerSocketChannel.class)
@@ -55,27 +89,42 @@ public class NettyTransport implements Transport, AutoCloseable {
                     @Override
                     protected void initChannel(@SuppressWarnings("NullableProblems") SocketChannel socketChannel) {
                         socketChannel.pipeline().addLast(
-                                new JsonObjectDecoder(),
+                                frameDecoder(),
+                                new LengthFieldPrepender(LENGTH_FIELD_LENGTH),
+                                new FrameCodec(),
                                 new MessageDecoder(),
-                                // read timeout goes first so HandlerDispatcher's error handler will trigger
-                                new ReadTimeoutHandler(handlerReceiveTimeout, TimeUnit.MILLISECONDS),
-                                new HandlerDispatcher(handlers)
+                                new IdleStateHandler(handlerReceiveTimeout, 0, 0, TimeUnit.MILLISECONDS),
+                                new HandlerDispatcher(handlers, handlerExecutor)
                         );
                     }
                 })
                 .option(ChannelOption.SO_BACKLOG, 128)
                 .childOption(ChannelOption.SO_KEEPALIVE, true);
-        var module = new SimpleModule();
-        module.addSerializer(PeerId.class, new PeerIdSerializer());
-        module.addSerializer(ConnectionId.class, new ConnectionIdSerializer());
-        module.addSerializer(DataMessage.class, new DataMessageSerializer());
-        module.addSerializer(Address.class, new AddressSerializer());
-        module.addDeserializer(ConnectionId.class, new ConnectionIdDeserializer());
-        module.addDeserializer(PeerId.class, new PeerIdDeserializer());
-        module.addDeserializer(Address.class, new AddressDeserializer());
-        objectMapper.registerModule(module);
-        objectMapper.registerModule(new Jdk8Module());
-        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+
+        var connectTimeout = timeoutMillis(transportOptions.sendTimeout());
+        var clientBootstrap = new Bootstrap().group(clientGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout);
+        var maxConnections = channelPoolOptions.maxConnections().orElse(4);
+        var idleTimeout = channelPoolOptions.idleTimeout()
+                .orElse(Duration.ofMillis(Math.min(5000, handlerReceiveTimeout / 2)))
+                .toMillis();
+        clientPools = new AbstractChannelPoolMap<>() {
+            @Override
+            protected FixedChannelPool newPool(Address key) {
+                var uri = validateAddress(key);
+                return new FixedChannelPool(
+                        clientBootstrap.clone().remoteAddress(uri.getHost(), uri.getPort()),
+                        new ClientChannelPoolHandler(idleTimeout),
+                        ChannelHealthChecker.ACTIVE,
+                        FixedChannelPool.AcquireTimeoutAction.FAIL,
+                        connectTimeout,
+                        maxConnections,
+                        Integer.MAX_VALUE
+                );
+            }
+        };
     }
 
     private URI validateAddress(Address address) {
@@ -86,6 +135,10 @@ public class NettyTransport implements Transport, AutoCloseable {
         return uri;
     }
 
+    static LengthFieldBasedFrameDecoder frameDecoder() {
+        return new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, 0, LENGTH_FIELD_LENGTH, 0, LENGTH_FIELD_LENGTH);
+    }
+
     // The entire point of the method is convenience for unwrapping the optional
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private static int timeoutMillis(Optional<Duration> timeout) {
@@ -160,39 +213,186 @@ public class NettyTransport implements Transport, AutoCloseable {
 
     @Override
     public <T> T exchange(Address address, String endpoint, Object message, Class<T> responseType, TransportOptions options) {
-        // Just use sockets because we don't really need the fanciness of Netty for the client side yet.
-        // See guide here if it becomes an issue: https://netty.io/wiki/user-guide-for-4.x.html
-        var addrUri = validateAddress(address);
-        try(var sock = new Socket()) {
-            sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()), timeoutMillis(options.sendTimeout()));
-            var out = sock.getOutputStream();
-            out.write(objectMapper.writeValueAsBytes(new Message(endpoint, nodeId, contactAt(), message)));
-            sock.setSoTimeout(timeoutMillis(options.receiveTimeout()));
-            var bytes = sock.getInputStream().readAllBytes();
+        return join(exchangeAsync(address, endpoint, message, responseType, options));
+    }
+
+    @Override
+    public void send(Address address, String endpoint, Object message, TransportOptions options) {
+        join(sendAsync(address, endpoint, message, options));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> exchangeAsync(
+            Address address,
+            String endpoint,
+            Object message,
+            Class<T> responseType,
+            TransportOptions options
+    ) {
+        var requestId = requestIds.incrementAndGet();
+        var frame = new CompletableFuture<Frame>();
+        acquireAndWrite(address, Frame.Type.REQUEST, requestId, endpoint, message, options, channel -> {
+            // register before writing so that the response can't beat us to the handler
+            var responseHandler = channel.pipeline().get(ResponseHandler.class);
+            var received = new CompletableFuture<Frame>();
+            responseHandler.expectResponse(requestId, received);
+            var timeoutMillis = timeoutMillis(options.receiveTimeout());
+            var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            var timeout = channel.eventLoop().schedule(
+                    () -> frame.completeExceptionally(new SocketTimeoutException("Read timed out")),
+                    timeoutMillis,
+                    TimeUnit.MILLISECONDS
+            );
+            /*
+             The event loop may handle a read and the timeout task in the same pass, in which case the read is processed
+             first, so check the deadline ourselves rather than relying on the timeout task having run.
+             */
+            received.whenComplete((f, ex) -> {
+                if(ex != null) {
+                    frame.completeExceptionally(ex);
+                } else if(System.nanoTime() - deadline >= 0) {
+                    frame.completeExceptionally(new SocketTimeoutException("Read timed out"));
+                } else {
+                    frame.complete(f);
+                }
+            });
+            frame.whenComplete((ignoredFrame, ignoredEx) -> {
+                timeout.cancel(false);
+                responseHandler.clear(requestId);
+            });
+        }).whenComplete((ignored, ex) -> {
+            if(ex != null) {
+                frame.completeExceptionally(ex);
+            }
+        });
+
+        var response = new CompletableFuture<T>();
+        // complete off the event loop so that callers' dependent stages can't stall I/O
+        frame.whenCompleteAsync((f, ex) -> {
             try {
-                return objectMapper.readValue(bytes, responseType);
-            } catch (JsonProcessingException e) {
-                try {
-                    var errorResponse = objectMapper.readValue(bytes, ErrorResponse.class);
-                    throw new ExchangeErrorException(errorResponse.error());
-                } catch (JsonProcessingException e1) {
-                    throw new MismatchedResponseTypeException(new String(bytes), responseType, e);
+                if(ex != null) {
+                    throw asRuntimeException(ex);
                 }
+                response.complete(parseResponse(f, responseType));
+            } catch (RuntimeException e) {
+                response.completeExceptionally(e);
+            }
+        }, callbackExecutor);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(Address address, String endpoint, Object message, TransportOptions options) {
+        var sent = new CompletableFuture<Void>();
+        acquireAndWrite(address, Frame.Type.SEND, requestIds.incrementAndGet(), endpoint, message, options, channel -> {})
+                .whenCompleteAsync((ignored, ex) -> {
+                    if(ex == null) {
+                        sent.complete(null);
+                    } else {
+                        sent.completeExceptionally(asRuntimeException(ex));
+                    }
+                }, callbackExecutor);
+        return sent;
+    }
+
+    private <T> T parseResponse(Frame frame, Class<T> responseType) {
+        // the remote responds in the format we sent, but go by the frame in case it doesn't
+        var objectMapper = ObjectMappers.forFormat(frame.format());
+        try {
+            if(frame.type() == Frame.Type.ERROR) {
+                throw new ExchangeErrorException(objectMapper.readValue(frame.payload(), ErrorResponse.class).error());
+            }
+            try {
+                return objectMapper.readValue(frame.payload(), responseType);
+            } catch (JsonProcessingException e) {
+                throw new MismatchedResponseTypeException(describe(frame), responseType, e);
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    @Override
-    public void send(Address address, String endpoint, Object message, TransportOptions options) {
-        var addrUri = validateAddress(address);
-        try(var sock = new Socket()) {
-            sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()), timeoutMillis(options.sendTimeout()));
-            var out = sock.getOutputStream();
-            out.write(objectMapper.writeValueAsBytes(new Message(endpoint, nodeId, contactAt(), message)));
+    // binary payloads aren't meaningful as a string, so render them as JSON for error reporting
+    private static String describe(Frame frame) {
+        if(frame.format() == WireFormat.JSON) {
+            return new String(frame.payload(), StandardCharsets.UTF_8);
+        }
+        try {
+            return ObjectMappers.forFormat(frame.format()).readTree(frame.payload()).toString();
         } catch (IOException e) {
-            throw new UncheckedIOException(e);
+            return Base64.getEncoder().encodeToString(frame.payload());
+        }
+    }
+
+    /**
+     * Writes the message on a pooled channel to {@code address}. The channel goes back to the pool as soon as the
+     * write has been issued; responses are matched by request id so the channel doesn't need to be held until then.
+     * @param beforeWrite Called with the acquired channel before the write is issued.
+     * @return A future that completes once the write does.
+     */
+    private CompletableFuture<Void> acquireAndWrite(
+            Address address,
+            Frame.Type type,
+            long requestId,
+            String endpoint,
+            Object message,
+            TransportOptions options,
+            Consumer<Channel> beforeWrite
+    ) {
+        var written = new CompletableFuture<Void>();
+        FixedChannelPool pool;
+        byte[] bytes;
+        try {
+            validateAddress(address);
+            pool = clientPools.get(address);
+            bytes = ObjectMappers.forFormat(wireFormat).writeValueAsBytes(new Message(endpoint, nodeId, contactAt(), message));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // the pool enforces the send timeout for acquiring, including connecting
+        pool.acquire().addListener((Future<Channel> acquired) -> {
+            if(!acquired.isSuccess()) {
+                written.completeExceptionally(acquired.cause());
+                return;
+            }
+            var channel = acquired.getNow();
+            try {
+                beforeWrite.accept(channel);
+                channel.writeAndFlush(new Frame(type, wireFormat, requestId, bytes)).addListener(f -> {
+                    if(f.isSuccess()) {
+                        written.complete(null);
+                    } else {
+                        written.completeExceptionally(f.cause());
+                    }
+                });
+            } catch (RuntimeException e) {
+                written.completeExceptionally(e);
+            } finally {
+                pool.release(channel);
+            }
+        });
+        return written;
+    }
+
+    private static RuntimeException asRuntimeException(Throwable t) {
+        if(t instanceof CompletionException e && e.getCause() != null) {
+            t = e.getCause();
+        }
+        return switch(t) {
+            case RuntimeException e -> e;
+            case IOException e -> new UncheckedIOException(e);
+            case TimeoutException e -> new UncheckedIOException(new SocketTimeoutException(e.getMessage()));
+            default -> new UncheckedIOException(new IOException(t));
+        };
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw asRuntimeException(e);
         }
     }
 
@@ -211,8 +411,14 @@ public class NettyTransport implements Transport, AutoCloseable {
          Looks like netty handles shutting down the channels:
          https://stackoverflow.com/questions/19747323/netty-stop-reconnecting-and-shutdown
          */
-        workerGroup.shutdownGracefully().syncUninterruptibly();
-        bossGroup.shutdownGracefully().syncUninterruptibly();
+        clientPools.close();
+        handlerExecutor.shutdownNow();
+        var clientShutdown = clientGroup.shutdownGracefully();
+        var workerShutdown = workerGroup.shutdownGracefully();
+        var bossShutdown = bossGroup.shutdownGracefully();
+        clientShutdown.syncUninterruptibly();
+        workerShutdown.syncUninterruptibly();
+        bossShutdown.syncUninterruptibly();
         channels.clear();
         handlers.clear();
     }
@@ -0,0 +1,51 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.peer.Address;
+import com.github.arobie1992.clarinet.peer.PeerId;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The fully configured mapper for each {@link WireFormat}. Mappers are thread-safe once configured, so every part of
+ * the pipeline shares the same instances.
+ */
+class ObjectMappers {
+    private static final Map<WireFormat, ObjectMapper> MAPPERS = new EnumMap<>(WireFormat.class);
+
+    static {
+        MAPPERS.put(WireFormat.JSON, configure(new ObjectMapper(new JsonFactory())));
+        MAPPERS.put(WireFormat.CBOR, configure(new ObjectMapper(new CBORFactory())));
+    }
+
+    private ObjectMappers() {}
+
+    static ObjectMapper forFormat(WireFormat format) {
+        return MAPPERS.get(format);
+    }
+
+    private static ObjectMapper configure(ObjectMapper objectMapper) {
+        var module = new SimpleModule();
+        module.addSerializer(PeerId.class, new PeerIdSerializer());
+        module.addSerializer(ConnectionId.class, new ConnectionIdSerializer());
+        module.addSerializer(DataMessage.class, new DataMessageSerializer());
+        module.addSerializer(Address.class, new AddressSerializer());
+        module.addDeserializer(PeerId.class, new PeerIdDeserializer());
+        module.addDeserializer(ConnectionId.class, new ConnectionIdDeserializer());
+        module.addDeserializer(DataMessage.class, new DataMessageDeserializer());
+        module.addDeserializer(Address.class, new AddressDeserializer());
+        objectMapper.registerModule(module);
+        objectMapper.registerModule(new Jdk8Module());
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        return objectMapper;
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.arobie1992.clarinet.peer.Address;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.transport.Message;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An incoming message along with the framing information needed to respond to it.
+ * @param expectsResponse Whether the sender is waiting on a response.
+ * @param requestId The id to attach to the response.
+ * @param format The format the request was encoded in, which the response should use as well.
+ * @param envelope The decoded envelope.
+ */
+record Request(boolean expectsResponse, long requestId, WireFormat format, Envelope envelope) {
+    Request {
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(envelope);
+    }
+
+    /**
+     * The wire form of a {@link Message}. The target type of the contents depends on which handler the endpoint maps
+     * to, so the contents are kept as buffered tokens and only bound once that's known.
+     */
+    record Envelope(String endpoint, PeerId sender, List<Address> contactAt, TokenBuffer contents) {}
+}
@@ -0,0 +1,79 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client side handler that matches response frames to the exchanges waiting on them by request id.
+ * <p>
+ * Any number of exchanges may be in flight on a channel at once and responses may arrive in any order. Responses for
+ * requests nobody is waiting on anymore, e.g. because the exchange timed out, are dropped.
+ */
+class ResponseHandler extends ChannelInboundHandlerAdapter {
+    private static final Logger log = LoggerFactory.getLogger(ResponseHandler.class);
+
+    private final Map<Long, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+
+    void expectResponse(long requestId, CompletableFuture<Frame> future) {
+        if(pending.putIfAbsent(requestId, future) != null) {
+            throw new IllegalStateException("Request " + requestId + " is already in progress");
+        }
+    }
+
+    void clear(long requestId) {
+        pending.remove(requestId);
+    }
+
+    @Override
+    public void channelRead(
+            @SuppressWarnings("NullableProblems") ChannelHandlerContext ctx,
+            @SuppressWarnings("NullableProblems") Object msg
+    ) {
+        var frame = (Frame) msg;
+        var future = pending.remove(frame.requestId());
+        if(future == null) {
+            log.debug("Discarding {} frame for request {} on {} with no exchange waiting", frame.type(), frame.requestId(), ctx.channel());
+            return;
+        }
+        future.complete(frame);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        failAll(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        failAll(cause);
+        ctx.close();
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        // only evict if nothing is waiting on this channel; long-running exchanges are governed by the receive timeout
+        if(evt instanceof IdleStateEvent && pending.isEmpty()) {
+            ctx.close();
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    private void failAll(Throwable cause) {
+        for(var requestId : pending.keySet()) {
+            var future = pending.remove(requestId);
+            if(future != null) {
+                future.completeExceptionally(cause);
+            }
+        }
+    }
+}
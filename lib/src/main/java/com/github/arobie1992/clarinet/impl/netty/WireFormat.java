@@ -0,0 +1,38 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+/**
+ * The encoding used for frame payloads.
+ * <p>
+ * Each frame records the format of its payload, so a {@link NettyTransport} accepts requests in any format and
+ * responds in whichever format the request used. The format a transport uses for its own outgoing requests is set at
+ * construction.
+ */
+public enum WireFormat {
+    /**
+     * Human-readable, but binary fields such as message data and signatures are Base64 encoded.
+     */
+    JSON((byte) 0),
+    /**
+     * <a href="https://cbor.io/">CBOR</a>, which writes binary fields and identifiers as raw bytes.
+     */
+    CBOR((byte) 1);
+
+    private final byte code;
+
+    WireFormat(byte code) {
+        this.code = code;
+    }
+
+    byte code() {
+        return code;
+    }
+
+    static WireFormat fromCode(byte code) {
+        for(var format : values()) {
+            if(format.code == code) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown wire format: " + code);
+    }
+}
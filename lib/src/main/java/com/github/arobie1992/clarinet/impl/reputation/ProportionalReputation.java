@@ -0,0 +1,70 @@
+package com.github.arobie1992.clarinet.impl.reputation;
+
+import com.github.arobie1992.clarinet.reputation.Assessment;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.github.arobie1992.clarinet.reputation.Assessment.Status.*;
+
+/**
+ * A peer's reputation as computed by {@link ProportionalReputationService}: the proportion of the peer's weighted
+ * assessments that are rewards. Every peer starts out with one reward's worth so that a single penalty doesn't leave it
+ * with no reputation at all.
+ * <p>
+ * This is public only so that reputation services in other packages, such as
+ * {@link com.github.arobie1992.clarinet.impl.file.FileReputationService}, compute reputations the same way.
+ * @param good The weight of the peer's rewards.
+ * @param total The weight of all of the peer's assessments.
+ */
+public record ProportionalReputation(double good, double total) {
+    private static final Map<Assessment.Status, Delta> deltas = Collections.unmodifiableMap(new EnumMap<>(Map.of(
+            NONE          , new Delta(0, 0),
+            REWARD        , new Delta(1, 1),
+            WEAK_PENALTY  , new Delta(0, 1),
+            STRONG_PENALTY, new Delta(0, 3)
+    )));
+
+    public ProportionalReputation {
+        if(good < 1 || total < 1) {
+            throw new IllegalArgumentException("Reputation cannot be updated with given existing and updated values");
+        }
+    }
+
+    /**
+     * A peer's reputation before it has been assessed.
+     */
+    public ProportionalReputation() {
+        this(1, 1);
+    }
+
+    /**
+     * @param existing The assessment's previous status, or {@code null} if it is new.
+     * @param updated The assessment's new status.
+     * @return The reputation with the change to the assessment applied. An update to a lower priority status leaves it
+     * unchanged.
+     */
+    public ProportionalReputation apply(Assessment.Status existing, Assessment.Status updated) {
+        if(existing == null) {
+            return add(deltas.get(updated));
+        }
+        return updated.comparePriority(existing) > 0
+                ? sub(deltas.get(existing)).add(deltas.get(updated))
+                : this;
+    }
+
+    public double value() {
+        return good/total;
+    }
+
+    private ProportionalReputation add(Delta delta) {
+        return new ProportionalReputation(good + delta.good, total + delta.total);
+    }
+
+    private ProportionalReputation sub(Delta delta) {
+        return new ProportionalReputation(good - delta.good, total - delta.total);
+    }
+
+    private record Delta(double good, double total) {}
+}
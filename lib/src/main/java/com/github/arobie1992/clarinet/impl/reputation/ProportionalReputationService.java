@@ -4,23 +4,12 @@ import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.reputation.Assessment;
 import com.github.arobie1992.clarinet.reputation.ReputationService;
 
-import java.util.Collections;
-import java.util.EnumMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static com.github.arobie1992.clarinet.reputation.Assessment.Status.*;
-
 public class ProportionalReputationService implements ReputationService {
-    private final Map<PeerId, Rep> reps = new ConcurrentHashMap<>();
-
-    private static final Map<Assessment.Status, Delta> deltas = Collections.unmodifiableMap(new EnumMap<>(Map.of(
-            NONE          , new Delta(0, 0),
-            REWARD        , new Delta(1, 1),
-            WEAK_PENALTY  , new Delta(0, 1),
-            STRONG_PENALTY, new Delta(0, 3)
-    )));
+    private final Map<PeerId, ProportionalReputation> reps = new ConcurrentHashMap<>();
 
     @Override
     public void update(Assessment existing, Assessment updated) {
@@ -35,41 +24,14 @@ public class ProportionalReputationService implements ReputationService {
         }
         reps.compute(updated.peerId(), (k, e) -> {
             if(e == null) {
-                e = new Rep();
-            }
-            if(existing == null) {
-                return e.add(deltas.get(updated.status()));
+                e = new ProportionalReputation();
             }
-            return updated.status().comparePriority(existing.status()) > 0
-                ? e.sub(deltas.get(existing.status())).add(deltas.get(updated.status()))
-                : e;
+            return e.apply(existing == null ? null : existing.status(), updated.status());
         });
     }
 
     @Override
     public double get(PeerId peerId) {
-        return reps.computeIfAbsent(peerId, k -> new Rep()).value();
-    }
-
-    private record Delta(double good, double total) {}
-
-    private record Rep(double good, double total) {
-        private Rep {
-            if(good < 1 || total < 1) {
-                throw new IllegalArgumentException("Reputation cannot be updated with given existing and updated values");
-            }
-        }
-        private Rep() {
-            this(1,1);
-        }
-        private Rep add(Delta delta) {
-            return new Rep(good + delta.good, total + delta.total);
-        }
-        private Rep sub(Delta delta) {
-            return new Rep(good - delta.good, total - delta.total);
-        }
-        private double value() {
-            return good/total;
-        }
+        return reps.computeIfAbsent(peerId, k -> new ProportionalReputation()).value();
     }
 }
@@ -0,0 +1,124 @@
+package com.github.arobie1992.clarinet.message;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * The deterministic binary encoding of the message parts that nodes sign and hash.
+ * <p>
+ * Signatures and hashes must be computed over exactly the same bytes on every node, so these parts are not encoded
+ * with the wire format. Each value starts with a one byte tag identifying its type, so that e.g. a signature over
+ * {@link DataMessage.SenderParts} can never be passed off as one over {@link MessageDetails}, followed by its fields in
+ * declaration order:
+ * <ul>
+ *     <li>{@link MessageId}: the 16 bytes of the connection ID's UUID followed by the sequence number as an 8 byte
+ *     big-endian long.</li>
+ *     <li>{@link Bytes}: the length as a 4 byte big-endian int followed by the contents.</li>
+ *     <li>{@link String}: the UTF-8 encoding written the same way as {@link Bytes}.</li>
+ *     <li>Nested parts: their fields written inline without a tag.</li>
+ * </ul>
+ * Absent {@link Bytes} and {@link String} fields are written as a length of -1. Tags from {@code 0x80} up are never
+ * used here so that other hashed values, such as the nodes of
+ * {@link com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures}, can be told apart from message parts.
+ */
+public final class CanonicalEncoding {
+    private static final byte SENDER_PARTS = 1;
+    private static final byte WITNESS_PARTS = 2;
+    private static final byte MESSAGE_DETAILS = 3;
+    private static final byte MESSAGE_SUMMARY = 4;
+    private static final byte QUERY_RESPONSE = 5;
+    private static final int ABSENT = -1;
+
+    private CanonicalEncoding() {}
+
+    /**
+     * Streams the encoding of {@code parts} into {@code digest} without materializing it.
+     * @param parts The parts to encode.
+     * @param digest The digest to update.
+     * @throws IllegalArgumentException If {@code parts} is not of a type that has a canonical encoding.
+     */
+    public static void digest(Object parts, MessageDigest digest) {
+        write(parts, new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+    }
+
+    /**
+     * @param parts The parts to encode.
+     * @return The encoding of {@code parts}.
+     * @throws IllegalArgumentException If {@code parts} is not of a type that has a canonical encoding.
+     */
+    public static Bytes encode(Object parts) {
+        var out = new ByteArrayOutputStream();
+        write(parts, out);
+        return Bytes.wrap(out.toByteArray());
+    }
+
+    private static void write(Object parts, OutputStream sink) {
+        var out = new DataOutputStream(sink);
+        try {
+            switch(parts) {
+                case DataMessage.SenderParts p -> {
+                    out.writeByte(SENDER_PARTS);
+                    write(p.messageId(), out);
+                    write(p.data(), out);
+                }
+                case DataMessage.WitnessParts p -> {
+                    out.writeByte(WITNESS_PARTS);
+                    write(p.messageId(), out);
+                    write(p.data(), out);
+                    write(p.senderSignature(), out);
+                }
+                case MessageDetails d -> {
+                    out.writeByte(MESSAGE_DETAILS);
+                    write(d, out);
+                }
+                case MessageSummary s -> {
+                    out.writeByte(MESSAGE_SUMMARY);
+                    write(s.messageId(), out);
+                    write(s.hash(), out);
+                    write(s.hashAlgorithm(), out);
+                    write(s.witnessSignature(), out);
+                }
+                case QueryResponse r -> {
+                    out.writeByte(QUERY_RESPONSE);
+                    write(r.messageDetails(), out);
+                    write(r.signature(), out);
+                    write(r.hashAlgorithm(), out);
+                }
+                default -> throw new IllegalArgumentException("No canonical encoding for " + parts.getClass().getName());
+            }
+            out.flush();
+        } catch(IOException e) {
+            // neither sink actually performs I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(MessageDetails details, DataOutputStream out) throws IOException {
+        write(details.messageId(), out);
+        write(details.messageHash(), out);
+    }
+
+    private static void write(MessageId messageId, DataOutputStream out) throws IOException {
+        var uuid = messageId.connectionId().asUUID();
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeLong(messageId.sequenceNumber());
+    }
+
+    private static void write(Bytes bytes, DataOutputStream out) throws IOException {
+        if(bytes == null) {
+            out.writeInt(ABSENT);
+            return;
+        }
+        out.writeInt(bytes.length());
+        bytes.writeTo(out);
+    }
+
+    private static void write(String value, DataOutputStream out) throws IOException {
+        write(value == null ? null : Bytes.wrap(value.getBytes(StandardCharsets.UTF_8)), out);
+    }
+}
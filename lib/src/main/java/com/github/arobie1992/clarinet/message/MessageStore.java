@@ -1,6 +1,9 @@
 package com.github.arobie1992.clarinet.message;
 
 
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.ConnectionId;
+
 import java.util.Optional;
 
 public interface MessageStore {
@@ -11,4 +14,32 @@ public interface MessageStore {
      */
     void add(DataMessage message);
     Optional<DataMessage> find(MessageId messageId);
+
+    /**
+     * Cache the hash of a stored message's {@link DataMessage#witnessParts()}.
+     * <p>
+     * The witness parts of a message never change once it is stored, so nodes compute the hash once and look it up
+     * when answering queries rather than recomputing it every time. Stores that don't support caching may ignore this.
+     * Has no effect if there is no message with the given {@code MessageId}.
+     * @param messageId The ID of the stored message.
+     * @param algorithm The hash algorithm used to compute {@code hash}.
+     * @param hash The hash of the message's witness parts.
+     */
+    default void addHash(MessageId messageId, String algorithm, Bytes hash) {}
+
+    /**
+     * @param messageId The ID of the stored message.
+     * @param algorithm The hash algorithm.
+     * @return The hash previously cached with {@link #addHash(MessageId, String, Bytes)}, or empty if there is none.
+     */
+    default Optional<Bytes> findHash(MessageId messageId, String algorithm) {
+        return Optional.empty();
+    }
+
+    /**
+     * Notifies the store that a connection has closed so it can drop the connection's messages if its retention policy
+     * calls for it. Stores that don't evict may ignore this.
+     * @param connectionId The ID of the closed connection.
+     */
+    default void connectionClosed(ConnectionId connectionId) {}
 }
@@ -0,0 +1,43 @@
+package com.github.arobie1992.clarinet.message;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Limits on how long a store keeps what it records about messages, such as the messages themselves or the assessments
+ * made of them. Entries past any of the limits are removed oldest first. With none of the limits set, entries are kept
+ * forever.
+ * @param maxAge How long to keep an entry after it was first recorded. Enforced each time the store is swept.
+ * @param maxCount The most entries to keep. Enforced each time the store is swept, so the store can briefly hold more.
+ * @param maxPerConnection The most entries to keep for any one connection. Enforced as entries are recorded.
+ * @param evictOnConnectionClose Whether to remove all of a connection's entries as soon as it closes. Defaults to
+ *                               {@code false}.
+ */
+public record RetentionPolicy(
+        Optional<Duration> maxAge,
+        Optional<Integer> maxCount,
+        Optional<Integer> maxPerConnection,
+        Optional<Boolean> evictOnConnectionClose
+) {
+    public RetentionPolicy {
+        maxAge.ifPresent(age -> {
+            if(age.isNegative() || age.isZero()) {
+                throw new IllegalArgumentException("maxAge must be positive");
+            }
+        });
+        maxCount.ifPresent(count -> {
+            if(count < 1) {
+                throw new IllegalArgumentException("maxCount must be positive");
+            }
+        });
+        maxPerConnection.ifPresent(count -> {
+            if(count < 1) {
+                throw new IllegalArgumentException("maxPerConnection must be positive");
+            }
+        });
+    }
+
+    public RetentionPolicy() {
+        this(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+}
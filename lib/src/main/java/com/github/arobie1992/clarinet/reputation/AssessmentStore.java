@@ -1,5 +1,6 @@
 package com.github.arobie1992.clarinet.reputation;
 
+import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.MessageId;
 import com.github.arobie1992.clarinet.peer.PeerId;
 
@@ -61,4 +62,16 @@ public interface AssessmentStore {
      * @return the persisted {@code Assessment} or a default per the specifications.
      */
     Assessment find(PeerId peerId, MessageId messageId);
+
+    /**
+     * Notifies the store that a connection has closed so it can drop the assessments of the connection's messages if its
+     * retention policy calls for it. Stores that don't evict may ignore this.
+     * <p>
+     * Dropping an assessment doesn't undo its effect on reputation, which has already been applied through the
+     * {@link ReputationCallback}. So that {@link #save(Assessment, ReputationCallback)} stays idempotent, a store that
+     * drops a connection's assessments must ignore later saves for the connection's messages rather than count them
+     * again, and {@link #find(PeerId, MessageId)} returns the {@link Assessment.Status#NONE} default for them.
+     * @param connectionId The ID of the closed connection.
+     */
+    default void connectionClosed(ConnectionId connectionId) {}
 }
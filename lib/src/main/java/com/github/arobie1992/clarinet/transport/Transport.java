@@ -4,6 +4,7 @@ import com.github.arobie1992.clarinet.peer.Address;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface Transport {
     Address add(Address address);
@@ -14,5 +15,35 @@ public interface Transport {
     Collection<String> endpoints();
     <T> T exchange(Address address, String endpoint, Object message, Class<T> responseType, TransportOptions options);
     void send(Address address, String endpoint, Object message, TransportOptions options);
+
+    /**
+     * Non-blocking variant of {@link #exchange(Address, String, Object, Class, TransportOptions)}.
+     * <p>
+     * Any exception {@code exchange} would throw is instead used to complete the returned future exceptionally. The
+     * default implementation simply runs {@code exchange} on a new virtual thread; implementations that can perform
+     * the exchange without parking a thread should override it.
+     */
+    default <T> CompletableFuture<T> exchangeAsync(
+            Address address,
+            String endpoint,
+            Object message,
+            Class<T> responseType,
+            TransportOptions options
+    ) {
+        return CompletableFuture.supplyAsync(
+                () -> exchange(address, endpoint, message, responseType, options),
+                Thread::startVirtualThread
+        );
+    }
+
+    /**
+     * Non-blocking variant of {@link #send(Address, String, Object, TransportOptions)}.
+     * <p>
+     * The returned future completes once the message has been handed off as far as the implementation can tell, with
+     * the same caveats as {@code send}. The default implementation runs {@code send} on a new virtual thread.
+     */
+    default CompletableFuture<Void> sendAsync(Address address, String endpoint, Object message, TransportOptions options) {
+        return CompletableFuture.runAsync(() -> send(address, endpoint, message, options), Thread::startVirtualThread);
+    }
     void shutdown();
 }
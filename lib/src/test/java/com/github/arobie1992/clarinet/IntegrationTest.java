@@ -1,25 +1,23 @@
 package com.github.arobie1992.clarinet;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.github.arobie1992.clarinet.adt.Bytes;
 import com.github.arobie1992.clarinet.adt.None;
 import com.github.arobie1992.clarinet.adt.Some;
 import com.github.arobie1992.clarinet.core.*;
+import com.github.arobie1992.clarinet.crypto.KeyPair;
 import com.github.arobie1992.clarinet.crypto.PublicKey;
 import com.github.arobie1992.clarinet.impl.crypto.KeyProviders;
+import com.github.arobie1992.clarinet.impl.crypto.KeyedSignatures;
 import com.github.arobie1992.clarinet.impl.crypto.Keys;
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
 import com.github.arobie1992.clarinet.impl.inmemory.InMemoryAssessmentStore;
 import com.github.arobie1992.clarinet.impl.inmemory.InMemoryKeyStore;
 import com.github.arobie1992.clarinet.impl.inmemory.InMemoryMessageStore;
 import com.github.arobie1992.clarinet.impl.inmemory.InMemoryPeerStore;
-import com.github.arobie1992.clarinet.impl.netty.ConnectionIdSerializer;
 import com.github.arobie1992.clarinet.impl.netty.NettyTransport;
-import com.github.arobie1992.clarinet.impl.netty.PeerIdSerializer;
 import com.github.arobie1992.clarinet.impl.peer.UriAddress;
 import com.github.arobie1992.clarinet.impl.reputation.ProportionalReputationService;
+import com.github.arobie1992.clarinet.message.CanonicalEncoding;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.MessageForward;
 import com.github.arobie1992.clarinet.message.MessageId;
@@ -43,9 +41,15 @@ import org.junit.jupiter.api.Test;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -53,7 +57,6 @@ import static com.github.arobie1992.clarinet.reputation.Assessment.Status.*;
 
 class IntegrationTest {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
     private final Address ephemeralAddress = new UriAddress(new URI("tcp://localhost:0"));
     private final Bytes data = Bytes.of(new byte[]{0, 1, 2, 3, 4});
 
@@ -64,11 +67,6 @@ class IntegrationTest {
     private CountDownLatch receiverCloseLatch;
 
     IntegrationTest() throws URISyntaxException {
-        var module = new SimpleModule();
-        module.addSerializer(PeerId.class, new PeerIdSerializer());
-        module.addSerializer(ConnectionId.class, new ConnectionIdSerializer());
-        objectMapper.registerModule(module);
-        objectMapper.registerModule(new Jdk8Module());
     }
 
     @BeforeEach
@@ -146,6 +144,10 @@ class IntegrationTest {
     }
 
     private Node createNode(PeerId id, NodeBuilder builder) throws NoSuchAlgorithmException {
+        return createNode(id, builder, Keys.generateKeyPair());
+    }
+
+    private Node createNode(PeerId id, NodeBuilder builder, KeyPair keyPair) {
         var node = builder.id(id)
                 .peerStore(new InMemoryPeerStore())
                 .transport(() -> new NettyTransport(id, TransportUtils.defaultOptions()))
@@ -156,8 +158,10 @@ class IntegrationTest {
                 .keyStore(new InMemoryKeyStore())
                 .build();
 
-        node.keyStore().addKeyPair(id, Keys.generateKeyPair());
+        node.keyStore().addKeyPair(id, keyPair);
         node.keyStore().addProvider(KeyProviders.Sha256RsaPublicKeyProvider());
+        node.keyStore().addProvider(KeyProviders.Sha256Ed25519PublicKeyProvider());
+        node.keyStore().addProvider(KeyProviders.Sha256EcdsaPublicKeyProvider());
         return node;
     }
 
@@ -168,6 +172,17 @@ class IntegrationTest {
             Node receiver, Address receiverAddress,
             PeerId witnessSelector
     ) throws InterruptedException {
+        return connect(sender, senderAddress, witness, witnessAddress, receiver, receiverAddress, new ConnectionOptions(witnessSelector));
+    }
+
+    private ConnectionId connect(
+            Node sender,
+            Address senderAddress,
+            Node witness, Address witnessAddress,
+            Node receiver, Address receiverAddress,
+            ConnectionOptions connectionOptions
+    ) throws InterruptedException {
+        var witnessSelector = connectionOptions.witnessSelector();
         sender.transport().add(senderAddress);
         witness.transport().add(witnessAddress);
         receiver.transport().add(receiverAddress);
@@ -187,7 +202,7 @@ class IntegrationTest {
         receiver.addReceiveHandler(new SendLatchHandler<>(messageLatch, DataMessage.class));
 
         // connection creation
-        var connectionId = sender.connect(receiver.id(), new ConnectionOptions(witnessSelector), TransportUtils.defaultOptions());
+        var connectionId = sender.connect(receiver.id(), connectionOptions, TransportUtils.defaultOptions());
         var expected = new TestConnection(connectionId, sender.id(), Optional.of(witness.id()), receiver.id(), Connection.Status.OPEN);
         // need latch to ensure test doesn't do verification before the witness notification handler has executed
         // if it waited all 5 seconds, something's probably wrong and we want to revisit this.
@@ -227,7 +242,7 @@ class IntegrationTest {
     }
 
     @Test
-    void testCooperative() throws InterruptedException, JsonProcessingException {
+    void testCooperative() throws InterruptedException {
         var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, sender.id());
 
         var messageId = send(sender, connectionId);
@@ -255,7 +270,27 @@ class IntegrationTest {
     }
 
     @Test
-    void testCooperativeReceiverSelectsWitness() throws InterruptedException, JsonProcessingException {
+    void testCooperativeMixedKeyTypes() throws NoSuchAlgorithmException, InterruptedException {
+        sender.transport().shutdown();
+        witness.transport().shutdown();
+        sender = createNode(PeerUtils.senderId(), Nodes.newBuilder(), Keys.generateEd25519KeyPair());
+        witness = createNode(PeerUtils.witnessId(), Nodes.newBuilder(), Keys.generateEcdsaKeyPair());
+        var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, sender.id());
+
+        var messageId = send(sender, connectionId);
+        verifyMessage(witness, messageId, 0, data, MessageVerificationMode.SENDER_AND_WITNESS);
+        verifyMessage(receiver, messageId, 0, data, MessageVerificationMode.SENDER_AND_WITNESS);
+        verifyAssessment(witness, sender.id(), messageId, REWARD);
+        verifyAssessment(receiver, sender.id(), messageId, REWARD);
+        verifyAssessment(receiver, witness.id(), messageId, REWARD);
+
+        query(sender, witness.id(), messageId, REWARD, 1);
+        query(witness, receiver.id(), messageId, REWARD, 1);
+        query(receiver, sender.id(), messageId, REWARD, 1);
+    }
+
+    @Test
+    void testCooperativeReceiverSelectsWitness() throws InterruptedException {
         var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, receiver.id());
 
         var messageId = send(sender, connectionId);
@@ -282,6 +317,203 @@ class IntegrationTest {
         close(sender, connectionId, witness, receiver);
     }
 
+    @Test
+    void testCooperativeAsync() throws Exception {
+        sender.transport().add(ephemeralAddress);
+        witness.transport().add(ephemeralAddress);
+        receiver.transport().add(ephemeralAddress);
+        sender.peerStore().save(asPeer(receiver));
+        sender.peerStore().save(asPeer(witness));
+        receiver.addWitnessNotificationHandler(new SendLatchHandler<>(witnessNotificationLatch, WitnessNotification.class));
+        witness.addWitnessRequestHandler(new RetrieveAddrsWitnessHandler(witness));
+        receiver.addReceiveHandler(new SendLatchHandler<>(messageLatch, DataMessage.class));
+
+        var connectionId = sender.connectAsync(receiver.id(), new ConnectionOptions(sender.id()), TransportUtils.defaultOptions())
+                .get(5, TimeUnit.SECONDS);
+        assertTrue(witnessNotificationLatch.await(5, TimeUnit.SECONDS));
+        var expected = new TestConnection(connectionId, sender.id(), Optional.of(witness.id()), receiver.id(), Connection.Status.OPEN);
+        verifyConnectionPresent(expected, sender);
+
+        var messageId = sender.sendAsync(connectionId, data, TransportUtils.defaultOptions()).get(5, TimeUnit.SECONDS);
+        assertTrue(messageLatch.await(5, TimeUnit.SECONDS));
+        verifyMessage(sender, messageId, 0, data, MessageVerificationMode.SENDER_ONLY);
+
+        var result = sender.queryAsync(witness.id(), messageId, new TransportOptions()).get(5, TimeUnit.SECONDS);
+        assertEquals(witness.id(), result.queriedPeer());
+        assertEquals(messageId, result.queriedMessage());
+        sender.processQueryResult(result, new TransportOptions());
+        verifyAssessment(sender, witness.id(), messageId, REWARD);
+    }
+
+    @Test
+    void testConcurrentSends() throws Exception {
+        var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, sender.id());
+        var count = 16;
+        var received = new CountDownLatch(count);
+        receiver.addReceiveHandler(new SendLatchHandler<>(received, DataMessage.class));
+
+        var futures = new ArrayList<Future<MessageId>>();
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for(int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> sender.send(connectionId, data, TransportUtils.defaultOptions())));
+            }
+        }
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+
+        var seqNos = new TreeSet<Long>();
+        for(var future : futures) {
+            var messageId = future.get();
+            seqNos.add(messageId.sequenceNumber());
+            assertTrue(receiver.messageStore().find(messageId).isPresent());
+        }
+        assertEquals(count, seqNos.size());
+        assertEquals(0, seqNos.first());
+        assertEquals(count - 1, seqNos.last());
+    }
+
+    @Test
+    void testPipelinedSends() throws Exception {
+        var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, sender.id());
+        var count = 32;
+        var received = new CountDownLatch(count);
+        receiver.addReceiveHandler(new SendLatchHandler<>(received, DataMessage.class));
+
+        var futures = new ArrayList<CompletableFuture<MessageId>>();
+        for(int i = 0; i < count; i++) {
+            futures.add(sender.sendPipelined(connectionId, data, TransportUtils.defaultOptions()));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        for(int i = 0; i < count; i++) {
+            var messageId = futures.get(i).get();
+            // sequence numbers are assigned on the calling thread so they follow call order
+            assertEquals(i, messageId.sequenceNumber());
+            assertTrue(receiver.messageStore().find(messageId).isPresent());
+        }
+    }
+
+    @Test
+    void testPipelinedSendNoSuchConnection() {
+        var connectionId = ConnectionId.random();
+        var future = sender.sendPipelined(connectionId, data, TransportUtils.defaultOptions());
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(NoSuchConnectionException.class, ex.getCause());
+    }
+
+    @Test
+    void testBatchedSends() throws Exception {
+        sender.transport().add(ephemeralAddress);
+        witness.transport().add(ephemeralAddress);
+        receiver.transport().add(ephemeralAddress);
+        sender.peerStore().save(asPeer(receiver));
+        sender.peerStore().save(asPeer(witness));
+        receiver.addWitnessNotificationHandler(new SendLatchHandler<>(witnessNotificationLatch, WitnessNotification.class));
+        witness.addWitnessRequestHandler(new RetrieveAddrsWitnessHandler(witness));
+        var count = 10;
+        var received = new CountDownLatch(count);
+        receiver.addReceiveHandler(new SendLatchHandler<>(received, DataMessage.class));
+
+        var batchOptions = new BatchOptions(Optional.of(4), Optional.of(Duration.ofMillis(20)), Optional.empty());
+        var connectionId = sender.connect(receiver.id(), new ConnectionOptions(sender.id(), Optional.of(batchOptions)), TransportUtils.defaultOptions());
+        assertTrue(witnessNotificationLatch.await(5, TimeUnit.SECONDS));
+
+        var futures = new ArrayList<CompletableFuture<MessageId>>();
+        for(int i = 0; i < count; i++) {
+            futures.add(sender.sendPipelined(connectionId, data, TransportUtils.defaultOptions()));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        for(var future : futures) {
+            var messageId = future.get();
+            verifyMessage(witness, messageId, messageId.sequenceNumber(), data, MessageVerificationMode.SENDER_AND_WITNESS);
+            verifyMessage(receiver, messageId, messageId.sequenceNumber(), data, MessageVerificationMode.SENDER_AND_WITNESS);
+            verifyAssessment(receiver, sender.id(), messageId, REWARD);
+            verifyAssessment(receiver, witness.id(), messageId, REWARD);
+        }
+
+        // messages still lingering are sent before the close
+        var last = sender.sendPipelined(connectionId, data, TransportUtils.defaultOptions());
+        sender.close(connectionId, new CloseOptions(), new TransportOptions());
+        // sends aren't acknowledged, so the close can still overtake the final batch on its way to the witness
+        var lastId = last.get(5, TimeUnit.SECONDS);
+        verifyMessage(sender, lastId, count, data, MessageVerificationMode.SENDER_ONLY);
+    }
+
+    @Test
+    void testMerkleBatchedSends() throws Exception {
+        sender.transport().add(ephemeralAddress);
+        witness.transport().add(ephemeralAddress);
+        receiver.transport().add(ephemeralAddress);
+        sender.peerStore().save(asPeer(receiver));
+        sender.peerStore().save(asPeer(witness));
+        receiver.addWitnessNotificationHandler(new SendLatchHandler<>(witnessNotificationLatch, WitnessNotification.class));
+        witness.addWitnessRequestHandler(new RetrieveAddrsWitnessHandler(witness));
+        var count = 5;
+        var received = new CountDownLatch(count);
+        receiver.addReceiveHandler(new SendLatchHandler<>(received, DataMessage.class));
+
+        var batchOptions = new BatchOptions(Optional.of(count), Optional.of(Duration.ofMinutes(1)), Optional.of(BatchSigning.MERKLE_ROOT));
+        var connectionId = sender.connect(receiver.id(), new ConnectionOptions(sender.id(), Optional.of(batchOptions)), TransportUtils.defaultOptions());
+        assertTrue(witnessNotificationLatch.await(5, TimeUnit.SECONDS));
+
+        var futures = new ArrayList<CompletableFuture<MessageId>>();
+        for(int i = 0; i < count; i++) {
+            futures.add(sender.sendPipelined(connectionId, data, TransportUtils.defaultOptions()));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        for(var future : futures) {
+            var messageId = future.get();
+            var message = witness.messageStore().find(messageId).orElseThrow();
+            var witnessHash = sha256(CanonicalEncoding.encode(message.witnessParts()));
+            assertTrue(MerkleSignatures.open(witnessHash, message.witnessSignature().orElseThrow()).isPresent());
+            verifyMessage(sender, messageId, messageId.sequenceNumber(), data, MessageVerificationMode.SENDER_ONLY);
+            verifyMessage(witness, messageId, messageId.sequenceNumber(), data, MessageVerificationMode.SENDER_AND_WITNESS);
+            verifyMessage(receiver, messageId, messageId.sequenceNumber(), data, MessageVerificationMode.SENDER_AND_WITNESS);
+            verifyAssessment(receiver, sender.id(), messageId, REWARD);
+            verifyAssessment(receiver, witness.id(), messageId, REWARD);
+        }
+
+        // queries are answered and checked per message just like for unbatched messages
+        var messageId = futures.get(2).get();
+        query(receiver, sender.id(), messageId, REWARD, 1);
+        query(sender, witness.id(), messageId, REWARD, 1);
+    }
+
+    @Test
+    void testNegotiatedHashAlgorithm() throws InterruptedException, NoSuchAlgorithmException {
+        var options = new ConnectionOptions(sender.id(), Optional.empty(), Optional.of("SHA-512/256"));
+        var connectionId = connect(sender, ephemeralAddress, witness, ephemeralAddress, receiver, ephemeralAddress, options);
+        for(var node : List.of(sender, witness, receiver)) {
+            try(var ref = node.findConnection(connectionId)) {
+                if(!(ref instanceof Connection.Readable(Connection connection))) {
+                    fail("connection not found");
+                    return;
+                }
+                assertEquals("SHA-512/256", connection.hashAlgorithm());
+            }
+        }
+
+        var messageId = send(sender, connectionId);
+        var resp = receiver.query(witness.id(), messageId, new TransportOptions()).queryResponse();
+        assertEquals("SHA-512/256", resp.hashAlgorithm());
+        var expectedHash = MessageDigest.getInstance("SHA-512/256")
+                .digest(CanonicalEncoding.encode(witness.messageStore().find(messageId).orElseThrow().witnessParts()).bytes());
+        assertEquals(Bytes.of(expectedHash), resp.messageDetails().messageHash());
+
+        query(receiver, witness.id(), messageId, REWARD, 1);
+        query(witness, sender.id(), messageId, REWARD, 1);
+        close(sender, connectionId, witness, receiver);
+    }
+
+    @Test
+    void testUnsupportedHashAlgorithm() {
+        sender.transport().add(ephemeralAddress);
+        var options = new ConnectionOptions(sender.id(), Optional.empty(), Optional.of("not-a-digest"));
+        var ex = assertThrows(IllegalArgumentException.class, () -> sender.connect(receiver.id(), options, new TransportOptions()));
+        assertEquals("Unsupported hash algorithm not-a-digest", ex.getMessage());
+    }
+
     @Test
     void testMaliciousSenderBadSig() throws NoSuchAlgorithmException, InterruptedException {
         var cfg = MaliciousNode.Configuration.builder().sendBadSig(true).build();
@@ -508,10 +740,10 @@ class IntegrationTest {
     private void verifyMessage(
             Node node,
             MessageId messageId,
-            @SuppressWarnings("SameParameterValue") long seqNo,
+            long seqNo,
             Bytes data,
             MessageVerificationMode mode
-    ) throws JsonProcessingException {
+    ) {
         try(var ref = node.findConnection(messageId.connectionId())) {
             if(!(ref instanceof Connection.Readable(Connection connection))) {
                 fail("connection not found");
@@ -527,11 +759,11 @@ class IntegrationTest {
             switch(mode) {
                 case SENDER_AND_WITNESS:
                     pubKeys = node.keyStore().findPublicKeys(connection.witness().orElseThrow());
-                    encoded = Bytes.of(objectMapper.writeValueAsBytes(message.witnessParts()));
+                    encoded = CanonicalEncoding.encode(message.witnessParts());
                     verifyMessage(pubKeys, encoded, message.witnessSignature().orElseThrow());
                 case SENDER_ONLY:
                     pubKeys = node.keyStore().findPublicKeys(connection.sender());
-                    encoded = Bytes.of(objectMapper.writeValueAsBytes(message.senderParts()));
+                    encoded = CanonicalEncoding.encode(message.senderParts());
                     verifyMessage(pubKeys, encoded, message.senderSignature().orElseThrow());
                     break;
             }
@@ -540,7 +772,27 @@ class IntegrationTest {
 
     private void verifyMessage(Collection<PublicKey> pubKeys, Bytes data, Bytes signature) {
         var key = pubKeys.iterator().next();
-        assertTrue(key.verify(data, signature));
+        var batchSignature = MerkleSignatures.open(sha256(data), signature);
+        if(batchSignature.isPresent()) {
+            assertTrue(key.verifyHash(batchSignature.get().root(), unwrap(key, batchSignature.get().rootSignature())));
+        } else {
+            assertTrue(key.verify(data, unwrap(key, signature)));
+        }
+    }
+
+    private static Bytes unwrap(PublicKey key, Bytes signature) {
+        var keyed = KeyedSignatures.open(signature);
+        assertTrue(keyed.isPresent());
+        assertEquals(key.fingerprint(), keyed.get().fingerprint());
+        return keyed.get().signature();
+    }
+
+    private static Bytes sha256(Bytes data) {
+        try {
+            return Bytes.of(MessageDigest.getInstance("SHA-256").digest(data.bytes()));
+        } catch(NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
     }
 
     private void verifyAssessment(Node node, PeerId peerId, MessageId messageId, Assessment.Status expected) {
@@ -1,8 +1,14 @@
 package com.github.arobie1992.clarinet.adt;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -114,4 +120,62 @@ class BytesTest {
         assertEquals("[77]", bytes.toString());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testWrapNull() {
+        assertThrows(NullPointerException.class, () -> Bytes.wrap(null));
+    }
+
+    @Test
+    void testWrapDoesNotCopy() {
+        var wrapped = Bytes.wrap(byteArr);
+        assertEquals(bytes, wrapped);
+        byteArr[0] = 90;
+        assertArrayEquals(byteArr, wrapped.bytes());
+        assertNotEquals(bytes, wrapped);
+    }
+
+    @Test
+    void testLength() {
+        assertEquals(expected.length, bytes.length());
+    }
+
+    @Test
+    void testReadOnlyBuffer() {
+        var buffer = bytes.asReadOnlyBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(expected.length, buffer.remaining());
+        assertEquals(expected[0], buffer.get(0));
+        assertThrows(ReadOnlyBufferException.class, () -> buffer.put(0, (byte) 32));
+        assertArrayEquals(expected, bytes.bytes());
+    }
+
+    @Test
+    void testInputStream() throws IOException {
+        try(var in = bytes.asInputStream()) {
+            assertArrayEquals(expected, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testWriteTo() throws IOException {
+        var out = new ByteArrayOutputStream();
+        bytes.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    void testUpdate() throws NoSuchAlgorithmException {
+        var digest = MessageDigest.getInstance("SHA-256");
+        bytes.update(digest);
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(expected), digest.digest());
+    }
+
+    @Test
+    void testJsonRoundTrip() throws IOException {
+        var objectMapper = new ObjectMapper();
+        var json = objectMapper.writeValueAsString(bytes);
+        assertEquals("{\"bytes\":\"TQ==\"}", json);
+        assertEquals(bytes, objectMapper.readValue(json, Bytes.class));
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchOptionsTest {
+
+    @Test
+    void testNoArgsConstructor() {
+        var options = new BatchOptions();
+        assertTrue(options.maxBatchSize().isEmpty());
+        assertTrue(options.linger().isEmpty());
+        assertTrue(options.signing().isEmpty());
+    }
+
+    @Test
+    void testNonPositiveMaxBatchSize() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new BatchOptions(Optional.of(0), Optional.empty(), Optional.empty()));
+        assertEquals("maxBatchSize must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNegativeLinger() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new BatchOptions(Optional.empty(), Optional.of(Duration.ofMillis(-1)), Optional.empty()));
+        assertEquals("linger must be non-negative", ex.getMessage());
+    }
+
+    @Test
+    void testZeroLinger() {
+        assertEquals(Optional.of(Duration.ZERO), new BatchOptions(Optional.empty(), Optional.of(Duration.ZERO), Optional.empty()).linger());
+    }
+}
@@ -24,6 +24,7 @@ class CloseHandlerProxyTest {
 
     private SendHandler<CloseRequest> handler;
     private ConnectionStore connectionStore;
+    private SimpleNode node;
     private CloseHandlerProxy proxy;
     private ConnectionImpl connection;
 
@@ -32,7 +33,8 @@ class CloseHandlerProxyTest {
         //noinspection unchecked
         handler = (SendHandler<CloseRequest>) mock(SendHandler.class);
         connectionStore = mock(ConnectionStore.class);
-        proxy = new CloseHandlerProxy(null, connectionStore);
+        node = mock(SimpleNode.class);
+        proxy = new CloseHandlerProxy(null, connectionStore, node);
         connection = new ConnectionImpl(closeRequest.connectionId(), PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN);
         connection.lock.writeLock().lock();
 
@@ -41,13 +43,19 @@ class CloseHandlerProxyTest {
 
     @Test
     void testNullConnectionStore() {
-        assertThrows(NullPointerException.class, () -> new CloseHandlerProxy(handler, null));
+        assertThrows(NullPointerException.class, () -> new CloseHandlerProxy(handler, null, node));
+    }
+
+    @Test
+    void testNullNode() {
+        assertThrows(NullPointerException.class, () -> new CloseHandlerProxy(handler, connectionStore, null));
     }
 
     @Test
     void testDefaultHandler() {
         proxy.handle(remoteInformation, closeRequest);
         assertEquals(Connection.Status.CLOSED, connection.status());
+        verify(node).connectionClosed(closeRequest.connectionId());
     }
 
     @Test
@@ -55,11 +63,12 @@ class CloseHandlerProxyTest {
         when(connectionStore.findForWrite(closeRequest.connectionId())).thenReturn(new Connection.Absent());
         var ex = assertThrows(NoSuchConnectionException.class, () -> proxy.handle(remoteInformation, closeRequest));
         assertEquals(closeRequest.connectionId(), ex.connectionId());
+        verify(node, never()).connectionClosed(any());
     }
 
     @Test
     void testUserHandlerCalled() {
-        proxy = new CloseHandlerProxy(handler, connectionStore);
+        proxy = new CloseHandlerProxy(handler, connectionStore, node);
         proxy.handle(remoteInformation, closeRequest);
         assertEquals(Connection.Status.CLOSED, connection.status());
         verify(handler).handle(remoteInformation, closeRequest);
@@ -72,7 +81,7 @@ class CloseHandlerProxyTest {
 
     @Test
     void testUserHandlerInputType() {
-        proxy = new CloseHandlerProxy(handler, connectionStore);
+        proxy = new CloseHandlerProxy(handler, connectionStore, node);
         when(handler.inputType()).thenReturn(CloseRequest.class);
         assertEquals(CloseRequest.class, proxy.inputType());
     }
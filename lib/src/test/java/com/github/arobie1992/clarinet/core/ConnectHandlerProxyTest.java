@@ -40,6 +40,7 @@ class ConnectHandlerProxyTest {
     @BeforeEach
     public void setUp() {
         node = mock(SimpleNode.class);
+        when(node.hashAlgorithms()).thenReturn(new HashAlgorithms(Set.of()));
         when(node.id()).thenReturn(PeerUtils.receiverId());
 
         //noinspection unchecked
@@ -52,7 +53,7 @@ class ConnectHandlerProxyTest {
                 Connection.Status.AWAITING_WITNESS
         );
         connection.lock.writeLock().lock();
-        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS))
+        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS, "SHA-256"))
                 .thenReturn(new Writeable(connection));
         connectHandlerProxy = new ConnectHandlerProxy(null, connectionStore, node);
         peerStore = mock(PeerStore.class);
@@ -67,6 +68,7 @@ class ConnectHandlerProxyTest {
         assertEquals(expected, actual);
         verify(peerStore).save(remoteInformation.peer());
         verify(node, never()).selectWitness(any(), any(), any());
+        verify(node).prefetchKeys(remoteInformation.peer());
     }
 
     @Test
@@ -85,9 +87,10 @@ class ConnectHandlerProxyTest {
         var expected = new Some<>(new ConnectResponse(true, "test reject"));
         when(handler.handle(remoteInformation, connectRequest)).thenReturn(expected);
         assertEquals(expected, connectHandlerProxy.handle(remoteInformation, connectRequest));
-        verify(connectionStore, never()).accept(any(), any(), any(), any());
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
         verify(peerStore).save(remoteInformation.peer());
         verify(node, never()).selectWitness(any(), any(), any());
+        verify(node, never()).prefetchKeys(any());
     }
 
     @Test
@@ -103,6 +106,7 @@ class ConnectHandlerProxyTest {
         assertEquals(remoteInformation.peer().addresses(), storedPeer.addresses());
         verify(peerStore).save(storedPeer);
         verify(node, never()).selectWitness(any(), any(), any());
+        verify(node).prefetchKeys(storedPeer);
     }
 
     @Test
@@ -127,7 +131,7 @@ class ConnectHandlerProxyTest {
                 Connection.Status.REQUESTING_WITNESS
         );
         connection.lock.writeLock().lock();
-        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.REQUESTING_WITNESS))
+        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.REQUESTING_WITNESS, "SHA-256"))
                 .thenReturn(new Writeable(connection));
         var expected = new Some<>(new ConnectResponse(false, null));
         var actual = connectHandlerProxy.handle(remoteInformation, request);
@@ -136,9 +140,63 @@ class ConnectHandlerProxyTest {
         verify(node).selectWitness(remoteInformation.peer(), connection, new TransportOptions());
     }
 
+    @Test
+    void testHashAlgorithm() {
+        var request = new ConnectRequest(
+                connectRequest.connectionId(),
+                connectRequest.sender(),
+                new ConnectionOptions(PeerUtils.senderId(), Optional.empty(), Optional.of("SHA-512/256"))
+        );
+        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS, "SHA-512/256"))
+                .thenReturn(new Writeable(connection));
+        assertEquals(new Some<>(new ConnectResponse(false, null)), connectHandlerProxy.handle(remoteInformation, request));
+        verify(connectionStore).accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS, "SHA-512/256");
+    }
+
+    @Test
+    void testUnsupportedHashAlgorithm() {
+        connectHandlerProxy = new ConnectHandlerProxy(handler, connectionStore, node);
+        var request = new ConnectRequest(
+                connectRequest.connectionId(),
+                connectRequest.sender(),
+                new ConnectionOptions(PeerUtils.senderId(), Optional.empty(), Optional.of("not-a-digest"))
+        );
+        var expected = new Some<>(new ConnectResponse(true, "Unsupported hash algorithm not-a-digest"));
+        assertEquals(expected, connectHandlerProxy.handle(remoteInformation, request));
+        verify(handler, never()).handle(any(), any());
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
+        verify(node, never()).prefetchKeys(any());
+    }
+
+    @Test
+    void testInsecureHashAlgorithm() {
+        connectHandlerProxy = new ConnectHandlerProxy(handler, connectionStore, node);
+        var request = new ConnectRequest(
+                connectRequest.connectionId(),
+                connectRequest.sender(),
+                new ConnectionOptions(PeerUtils.senderId(), Optional.empty(), Optional.of("SHA-1"))
+        );
+        var expected = new Some<>(new ConnectResponse(true, "Unsupported hash algorithm SHA-1"));
+        assertEquals(expected, connectHandlerProxy.handle(remoteInformation, request));
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testOptedIntoHashAlgorithm() {
+        when(node.hashAlgorithms()).thenReturn(new HashAlgorithms(Set.of("SHA-1")));
+        var request = new ConnectRequest(
+                connectRequest.connectionId(),
+                connectRequest.sender(),
+                new ConnectionOptions(PeerUtils.senderId(), Optional.empty(), Optional.of("SHA-1"))
+        );
+        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS, "SHA-1"))
+                .thenReturn(new Writeable(connection));
+        assertEquals(new Some<>(new ConnectResponse(false, null)), connectHandlerProxy.handle(remoteInformation, request));
+    }
+
     @Test
     void testFailsToAcceptConnection() {
-        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS))
+        when(connectionStore.accept(connectRequest.connectionId(), connection.sender(), node.id(), Connection.Status.AWAITING_WITNESS, "SHA-256"))
                 .thenReturn(new Connection.Absent());
         var ex = assertThrows(IllegalStateException.class, () -> connectHandlerProxy.handle(remoteInformation, connectRequest));
         assertEquals("Failed to accept connection " + connectRequest.connectionId(), ex.getMessage());
@@ -64,4 +64,11 @@ class ConnectionIdTest {
         assertNotEquals(connectionId.hashCode(), other.hashCode());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testUUIDRoundTrip() {
+        var id = ConnectionId.random();
+        assertEquals(id, ConnectionId.fromUUID(id.asUUID()));
+        assertEquals(id.toString(), id.asUUID().toString());
+    }
+
+}
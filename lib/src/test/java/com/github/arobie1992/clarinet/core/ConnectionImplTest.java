@@ -12,6 +12,10 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,6 +43,18 @@ class ConnectionImplTest {
         }
     }
 
+    @Test
+    void testHashAlgorithm() {
+        assertEquals("SHA-256", connection.hashAlgorithm());
+        var other = new ConnectionImpl(id, PeerUtils.senderId(), PeerUtils.receiverId(), status, "SHA-512/256");
+        assertEquals("SHA-512/256", other.hashAlgorithm());
+    }
+
+    @Test
+    void testNullHashAlgorithm() {
+        assertThrows(NullPointerException.class, () -> new ConnectionImpl(id, PeerUtils.senderId(), PeerUtils.receiverId(), status, null));
+    }
+
     @Test
     void testSetWitness() {
         connection.lock.writeLock().lock();
@@ -70,6 +86,16 @@ class ConnectionImplTest {
         assertEquals(ConnectionImpl.Status.OPEN, connection.status());
     }
 
+    @Test
+    void testSetStatusKeepsWitness() {
+        connection.lock.writeLock().lock();
+        connection.setWitness(PeerUtils.witnessId());
+        connection.setStatus(ConnectionImpl.Status.OPEN);
+        connection.lock.writeLock().unlock();
+        assertEquals(ConnectionImpl.Status.OPEN, connection.status());
+        assertEquals(Optional.of(PeerUtils.witnessId()), connection.witness());
+    }
+
     @Test
     void testSetStatusThrowsWhenNotWriteLocked() {
         var ex = assertThrows(WriteLockException.class, () -> connection.setStatus(ConnectionImpl.Status.OPEN));
@@ -78,14 +104,31 @@ class ConnectionImplTest {
 
     @Test
     void testNextSequenceNumber() {
-        connection.lock.writeLock().lock();
         assertEquals(0, connection.nextSequenceNumber());
+        assertEquals(1, connection.nextSequenceNumber());
     }
 
     @Test
-    void testNextSequenceNumberThrowsWhenNotWriteLocked() {
-        var ex = assertThrows(WriteLockException.class, () -> connection.nextSequenceNumber());
-        assertEquals("nextSequenceNumber", ex.operationName());
+    void testNextSequenceNumberConcurrent() throws InterruptedException {
+        var threads = 8;
+        var perThread = 1000;
+        var seqNos = ConcurrentHashMap.<Long>newKeySet();
+        var start = new CountDownLatch(1);
+        try(var executor = Executors.newFixedThreadPool(threads)) {
+            for(int i = 0; i < threads; i++) {
+                executor.submit(() -> {
+                    start.await();
+                    for(int j = 0; j < perThread; j++) {
+                        seqNos.add(connection.nextSequenceNumber());
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+        }
+        assertEquals(threads * perThread, seqNos.size());
+        assertEquals(threads * perThread - 1, seqNos.stream().mapToLong(Long::longValue).max().orElseThrow());
+        assertEquals(threads * perThread, connection.nextSequenceNumber());
     }
 
     @Test
@@ -93,8 +136,7 @@ class ConnectionImplTest {
         // I'm not iterating it up to long max val
         var field = ConnectionImpl.class.getDeclaredField("nextSeqNo");
         field.setAccessible(true);
-        field.set(connection, Long.MAX_VALUE);
-        connection.lock.writeLock().lock();
+        ((AtomicLong) field.get(connection)).set(Long.MAX_VALUE);
         assertEquals(Long.MAX_VALUE, connection.nextSequenceNumber());
         var ex = assertThrows(ArithmeticException.class, () -> connection.nextSequenceNumber());
         assertEquals("nextSequenceNumber overflow", ex.getMessage());
@@ -1,7 +1,10 @@
 package com.github.arobie1992.clarinet.core;
 
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
 import org.junit.jupiter.api.Test;
 
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class ConnectionOptionsTest {
@@ -11,4 +14,25 @@ class ConnectionOptionsTest {
         assertThrows(NullPointerException.class, () -> new ConnectionOptions(null));
     }
 
+    @Test
+    void testNullBatchOptions() {
+        assertThrows(NullPointerException.class, () -> new ConnectionOptions(PeerUtils.senderId(), null));
+    }
+
+    @Test
+    void testNullHashAlgorithm() {
+        assertThrows(NullPointerException.class, () -> new ConnectionOptions(PeerUtils.senderId(), Optional.empty(), null));
+    }
+
+    @Test
+    void testHashAlgorithmDefault() {
+        assertTrue(new ConnectionOptions(PeerUtils.senderId()).hashAlgorithm().isEmpty());
+        assertEquals("SHA-256", ConnectionOptions.DEFAULT_HASH_ALGORITHM);
+    }
+
+    @Test
+    void testBatchingOffByDefault() {
+        assertTrue(new ConnectionOptions(PeerUtils.senderId()).batchOptions().isEmpty());
+    }
+
 }
\ No newline at end of file
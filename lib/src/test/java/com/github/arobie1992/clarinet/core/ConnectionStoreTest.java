@@ -24,7 +24,7 @@ class ConnectionStoreTest {
     @BeforeEach
     void setUp() {
         connectionStore = new ConnectionStore();
-        try(var ref = connectionStore.create(PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN)) {
+        try(var ref = connectionStore.create(PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-256")) {
             if(!(ref instanceof Writeable(ConnectionImpl conn))) {
                 throw new IllegalStateException("Something went wrong when creating connection");
             }
@@ -38,23 +38,36 @@ class ConnectionStoreTest {
             mock.when(ConnectionId::random).thenReturn(connectionId);
             assertThrows(
                     ExistingConnectionIdException.class,
-                    () -> connectionStore.create(PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN)
+                    () -> connectionStore.create(PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-256")
             );
         }
     }
 
+    @Test
+    void testAcceptHashAlgorithm() {
+        var connectionId = ConnectionId.random();
+        connectionStore.accept(connectionId, PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-512/256");
+        try(var ref = connectionStore.findForRead(connectionId)) {
+            if (!(ref instanceof Connection.Readable(Connection connection))) {
+                fail("Was expecting ConnectionStore.Readable but got " + ref.getClass());
+                return;
+            }
+            assertEquals("SHA-512/256", connection.hashAlgorithm());
+        }
+    }
+
     @Test
     void testAcceptCollision() {
         assertThrows(
                 ExistingConnectionIdException.class,
-                () -> connectionStore.accept(connectionId, PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN)
+                () -> connectionStore.accept(connectionId, PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-256")
         );
     }
 
     @Test
     void testAccept() {
         var connectionId = ConnectionId.random();
-        connectionStore.accept(connectionId, PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN);
+        connectionStore.accept(connectionId, PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-256");
         try(var ref = connectionStore.findForRead(connectionId)) {
             if (ref instanceof Connection.Readable(Connection connection)) {
                 new TestConnection(connectionId, PeerUtils.senderId(), Optional.empty(), PeerUtils.receiverId(), Connection.Status.OPEN)
@@ -65,6 +78,12 @@ class ConnectionStoreTest {
         }
     }
 
+    @Test
+    void testContains() {
+        assertTrue(connectionStore.contains(connectionId));
+        assertFalse(connectionStore.contains(ConnectionId.random()));
+    }
+
     @Test
     void testFindForReadAbsent() {
         try(var ref = connectionStore.findForRead(ConnectionId.random())) {
@@ -0,0 +1,34 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashAlgorithmsTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"SHA-256", "SHA-384", "SHA-512", "SHA-512/256", "SHA3-224", "SHA3-256", "SHA3-384", "SHA3-512"})
+    void testPermitsSecure(String algorithm) {
+        assertTrue(new HashAlgorithms(Set.of()).permits(algorithm));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"MD2", "MD5", "SHA-1", "SHA-224", "not-a-digest"})
+    void testRejectsOthers(String algorithm) {
+        assertFalse(new HashAlgorithms(Set.of()).permits(algorithm));
+    }
+
+    @Test
+    void testOptIn() {
+        assertTrue(new HashAlgorithms(Set.of("MD5")).permits("MD5"));
+    }
+
+    @Test
+    void testOptInStillNeedsProvider() {
+        assertFalse(new HashAlgorithms(Set.of("not-a-digest")).permits("not-a-digest"));
+    }
+}
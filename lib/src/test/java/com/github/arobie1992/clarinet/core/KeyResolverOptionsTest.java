@@ -0,0 +1,56 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyResolverOptionsTest {
+
+    @Test
+    void testNoArgsConstructor() {
+        var options = new KeyResolverOptions();
+        assertTrue(options.initialBackoff().isEmpty());
+        assertTrue(options.maxBackoff().isEmpty());
+        assertTrue(options.maxPrefetches().isEmpty());
+    }
+
+    @Test
+    void testNonPositiveMaxPrefetches() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new KeyResolverOptions(Optional.empty(), Optional.empty(), Optional.of(0)));
+        assertEquals("maxPrefetches must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveInitialBackoff() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new KeyResolverOptions(Optional.of(Duration.ZERO), Optional.empty()));
+        assertEquals("initialBackoff must be positive", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> new KeyResolverOptions(Optional.of(Duration.ofSeconds(-1)), Optional.empty()));
+        assertEquals("initialBackoff must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveMaxBackoff() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new KeyResolverOptions(Optional.empty(), Optional.of(Duration.ZERO)));
+        assertEquals("maxBackoff must be positive", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> new KeyResolverOptions(Optional.empty(), Optional.of(Duration.ofSeconds(-1))));
+        assertEquals("maxBackoff must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testMaxBackoffLessThanInitial() {
+        var ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> new KeyResolverOptions(Optional.of(Duration.ofSeconds(2)), Optional.of(Duration.ofSeconds(1)))
+        );
+        assertEquals("maxBackoff must not be less than initialBackoff", ex.getMessage());
+    }
+
+    @Test
+    void testEqualBackoffs() {
+        var options = new KeyResolverOptions(Optional.of(Duration.ofSeconds(1)), Optional.of(Duration.ofSeconds(1)));
+        assertEquals(options.initialBackoff(), options.maxBackoff());
+    }
+}
@@ -0,0 +1,295 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.crypto.KeyStore;
+import com.github.arobie1992.clarinet.crypto.PublicKey;
+import com.github.arobie1992.clarinet.impl.inmemory.InMemoryKeyStore;
+import com.github.arobie1992.clarinet.impl.inmemory.InMemoryPeerStore;
+import com.github.arobie1992.clarinet.peer.Peer;
+import com.github.arobie1992.clarinet.peer.PeerStore;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class KeyResolverTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final List<Runnable> prefetches = new ArrayList<>();
+    private final Peer peer = new Peer(PeerUtils.senderId());
+    private final PublicKey key = mock(PublicKey.class);
+
+    private KeyStore keyStore;
+    private PeerStore peerStore;
+
+    @BeforeEach
+    void setUp() {
+        keyStore = new InMemoryKeyStore();
+        peerStore = new InMemoryPeerStore();
+        peerStore.save(peer);
+    }
+
+    private KeyResolver resolver(Function<Peer, Collection<PublicKey>> fetcher) {
+        return resolver(fetcher, new KeyResolverOptions(Optional.of(Duration.ofSeconds(1)), Optional.of(Duration.ofSeconds(5))));
+    }
+
+    private KeyResolver resolver(Function<Peer, Collection<PublicKey>> fetcher, KeyResolverOptions options) {
+        Function<Peer, Collection<PublicKey>> counting = p -> {
+            fetches.incrementAndGet();
+            return fetcher.apply(p);
+        };
+        return new KeyResolver(keyStore, peerStore, counting, options, clock::get, prefetches::add);
+    }
+
+    private static Function<Peer, Collection<PublicKey>> failing() {
+        return p -> {
+            throw new KeysRequestException(p.id());
+        };
+    }
+
+    @Test
+    void testKnownKeysNotFetched() {
+        keyStore.addPublicKey(peer.id(), key);
+        var resolver = resolver(p -> List.of());
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(0, fetches.get());
+    }
+
+    @Test
+    void testFetchedKeysStored() {
+        var resolver = resolver(p -> List.of(key));
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(List.of(key), List.copyOf(keyStore.findPublicKeys(peer.id())));
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testUnknownPeerNotCached() {
+        var resolver = resolver(p -> List.of(key));
+        var unknown = PeerUtils.receiverId();
+        var ex = assertThrows(NoSuchPeerException.class, () -> resolver.resolve(unknown));
+        assertEquals(unknown, ex.peerId());
+        assertEquals(0, fetches.get());
+
+        peerStore.save(new Peer(unknown));
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(unknown)));
+    }
+
+    @Test
+    void testConcurrentResolutionsShareFetch() throws InterruptedException, ExecutionException, TimeoutException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var resolver = resolver(p -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return List.of(key);
+        });
+
+        var callers = 8;
+        var results = new ArrayList<Future<Collection<PublicKey>>>();
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            results.add(executor.submit(() -> resolver.resolve(peer.id())));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for(int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> resolver.resolve(peer.id())));
+            }
+            release.countDown();
+            for(var result : results) {
+                assertEquals(List.of(key), List.copyOf(result.get(5, TimeUnit.SECONDS)));
+            }
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testFailedRequestBacksOff() {
+        var resolver = resolver(failing());
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        var ex = assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(peer.id(), ex.peerId());
+        assertEquals(1, fetches.get());
+
+        clock.addAndGet(SECOND);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testBackoffDoublesUpToMax() {
+        var resolver = resolver(failing());
+        // failures back off for 1, 2, 4, 5, and 5 seconds
+        for(var backoff : List.of(1L, 2L, 4L, 5L, 5L)) {
+            var before = fetches.get();
+            assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+            assertEquals(before + 1, fetches.get());
+            clock.addAndGet(backoff * SECOND - 1);
+            assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+            assertEquals(before + 1, fetches.get());
+            clock.incrementAndGet();
+        }
+    }
+
+    @Test
+    void testMaxBackoffDefaultsToAtLeastInitial() {
+        var resolver = resolver(failing(), new KeyResolverOptions(Optional.of(Duration.ofMinutes(10)), Optional.empty()));
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(2, fetches.get());
+        clock.addAndGet(Duration.ofMinutes(10).toNanos() - 1);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testNoUsableKeysBacksOff() {
+        var resolver = resolver(p -> List.of());
+        assertTrue(resolver.resolve(peer.id()).isEmpty());
+        assertTrue(resolver.resolve(peer.id()).isEmpty());
+        assertEquals(1, fetches.get());
+
+        clock.addAndGet(SECOND);
+        assertTrue(resolver.resolve(peer.id()).isEmpty());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testRetryAfterBackoffSucceeds() {
+        var fail = new AtomicInteger(2);
+        var resolver = resolver(p -> {
+            if(fail.getAndDecrement() > 0) {
+                throw new KeysRequestException(p.id());
+            }
+            return List.of(key);
+        });
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        clock.addAndGet(SECOND);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        clock.addAndGet(2 * SECOND);
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    void testPrefetch() {
+        var resolver = resolver(p -> List.of(key));
+        resolver.prefetch(peer);
+        assertEquals(1, prefetches.size());
+        assertEquals(0, fetches.get());
+        prefetches.getFirst().run();
+        assertEquals(List.of(key), List.copyOf(keyStore.findPublicKeys(peer.id())));
+
+        assertEquals(List.of(key), List.copyOf(resolver.resolve(peer.id())));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testPrefetchSkipsKnownKeys() {
+        keyStore.addPublicKey(peer.id(), key);
+        resolver(p -> List.of(key)).prefetch(peer);
+        assertTrue(prefetches.isEmpty());
+    }
+
+    @Test
+    void testPrefetchSkipsInFlight() {
+        var resolver = resolver(p -> List.of(key));
+        resolver.prefetch(peer);
+        resolver.prefetch(peer);
+        assertEquals(1, prefetches.size());
+    }
+
+    @Test
+    void testResolveJoinsPrefetch() throws InterruptedException, ExecutionException, TimeoutException {
+        var resolver = resolver(p -> List.of(key));
+        resolver.prefetch(peer);
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var result = executor.submit(() -> resolver.resolve(peer.id()));
+            assertThrows(TimeoutException.class, () -> result.get(100, TimeUnit.MILLISECONDS));
+            prefetches.getFirst().run();
+            assertEquals(List.of(key), List.copyOf(result.get(5, TimeUnit.SECONDS)));
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void testFailedPrefetchBacksOff() {
+        var resolver = resolver(failing());
+        resolver.prefetch(peer);
+        prefetches.getFirst().run();
+        assertEquals(1, fetches.get());
+
+        resolver.prefetch(peer);
+        assertEquals(1, prefetches.size());
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(1, fetches.get());
+
+        clock.addAndGet(SECOND);
+        resolver.prefetch(peer);
+        assertEquals(2, prefetches.size());
+    }
+
+    @Test
+    void testPrefetchesBounded() {
+        var resolver = resolver(p -> List.of(key), new KeyResolverOptions(Optional.empty(), Optional.empty(), Optional.of(1)));
+        var other = new Peer(PeerUtils.receiverId());
+        peerStore.save(other);
+        resolver.prefetch(peer);
+        resolver.prefetch(other);
+        assertEquals(1, prefetches.size());
+
+        prefetches.getFirst().run();
+        resolver.prefetch(other);
+        assertEquals(2, prefetches.size());
+    }
+
+    @Test
+    void testStaleFailuresPruned() {
+        var resolver = resolver(failing());
+        var other = new Peer(PeerUtils.receiverId());
+        peerStore.save(other);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(1, resolver.trackedFailures());
+
+        // 1 second of backoff then 5 of the maximum backoff
+        clock.addAndGet(6 * SECOND);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(other.id()));
+        assertEquals(1, resolver.trackedFailures());
+    }
+
+    @Test
+    void testStaleFailureStartsOver() {
+        var resolver = resolver(failing());
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        clock.addAndGet(6 * SECOND);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(2, fetches.get());
+        clock.addAndGet(SECOND);
+        assertThrows(KeysRequestException.class, () -> resolver.resolve(peer.id()));
+        assertEquals(3, fetches.get());
+    }
+}
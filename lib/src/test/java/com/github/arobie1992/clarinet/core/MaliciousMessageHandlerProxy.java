@@ -16,7 +16,7 @@ public class MaliciousMessageHandlerProxy extends MessageHandlerProxy {
             ConnectionStore connectionStore,
             MaliciousNode node
     ) {
-        super(userWitnessHandler, userReceiveHandler, connectionStore, node);
+        super(userWitnessHandler, userReceiveHandler, connectionStore, node, node.verifier, node.messageOrder);
         this.connectionStore = connectionStore;
         this.node = node;
     }
@@ -13,7 +13,7 @@ public class MaliciousQueryHandlerProxy extends QueryHandlerProxy {
     private final MaliciousNode node;
 
     MaliciousQueryHandlerProxy(ExchangeHandler<QueryRequest, QueryResponse> userHandler, MaliciousNode node) {
-        super(userHandler, node);
+        super(userHandler, node, node.queryResponseCache);
         this.node = node;
     }
 
@@ -0,0 +1,42 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.adt.None;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.peer.Peer;
+import com.github.arobie1992.clarinet.testutils.AddressUtils;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import com.github.arobie1992.clarinet.transport.RemoteInformation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MessageBatchHandlerProxyTest {
+
+    private final MessageHandlerProxy messageHandler = mock(MessageHandlerProxy.class);
+    private final MessageBatchHandlerProxy proxy = new MessageBatchHandlerProxy(messageHandler);
+
+    @Test
+    void testNullMessageHandler() {
+        assertThrows(NullPointerException.class, () -> new MessageBatchHandlerProxy(null));
+    }
+
+    @Test
+    void testDelegates() {
+        var remoteInformation = new RemoteInformation(new Peer(PeerUtils.senderId(), Set.of()), AddressUtils.defaultAddress());
+        var connectionId = ConnectionId.random();
+        var batch = new MessageBatch(connectionId, List.of(new DataMessage(new MessageId(connectionId, 0), Bytes.of(new byte[]{1}))), BatchSigning.PER_MESSAGE);
+        assertEquals(new None<>(), proxy.handle(remoteInformation, batch));
+        verify(messageHandler).handleBatch(remoteInformation, batch);
+    }
+
+    @Test
+    void testInputType() {
+        assertEquals(MessageBatch.class, proxy.inputType());
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.MessageId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageBatchTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final DataMessage message = new DataMessage(new MessageId(connectionId, 0), Bytes.of(new byte[]{1}));
+
+    @Test
+    void testNullConnectionId() {
+        assertThrows(NullPointerException.class, () -> new MessageBatch(null, List.of(message), BatchSigning.PER_MESSAGE));
+    }
+
+    @Test
+    void testNullSigning() {
+        assertThrows(NullPointerException.class, () -> new MessageBatch(connectionId, List.of(message), null));
+    }
+
+    @Test
+    void testEmpty() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new MessageBatch(connectionId, List.of(), BatchSigning.PER_MESSAGE));
+        assertEquals("messages must not be empty", ex.getMessage());
+    }
+
+    @Test
+    void testOtherConnection() {
+        var other = new DataMessage(new MessageId(ConnectionId.random(), 0), Bytes.of(new byte[]{1}));
+        var ex = assertThrows(IllegalArgumentException.class, () -> new MessageBatch(connectionId, List.of(message, other), BatchSigning.PER_MESSAGE));
+        assertEquals("Message " + other.messageId() + " is not on connection " + connectionId, ex.getMessage());
+    }
+
+    @Test
+    void testMessagesCopied() {
+        var messages = new ArrayList<>(List.of(message));
+        var batch = new MessageBatch(connectionId, messages, BatchSigning.PER_MESSAGE);
+        messages.clear();
+        assertEquals(List.of(message), batch.messages());
+    }
+}
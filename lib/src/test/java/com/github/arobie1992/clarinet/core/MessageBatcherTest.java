@@ -0,0 +1,128 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import com.github.arobie1992.clarinet.transport.TransportOptions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageBatcherTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final TransportOptions transportOptions = new TransportOptions();
+    private final List<MessageBatch> sent = new CopyOnWriteArrayList<>();
+
+    private MessageBatcher batcher(int maxBatchSize, Duration linger) {
+        return new MessageBatcher(connectionId, new BatchOptions(Optional.of(maxBatchSize), Optional.of(linger), Optional.empty()), (batch, options) -> {
+            assertSame(transportOptions, options);
+            sent.add(batch);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private DataMessage message(long seqNo) {
+        return new DataMessage(new MessageId(connectionId, seqNo), Bytes.of(new byte[]{(byte) seqNo}));
+    }
+
+    @Test
+    void testSendsWhenFull() {
+        var batcher = batcher(2, Duration.ofMinutes(1));
+        var first = batcher.add(message(0), transportOptions);
+        assertFalse(first.isDone());
+        var second = batcher.add(message(1), transportOptions);
+        assertTrue(first.isDone());
+        assertTrue(second.isDone());
+        assertEquals(1, sent.size());
+        assertEquals(List.of(0L, 1L), sent.getFirst().messages().stream().map(m -> m.messageId().sequenceNumber()).toList());
+    }
+
+    @Test
+    void testSendsAfterLinger() throws Exception {
+        var batcher = batcher(10, Duration.ofMillis(20));
+        var first = batcher.add(message(0), transportOptions);
+        var second = batcher.add(message(1), transportOptions);
+        second.get(5, TimeUnit.SECONDS);
+        assertTrue(first.isDone());
+        assertEquals(1, sent.size());
+        assertEquals(2, sent.getFirst().messages().size());
+    }
+
+    @Test
+    void testLingerAfterFullDoesNotResend() throws Exception {
+        var batcher = batcher(1, Duration.ofMillis(1));
+        batcher.add(message(0), transportOptions);
+        Thread.sleep(50);
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void testFlush() {
+        var batcher = batcher(10, Duration.ofMinutes(1));
+        var first = batcher.add(message(0), transportOptions);
+        var flushed = batcher.flush();
+        assertTrue(first.isDone());
+        assertTrue(flushed.isDone());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    void testFlushEmpty() {
+        assertTrue(batcher(10, Duration.ofMinutes(1)).flush().isDone());
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void testSendFailure() {
+        var failure = new PeerSendException(PeerUtils.witnessId());
+        var batcher = new MessageBatcher(connectionId, new BatchOptions(Optional.of(1), Optional.empty(), Optional.empty()), (batch, options) -> {
+            throw failure;
+        });
+        var future = batcher.add(message(0), transportOptions);
+        var ex = assertThrows(ExecutionException.class, future::get);
+        assertSame(failure, ex.getCause());
+    }
+
+    @Test
+    void testFail() throws Exception {
+        var batcher = batcher(10, Duration.ofMillis(20));
+        var pending = batcher.add(message(0), transportOptions);
+        var cause = new RuntimeException("closed");
+        batcher.fail(cause);
+        var ex = assertThrows(ExecutionException.class, pending::get);
+        assertSame(cause, ex.getCause());
+        ex = assertThrows(ExecutionException.class, () -> batcher.add(message(1), transportOptions).get());
+        assertSame(cause, ex.getCause());
+        // the linger time passing must not send the failed batch
+        Thread.sleep(50);
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void testDefaultSigning() {
+        batcher(1, Duration.ZERO).add(message(0), transportOptions);
+        assertEquals(BatchSigning.PER_MESSAGE, sent.getFirst().signing());
+    }
+
+    @Test
+    void testSigning() {
+        var options = new BatchOptions(Optional.of(1), Optional.empty(), Optional.of(BatchSigning.MERKLE_ROOT));
+        var batcher = new MessageBatcher(connectionId, options, (batch, transportOptions) -> {
+            sent.add(batch);
+            return CompletableFuture.completedFuture(null);
+        });
+        assertEquals(BatchSigning.MERKLE_ROOT, batcher.signing());
+        batcher.add(message(0), transportOptions);
+        assertEquals(BatchSigning.MERKLE_ROOT, sent.getFirst().signing());
+    }
+}
@@ -86,7 +86,7 @@ class MessageForwardHandlerProxyTest {
         when(assessmentStore.find(PeerUtils.receiverId(), forward.summary().messageId())).thenReturn(recAsmt);
         witAsmt = new Assessment(PeerUtils.witnessId(), forward.summary().messageId(), Assessment.Status.NONE);
         when(assessmentStore.find(PeerUtils.witnessId(), forward.summary().messageId())).thenReturn(witAsmt);
-        when(node.hash(message.witnessParts(), forward.summary().hashAlgorithm())).thenReturn(forward.summary().hash());
+        when(node.witnessHash(message, forward.summary().hashAlgorithm())).thenReturn(forward.summary().hash());
 
         var repService = mock(ReputationService.class);
         when(node.reputationService()).thenReturn(repService);
@@ -156,11 +156,21 @@ class MessageForwardHandlerProxyTest {
     void testHashIncorrect() {
         var hash = Bytes.of(new byte[]{1,1,1,1});
         assertNotEquals(forward.summary().hash(), hash);
-        when(node.hash(message.witnessParts(), forward.summary().hashAlgorithm())).thenReturn(hash);
+        when(node.witnessHash(message, forward.summary().hashAlgorithm())).thenReturn(hash);
         proxy.handle(remoteInformation, forward);
         verify(assessmentStore).save(eq(witAsmt.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
     }
 
+    @Test
+    void testHashAlgorithmNotConnections() {
+        var summary = new MessageSummary(forward.summary().messageId(), forward.summary().hash(), "MD5", forward.summary().witnessSignature());
+        var md5Forward = new MessageForward(summary, forward.signature());
+        assertDoesNotThrow(() -> proxy.handle(remoteInformation, md5Forward));
+        verify(assessmentStore).save(eq(recAsmt.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
+        verify(node, never()).witnessHash(any(), eq("MD5"));
+        verifyNoInteractions(userHandler);
+    }
+
     @Test
     void testHashCorrect() {
         proxy.handle(remoteInformation, forward);
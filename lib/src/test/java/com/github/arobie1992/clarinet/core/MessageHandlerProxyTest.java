@@ -1,7 +1,7 @@
 package com.github.arobie1992.clarinet.core;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
 import com.github.arobie1992.clarinet.message.*;
 import com.github.arobie1992.clarinet.peer.Peer;
 import com.github.arobie1992.clarinet.peer.PeerStore;
@@ -13,12 +13,17 @@ import com.github.arobie1992.clarinet.testutils.PeerUtils;
 import com.github.arobie1992.clarinet.transport.RemoteInformation;
 import com.github.arobie1992.clarinet.transport.SendHandler;
 import com.github.arobie1992.clarinet.transport.TransportOptions;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -37,6 +42,8 @@ class MessageHandlerProxyTest {
     private ConnectionStore connectionStore;
     private SimpleNode node;
     private MessageHandlerProxy proxy;
+    private final ExecutorService verifier = Executors.newVirtualThreadPerTaskExecutor();
+    private final MessageOrder order = new MessageOrder();
     private ConnectionImpl connection;
     private MessageStore messageStore;
     private PeerStore peerStore;
@@ -46,7 +53,7 @@ class MessageHandlerProxyTest {
     private AssessmentStore assessmentStore;
 
     @BeforeEach
-    void setUp() throws JsonProcessingException {
+    void setUp() {
         message = new DataMessage(new MessageId(ConnectionId.random(), 0), Bytes.of(new byte[]{77, 50, 126}));
         message.setSenderSignature(senderSignature);
         //noinspection unchecked
@@ -55,13 +62,17 @@ class MessageHandlerProxyTest {
         receiveHandler = (SendHandler<DataMessage>) mock(SendHandler.class);
         connectionStore = mock(ConnectionStore.class);
         node = mock(SimpleNode.class);
-        proxy = new MessageHandlerProxy(null, null, connectionStore, node);
+        proxy = new MessageHandlerProxy(null, null, connectionStore, node, verifier, order);
 
         connection = new ConnectionImpl(message.messageId().connectionId(), PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN);
         // this gets thrown away after each test so it should be fine
         connection.lock.writeLock().lock();
         connection.setWitness(PeerUtils.witnessId());
-        when(connectionStore.findForWrite(message.messageId().connectionId())).thenReturn(new Writeable(connection));
+        // the write lock is held by this thread so the read lock can always be taken as well
+        when(connectionStore.findForRead(message.messageId().connectionId())).thenAnswer(inv -> {
+            connection.lock.readLock().lock();
+            return new Connection.Readable(connection);
+        });
 
         when(node.id()).thenReturn(connection.witness().orElseThrow());
         // don't know why the mock isn't working when I pass the witness parts (probably a dumb mistake), so do this for now.
@@ -82,25 +93,30 @@ class MessageHandlerProxyTest {
         when(assessmentStore.find(connection.sender(), message.messageId())).thenReturn(senderAsmt);
         when(assessmentStore.find(connection.witness().orElseThrow(), message.messageId())).thenReturn(witnessAsmt);
 
-        when(node.checkSignature(message.senderParts(), connection.sender(), message.senderSignature())).thenReturn(true);
+        when(node.checkSignature(eq(message.senderParts()), eq(connection.sender()), eq(message.senderSignature()), any(VerifiedRoots.class))).thenReturn(true);
 
         var repSvc = mock(ReputationService.class);
         when(node.reputationService()).thenReturn(repSvc);
     }
 
+    @AfterEach
+    void tearDown() {
+        verifier.shutdown();
+    }
+
     @Test
     void testNullConnectionStore() {
-        assertThrows(NullPointerException.class, () -> new MessageHandlerProxy(witnessHandler, receiveHandler, null, node));
+        assertThrows(NullPointerException.class, () -> new MessageHandlerProxy(witnessHandler, receiveHandler, null, node, verifier, order));
     }
 
     @Test
     void testNullNode() {
-        assertThrows(NullPointerException.class, () -> new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, null));
+        assertThrows(NullPointerException.class, () -> new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, null, verifier, order));
     }
 
     @Test
     void testConnectionAbsent() {
-        when(connectionStore.findForWrite(message.messageId().connectionId())).thenReturn(new Connection.Absent());
+        when(connectionStore.findForRead(message.messageId().connectionId())).thenReturn(new Connection.Absent());
         var ex = assertThrows(NoSuchConnectionException.class, () -> proxy.handle(remoteInformation, message));
         assertEquals(message.messageId().connectionId(), ex.connectionId());
     }
@@ -119,10 +135,40 @@ class MessageHandlerProxyTest {
     void testConnectionNoWitness() {
         connection = new ConnectionImpl(message.messageId().connectionId(), PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN);
         connection.lock.writeLock().lock();
-        when(connectionStore.findForWrite(message.messageId().connectionId())).thenReturn(new Writeable(connection));
         assertThrows(NoSuchElementException.class, () -> proxy.handle(remoteInformation, message));
     }
 
+    @Test
+    void testConnectionRemovedDuringVerification() {
+        when(connectionStore.findForRead(message.messageId().connectionId())).thenAnswer(inv -> {
+            connection.lock.readLock().lock();
+            return new Connection.Readable(connection);
+        }).thenReturn(new Connection.Absent());
+        var ex = assertThrows(NoSuchConnectionException.class, () -> proxy.handle(remoteInformation, message));
+        assertEquals(message.messageId().connectionId(), ex.connectionId());
+        verify(messageStore, never()).add(any());
+    }
+
+    @Test
+    void testConnectionClosedDuringVerification() {
+        when(node.genSignature(any(Object.class))).thenAnswer(inv -> {
+            connection.setStatus(Connection.Status.CLOSED);
+            return witnessSignature;
+        });
+        var ex = assertThrows(ConnectionStatusException.class, () -> proxy.handle(remoteInformation, message));
+        assertEquals(Connection.Status.CLOSED, ex.status());
+        verify(messageStore, never()).add(any());
+    }
+
+    @Test
+    void testSenderVerificationFailurePropagates() {
+        var failure = new NoSuchPeerException(connection.sender());
+        when(node.checkSignature(eq(message.senderParts()), eq(connection.sender()), eq(message.senderSignature()), any(VerifiedRoots.class))).thenThrow(failure);
+        var ex = assertThrows(NoSuchPeerException.class, () -> proxy.handle(remoteInformation, message));
+        assertSame(failure, ex);
+        verify(messageStore, never()).add(any());
+    }
+
     @Test
     void testNodeNotWitnessOrReceiver() {
         when(node.id()).thenReturn(PeerUtils.senderId());
@@ -140,13 +186,14 @@ class MessageHandlerProxyTest {
         proxy.handle(remoteInformation, message);
         assertEquals(witnessSignature, message.witnessSignature().orElseThrow());
         verify(messageStore).add(message);
+        verify(node).witnessHash(message, "SHA-256");
         verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.REWARD)), any());
         verify(node).sendInternal(connection.receiver(), message, new TransportOptions());
     }
 
     @Test
-    void testWitnessSignatureInvalid() throws JsonProcessingException {
-        when(node.checkSignature(message.senderParts(), connection.sender(), message.senderSignature())).thenReturn(false);
+    void testWitnessSignatureInvalid() {
+        when(node.checkSignature(eq(message.senderParts()), eq(connection.sender()), eq(message.senderSignature()), any(VerifiedRoots.class))).thenReturn(false);
         proxy.handle(remoteInformation, message);
         assertEquals(witnessSignature, message.witnessSignature().orElseThrow());
         verify(messageStore).add(message);
@@ -154,18 +201,33 @@ class MessageHandlerProxyTest {
         verify(node).sendInternal(connection.receiver(), message, new TransportOptions());
     }
 
+    @Test
+    void testWitnessForwardsWithoutConnectionLocked() {
+        doAnswer(inv -> {
+            assertEquals(0, connection.lock.getReadHoldCount());
+            return null;
+        }).when(node).sendInternal(connection.receiver(), message, new TransportOptions());
+        doAnswer(inv -> {
+            assertEquals(0, connection.lock.getReadHoldCount());
+            return null;
+        }).when(messageStore).add(message);
+        proxy.handle(remoteInformation, message);
+        verify(node).sendInternal(connection.receiver(), message, new TransportOptions());
+        verify(connectionStore, never()).findForWrite(any());
+    }
+
     @Test
     void testUserWitnessHandlerCalled() {
-        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
         proxy.handle(remoteInformation, message);
         verify(witnessHandler).handle(remoteInformation, message);
     }
 
     @Test
-    void testReceiverSignaturesValid() throws JsonProcessingException {
+    void testReceiverSignaturesValid() {
         when(node.id()).thenReturn(connection.receiver());
         message.setWitnessSignature(witnessSignature);
-        when(node.checkSignature(message.witnessParts(), connection.witness().orElseThrow(), message.witnessSignature())).thenReturn(true);
+        when(node.checkSignature(eq(message.witnessParts()), eq(connection.witness().orElseThrow()), eq(message.witnessSignature()), any(VerifiedRoots.class))).thenReturn(true);
         proxy.handle(remoteInformation, message);
         verify(messageStore).add(message);
         verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.REWARD)), any());
@@ -173,31 +235,31 @@ class MessageHandlerProxyTest {
     }
 
     @Test
-    void testReceiverWitnessSignatureInvalid() throws JsonProcessingException {
+    void testReceiverWitnessSignatureInvalid() {
         when(node.id()).thenReturn(connection.receiver());
         message.setWitnessSignature(witnessSignature);
-        when(node.checkSignature(message.witnessParts(), connection.sender(), message.witnessSignature())).thenReturn(false);
+        when(node.checkSignature(eq(message.witnessParts()), eq(connection.sender()), eq(message.witnessSignature()), any(VerifiedRoots.class))).thenReturn(false);
         proxy.handle(remoteInformation, message);
         verify(messageStore).add(message);
         verify(assessmentStore).save(eq(witnessAsmt.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
     }
 
     @Test
-    void testReceiverSenderSignatureInvalid() throws JsonProcessingException {
+    void testReceiverSenderSignatureInvalid() {
         when(node.id()).thenReturn(connection.receiver());
         message.setWitnessSignature(witnessSignature);
 
         when(node.id()).thenReturn(connection.receiver());
         var msgHash = Bytes.of(new byte[]{4,4,4});
-        when(node.hash(message.witnessParts(), "SHA-256")).thenReturn(msgHash);
+        when(node.witnessHash(message, "SHA-256")).thenReturn(msgHash);
         var fwdSig = Bytes.of(new byte[]{7,7,7});
         var summary = new MessageSummary(message.messageId(), msgHash, "SHA-256", witnessSignature);
         when(node.genSignature(summary)).thenReturn(fwdSig);
         var sender = mock(Peer.class);
         when(peerStore.find(connection.sender())).thenReturn(Optional.of(sender));
 
-        when(node.checkSignature(message.witnessParts(), connection.witness().orElseThrow(), message.witnessSignature())).thenReturn(true);
-        when(node.checkSignature(message.senderParts(), connection.sender(), message.senderSignature())).thenReturn(false);
+        when(node.checkSignature(eq(message.witnessParts()), eq(connection.witness().orElseThrow()), eq(message.witnessSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        when(node.checkSignature(eq(message.senderParts()), eq(connection.sender()), eq(message.senderSignature()), any(VerifiedRoots.class))).thenReturn(false);
         proxy.handle(remoteInformation, message);
         verify(messageStore).add(message);
         verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.WEAK_PENALTY)), any());
@@ -205,10 +267,192 @@ class MessageHandlerProxyTest {
         verify(node).sendForPeer(sender, Endpoints.MESSAGE_FORWARD.name(), new MessageForward(summary, fwdSig), new TransportOptions());
     }
 
+    @Test
+    void testUsesConnectionHashAlgorithm() {
+        connection = new ConnectionImpl(message.messageId().connectionId(), PeerUtils.senderId(), PeerUtils.receiverId(), Connection.Status.OPEN, "SHA-512/256");
+        connection.lock.writeLock().lock();
+        connection.setWitness(PeerUtils.witnessId());
+        when(node.id()).thenReturn(connection.receiver());
+        message.setWitnessSignature(witnessSignature);
+        var msgHash = Bytes.of(new byte[]{4,4,4});
+        when(node.witnessHash(message, "SHA-512/256")).thenReturn(msgHash);
+        var fwdSig = Bytes.of(new byte[]{7,7,7});
+        var summary = new MessageSummary(message.messageId(), msgHash, "SHA-512/256", witnessSignature);
+        when(node.genSignature(summary)).thenReturn(fwdSig);
+        var sender = mock(Peer.class);
+        when(peerStore.find(connection.sender())).thenReturn(Optional.of(sender));
+        when(node.checkSignature(eq(message.witnessParts()), eq(connection.witness().orElseThrow()), eq(message.witnessSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        when(node.checkSignature(eq(message.senderParts()), eq(connection.sender()), eq(message.senderSignature()), any(VerifiedRoots.class))).thenReturn(false);
+
+        proxy.handle(remoteInformation, message);
+
+        verify(node, never()).witnessHash(message, "SHA-256");
+        verify(node).sendForPeer(sender, Endpoints.MESSAGE_FORWARD.name(), new MessageForward(summary, fwdSig), new TransportOptions());
+    }
+
+    @Test
+    void testAppliedInSequenceOrder() throws InterruptedException {
+        // the handlers run on separate threads here, so this thread can't keep the write lock
+        connection.lock.writeLock().unlock();
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        when(node.checkSignature(eq(second.senderParts()), eq(connection.sender()), eq(second.senderSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        when(assessmentStore.find(connection.sender(), second.messageId()))
+                .thenReturn(new Assessment(PeerUtils.senderId(), second.messageId(), Assessment.Status.NONE));
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
+
+        var early = Thread.startVirtualThread(() -> proxy.handle(remoteInformation, second));
+        Thread.sleep(100);
+        verify(messageStore, never()).add(second);
+        proxy.handle(remoteInformation, message);
+        early.join();
+
+        var inOrder = inOrder(messageStore, witnessHandler);
+        inOrder.verify(messageStore).add(message);
+        inOrder.verify(witnessHandler).handle(remoteInformation, message);
+        inOrder.verify(messageStore).add(second);
+        inOrder.verify(witnessHandler).handle(remoteInformation, second);
+    }
+
+    @Test
+    void testWitnessBatch() {
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        when(node.checkSignature(eq(second.senderParts()), eq(connection.sender()), eq(second.senderSignature()), any(VerifiedRoots.class))).thenReturn(false);
+        var secondAsmt = new Assessment(PeerUtils.senderId(), second.messageId(), Assessment.Status.NONE);
+        when(assessmentStore.find(connection.sender(), second.messageId())).thenReturn(secondAsmt);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
+
+        var batch = new MessageBatch(message.messageId().connectionId(), List.of(message, second), BatchSigning.PER_MESSAGE);
+        proxy.handleBatch(remoteInformation, batch);
+
+        assertEquals(witnessSignature, message.witnessSignature().orElseThrow());
+        assertEquals(witnessSignature, second.witnessSignature().orElseThrow());
+        var inOrder = inOrder(messageStore, witnessHandler);
+        inOrder.verify(messageStore).add(message);
+        inOrder.verify(witnessHandler).handle(remoteInformation, message);
+        inOrder.verify(messageStore).add(second);
+        inOrder.verify(witnessHandler).handle(remoteInformation, second);
+        verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.REWARD)), any());
+        verify(assessmentStore).save(eq(secondAsmt.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
+        verify(node).sendBatchInternal(connection.receiver(), batch, new TransportOptions());
+        verify(node, never()).sendInternal(any(), any(), any());
+        // once for the batch and once for each message as it is applied
+        verify(connectionStore, times(3)).findForRead(message.messageId().connectionId());
+    }
+
+    @Test
+    void testBatchTakesOneVerifierSlotPerMessage() {
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        when(node.checkSignature(eq(second.senderParts()), eq(connection.sender()), eq(second.senderSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        when(assessmentStore.find(connection.sender(), second.messageId()))
+                .thenReturn(new Assessment(PeerUtils.senderId(), second.messageId(), Assessment.Status.NONE));
+        var submitted = new ArrayList<Runnable>();
+        // waiting on a second slot from inside the verifier could deadlock a fully busy verifier
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, task -> {
+            submitted.add(task);
+            task.run();
+        }, order);
+
+        proxy.handleBatch(remoteInformation, new MessageBatch(message.messageId().connectionId(), List.of(message, second), BatchSigning.PER_MESSAGE));
+
+        assertEquals(2, submitted.size());
+        assertEquals(witnessSignature, second.witnessSignature().orElseThrow());
+    }
+
+    @Test
+    void testWitnessMerkleBatch() {
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        when(node.checkSignature(eq(second.senderParts()), eq(connection.sender()), eq(second.senderSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        var secondAsmt = new Assessment(PeerUtils.senderId(), second.messageId(), Assessment.Status.NONE);
+        when(assessmentStore.find(connection.sender(), second.messageId())).thenReturn(secondAsmt);
+        var hashes = Map.of(
+                message.witnessParts(), Bytes.of(new byte[32]),
+                second.witnessParts(), Bytes.of(new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0})
+        );
+        when(node.signatureHash(any())).thenAnswer(inv -> hashes.get(inv.getArgument(0)));
+        when(node.canSignHash()).thenReturn(true);
+        when(node.genSignatureHash(any())).thenReturn(witnessSignature);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
+
+        var batch = new MessageBatch(message.messageId().connectionId(), List.of(message, second), BatchSigning.MERKLE_ROOT);
+        proxy.handleBatch(remoteInformation, batch);
+
+        // one signature covers the whole batch and each message carries its own proof
+        verify(node, times(1)).genSignatureHash(any());
+        verify(node, never()).genSignature(any(Object.class));
+        for(var m : List.of(message, second)) {
+            var opened = MerkleSignatures.open(hashes.get(m.witnessParts()), m.witnessSignature().orElseThrow()).orElseThrow();
+            assertEquals(witnessSignature, opened.rootSignature());
+        }
+        verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.REWARD)), any());
+        verify(assessmentStore).save(eq(secondAsmt.updateStatus(Assessment.Status.REWARD)), any());
+        verify(node).sendBatchInternal(connection.receiver(), batch, new TransportOptions());
+    }
+
+    @Test
+    void testWitnessMerkleBatchWithoutPrehash() {
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        when(node.checkSignature(eq(second.senderParts()), eq(connection.sender()), eq(second.senderSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        when(assessmentStore.find(connection.sender(), second.messageId())).thenReturn(new Assessment(PeerUtils.senderId(), second.messageId(), Assessment.Status.NONE));
+        var secondSignature = Bytes.of(new byte[]{7});
+        when(node.genSignature(second.witnessParts())).thenReturn(secondSignature);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
+
+        var batch = new MessageBatch(message.messageId().connectionId(), List.of(message, second), BatchSigning.MERKLE_ROOT);
+        proxy.handleBatch(remoteInformation, batch);
+
+        // none of the witness's keys can sign the root, so each message gets its own signature
+        verify(node, never()).genSignatureHash(any());
+        assertEquals(witnessSignature, message.witnessSignature().orElseThrow());
+        assertEquals(secondSignature, second.witnessSignature().orElseThrow());
+        verify(node).sendBatchInternal(connection.receiver(), batch, new TransportOptions());
+    }
+
+    @Test
+    void testReceiverBatch() {
+        when(node.id()).thenReturn(connection.receiver());
+        message.setWitnessSignature(witnessSignature);
+        when(node.checkSignature(eq(message.witnessParts()), eq(connection.witness().orElseThrow()), eq(message.witnessSignature()), any(VerifiedRoots.class))).thenReturn(true);
+        var second = new DataMessage(new MessageId(message.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        second.setSenderSignature(senderSignature);
+        second.setWitnessSignature(witnessSignature);
+        when(node.checkSignature(eq(second.witnessParts()), eq(connection.witness().orElseThrow()), eq(second.witnessSignature()), any(VerifiedRoots.class))).thenReturn(false);
+        var secondAsmt = new Assessment(PeerUtils.witnessId(), second.messageId(), Assessment.Status.NONE);
+        when(assessmentStore.find(connection.witness().orElseThrow(), second.messageId())).thenReturn(secondAsmt);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
+
+        proxy.handleBatch(remoteInformation, new MessageBatch(message.messageId().connectionId(), List.of(message, second), BatchSigning.PER_MESSAGE));
+
+        // every message in the batch shares the roots verified so far
+        var roots = ArgumentCaptor.forClass(VerifiedRoots.class);
+        verify(node, times(4)).checkSignature(any(), any(), any(), roots.capture());
+        assertEquals(1, roots.getAllValues().stream().distinct().count());
+        verify(messageStore).add(message);
+        verify(messageStore).add(second);
+        verify(assessmentStore).save(eq(senderAsmt.updateStatus(Assessment.Status.REWARD)), any());
+        verify(assessmentStore).save(eq(witnessAsmt.updateStatus(Assessment.Status.REWARD)), any());
+        verify(assessmentStore).save(eq(secondAsmt.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
+        verify(receiveHandler).handle(remoteInformation, message);
+        verify(receiveHandler).handle(remoteInformation, second);
+        verify(node, never()).sendBatchInternal(any(), any(), any());
+    }
+
+    @Test
+    void testBatchConnectionClosed() {
+        connection.setStatus(Connection.Status.CLOSED);
+        var batch = new MessageBatch(message.messageId().connectionId(), List.of(message), BatchSigning.PER_MESSAGE);
+        assertThrows(ConnectionStatusException.class, () -> proxy.handleBatch(remoteInformation, batch));
+        verify(messageStore, never()).add(any());
+    }
+
     @Test
     void testUserReceiveHandlerCalled() {
         when(node.id()).thenReturn(connection.receiver());
-        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node);
+        proxy = new MessageHandlerProxy(witnessHandler, receiveHandler, connectionStore, node, verifier, order);
         proxy.handle(remoteInformation, message);
         verify(receiveHandler).handle(remoteInformation, message);
     }
@@ -0,0 +1,85 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.MessageId;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageOrderTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final List<Long> applied = Collections.synchronizedList(new ArrayList<>());
+
+    private Thread applyAsync(MessageOrder order, long sequenceNumber) {
+        return Thread.startVirtualThread(() -> order.apply(new MessageId(connectionId, sequenceNumber), () -> applied.add(sequenceNumber)));
+    }
+
+    @Test
+    void testInOrder() {
+        var order = new MessageOrder();
+        for(long i = 0; i < 3; i++) {
+            var sequenceNumber = i;
+            order.apply(new MessageId(connectionId, i), () -> applied.add(sequenceNumber));
+        }
+        assertEquals(List.of(0L, 1L, 2L), applied);
+    }
+
+    @Test
+    void testWaitsForPredecessor() throws InterruptedException {
+        var order = new MessageOrder(Duration.ofSeconds(10));
+        var second = applyAsync(order, 2);
+        Thread.sleep(50);
+        var first = applyAsync(order, 1);
+        Thread.sleep(50);
+        assertEquals(List.of(), applied);
+        order.apply(new MessageId(connectionId, 0), () -> applied.add(0L));
+        first.join();
+        second.join();
+        assertEquals(List.of(0L, 1L, 2L), applied);
+    }
+
+    @Test
+    void testSkipsGapAfterMaxWait() throws InterruptedException {
+        var order = new MessageOrder(Duration.ofMillis(100));
+        var third = applyAsync(order, 3);
+        Thread.sleep(20);
+        var second = applyAsync(order, 2);
+        second.join();
+        third.join();
+        assertEquals(List.of(2L, 3L), applied);
+
+        // the skipped message is applied as soon as it turns up
+        order.apply(new MessageId(connectionId, 0), () -> applied.add(0L));
+        assertEquals(List.of(2L, 3L, 0L), applied);
+        order.apply(new MessageId(connectionId, 4), () -> applied.add(4L));
+        assertEquals(List.of(2L, 3L, 0L, 4L), applied);
+    }
+
+    @Test
+    void testApplyFailureStillAdvances() {
+        var order = new MessageOrder(Duration.ofSeconds(10));
+        try {
+            order.apply(new MessageId(connectionId, 0), () -> {
+                throw new IllegalStateException();
+            });
+        } catch(IllegalStateException ignored) {
+        }
+        order.apply(new MessageId(connectionId, 1), () -> applied.add(1L));
+        assertEquals(List.of(1L), applied);
+    }
+
+    @Test
+    void testConnectionClosed() {
+        var order = new MessageOrder();
+        order.apply(new MessageId(connectionId, 0), () -> applied.add(0L));
+        order.apply(new MessageId(ConnectionId.random(), 0), () -> applied.add(0L));
+        assertEquals(2, order.tracked());
+        order.connectionClosed(connectionId);
+        assertEquals(1, order.tracked());
+    }
+}
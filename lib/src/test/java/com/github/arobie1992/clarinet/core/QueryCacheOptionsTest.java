@@ -0,0 +1,37 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCacheOptionsTest {
+
+    @Test
+    void testNoArgsConstructor() {
+        var options = new QueryCacheOptions();
+        assertTrue(options.maxEntries().isEmpty());
+        assertTrue(options.timeToLive().isEmpty());
+    }
+
+    @Test
+    void testNegativeMaxEntries() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new QueryCacheOptions(Optional.of(-1), Optional.empty()));
+        assertEquals("maxEntries must be non-negative", ex.getMessage());
+    }
+
+    @Test
+    void testZeroMaxEntries() {
+        assertEquals(Optional.of(0), new QueryCacheOptions(Optional.of(0), Optional.empty()).maxEntries());
+    }
+
+    @Test
+    void testNonPositiveTimeToLive() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new QueryCacheOptions(Optional.empty(), Optional.of(Duration.ZERO)));
+        assertEquals("timeToLive must be positive", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> new QueryCacheOptions(Optional.empty(), Optional.of(Duration.ofSeconds(-1))));
+        assertEquals("timeToLive must be positive", ex.getMessage());
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.arobie1992.clarinet.core;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.HashingException;
 import com.github.arobie1992.clarinet.message.*;
 import com.github.arobie1992.clarinet.peer.Peer;
 import com.github.arobie1992.clarinet.reputation.Assessment;
@@ -14,7 +14,7 @@ import com.github.arobie1992.clarinet.transport.SendHandler;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.io.UncheckedIOException;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -50,7 +50,7 @@ class QueryForwardHandlerProxyTest {
     }
 
     @BeforeEach
-    void setUp() throws JsonProcessingException {
+    void setUp() {
         //noinspection unchecked
         userHandler = (SendHandler<QueryForward>) mock(SendHandler.class);
         connectionStore = mock(ConnectionStore.class);
@@ -76,6 +76,7 @@ class QueryForwardHandlerProxyTest {
         connection.lock.writeLock().unlock();
         connection.lock.readLock().lock();
         when(connectionStore.findForRead(messageId.connectionId())).thenReturn(new Connection.Readable(connection));
+        when(node.witnessHashMatches(any(), any(), any(), any())).thenCallRealMethod();
 
         messageStore = mock(MessageStore.class);
         when(node.messageStore()).thenReturn(messageStore);
@@ -83,16 +84,16 @@ class QueryForwardHandlerProxyTest {
     }
 
     @Test
-    void testCheckSigThrowsJsonException() throws JsonProcessingException {
+    void testCheckSigThrowsHashingException() {
+        var cause = new HashingException(new NoSuchAlgorithmException());
         when(node.checkSignature(queryForward.queryResponse(), remoteInformation.peer().id(), queryForward.signature()))
-                .thenThrow(JsonProcessingException.class);
-        var ex = assertThrows(UncheckedIOException.class, () -> proxy.handle(remoteInformation, queryForward));
-        assertNotNull(ex.getCause());
-        assertEquals(JsonProcessingException.class, ex.getCause().getClass());
+                .thenThrow(cause);
+        var ex = assertThrows(HashingException.class, () -> proxy.handle(remoteInformation, queryForward));
+        assertSame(cause, ex);
     }
 
     @Test
-    void testInvalidForwarderSig() throws JsonProcessingException {
+    void testInvalidForwarderSig() {
         when(node.checkSignature(queryForward.queryResponse(), remoteInformation.peer().id(), queryForward.signature()))
                 .thenReturn(false);
         proxy.handle(remoteInformation, queryForward);
@@ -101,7 +102,7 @@ class QueryForwardHandlerProxyTest {
     }
 
     @Test
-    void testInvalidQueriedPeerSig() throws JsonProcessingException {
+    void testInvalidQueriedPeerSig() {
         when(node.checkSignature(queryResponse.messageDetails(), queryForward.queriedPeer(), queryResponse.signature()))
                 .thenReturn(false);
         proxy.handle(remoteInformation, queryForward);
@@ -130,7 +131,7 @@ class QueryForwardHandlerProxyTest {
         when(node.directCommunication(queryForward.queriedPeer(), connection.participants())).thenReturn(true);
         var diff = Bytes.of(new byte[]{17});
         assertNotEquals(queryResponse.signature(), diff);
-        when(node.hash(dataMessage.witnessParts(), queryResponse.hashAlgorithm())).thenReturn(diff);
+        when(node.witnessHash(dataMessage, queryResponse.hashAlgorithm())).thenReturn(diff);
         proxy.handle(remoteInformation, queryForward);
         verify(assessmentStore).save(eq(queriedPeerAssessment.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
         verify(userHandler).handle(remoteInformation, queryForward);
@@ -142,7 +143,7 @@ class QueryForwardHandlerProxyTest {
         when(node.getOtherParticipant(connection.participants(), queryForward.queriedPeer())).thenReturn(remoteInformation.peer().id());
         var diff = Bytes.of(new byte[]{17});
         assertNotEquals(queryResponse.signature(), diff);
-        when(node.hash(dataMessage.witnessParts(), queryResponse.hashAlgorithm())).thenReturn(diff);
+        when(node.witnessHash(dataMessage, queryResponse.hashAlgorithm())).thenReturn(diff);
         proxy.handle(remoteInformation, queryForward);
         verify(assessmentStore).save(eq(forwarderAssessment.updateStatus(Assessment.Status.WEAK_PENALTY)), any());
         verify(assessmentStore).save(eq(queriedPeerAssessment.updateStatus(Assessment.Status.WEAK_PENALTY)), any());
@@ -151,7 +152,7 @@ class QueryForwardHandlerProxyTest {
 
     @Test
     void testHashesMatch() {
-        when(node.hash(dataMessage.witnessParts(), queryResponse.hashAlgorithm())).thenReturn(queryResponse.messageDetails().messageHash());
+        when(node.witnessHash(dataMessage, queryResponse.hashAlgorithm())).thenReturn(queryResponse.messageDetails().messageHash());
         proxy.handle(remoteInformation, queryForward);
         verify(assessmentStore).save(eq(queriedPeerAssessment.updateStatus(Assessment.Status.REWARD)), any());
         verify(userHandler).handle(remoteInformation, queryForward);
@@ -160,11 +161,22 @@ class QueryForwardHandlerProxyTest {
     @Test
     void testHashesMatchDefaultHandler() {
         proxy = new QueryForwardHandlerProxy(null, connectionStore, node);
-        when(node.hash(dataMessage.witnessParts(), queryResponse.hashAlgorithm())).thenReturn(queryResponse.messageDetails().messageHash());
+        when(node.witnessHash(dataMessage, queryResponse.hashAlgorithm())).thenReturn(queryResponse.messageDetails().messageHash());
         proxy.handle(remoteInformation, queryForward);
         verify(assessmentStore).save(eq(queriedPeerAssessment.updateStatus(Assessment.Status.REWARD)), any());
     }
 
+    @Test
+    void testHashAlgorithmNotConnections() {
+        when(node.directCommunication(queryForward.queriedPeer(), connection.participants())).thenReturn(true);
+        var response = new QueryResponse(messageDetails, queryResponse.signature(), "SHA-512");
+        var forward = new QueryForward(queryForward.queriedPeer(), response, queryForward.signature());
+        when(node.checkSignature(response, remoteInformation.peer().id(), forward.signature())).thenReturn(true);
+        when(node.witnessHash(dataMessage, "SHA-512")).thenReturn(response.messageDetails().messageHash());
+        assertDoesNotThrow(() -> proxy.handle(remoteInformation, forward));
+        verify(assessmentStore).save(eq(queriedPeerAssessment.updateStatus(Assessment.Status.STRONG_PENALTY)), any());
+    }
+
     @Test
     void testDefaultHandlerInputType() {
         proxy = new QueryForwardHandlerProxy(null, connectionStore, node);
@@ -16,8 +16,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class QueryHandlerProxyTest {
     private final RemoteInformation remoteInformation = new RemoteInformation(
@@ -32,6 +31,7 @@ class QueryHandlerProxyTest {
     private ExchangeHandler<QueryRequest, QueryResponse> handler;
     private SimpleNode node;
     private QueryHandlerProxy proxy;
+    private QueryResponseCache cache;
     private MessageStore messageStore;
 
     public QueryHandlerProxyTest() {
@@ -44,16 +44,18 @@ class QueryHandlerProxyTest {
         //noinspection unchecked
         handler = (ExchangeHandler<QueryRequest, QueryResponse>) mock(ExchangeHandler.class);
         node = mock(SimpleNode.class);
-        proxy = new QueryHandlerProxy(null, node);
+        cache = new QueryResponseCache(new QueryCacheOptions());
+        proxy = new QueryHandlerProxy(null, node, cache);
         messageStore = mock(MessageStore.class);
         when(node.messageStore()).thenReturn(messageStore);
         when(messageStore.find(queryRequest.messageId())).thenReturn(Optional.of(storedMessage));
         when(node.genSignature(expected.messageDetails())).thenReturn(expected.signature());
+        when(node.hashAlgorithm(queryRequest.messageId().connectionId())).thenReturn("SHA-256");
     }
 
     @Test
     void testHonorsUserHandler() {
-        proxy = new QueryHandlerProxy(handler, node);
+        proxy = new QueryHandlerProxy(handler, node, cache);
         var expected = new Some<>(new QueryResponse(new MessageDetails(queryRequest.messageId(), null),null, null));
         when(handler.handle(remoteInformation, queryRequest)).thenReturn(expected);
         assertEquals(expected, proxy.handle(remoteInformation, queryRequest));
@@ -61,7 +63,7 @@ class QueryHandlerProxyTest {
 
     @Test
     void testUserHandlerReturnsNull() {
-        proxy = new QueryHandlerProxy(handler, node);
+        proxy = new QueryHandlerProxy(handler, node, cache);
         when(handler.handle(remoteInformation, queryRequest)).thenReturn(null);
         var ex = assertThrows(NullPointerException.class, () -> proxy.handle(remoteInformation, queryRequest));
         assertEquals("userHandler returned null", ex.getMessage());
@@ -76,10 +78,35 @@ class QueryHandlerProxyTest {
 
     @Test
     void testHasMessage() {
-        when(node.hash(storedMessage.witnessParts(), expected.hashAlgorithm())).thenReturn(expected.messageDetails().messageHash());
+        when(node.witnessHash(storedMessage, expected.hashAlgorithm())).thenReturn(expected.messageDetails().messageHash());
         assertEquals(expected, proxy.handle(remoteInformation, queryRequest).value());
     }
 
+    @Test
+    void testHasMessageCached() {
+        when(node.witnessHash(storedMessage, expected.hashAlgorithm())).thenReturn(expected.messageDetails().messageHash());
+        assertEquals(expected, proxy.handle(remoteInformation, queryRequest).value());
+        assertEquals(expected, proxy.handle(remoteInformation, queryRequest).value());
+        verify(node, times(1)).genSignature(expected.messageDetails());
+        assertEquals(new QueryCacheStats(1, 1, 0, 1), cache.stats());
+    }
+
+    @Test
+    void testUsesConnectionHashAlgorithm() {
+        when(node.hashAlgorithm(queryRequest.messageId().connectionId())).thenReturn("SHA-512/256");
+        when(node.witnessHash(storedMessage, "SHA-512/256")).thenReturn(expected.messageDetails().messageHash());
+        var actual = proxy.handle(remoteInformation, queryRequest).value();
+        assertEquals(new QueryResponse(expected.messageDetails(), expected.signature(), "SHA-512/256"), actual);
+        verify(node, never()).witnessHash(storedMessage, "SHA-256");
+    }
+
+    @Test
+    void testNoStoredMessageNotCached() {
+        when(messageStore.find(queryRequest.messageId())).thenReturn(Optional.empty());
+        proxy.handle(remoteInformation, queryRequest);
+        assertEquals(new QueryCacheStats(0, 0, 0, 0), cache.stats());
+    }
+
     @Test
     void testInputType() {
         assertEquals(QueryRequest.class, proxy.inputType());
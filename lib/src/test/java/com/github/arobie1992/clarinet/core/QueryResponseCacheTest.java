@@ -0,0 +1,148 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.message.MessageDetails;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.QueryResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResponseCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger signed = new AtomicInteger();
+
+    private QueryResponseCache cache(Integer maxEntries, Duration timeToLive) {
+        return new QueryResponseCache(new QueryCacheOptions(Optional.ofNullable(maxEntries), Optional.ofNullable(timeToLive)), clock::get);
+    }
+
+    private Supplier<QueryResponse> signer(MessageId messageId) {
+        return () -> {
+            var sig = signed.incrementAndGet();
+            return new QueryResponse(new MessageDetails(messageId, Bytes.of(new byte[]{1})), Bytes.of(new byte[]{(byte) sig}), "SHA-256");
+        };
+    }
+
+    private MessageId messageId(long seqNo) {
+        return new MessageId(ConnectionId.random(), seqNo);
+    }
+
+    @Test
+    void testHit() {
+        var cache = cache(null, null);
+        var id = messageId(0);
+        var first = cache.get(id, "SHA-256", signer(id));
+        assertSame(first, cache.get(id, "SHA-256", signer(id)));
+        assertEquals(1, signed.get());
+        assertEquals(new QueryCacheStats(1, 1, 0, 1), cache.stats());
+    }
+
+    @Test
+    void testKeyedByAlgorithm() {
+        var cache = cache(null, null);
+        var id = messageId(0);
+        cache.get(id, "SHA-256", signer(id));
+        cache.get(id, "SHA-512", signer(id));
+        assertEquals(2, signed.get());
+        assertEquals(new QueryCacheStats(0, 2, 0, 2), cache.stats());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        var cache = cache(2, null);
+        var a = messageId(0);
+        var b = messageId(1);
+        var c = messageId(2);
+        cache.get(a, "SHA-256", signer(a));
+        cache.get(b, "SHA-256", signer(b));
+        // touch a so b is the least recently used
+        cache.get(a, "SHA-256", signer(a));
+        cache.get(c, "SHA-256", signer(c));
+        assertEquals(new QueryCacheStats(1, 3, 1, 2), cache.stats());
+
+        cache.get(a, "SHA-256", signer(a));
+        assertEquals(3, signed.get());
+        cache.get(b, "SHA-256", signer(b));
+        assertEquals(4, signed.get());
+    }
+
+    @Test
+    void testExpired() {
+        var cache = cache(null, Duration.ofSeconds(1));
+        var id = messageId(0);
+        var first = cache.get(id, "SHA-256", signer(id));
+        clock.addAndGet(Duration.ofMillis(999).toNanos());
+        assertSame(first, cache.get(id, "SHA-256", signer(id)));
+        clock.addAndGet(Duration.ofMillis(1).toNanos());
+        assertNotEquals(first, cache.get(id, "SHA-256", signer(id)));
+        assertEquals(2, signed.get());
+        assertEquals(new QueryCacheStats(1, 2, 1, 1), cache.stats());
+    }
+
+    @Test
+    void testDisabled() {
+        var cache = cache(0, null);
+        var id = messageId(0);
+        cache.get(id, "SHA-256", signer(id));
+        cache.get(id, "SHA-256", signer(id));
+        assertEquals(2, signed.get());
+        assertEquals(new QueryCacheStats(0, 2, 0, 0), cache.stats());
+    }
+
+    @Test
+    void testFailureNotCached() {
+        var cache = cache(null, null);
+        var id = messageId(0);
+        var ex = new IllegalStateException("signing failed");
+        assertSame(ex, assertThrows(IllegalStateException.class, () -> cache.get(id, "SHA-256", () -> {
+            throw ex;
+        })));
+        assertEquals(0, cache.stats().size());
+        cache.get(id, "SHA-256", signer(id));
+        assertEquals(1, signed.get());
+    }
+
+    @Test
+    void testConcurrentMissesSignOnce() throws InterruptedException, ExecutionException {
+        var cache = cache(null, null);
+        var id = messageId(0);
+        var signing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Supplier<QueryResponse> slowSigner = () -> {
+            signing.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return signer(id).get();
+        };
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var first = executor.submit(() -> cache.get(id, "SHA-256", slowSigner));
+            assertTrue(signing.await(5, TimeUnit.SECONDS));
+            var others = new ArrayList<Future<QueryResponse>>();
+            for(int i = 0; i < 8; i++) {
+                others.add(executor.submit(() -> cache.get(id, "SHA-256", slowSigner)));
+            }
+            release.countDown();
+            var response = first.get();
+            for(var other : others) {
+                assertSame(response, other.get());
+            }
+        }
+        assertEquals(1, signed.get());
+    }
+}
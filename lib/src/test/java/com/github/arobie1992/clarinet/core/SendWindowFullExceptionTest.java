@@ -0,0 +1,22 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendWindowFullExceptionTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final SendWindowFullException exception = new SendWindowFullException(connectionId);
+
+    @Test
+    void testMessage() {
+        assertEquals("Send window is full for connection " + connectionId, exception.getMessage());
+    }
+
+    @Test
+    void testConnectionId() {
+        assertEquals(connectionId, exception.connectionId());
+    }
+
+}
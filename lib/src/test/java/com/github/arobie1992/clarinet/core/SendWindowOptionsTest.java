@@ -0,0 +1,40 @@
+package com.github.arobie1992.clarinet.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendWindowOptionsTest {
+
+    @Test
+    void testNoArgsConstructor() {
+        var options = new SendWindowOptions();
+        assertTrue(options.maxInFlight().isEmpty());
+        assertTrue(options.policy().isEmpty());
+        assertTrue(options.blockTimeout().isEmpty());
+    }
+
+    @Test
+    void testNonPositiveMaxInFlight() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new SendWindowOptions(Optional.of(0), Optional.empty(), Optional.empty()));
+        assertEquals("maxInFlight must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNegativeBlockTimeout() {
+        var ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> new SendWindowOptions(Optional.empty(), Optional.empty(), Optional.of(Duration.ofSeconds(-1)))
+        );
+        assertEquals("blockTimeout must be non-negative", ex.getMessage());
+    }
+
+    @Test
+    void testZeroBlockTimeout() {
+        var options = new SendWindowOptions(Optional.empty(), Optional.empty(), Optional.of(Duration.ZERO));
+        assertEquals(Optional.of(Duration.ZERO), options.blockTimeout());
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.message.MessageId;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendWindowTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+
+    private SendWindow window(int maxInFlight, SendWindowOptions.Policy policy, Duration blockTimeout) {
+        return new SendWindow(connectionId, new SendWindowOptions(Optional.of(maxInFlight), Optional.of(policy), Optional.of(blockTimeout)));
+    }
+
+    @Test
+    void testDefaults() {
+        var window = new SendWindow(connectionId, new SendWindowOptions());
+        for(int i = 0; i < 64; i++) {
+            window.acquire();
+        }
+        assertEquals(64, window.inFlight());
+    }
+
+    @Test
+    void testCompletingReleasesSlot() {
+        var window = window(2, SendWindowOptions.Policy.FAIL_FAST, Duration.ZERO);
+        var first = window.acquire();
+        var second = window.acquire();
+        assertEquals(2, window.inFlight());
+        first.complete(new MessageId(connectionId, 0));
+        second.completeExceptionally(new RuntimeException());
+        assertEquals(0, window.inFlight());
+    }
+
+    @Test
+    void testFailFast() {
+        var window = window(1, SendWindowOptions.Policy.FAIL_FAST, Duration.ofSeconds(10));
+        window.acquire();
+        var ex = assertThrows(SendWindowFullException.class, window::acquire);
+        assertEquals(connectionId, ex.connectionId());
+        assertEquals(1, window.inFlight());
+    }
+
+    @Test
+    void testBlockTimesOut() {
+        var window = window(1, SendWindowOptions.Policy.BLOCK, Duration.ofMillis(50));
+        window.acquire();
+        assertThrows(SendWindowFullException.class, window::acquire);
+        assertEquals(1, window.inFlight());
+    }
+
+    @Test
+    void testBlockWaitsForSpace() throws Exception {
+        var window = window(1, SendWindowOptions.Policy.BLOCK, Duration.ofSeconds(5));
+        var first = window.acquire();
+        var second = CompletableFuture.supplyAsync(window::acquire, Thread::startVirtualThread);
+        Thread.sleep(50);
+        assertFalse(second.isDone());
+        first.complete(new MessageId(connectionId, 0));
+        assertFalse(second.get(5, TimeUnit.SECONDS).isDone());
+        assertEquals(1, window.inFlight());
+    }
+
+    @Test
+    void testBlockInterrupted() {
+        var window = window(1, SendWindowOptions.Policy.BLOCK, Duration.ofSeconds(5));
+        window.acquire();
+        Thread.currentThread().interrupt();
+        assertThrows(SendWindowFullException.class, window::acquire);
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    void testDropOldest() {
+        var window = window(2, SendWindowOptions.Policy.DROP_OLDEST, Duration.ZERO);
+        var first = window.acquire();
+        var second = window.acquire();
+        var third = window.acquire();
+        assertTrue(first.isCancelled());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        assertEquals(2, window.inFlight());
+
+        // completing the dropped send later must not free a slot it no longer holds
+        first.complete(new MessageId(connectionId, 0));
+        assertEquals(2, window.inFlight());
+    }
+
+    @Test
+    void testFailCompletesInFlight() {
+        var window = window(2, SendWindowOptions.Policy.FAIL_FAST, Duration.ZERO);
+        var first = window.acquire();
+        var second = window.acquire();
+        var cause = new RuntimeException("closed");
+        window.fail(cause);
+        for(var slot : List.of(first, second)) {
+            var ex = assertThrows(ExecutionException.class, slot::get);
+            assertSame(cause, ex.getCause());
+        }
+        assertEquals(0, window.inFlight());
+        assertSame(cause, assertThrows(RuntimeException.class, window::acquire));
+    }
+
+    @Test
+    void testFailWakesBlocked() throws Exception {
+        var window = window(1, SendWindowOptions.Policy.BLOCK, Duration.ofSeconds(30));
+        window.acquire();
+        var blocked = CompletableFuture.supplyAsync(window::acquire, Thread::startVirtualThread);
+        Thread.sleep(50);
+        var cause = new RuntimeException("closed");
+        window.fail(cause);
+        var ex = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+        assertSame(cause, ex.getCause());
+    }
+}
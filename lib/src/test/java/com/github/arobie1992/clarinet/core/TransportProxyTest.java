@@ -13,6 +13,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -114,9 +115,38 @@ class TransportProxyTest {
         verify(transport).send(AddressUtils.defaultAddress(), endpoint, msg, TransportUtils.defaultOptions());
     }
 
+    @Test
+    void testExchangeAsync() {
+        var endpoint = "endpoint";
+        var msg = "msg";
+        var resp = CompletableFuture.completedFuture("Test response");
+        when(transport.exchangeAsync(AddressUtils.defaultAddress(), endpoint, msg, String.class, TransportUtils.defaultOptions())).thenReturn(resp);
+        assertSame(resp, transportProxy.exchangeAsync(AddressUtils.defaultAddress(), endpoint, msg, String.class, TransportUtils.defaultOptions()));
+    }
+
+    @Test
+    void testSendAsync() {
+        var endpoint = "endpoint";
+        var msg = "msg";
+        var resp = CompletableFuture.<Void>completedFuture(null);
+        when(transport.sendAsync(AddressUtils.defaultAddress(), endpoint, msg, TransportUtils.defaultOptions())).thenReturn(resp);
+        assertSame(resp, transportProxy.sendAsync(AddressUtils.defaultAddress(), endpoint, msg, TransportUtils.defaultOptions()));
+    }
+
     @Test
     void testShutdown() {
         transportProxy.shutdown();
         verify(transport).shutdown();
     }
+
+    @Test
+    void testShutdownRunsHookAfterTransport() {
+        var hook = mock(Runnable.class);
+        doThrow(new IllegalStateException()).when(transport).shutdown();
+        transportProxy = new TransportProxy(transport, hook);
+        assertThrows(IllegalStateException.class, transportProxy::shutdown);
+        var inOrder = inOrder(transport, hook);
+        inOrder.verify(transport).shutdown();
+        inOrder.verify(hook).run();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.impl.crypto.MerkleSignatures;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedRootsTest {
+
+    private final MerkleSignatures.Opened opened = new MerkleSignatures.Opened(Bytes.of(new byte[]{1}), Bytes.of(new byte[]{2}));
+
+    @Test
+    void testVerifiesOncePerRoot() {
+        var roots = new VerifiedRoots();
+        var calls = new AtomicInteger();
+        assertTrue(roots.verify(PeerUtils.senderId(), opened, o -> calls.incrementAndGet() > 0));
+        assertTrue(roots.verify(PeerUtils.senderId(), new MerkleSignatures.Opened(opened.root(), opened.rootSignature()), o -> calls.incrementAndGet() > 0));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testRemembersFailure() {
+        var roots = new VerifiedRoots();
+        assertFalse(roots.verify(PeerUtils.senderId(), opened, o -> false));
+        assertFalse(roots.verify(PeerUtils.senderId(), opened, o -> fail("should not verify again")));
+    }
+
+    @Test
+    void testSeparatesSigners() {
+        var roots = new VerifiedRoots();
+        assertTrue(roots.verify(PeerUtils.senderId(), opened, o -> true));
+        assertFalse(roots.verify(PeerUtils.witnessId(), opened, o -> false));
+    }
+
+    @Test
+    void testExceptionPropagates() {
+        var roots = new VerifiedRoots();
+        var failure = new IllegalStateException();
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> roots.verify(PeerUtils.senderId(), opened, o -> {
+            throw failure;
+        })));
+    }
+}
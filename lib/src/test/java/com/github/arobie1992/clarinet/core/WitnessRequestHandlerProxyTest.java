@@ -28,7 +28,7 @@ class WitnessRequestHandlerProxyTest {
 
     private ExchangeHandler<WitnessRequest, WitnessResponse> handler;
     private ConnectionStore connectionStore;
-    private Node node;
+    private SimpleNode node;
     private WitnessRequestHandlerProxy handlerProxy;
     private PeerStore peerStore;
     private ConnectionImpl connection;
@@ -38,14 +38,15 @@ class WitnessRequestHandlerProxyTest {
         //noinspection unchecked
         handler = (ExchangeHandler<WitnessRequest, WitnessResponse>) mock(ExchangeHandler.class);
         connectionStore = mock(ConnectionStore.class);
-        node = mock(Node.class);
+        node = mock(SimpleNode.class);
+        when(node.hashAlgorithms()).thenReturn(new HashAlgorithms(Set.of()));
         handlerProxy = new WitnessRequestHandlerProxy(null, connectionStore, node);
         peerStore = mock(PeerStore.class);
         when(node.peerStore()).thenReturn(peerStore);
         when(peerStore.find(remoteInformation.peer().id())).thenReturn(Optional.empty());
         connection = new ConnectionImpl(witnessRequest.connectionId(), witnessRequest.sender(), witnessRequest.receiver(), Connection.Status.OPEN);
         connection.lock.writeLock().lock();
-        when(connectionStore.accept(witnessRequest.connectionId(), connection.sender(), connection.receiver(), Connection.Status.OPEN))
+        when(connectionStore.accept(witnessRequest.connectionId(), connection.sender(), connection.receiver(), Connection.Status.OPEN, "SHA-256"))
                 .thenReturn(new Writeable(connection));
     }
 
@@ -60,7 +61,8 @@ class WitnessRequestHandlerProxyTest {
                 witnessRequest.connectionId(),
                 PeerUtils.senderId(),
                 PeerUtils.receiverId(),
-                Connection.Status.OPEN
+                Connection.Status.OPEN,
+                "SHA-256"
         );
         assertEquals(PeerUtils.witnessId(), connection.witness().orElseThrow());
         verify(peerStore).save(remoteInformation.peer());
@@ -82,14 +84,14 @@ class WitnessRequestHandlerProxyTest {
         var expected = new Some<>(new WitnessResponse(true, "test reject"));
         when(handler.handle(remoteInformation, witnessRequest)).thenReturn(expected);
         assertEquals(expected, handlerProxy.handle(remoteInformation, witnessRequest));
-        verify(connectionStore, never()).accept(any(), any(), any(), any());
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
         verify(peerStore).save(remoteInformation.peer());
     }
 
     @Test
     void handleFailsToFindConnection() {
         when(node.id()).thenReturn(PeerUtils.witnessId());
-        when(connectionStore.accept(witnessRequest.connectionId(), connection.sender(), connection.receiver(), Connection.Status.OPEN))
+        when(connectionStore.accept(witnessRequest.connectionId(), connection.sender(), connection.receiver(), Connection.Status.OPEN, "SHA-256"))
                 .thenReturn(new Connection.Absent());
         var ex = assertThrows(IllegalStateException.class, () -> handlerProxy.handle(remoteInformation, witnessRequest));
         assertEquals("Failed to accept connection", ex.getMessage());
@@ -97,11 +99,32 @@ class WitnessRequestHandlerProxyTest {
                 witnessRequest.connectionId(),
                 PeerUtils.senderId(),
                 PeerUtils.receiverId(),
-                Connection.Status.OPEN
+                Connection.Status.OPEN,
+                "SHA-256"
         );
         verify(peerStore).save(remoteInformation.peer());
     }
 
+    @Test
+    void testUnsupportedHashAlgorithm() {
+        handlerProxy = new WitnessRequestHandlerProxy(handler, connectionStore, node);
+        var request = new WitnessRequest(witnessRequest.connectionId(), witnessRequest.sender(), witnessRequest.receiver(), "not-a-digest");
+        var expected = new Some<>(new WitnessResponse(true, "Unsupported hash algorithm not-a-digest"));
+        assertEquals(expected, handlerProxy.handle(remoteInformation, request));
+        verify(handler, never()).handle(any(), any());
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testInsecureHashAlgorithm() {
+        handlerProxy = new WitnessRequestHandlerProxy(handler, connectionStore, node);
+        var request = new WitnessRequest(witnessRequest.connectionId(), witnessRequest.sender(), witnessRequest.receiver(), "MD5");
+        var expected = new Some<>(new WitnessResponse(true, "Unsupported hash algorithm MD5"));
+        assertEquals(expected, handlerProxy.handle(remoteInformation, request));
+        verify(handler, never()).handle(any(), any());
+        verify(connectionStore, never()).accept(any(), any(), any(), any(), any());
+    }
+
     @Test
     void testDefaultHandlerInputType() {
         assertEquals(WitnessRequest.class, handlerProxy.inputType());
@@ -0,0 +1,23 @@
+package com.github.arobie1992.clarinet.core;
+
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WitnessRequestTest {
+
+    @Test
+    void testNullHashAlgorithm() {
+        assertThrows(
+                NullPointerException.class,
+                () -> new WitnessRequest(ConnectionId.random(), PeerUtils.senderId(), PeerUtils.receiverId(), null)
+        );
+    }
+
+    @Test
+    void testDefaultHashAlgorithm() {
+        var request = new WitnessRequest(ConnectionId.random(), PeerUtils.senderId(), PeerUtils.receiverId());
+        assertEquals(ConnectionOptions.DEFAULT_HASH_ALGORITHM, request.hashAlgorithm());
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.arobie1992.clarinet.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrivateKeyTest {
+
+    private static class SignOnlyKey implements PrivateKey {
+        @Override
+        public Bytes sign(Bytes data) {
+            return data;
+        }
+        @Override
+        public String algorithm() {
+            return "test";
+        }
+        @Override
+        public Bytes bytes() {
+            return Bytes.of(new byte[]{1});
+        }
+    }
+
+    @Test
+    void testPrehashUnsupportedByDefault() {
+        assertFalse(new SignOnlyKey().supportsPrehash());
+    }
+
+    @Test
+    void testSignHashUnsupportedByDefault() {
+        var key = new SignOnlyKey();
+        var ex = assertThrows(UnsupportedOperationException.class, () -> key.signHash(Bytes.of(new byte[]{2})));
+        assertEquals(SignOnlyKey.class.getName() + " does not support signing pre-hashed data", ex.getMessage());
+    }
+}
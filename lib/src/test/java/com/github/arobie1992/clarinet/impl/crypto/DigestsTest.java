@@ -0,0 +1,44 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DigestsTest {
+
+    private final byte[] data = {1, 2, 3, 4, 5};
+
+    @Test
+    void testDigest() throws NoSuchAlgorithmException {
+        var expected = Bytes.of(MessageDigest.getInstance("SHA-256").digest(data));
+        assertEquals(expected, Digests.digest("SHA-256", d -> d.update(data)));
+        // a second call must not see state left over from the first
+        assertEquals(expected, Digests.digest("SHA-256", d -> d.update(data)));
+    }
+
+    @Test
+    void testDigestIncremental() throws NoSuchAlgorithmException {
+        var expected = Bytes.of(MessageDigest.getInstance("SHA-256").digest(data));
+        var actual = Digests.digest("SHA-256", d -> {
+            d.update(data, 0, 2);
+            d.update(data, 2, 3);
+        });
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testUnknownAlgorithm() {
+        assertThrows(NoSuchAlgorithmException.class, () -> Digests.digest("not-a-digest", d -> {}));
+    }
+
+    @Test
+    void testSupports() {
+        assertTrue(Digests.supports("SHA-256"));
+        assertTrue(Digests.supports("SHA-512/256"));
+        assertFalse(Digests.supports("not-a-digest"));
+    }
+}
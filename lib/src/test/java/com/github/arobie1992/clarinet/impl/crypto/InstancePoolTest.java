@@ -0,0 +1,68 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstancePoolTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final InstancePool<Object, IOException> pool = new InstancePool<>(() -> {
+        created.incrementAndGet();
+        return new Object();
+    }, 1);
+
+    @Test
+    void testNegativeMaxIdle() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new InstancePool<>(Object::new, -1));
+        assertEquals("maxIdle must be non-negative", ex.getMessage());
+    }
+
+    @Test
+    void testReuse() throws IOException {
+        var first = pool.apply(i -> i);
+        var second = pool.apply(i -> i);
+        assertSame(first, second);
+        assertEquals(1, created.get());
+        assertEquals(1, pool.idle());
+    }
+
+    @Test
+    void testMaxIdle() throws IOException {
+        var outer = pool.apply(o -> pool.apply(i -> {
+            assertNotSame(o, i);
+            return o;
+        }));
+        assertEquals(2, created.get());
+        assertEquals(1, pool.idle());
+        assertNotSame(outer, pool.apply(i -> i));
+    }
+
+    @Test
+    void testDiscardOnCheckedException() {
+        assertThrows(IOException.class, () -> pool.apply(i -> {
+            throw new IOException();
+        }));
+        assertEquals(0, pool.idle());
+    }
+
+    @Test
+    void testDiscardOnRuntimeException() {
+        assertThrows(IllegalStateException.class, () -> pool.apply(i -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(0, pool.idle());
+    }
+
+    @Test
+    void testFactoryException() {
+        var failing = new InstancePool<Object, IOException>(() -> {
+            throw new IOException("failed");
+        });
+        var ex = assertThrows(IOException.class, () -> failing.apply(i -> i));
+        assertEquals("failed", ex.getMessage());
+    }
+}
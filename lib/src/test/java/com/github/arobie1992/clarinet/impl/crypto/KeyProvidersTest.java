@@ -30,4 +30,51 @@ class KeyProvidersTest {
         assertEquals(InvalidKeySpecException.class, ex.getCause().getClass());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSha256Ed25519PublicKeyProvider() throws NoSuchAlgorithmException {
+        var provider = KeyProviders.Sha256Ed25519PublicKeyProvider();
+        assertTrue(provider.supports("SHA256withEd25519"));
+        assertFalse(provider.supports("SHA256withRSA"));
+        var pair = Keys.generateEd25519KeyPair();
+        var createdKey = provider.create(pair.publicKey().bytes());
+        var data = Bytes.of(new byte[]{55});
+        assertTrue(createdKey.verify(data, pair.privateKey().sign(data)));
+    }
+
+    @Test
+    void testSha256Ed25519PublicKeyProviderJunkBytes() {
+        var provider = KeyProviders.Sha256Ed25519PublicKeyProvider();
+        var ex = assertThrows(KeyCreationException.class, () -> provider.create(Bytes.of(new byte[]{62})));
+        assertEquals(InvalidKeySpecException.class, ex.getCause().getClass());
+    }
+
+    @Test
+    void testSha256EcdsaPublicKeyProvider() throws NoSuchAlgorithmException {
+        var provider = KeyProviders.Sha256EcdsaPublicKeyProvider();
+        assertTrue(provider.supports("SHA256withECDSA"));
+        assertFalse(provider.supports("SHA256withEd25519"));
+        var pair = Keys.generateEcdsaKeyPair();
+        var createdKey = provider.create(pair.publicKey().bytes());
+        var data = Bytes.of(new byte[]{55});
+        assertTrue(createdKey.verify(data, pair.privateKey().sign(data)));
+    }
+
+    @Test
+    void testSha256EcdsaPublicKeyProviderJunkBytes() {
+        var provider = KeyProviders.Sha256EcdsaPublicKeyProvider();
+        var ex = assertThrows(KeyCreationException.class, () -> provider.create(Bytes.of(new byte[]{62})));
+        assertEquals(InvalidKeySpecException.class, ex.getCause().getClass());
+    }
+
+    @Test
+    void testCreatedKeysKeepFingerprint() throws NoSuchAlgorithmException {
+        var rsa = Keys.generateKeyPair();
+        var ed25519 = Keys.generateEd25519KeyPair();
+        var ecdsa = Keys.generateEcdsaKeyPair();
+        assertEquals(rsa.publicKey().fingerprint(), KeyProviders.Sha256RsaPublicKeyProvider().create(rsa.publicKey().bytes()).fingerprint());
+        assertEquals(ed25519.publicKey().fingerprint(), KeyProviders.Sha256Ed25519PublicKeyProvider().create(ed25519.publicKey().bytes()).fingerprint());
+        assertEquals(ecdsa.publicKey().fingerprint(), KeyProviders.Sha256EcdsaPublicKeyProvider().create(ecdsa.publicKey().bytes()).fingerprint());
+        assertEquals(8, rsa.publicKey().fingerprint().length());
+        assertNotEquals(rsa.publicKey().fingerprint(), Keys.generateKeyPair().publicKey().fingerprint());
+    }
+}
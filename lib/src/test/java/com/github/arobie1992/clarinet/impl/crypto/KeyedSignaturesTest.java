@@ -0,0 +1,50 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import org.junit.jupiter.api.Test;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedSignaturesTest {
+
+    private final Bytes fingerprint = Bytes.of(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    private final Bytes signature = Bytes.of(new byte[]{9, 8, 7});
+
+    @Test
+    void testRoundTrip() {
+        var keyed = KeyedSignatures.wrap(fingerprint, signature);
+        assertEquals(4 + 8 + 3, keyed.length());
+        assertEquals(Optional.of(new KeyedSignatures.Opened(fingerprint, signature)), KeyedSignatures.open(keyed));
+    }
+
+    @Test
+    void testWrongFingerprintLength() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> KeyedSignatures.wrap(Bytes.of(new byte[]{1}), signature));
+        assertEquals("fingerprint must be 8 bytes", ex.getMessage());
+    }
+
+    @Test
+    void testOpenRawSignature() {
+        assertTrue(KeyedSignatures.open(signature).isEmpty());
+        assertTrue(KeyedSignatures.open(Bytes.of(new byte[256])).isEmpty());
+    }
+
+    @Test
+    void testOpenWithoutSignature() {
+        var keyed = KeyedSignatures.wrap(fingerprint, Bytes.of(new byte[0]));
+        assertTrue(KeyedSignatures.open(keyed).isEmpty());
+    }
+
+    @Test
+    void testKeySignatureRoundTrip() throws NoSuchAlgorithmException {
+        var pair = Keys.generateEd25519KeyPair();
+        var data = Bytes.of(new byte[]{55});
+        var keyed = KeyedSignatures.wrap(pair.publicKey().fingerprint(), pair.privateKey().sign(data));
+        var opened = KeyedSignatures.open(keyed).orElseThrow();
+        assertEquals(pair.publicKey().fingerprint(), opened.fingerprint());
+        assertTrue(pair.publicKey().verify(data, opened.signature()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.Key;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleSignaturesTest {
+
+    private final Bytes rootSignature = Bytes.of(new byte[]{9, 8, 7});
+
+    private static Bytes hash(int i) {
+        try {
+            return Bytes.of(MessageDigest.getInstance("SHA-256").digest(new byte[]{(byte) i}));
+        } catch(NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<Bytes> hashes(int count) {
+        return IntStream.range(0, count).mapToObj(MerkleSignaturesTest::hash).toList();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 8})
+    void testRoundTrip(int count) {
+        var hashes = hashes(count);
+        var roots = new ArrayList<Bytes>();
+        var signatures = MerkleSignatures.sign(hashes, root -> {
+            roots.add(root);
+            return rootSignature;
+        });
+        assertEquals(1, roots.size());
+        assertEquals(count, signatures.size());
+        for(int i = 0; i < count; i++) {
+            var opened = MerkleSignatures.open(hashes.get(i), signatures.get(i));
+            assertEquals(Optional.of(new MerkleSignatures.Opened(roots.getFirst(), rootSignature)), opened);
+        }
+    }
+
+    @Test
+    void testSignedRootIsDomainTagged() throws NoSuchAlgorithmException {
+        var hash = hash(0);
+        var roots = new ArrayList<Bytes>();
+        MerkleSignatures.sign(List.of(hash), root -> {
+            roots.add(root);
+            return rootSignature;
+        });
+        var digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) 0xF0);
+        var leaf = digest.digest(hash.bytes());
+        digest.update((byte) 0xF2);
+        assertEquals(Bytes.of(digest.digest(leaf)), roots.getFirst());
+    }
+
+    @Test
+    void testIsBatch() {
+        var signature = MerkleSignatures.sign(hashes(2), root -> rootSignature).getFirst();
+        assertTrue(MerkleSignatures.isBatch(signature));
+        assertFalse(MerkleSignatures.isBatch(KeyedSignatures.wrap(Bytes.of(new byte[Key.FINGERPRINT_LENGTH]), rootSignature)));
+        assertFalse(MerkleSignatures.isBatch(Bytes.of(new byte[]{0x4D, 0x52, 0x4B})));
+    }
+
+    @Test
+    void testWrongHash() {
+        var hashes = hashes(4);
+        var signatures = MerkleSignatures.sign(hashes, root -> rootSignature);
+        var root = MerkleSignatures.open(hashes.getFirst(), signatures.getFirst()).orElseThrow().root();
+        // a signature for one message must not vouch for another
+        var opened = MerkleSignatures.open(hashes.get(1), signatures.getFirst()).orElseThrow();
+        assertNotEquals(root, opened.root());
+    }
+
+    @Test
+    void testTamperedProof() {
+        var hashes = hashes(4);
+        var signatures = MerkleSignatures.sign(hashes, root -> rootSignature);
+        var root = MerkleSignatures.open(hashes.getFirst(), signatures.getFirst()).orElseThrow().root();
+        var bytes = signatures.getFirst().bytes();
+        bytes[bytes.length - 1] ^= 1;
+        var opened = MerkleSignatures.open(hashes.getFirst(), Bytes.of(bytes)).orElseThrow();
+        assertNotEquals(root, opened.root());
+    }
+
+    @Test
+    void testNotBatchSignature() {
+        assertEquals(Optional.empty(), MerkleSignatures.open(hash(0), Bytes.of(new byte[256])));
+    }
+
+    @Test
+    void testTooShort() {
+        assertEquals(Optional.empty(), MerkleSignatures.open(hash(0), Bytes.of(new byte[]{0x4D, 0x52, 0x4B, 0x4C})));
+    }
+
+    @Test
+    void testBadSignatureLength() {
+        var buf = ByteBuffer.allocate(12).putInt(0x4D524B4C).putInt(100).putInt(0);
+        assertEquals(Optional.empty(), MerkleSignatures.open(hash(0), Bytes.of(buf.array())));
+    }
+
+    @Test
+    void testBadStepCount() {
+        var buf = ByteBuffer.allocate(12).putInt(0x4D524B4C).putInt(0).putInt(1);
+        assertEquals(Optional.empty(), MerkleSignatures.open(hash(0), Bytes.of(buf.array())));
+    }
+
+    @Test
+    void testBadSide() {
+        var buf = ByteBuffer.allocate(12 + 33).putInt(0x4D524B4C).putInt(0).putInt(1).put((byte) 2);
+        assertEquals(Optional.empty(), MerkleSignatures.open(hash(0), Bytes.of(buf.array())));
+    }
+
+    @Test
+    void testEmpty() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> MerkleSignatures.sign(List.of(), root -> rootSignature));
+        assertEquals("hashes must not be empty", ex.getMessage());
+    }
+
+    @Test
+    void testInvalidHash() {
+        var hashes = List.of(hash(0), Bytes.of(new byte[]{1}));
+        var ex = assertThrows(IllegalArgumentException.class, () -> MerkleSignatures.sign(hashes, root -> rootSignature));
+        assertEquals("hash is not a valid SHA-256", ex.getMessage());
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.arobie1992.clarinet.impl.crypto;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.crypto.KeyPair;
+import com.github.arobie1992.clarinet.crypto.SigningException;
+import com.github.arobie1992.clarinet.crypto.VerificationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.mockito.Mockito;
+
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.TestInstance.Lifecycle.PER_CLASS;
+
+// Test the pub and private keys together to make sure sign and verify work
+@TestInstance(PER_CLASS)
+class Sha256EcdsaKeyTest {
+
+    private final java.security.KeyPair javaPair;
+    private final KeyPair keyPair;
+    private final Bytes data = Bytes.of(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15});
+
+    Sha256EcdsaKeyTest() throws GeneralSecurityException {
+        var gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom());
+        javaPair = gen.generateKeyPair();
+        keyPair = new KeyPair(
+                new Sha256EcdsaPublicKey(javaPair.getPublic()),
+                new Sha256EcdsaPrivateKey(javaPair.getPrivate())
+        );
+    }
+
+    @Test
+    void testSignAndVerify() {
+        var sig = keyPair.privateKey().sign(data);
+        assertTrue(keyPair.publicKey().verify(data, sig));
+    }
+
+    @Test
+    void testSignAndVerifyRepeatedly() {
+        var other = Bytes.of(new byte[]{15, 14, 13});
+        for(int i = 0; i < 3; i++) {
+            var sig = keyPair.privateKey().sign(data);
+            var otherSig = keyPair.privateKey().sign(other);
+            assertTrue(keyPair.publicKey().verify(data, sig));
+            assertTrue(keyPair.publicKey().verify(other, otherSig));
+            assertFalse(keyPair.publicKey().verify(data, otherSig));
+        }
+    }
+
+    @Test
+    void testSignAndVerifyConcurrently() throws InterruptedException, ExecutionException {
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = IntStream.range(0, 32).mapToObj(i -> executor.submit(() -> {
+                var payload = Bytes.of(new byte[]{(byte) i});
+                return keyPair.publicKey().verify(payload, keyPair.privateKey().sign(payload));
+            })).toList();
+            for(var future : futures) {
+                assertTrue(future.get());
+            }
+        }
+    }
+
+    @Test
+    void testCompatibleWithSha256WithEcdsa() throws GeneralSecurityException {
+        var verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(javaPair.getPublic());
+        verifier.update(data.bytes());
+        assertTrue(verifier.verify(keyPair.privateKey().sign(data).bytes()));
+
+        var signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(javaPair.getPrivate());
+        signer.update(data.bytes());
+        assertTrue(keyPair.publicKey().verify(data, Bytes.of(signer.sign())));
+    }
+
+    @Test
+    void testMalformedSignature() {
+        var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+        assertInstanceOf(SignatureException.class, ex.getCause());
+    }
+
+    @Test
+    void testSignHash() throws NoSuchAlgorithmException {
+        var hash = Bytes.of(MessageDigest.getInstance("SHA-256").digest(data.bytes()));
+        assertTrue(keyPair.privateKey().supportsPrehash());
+        var sig = keyPair.privateKey().signHash(hash);
+        assertTrue(keyPair.publicKey().verify(data, sig));
+        assertTrue(keyPair.publicKey().verifyHash(hash, sig));
+    }
+
+    @Test
+    void testSignHashNot32Bytes() {
+        var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().signHash(Bytes.of(new byte[]{23})));
+        assertEquals("hash is not a valid SHA-256", ex.getMessage());
+    }
+
+    @Test
+    void testVerifyHashNot32Bytes() {
+        var ex = assertThrows(
+                VerificationException.class,
+                () -> keyPair.publicKey().verifyHash(Bytes.of(new byte[]{23}), Bytes.of(new byte[]{0}))
+        );
+        assertEquals("hash is not a valid SHA-256", ex.getMessage());
+    }
+
+    @Test
+    void testSignThrowsNoSuchAlgorithmException() {
+        try(var signature = Mockito.mockStatic(Signature.class)) {
+            signature.when(() -> Signature.getInstance("NONEwithECDSA")).thenThrow(NoSuchAlgorithmException.class);
+            var ex = assertThrows(SigningException.class, () -> new Sha256EcdsaPrivateKey(javaPair.getPrivate()).sign(data));
+            assertEquals(NoSuchAlgorithmException.class, ex.getCause().getClass());
+        }
+    }
+
+    @Test
+    void testVerifyThrowsNoSuchAlgorithmException() {
+        try(var signature = Mockito.mockStatic(Signature.class)) {
+            signature.when(() -> Signature.getInstance("NONEwithECDSA")).thenThrow(NoSuchAlgorithmException.class);
+            // sig doesn't matter so just pass dummy data
+            var ex = assertThrows(VerificationException.class, () -> new Sha256EcdsaPublicKey(javaPair.getPublic()).verify(data, Bytes.of(new byte[]{0})));
+            assertEquals(NoSuchAlgorithmException.class, ex.getCause().getClass());
+        }
+    }
+
+    @Test
+    void testAlgorithm() {
+        assertEquals("SHA256withECDSA", keyPair.publicKey().algorithm());
+        assertEquals("SHA256withECDSA", keyPair.privateKey().algorithm());
+    }
+
+    @Test
+    void testBytes() {
+        assertEquals(Bytes.of(javaPair.getPublic().getEncoded()), keyPair.publicKey().bytes());
+        assertEquals(Bytes.of(javaPair.getPrivate().getEncoded()), keyPair.privateKey().bytes());
+    }
+}
@@ -26,6 +26,9 @@ import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import java.security.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,12 +62,58 @@ class Sha256RsaKeyTest {
         );
     }
 
+    // keys pool their digests and ciphers, so failure tests need keys that haven't created any yet
+    private Sha256RsaPrivateKey newPrivateKey() {
+        return new Sha256RsaPrivateKey(javaPair.getPrivate());
+    }
+
+    private Sha256RsaPublicKey newPublicKey() {
+        return new Sha256RsaPublicKey(javaPair.getPublic());
+    }
+
     @Test
     void testSignAndVerify() {
         var sig = keyPair.privateKey().sign(data);
         assertTrue(keyPair.publicKey().verify(data, sig));
     }
 
+    @Test
+    void testSignAndVerifyRepeatedly() {
+        var other = Bytes.of(new byte[]{15, 14, 13});
+        for(int i = 0; i < 3; i++) {
+            var sig = keyPair.privateKey().sign(data);
+            var otherSig = keyPair.privateKey().sign(other);
+            assertTrue(keyPair.publicKey().verify(data, sig));
+            assertTrue(keyPair.publicKey().verify(other, otherSig));
+            assertFalse(keyPair.publicKey().verify(data, otherSig));
+        }
+    }
+
+    @Test
+    void testSignAndVerifyConcurrently() throws InterruptedException, ExecutionException {
+        try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = IntStream.range(0, 32).mapToObj(i -> executor.submit(() -> {
+                var payload = Bytes.of(new byte[]{(byte) i});
+                return keyPair.publicKey().verify(payload, keyPair.privateKey().sign(payload));
+            })).toList();
+            for(var future : futures) {
+                assertTrue(future.get());
+            }
+        }
+    }
+
+    @Test
+    void testFailedCipherNotReused() throws IllegalBlockSizeException, BadPaddingException {
+        var privateKey = newPrivateKey();
+        try(var cipher = Mockito.mockStatic(Cipher.class)) {
+            var cipherMock = Mockito.mock(Cipher.class);
+            cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
+            doThrow(BadPaddingException.class).when(cipherMock).doFinal();
+            assertThrows(SigningException.class, () -> privateKey.sign(data));
+        }
+        assertTrue(keyPair.publicKey().verify(data, privateKey.sign(data)));
+    }
+
     @Test
     void testSignAndVerifyDataMessage() throws JsonProcessingException {
         var message = new DataMessage(new MessageId(ConnectionId.random(), 0), data);
@@ -78,7 +127,7 @@ class Sha256RsaKeyTest {
     void testSignThrowsNoSuchAlgorithmException() {
         try(var cipher = Mockito.mockStatic(Cipher.class)) {
             cipher.when(() -> Cipher.getInstance("RSA")).thenThrow(NoSuchAlgorithmException.class);
-            var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().sign(data));
+            var ex = assertThrows(SigningException.class, () -> newPrivateKey().sign(data));
             assertEquals(NoSuchAlgorithmException.class, ex.getCause().getClass());
         }
     }
@@ -87,7 +136,7 @@ class Sha256RsaKeyTest {
     void testSignThrowsNoSuchPaddingException() {
         try(var cipher = Mockito.mockStatic(Cipher.class)) {
             cipher.when(() -> Cipher.getInstance("RSA")).thenThrow(NoSuchPaddingException.class);
-            var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().sign(data));
+            var ex = assertThrows(SigningException.class, () -> newPrivateKey().sign(data));
             assertEquals(NoSuchPaddingException.class, ex.getCause().getClass());
         }
     }
@@ -98,7 +147,7 @@ class Sha256RsaKeyTest {
             var cipherMock = Mockito.mock(Cipher.class);
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(InvalidKeyException.class).when(cipherMock).init(eq(Cipher.ENCRYPT_MODE), any(Key.class));
-            var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().sign(data));
+            var ex = assertThrows(SigningException.class, () -> newPrivateKey().sign(data));
             assertEquals(InvalidKeyException.class, ex.getCause().getClass());
         }
     }
@@ -109,7 +158,7 @@ class Sha256RsaKeyTest {
             var cipherMock = Mockito.mock(Cipher.class);
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(IllegalBlockSizeException.class).when(cipherMock).doFinal();
-            var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().sign(data));
+            var ex = assertThrows(SigningException.class, () -> newPrivateKey().sign(data));
             assertEquals(IllegalBlockSizeException.class, ex.getCause().getClass());
         }
     }
@@ -120,7 +169,7 @@ class Sha256RsaKeyTest {
             var cipherMock = Mockito.mock(Cipher.class);
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(BadPaddingException.class).when(cipherMock).doFinal();
-            var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().sign(data));
+            var ex = assertThrows(SigningException.class, () -> newPrivateKey().sign(data));
             assertEquals(BadPaddingException.class, ex.getCause().getClass());
         }
     }
@@ -130,7 +179,7 @@ class Sha256RsaKeyTest {
         try(var md = Mockito.mockStatic(MessageDigest.class)) {
             md.when(() -> MessageDigest.getInstance("SHA-256")).thenThrow(NoSuchAlgorithmException.class);
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(NoSuchAlgorithmException.class, ex.getCause().getClass());
         }
     }
@@ -140,7 +189,7 @@ class Sha256RsaKeyTest {
         try(var cipher = Mockito.mockStatic(Cipher.class)) {
             cipher.when(() -> Cipher.getInstance("RSA")).thenThrow(NoSuchAlgorithmException.class);
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(NoSuchAlgorithmException.class, ex.getCause().getClass());
         }
     }
@@ -150,7 +199,7 @@ class Sha256RsaKeyTest {
         try(var cipher = Mockito.mockStatic(Cipher.class)) {
             cipher.when(() -> Cipher.getInstance("RSA")).thenThrow(NoSuchPaddingException.class);
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(NoSuchPaddingException.class, ex.getCause().getClass());
         }
     }
@@ -162,7 +211,7 @@ class Sha256RsaKeyTest {
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(InvalidKeyException.class).when(cipherMock).init(eq(Cipher.DECRYPT_MODE), any(Key.class));
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(InvalidKeyException.class, ex.getCause().getClass());
         }
     }
@@ -174,7 +223,7 @@ class Sha256RsaKeyTest {
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(IllegalBlockSizeException.class).when(cipherMock).doFinal();
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(IllegalBlockSizeException.class, ex.getCause().getClass());
         }
     }
@@ -186,11 +235,26 @@ class Sha256RsaKeyTest {
             cipher.when(() -> Cipher.getInstance("RSA")).thenReturn(cipherMock);
             doThrow(BadPaddingException.class).when(cipherMock).doFinal();
             // sig doesn't matter so just pass dummy data
-            var ex = assertThrows(VerificationException.class, () -> keyPair.publicKey().verify(data, Bytes.of(new byte[]{0})));
+            var ex = assertThrows(VerificationException.class, () -> newPublicKey().verify(data, Bytes.of(new byte[]{0})));
             assertEquals(BadPaddingException.class, ex.getCause().getClass());
         }
     }
 
+    @Test
+    void testSignHash() throws NoSuchAlgorithmException {
+        var hash = Bytes.of(MessageDigest.getInstance("SHA-256").digest(data.bytes()));
+        assertTrue(keyPair.privateKey().supportsPrehash());
+        var sig = keyPair.privateKey().signHash(hash);
+        assertEquals(keyPair.privateKey().sign(data), sig);
+        assertTrue(keyPair.publicKey().verify(data, sig));
+    }
+
+    @Test
+    void testSignHashNot32Bytes() {
+        var ex = assertThrows(SigningException.class, () -> keyPair.privateKey().signHash(Bytes.of(new byte[]{23})));
+        assertEquals("hash is not a valid SHA-256", ex.getMessage());
+    }
+
     @Test
     void testVerifyHashNot32Bytes() {
         var ex = assertThrows(
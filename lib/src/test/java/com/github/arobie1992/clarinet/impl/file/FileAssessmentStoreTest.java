@@ -0,0 +1,331 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.reputation.AssessmentStore;
+import com.github.arobie1992.clarinet.testutils.AsyncAssert;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import com.github.arobie1992.clarinet.testutils.ThreadUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FileAssessmentStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    private final AssessmentStore.ReputationCallback noOp = (a, b) -> {};
+    private final PeerId peerId = PeerUtils.senderId();
+    private final MessageId messageId = new MessageId(ConnectionId.random(), 0);
+    private final List<FileAssessmentStore> stores = new ArrayList<>();
+    private FileAssessmentStore store;
+    private AssessmentStore.ReputationCallback callback;
+
+    @BeforeEach
+    void setup() {
+        store = open(new JournalOptions(directory));
+        callback = mock(AssessmentStore.ReputationCallback.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(FileAssessmentStore::close);
+    }
+
+    private FileAssessmentStore open(JournalOptions options) {
+        var opened = new FileAssessmentStore(options);
+        stores.add(opened);
+        return opened;
+    }
+
+    private FileAssessmentStore reopen() {
+        store.close();
+        return open(new JournalOptions(directory));
+    }
+
+    private List<String> files(String extension) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString()).filter(name -> name.endsWith(extension)).sorted().toList();
+        }
+    }
+
+    @Test
+    void testFindDefaultNotPersisted() {
+        assertEquals(new Assessment(peerId, messageId, Assessment.Status.NONE), store.find(peerId, messageId));
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        assertTrue(store.save(assessment, callback));
+        verify(callback).update(null, assessment);
+    }
+
+    @Test
+    void testSaveUpgrade() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        var updated = assessment.updateStatus(Assessment.Status.WEAK_PENALTY);
+        assertTrue(store.save(updated, callback));
+        verify(callback).update(assessment, updated);
+        assertEquals(updated, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testSaveNotPersist() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        assertTrue(store.save(assessment, noOp));
+        assertFalse(store.save(new Assessment(peerId, messageId, Assessment.Status.NONE), callback));
+        verify(callback, never()).update(any(), any());
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testAtomicityOfCallbackInvocations() throws Throwable {
+        var values = new ArrayList<Pair>();
+        var latch = new CountDownLatch(1);
+        callback = (e, u) -> {
+            latch.countDown();
+            values.add(new Pair(e == null ? null : e.status(), u.status()));
+            ThreadUtils.sleepUnchecked(1000);
+        };
+        var t1 = AsyncAssert.started(() -> store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), callback));
+        latch.await();
+        store.save(new Assessment(peerId, messageId, Assessment.Status.WEAK_PENALTY), callback);
+        t1.join();
+        assertEquals(Arrays.asList(
+                new Pair(null, Assessment.Status.REWARD),
+                new Pair(Assessment.Status.REWARD, Assessment.Status.WEAK_PENALTY)
+        ), values);
+    }
+
+    @Test
+    void testRecoversAfterClose() {
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var penalty = new Assessment(PeerUtils.receiverId(), new MessageId(ConnectionId.random(), 7), Assessment.Status.WEAK_PENALTY);
+        store.save(reward, noOp);
+        store.save(reward.updateStatus(Assessment.Status.STRONG_PENALTY), noOp);
+        store.save(penalty, noOp);
+        store = reopen();
+        assertEquals(Assessment.Status.STRONG_PENALTY, store.find(peerId, messageId).status());
+        assertEquals(penalty, store.find(penalty.peerId(), penalty.messageId()));
+        assertFalse(store.save(reward, callback));
+    }
+
+    @Test
+    void testRecoversSyncedChangesWithoutClose() {
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(reward, noOp);
+        store.sync();
+        // the first store is never closed, as if the process died
+        var recovered = open(new JournalOptions(directory));
+        assertEquals(reward, recovered.find(peerId, messageId));
+    }
+
+    @Test
+    void testSnapshotThenReplay() throws IOException {
+        var first = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var second = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.STRONG_PENALTY);
+        store.save(first, noOp);
+        store.snapshot();
+        store.save(second, noOp);
+        store = reopen();
+        assertEquals(first, store.find(peerId, first.messageId()));
+        assertEquals(second, store.find(peerId, second.messageId()));
+        assertEquals(1, files(".snapshot").size());
+        store.snapshot();
+        store = reopen();
+        assertEquals(first, store.find(peerId, first.messageId()));
+        assertEquals(second, store.find(peerId, second.messageId()));
+        // the previous snapshot is kept as a fallback, and older generations are removed
+        var snapshots = files(".snapshot");
+        assertEquals(2, snapshots.size());
+        var generation = snapshots.getFirst().replace(".snapshot", "");
+        assertTrue(files(".wal").stream().allMatch(wal -> wal.compareTo(generation) >= 0));
+        store.snapshot();
+        var remaining = files(".snapshot");
+        assertEquals(List.of(snapshots.getLast(), remaining.getLast()), remaining);
+    }
+
+    @Test
+    void testCorruptSnapshotFallsBack() throws IOException {
+        var first = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var second = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.STRONG_PENALTY);
+        var third = new Assessment(peerId, new MessageId(messageId.connectionId(), 2), Assessment.Status.WEAK_PENALTY);
+        store.save(first, noOp);
+        store.snapshot();
+        store.save(second, noOp);
+        store.snapshot();
+        store.save(third, noOp);
+        store.close();
+        var newest = directory.resolve(files(".snapshot").getLast());
+        var bytes = Files.readAllBytes(newest);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(newest, bytes);
+
+        store = open(new JournalOptions(directory));
+        assertEquals(first, store.find(peerId, first.messageId()));
+        assertEquals(second, store.find(peerId, second.messageId()));
+        assertEquals(third, store.find(peerId, third.messageId()));
+    }
+
+    @Test
+    void testAllSnapshotsCorrupt() throws IOException {
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.snapshot();
+        store.close();
+        Files.write(directory.resolve(files(".snapshot").getLast()), new byte[]{1, 2, 3});
+        assertThrows(UncheckedIOException.class, () -> open(new JournalOptions(directory)));
+    }
+
+    @Test
+    void testTornRecordIgnored() throws IOException {
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(reward, noOp);
+        store.close();
+        var wal = directory.resolve(files(".wal").getLast());
+        // a length and checksum whose body never made it to disk
+        Files.write(wal, new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+        store = open(new JournalOptions(directory));
+        assertEquals(reward, store.find(peerId, messageId));
+        var later = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD);
+        store.save(later, noOp);
+        store = reopen();
+        assertEquals(reward, store.find(peerId, messageId));
+        assertEquals(later, store.find(peerId, later.messageId()));
+    }
+
+    @Test
+    void testAutomaticSnapshot() throws IOException, InterruptedException {
+        store.close();
+        store = open(new JournalOptions(directory, Optional.of(Duration.ofMillis(10)), Optional.of(3), Optional.empty()));
+        for(int i = 0; i < 3; i++) {
+            store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), i), Assessment.Status.REWARD), noOp);
+        }
+        for(int i = 0; i < 500 && files(".snapshot").isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, files(".snapshot").size());
+    }
+
+    @Test
+    void testClosed() {
+        store.close();
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var ex = assertThrows(IllegalStateException.class, () -> store.save(assessment, callback));
+        assertEquals("Assessment store is closed", ex.getMessage());
+        verify(callback, never()).update(any(), any());
+        assertThrows(IllegalStateException.class, store::snapshot);
+    }
+
+    @Test
+    void testCustomPeerIdParser() {
+        record CustomPeerId(String asString) implements PeerId {
+            @Override
+            public java.util.function.Function<String, PeerId> parseFunction() {
+                return CustomPeerId::new;
+            }
+        }
+        var custom = new CustomPeerId("custom");
+        store.save(new Assessment(custom, messageId, Assessment.Status.REWARD), noOp);
+        store.close();
+        store = open(new JournalOptions(directory, Optional.empty(), Optional.empty(), Optional.of(CustomPeerId::new)));
+        assertEquals(Assessment.Status.REWARD, store.find(custom, messageId).status());
+    }
+
+    @Test
+    void testReputationRecovered() {
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(reward, store::updateReputation);
+        store.save(reward.updateStatus(Assessment.Status.STRONG_PENALTY), store::updateReputation);
+        // 1 for the default plus 3 for the penalty
+        assertEquals(0.25, store.reputation(peerId));
+        store.snapshot();
+        store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD), noOp);
+        store = reopen();
+        // replay applies the logged change even though the callback didn't
+        assertEquals(0.4, store.reputation(peerId));
+        assertEquals(1.0, store.reputation(PeerUtils.receiverId()));
+    }
+
+    @Test
+    void testReputationUpdateOutsideSave() {
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var ex = assertThrows(IllegalStateException.class, () -> store.updateReputation(null, reward));
+        assertEquals("Reputation updates must come from saving the assessment to the store", ex.getMessage());
+        // nor for a different assessment than the one being saved
+        assertThrows(IllegalStateException.class, () -> store.save(reward, (e, u) -> store.updateReputation(e, reward.updateStatus(Assessment.Status.WEAK_PENALTY))));
+        assertEquals(1.0, store.reputation(peerId));
+    }
+
+    @Test
+    void testUnsupportedRetention() {
+        var policy = new RetentionPolicy(Optional.of(Duration.ofMinutes(1)), Optional.empty(), Optional.empty(), Optional.empty());
+        var ex = assertThrows(IllegalArgumentException.class, () -> new FileAssessmentStore(new JournalOptions(directory), policy));
+        assertEquals("Only evictOnConnectionClose is supported", ex.getMessage());
+    }
+
+    @Test
+    void testConnectionCloseKeepsByDefault() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testEvictOnConnectionClose() throws IOException {
+        store.close();
+        var policy = new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true));
+        store = new FileAssessmentStore(new JournalOptions(directory), policy);
+        stores.add(store);
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(otherConnection, noOp);
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+        var late = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.WEAK_PENALTY);
+        assertFalse(store.save(late, callback));
+        verify(callback, never()).update(any(), any());
+
+        // the drop is replayed from the log
+        store.close();
+        store = new FileAssessmentStore(new JournalOptions(directory), policy);
+        stores.add(store);
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+
+        assertFalse(store.save(late, callback));
+
+        // and left out of snapshots, which still remember the connection was closed
+        store.snapshot();
+        store.close();
+        store = new FileAssessmentStore(new JournalOptions(directory), policy);
+        stores.add(store);
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+        assertEquals(1, files(".snapshot").size());
+        assertFalse(store.save(late, callback));
+        assertEquals(Assessment.Status.NONE, store.find(peerId, late.messageId()).status());
+    }
+
+    private record Pair(Assessment.Status existing, Assessment.Status updated) {}
+}
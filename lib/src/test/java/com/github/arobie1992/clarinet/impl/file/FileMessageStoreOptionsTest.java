@@ -0,0 +1,55 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMessageStoreOptionsTest {
+
+    private final Path directory = Path.of("messages");
+
+    @Test
+    void testDirectoryConstructor() {
+        var options = new FileMessageStoreOptions(directory);
+        assertEquals(directory, options.directory());
+        assertTrue(options.segmentBytes().isEmpty());
+        assertTrue(options.maxAge().isEmpty());
+        assertTrue(options.maxBytes().isEmpty());
+    }
+
+    @Test
+    void testNullDirectory() {
+        assertThrows(NullPointerException.class, () -> new FileMessageStoreOptions(null));
+    }
+
+    @Test
+    void testSegmentBytesTooSmall() {
+        var ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> new FileMessageStoreOptions(directory, Optional.of(1023), Optional.empty(), Optional.empty())
+        );
+        assertEquals("segmentBytes must be at least 1024", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveMaxAge() {
+        var ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> new FileMessageStoreOptions(directory, Optional.empty(), Optional.of(Duration.ZERO), Optional.empty())
+        );
+        assertEquals("maxAge must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveMaxBytes() {
+        var ex = assertThrows(
+                IllegalArgumentException.class,
+                () -> new FileMessageStoreOptions(directory, Optional.empty(), Optional.empty(), Optional.of(0L))
+        );
+        assertEquals("maxBytes must be positive", ex.getMessage());
+    }
+}
@@ -0,0 +1,345 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.DataMessage;
+import com.github.arobie1992.clarinet.message.ExistingMessageIdException;
+import com.github.arobie1992.clarinet.message.MessageId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMessageStoreTest {
+
+    private static final class MutableClock extends Clock {
+        private long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        void advance(Duration duration) {
+            millis += duration.toMillis();
+        }
+    }
+
+    @TempDir
+    private Path directory;
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final MutableClock clock = new MutableClock();
+    private final List<FileMessageStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(FileMessageStore::close);
+    }
+
+    private FileMessageStore open() {
+        return open(new FileMessageStoreOptions(directory));
+    }
+
+    private FileMessageStore open(FileMessageStoreOptions options) {
+        var store = new FileMessageStore(options, clock);
+        stores.add(store);
+        return store;
+    }
+
+    private FileMessageStoreOptions options(Integer segmentBytes, Duration maxAge, Long maxBytes) {
+        return new FileMessageStoreOptions(directory, Optional.ofNullable(segmentBytes), Optional.ofNullable(maxAge), Optional.ofNullable(maxBytes));
+    }
+
+    private DataMessage message(long seqNo) {
+        return message(seqNo, 4);
+    }
+
+    private DataMessage message(long seqNo, int dataBytes) {
+        var data = new byte[dataBytes];
+        data[0] = (byte) seqNo;
+        var message = new DataMessage(new MessageId(connectionId, seqNo), Bytes.of(data));
+        message.setSenderSignature(Bytes.of(new byte[]{1, 2, 3}));
+        return message;
+    }
+
+    private long segmentFiles() throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".segment")).count();
+        }
+    }
+
+    @Test
+    void testAdd() {
+        var store = open();
+        var message = message(0);
+        message.setWitnessSignature(Bytes.of(new byte[]{4, 5}));
+        store.add(message);
+        assertEquals(Optional.of(message), store.find(message.messageId()));
+    }
+
+    @Test
+    void testAddWithoutSignatures() {
+        var store = open();
+        var message = new DataMessage(new MessageId(connectionId, 0), Bytes.of(new byte[0]));
+        store.add(message);
+        var stored = store.find(message.messageId()).orElseThrow();
+        assertEquals(message, stored);
+        assertTrue(stored.senderSignature().isEmpty());
+        assertTrue(stored.witnessSignature().isEmpty());
+    }
+
+    @Test
+    void testAddAlreadyExisting() {
+        var store = open();
+        var message = message(0);
+        store.add(message);
+        var ex = assertThrows(ExistingMessageIdException.class, () -> store.add(message));
+        assertEquals(message.messageId(), ex.messageId());
+    }
+
+    @Test
+    void testModificationsNotPersisted() {
+        var store = open();
+        var message = message(0);
+        store.add(message);
+        message.setWitnessSignature(Bytes.of(new byte[]{4}));
+        var stored = store.find(message.messageId()).orElseThrow();
+        assertTrue(stored.witnessSignature().isEmpty());
+        stored.setWitnessSignature(Bytes.of(new byte[]{4}));
+        assertTrue(store.find(message.messageId()).orElseThrow().witnessSignature().isEmpty());
+    }
+
+    @Test
+    void testNotPresent() {
+        assertTrue(open().find(new MessageId(connectionId, 0)).isEmpty());
+    }
+
+    @Test
+    void testSurvivesRestart() {
+        var store = open();
+        var messages = List.of(message(0), message(1), message(2));
+        messages.forEach(store::add);
+        store.close();
+
+        var reopened = open();
+        for(var message : messages) {
+            assertEquals(Optional.of(message), reopened.find(message.messageId()));
+        }
+        var ex = assertThrows(ExistingMessageIdException.class, () -> reopened.add(message(1)));
+        assertEquals(messages.get(1).messageId(), ex.messageId());
+        reopened.add(message(3));
+        assertEquals(Optional.of(message(3)), reopened.find(new MessageId(connectionId, 3)));
+    }
+
+    @Test
+    void testReopenAppendsToLastSegment() throws IOException {
+        var store = open();
+        store.add(message(0));
+        store.close();
+
+        var reopened = open();
+        reopened.add(message(1));
+        assertEquals(1, segmentFiles());
+        reopened.close();
+
+        var again = open();
+        assertEquals(Optional.of(message(0)), again.find(new MessageId(connectionId, 0)));
+        assertEquals(Optional.of(message(1)), again.find(new MessageId(connectionId, 1)));
+    }
+
+    @Test
+    void testSurvivesRestartWithoutClose() {
+        var store = open();
+        store.add(message(0));
+        stores.remove(store);
+
+        var reopened = open();
+        assertEquals(Optional.of(message(0)), reopened.find(new MessageId(connectionId, 0)));
+        store.close();
+    }
+
+    @Test
+    void testRollsSegments() throws IOException {
+        var store = open(options(1024, null, null));
+        for(int i = 0; i < 50; i++) {
+            store.add(message(i, 100));
+        }
+        assertTrue(segmentFiles() > 1);
+        for(int i = 0; i < 50; i++) {
+            assertEquals(Optional.of(message(i, 100)), store.find(new MessageId(connectionId, i)));
+        }
+        store.close();
+
+        var reopened = open(options(1024, null, null));
+        for(int i = 0; i < 50; i++) {
+            assertEquals(Optional.of(message(i, 100)), reopened.find(new MessageId(connectionId, i)));
+        }
+    }
+
+    @Test
+    void testMessageLargerThanSegment() {
+        var store = open(options(1024, null, null));
+        var large = message(0, 4096);
+        store.add(large);
+        store.add(message(1));
+        assertEquals(Optional.of(large), store.find(large.messageId()));
+        assertEquals(Optional.of(message(1)), store.find(new MessageId(connectionId, 1)));
+    }
+
+    @Test
+    void testMaxBytes() throws IOException {
+        var store = open(options(1024, null, 3000L));
+        for(int i = 0; i < 50; i++) {
+            store.add(message(i, 100));
+        }
+        // retention runs as segments fill, so the store can be up to a segment over the limit
+        assertTrue(segmentFiles() <= 4);
+        assertTrue(store.find(new MessageId(connectionId, 0)).isEmpty());
+        assertEquals(Optional.of(message(49, 100)), store.find(new MessageId(connectionId, 49)));
+    }
+
+    @Test
+    void testMaxBytesCountsFileSize() throws IOException {
+        var store = open(options(1024, null, 2048L));
+        for(int i = 0; i < 50; i++) {
+            store.add(message(i, 100));
+            assertTrue(segmentFiles() <= 2);
+        }
+        assertEquals(Optional.of(message(49, 100)), store.find(new MessageId(connectionId, 49)));
+    }
+
+    @Test
+    void testMaxAge() throws IOException {
+        var store = open(options(1024, Duration.ofHours(1), null));
+        // fills the first segment and rolls to a second
+        for(int i = 0; i < 8; i++) {
+            store.add(message(i, 100));
+        }
+        assertEquals(2, segmentFiles());
+
+        // the newest message in the first segment is only 59 minutes old
+        clock.advance(Duration.ofMinutes(59));
+        store.enforceRetention();
+        assertEquals(Optional.of(message(0, 100)), store.find(new MessageId(connectionId, 0)));
+
+        clock.advance(Duration.ofMinutes(2));
+        store.enforceRetention();
+        assertEquals(1, segmentFiles());
+        assertTrue(store.find(new MessageId(connectionId, 0)).isEmpty());
+        assertEquals(Optional.of(message(7, 100)), store.find(new MessageId(connectionId, 7)));
+        // the segment being written to is kept regardless of age
+        clock.advance(Duration.ofDays(1));
+        store.enforceRetention();
+        assertEquals(Optional.of(message(7, 100)), store.find(new MessageId(connectionId, 7)));
+    }
+
+    @Test
+    void testMaxAgeOnOpen() {
+        var store = open(options(1024, Duration.ofHours(1), null));
+        store.add(message(0));
+        store.close();
+        clock.advance(Duration.ofHours(2));
+
+        var reopened = open(options(1024, Duration.ofHours(1), null));
+        assertTrue(reopened.find(new MessageId(connectionId, 0)).isEmpty());
+    }
+
+    @Test
+    void testIgnoresPartialRecord() throws IOException {
+        var store = open();
+        store.add(message(0));
+        store.add(message(1));
+        store.close();
+
+        // simulate dying partway through writing the second record
+        Path segment;
+        try(Stream<Path> files = Files.list(directory)) {
+            segment = files.sorted().findFirst().orElseThrow();
+        }
+        try(var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            var offset = Segment.HEADER_BYTES + Segment.RECORD_HEADER_BYTES + MessageRecords.encode(message(0)).remaining();
+            channel.write(ByteBuffer.allocate(Integer.BYTES + 1).putInt(0, MessageRecords.encode(message(1)).remaining()).put(Integer.BYTES, (byte) 1), offset);
+        }
+
+        var reopened = open();
+        assertEquals(Optional.of(message(0)), reopened.find(new MessageId(connectionId, 0)));
+        assertTrue(reopened.find(new MessageId(connectionId, 1)).isEmpty());
+        // the partial record's segment isn't appended to
+        assertEquals(2, segmentFiles());
+        reopened.add(message(1));
+        assertEquals(Optional.of(message(1)), reopened.find(new MessageId(connectionId, 1)));
+    }
+
+    @Test
+    void testNotASegment() throws IOException {
+        Files.write(directory.resolve(String.format("%020d.segment", 0)), new byte[64]);
+        var ex = assertThrows(UncheckedIOException.class, this::open);
+        assertTrue(ex.getMessage().contains("Not a segment file"));
+    }
+
+    @Test
+    void testAddAfterClose() {
+        var store = open();
+        store.close();
+        var ex = assertThrows(IllegalStateException.class, () -> store.add(message(0)));
+        assertEquals("Message store is closed", ex.getMessage());
+    }
+
+    @Test
+    void testAddHash() {
+        var store = open();
+        var message = message(0);
+        var hash = Bytes.of(new byte[]{9, 9});
+        store.addHash(message.messageId(), "SHA-256", hash);
+        assertTrue(store.findHash(message.messageId(), "SHA-256").isEmpty());
+        store.add(message);
+        store.addHash(message.messageId(), "SHA-256", hash);
+        assertEquals(Optional.of(hash), store.findHash(message.messageId(), "SHA-256"));
+        assertTrue(store.findHash(message.messageId(), "SHA-512").isEmpty());
+        assertTrue(store.findHash(message.messageId(), null).isEmpty());
+        assertThrows(NullPointerException.class, () -> store.addHash(message.messageId(), null, hash));
+        assertThrows(NullPointerException.class, () -> store.addHash(message.messageId(), "SHA-256", null));
+    }
+
+    @Test
+    void testHashesDroppedWithSegment() {
+        var store = open(options(1024, null, 1500L));
+        var first = message(0, 100);
+        store.add(first);
+        store.addHash(first.messageId(), "SHA-256", Bytes.of(new byte[]{9}));
+        for(int i = 1; i < 20; i++) {
+            store.add(message(i, 100));
+        }
+        assertTrue(store.find(first.messageId()).isEmpty());
+        assertTrue(store.findHash(first.messageId(), "SHA-256").isEmpty());
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.impl.reputation.ProportionalReputationService;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileReputationServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private final PeerId peerId = PeerUtils.senderId();
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final List<FileAssessmentStore> stores = new ArrayList<>();
+    private int seqNo;
+    private FileAssessmentStore store;
+    private FileReputationService service;
+
+    @BeforeEach
+    void setup() {
+        open(new JournalOptions(directory));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(FileAssessmentStore::close);
+    }
+
+    private void open(JournalOptions options) {
+        store = new FileAssessmentStore(options);
+        stores.add(store);
+        service = new FileReputationService(store);
+    }
+
+    private void reopen() {
+        store.close();
+        open(new JournalOptions(directory));
+    }
+
+    private void save(Assessment assessment) {
+        store.save(assessment, service::update);
+    }
+
+    private Assessment nextOf(PeerId peerId, Assessment.Status status) {
+        return new Assessment(peerId, new MessageId(connectionId, seqNo++), status);
+    }
+
+    private long files(String extension) throws IOException {
+        try(Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(extension)).count();
+        }
+    }
+
+    @Test
+    void testMatchesProportionalReputationService() {
+        var proportional = new ProportionalReputationService();
+        var reward = nextOf(peerId, Assessment.Status.REWARD);
+        var updates = List.of(
+                nextOf(peerId, Assessment.Status.WEAK_PENALTY),
+                nextOf(peerId, Assessment.Status.STRONG_PENALTY),
+                reward,
+                reward.updateStatus(Assessment.Status.STRONG_PENALTY),
+                reward,
+                nextOf(peerId, Assessment.Status.NONE)
+        );
+        for(var update : updates) {
+            store.save(update, (e, u) -> {
+                service.update(e, u);
+                proportional.update(e, u);
+            });
+            assertEquals(proportional.get(peerId), service.get(peerId));
+        }
+    }
+
+    @Test
+    void testDefault() {
+        assertEquals(1.0, service.get(peerId));
+    }
+
+    @Test
+    void testUpdateMismatches() {
+        var existing = nextOf(peerId, Assessment.Status.NONE);
+        var otherPeer = new Assessment(PeerUtils.witnessId(), existing.messageId(), Assessment.Status.REWARD);
+        var ex = assertThrows(IllegalArgumentException.class, () -> service.update(existing, otherPeer));
+        assertEquals("existing and updated refer to different peers", ex.getMessage());
+        var otherMessage = nextOf(peerId, Assessment.Status.REWARD);
+        ex = assertThrows(IllegalArgumentException.class, () -> service.update(existing, otherMessage));
+        assertEquals("existing and updated refer to different messages", ex.getMessage());
+        assertThrows(NullPointerException.class, () -> service.update(existing, null));
+    }
+
+    @Test
+    void testUpdateOutsideSave() {
+        var penalty = nextOf(peerId, Assessment.Status.STRONG_PENALTY);
+        var ex = assertThrows(IllegalStateException.class, () -> service.update(null, penalty));
+        assertEquals("Reputation updates must come from saving the assessment to the store", ex.getMessage());
+        assertEquals(1.0, service.get(peerId));
+    }
+
+    @Test
+    void testRecoversAfterClose() {
+        var other = PeerUtils.receiverId();
+        save(nextOf(peerId, Assessment.Status.WEAK_PENALTY));
+        save(nextOf(other, Assessment.Status.STRONG_PENALTY));
+        var before = service.get(peerId);
+        var otherBefore = service.get(other);
+        reopen();
+        assertEquals(before, service.get(peerId));
+        assertEquals(otherBefore, service.get(other));
+        assertEquals(1.0, service.get(PeerUtils.witnessId()));
+    }
+
+    @Test
+    void testRecoversSyncedChangesWithoutClose() {
+        var penalty = nextOf(peerId, Assessment.Status.STRONG_PENALTY);
+        save(penalty);
+        store.sync();
+        // the first store is never closed, as if the process died
+        open(new JournalOptions(directory));
+        assertEquals(0.25, service.get(peerId));
+        // the recovered assessment and reputation agree, so saving the assessment again doesn't count it twice
+        save(penalty);
+        assertEquals(0.25, service.get(peerId));
+    }
+
+    @Test
+    void testSnapshotThenReplay() throws IOException {
+        var reward = nextOf(peerId, Assessment.Status.REWARD);
+        save(reward);
+        store.snapshot();
+        var penalty = reward.updateStatus(Assessment.Status.STRONG_PENALTY);
+        save(penalty);
+        var expected = service.get(peerId);
+        reopen();
+        assertEquals(expected, service.get(peerId));
+        assertEquals(1, files(".snapshot"));
+        // the replayed upgrade was applied on top of the snapshot, so it can't be applied twice
+        save(penalty);
+        assertEquals(expected, service.get(peerId));
+    }
+
+    @Test
+    void testAutomaticSnapshot() throws IOException, InterruptedException {
+        store.close();
+        open(new JournalOptions(directory, Optional.of(Duration.ofMillis(10)), Optional.of(2), Optional.empty()));
+        save(nextOf(peerId, Assessment.Status.REWARD));
+        save(nextOf(peerId, Assessment.Status.WEAK_PENALTY));
+        for(int i = 0; i < 500 && files(".snapshot") == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, files(".snapshot"));
+        var expected = service.get(peerId);
+        reopen();
+        assertEquals(expected, service.get(peerId));
+    }
+
+    @Test
+    void testEvictionKeepsReputation() {
+        store.close();
+        store = new FileAssessmentStore(new JournalOptions(directory), new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        stores.add(store);
+        service = new FileReputationService(store);
+        save(nextOf(peerId, Assessment.Status.STRONG_PENALTY));
+        store.connectionClosed(connectionId);
+        assertEquals(0.25, service.get(peerId));
+        reopen();
+        assertEquals(0.25, service.get(peerId));
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.arobie1992.clarinet.impl.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalOptionsTest {
+
+    private final Path directory = Path.of("journal");
+
+    @Test
+    void testDirectoryConstructor() {
+        var options = new JournalOptions(directory);
+        assertEquals(directory, options.directory());
+        assertTrue(options.syncInterval().isEmpty());
+        assertTrue(options.snapshotEvery().isEmpty());
+        assertTrue(options.peerIdParser().isEmpty());
+    }
+
+    @Test
+    void testNullDirectory() {
+        assertThrows(NullPointerException.class, () -> new JournalOptions(null));
+    }
+
+    @Test
+    void testNonPositiveSyncInterval() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new JournalOptions(directory, Optional.of(Duration.ZERO), Optional.empty(), Optional.empty()));
+        assertEquals("syncInterval must be positive", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> new JournalOptions(directory, Optional.of(Duration.ofMillis(-1)), Optional.empty(), Optional.empty()));
+        assertEquals("syncInterval must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveSnapshotEvery() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new JournalOptions(directory, Optional.empty(), Optional.of(0), Optional.empty()));
+        assertEquals("snapshotEvery must be positive", ex.getMessage());
+    }
+}
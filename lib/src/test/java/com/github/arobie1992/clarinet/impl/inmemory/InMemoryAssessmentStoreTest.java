@@ -2,6 +2,7 @@ package com.github.arobie1992.clarinet.impl.inmemory;
 
 import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
 import com.github.arobie1992.clarinet.peer.PeerId;
 import com.github.arobie1992.clarinet.reputation.Assessment;
 import com.github.arobie1992.clarinet.reputation.AssessmentStore;
@@ -11,9 +12,12 @@ import com.github.arobie1992.clarinet.testutils.ThreadUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -38,10 +42,47 @@ class InMemoryAssessmentStoreTest {
         assertEquals(new Assessment(peerId, messageId, Assessment.Status.NONE), assessment);
         var updated = assessment.updateStatus(Assessment.Status.REWARD);
         assertTrue(store.save(updated, callback));
+        // the default isn't persisted, so there is nothing to update from
+        verify(callback).update(null, updated);
+        assertEquals(updated, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testFindAndSaveExisting() {
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        var assessment = store.find(peerId, messageId);
+        var updated = assessment.updateStatus(Assessment.Status.WEAK_PENALTY);
+        assertTrue(store.save(updated, callback));
         verify(callback).update(assessment, updated);
         assertEquals(updated, store.find(peerId, messageId));
     }
 
+    @Test
+    void testFindDoesNotPersistDefault() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.of(1), Optional.empty(), Optional.empty()));
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        for(int i = 1; i <= 10; i++) {
+            assertEquals(Assessment.Status.NONE, store.find(peerId, new MessageId(messageId.connectionId(), i)).status());
+            assertEquals(Assessment.Status.NONE, store.find(PeerUtils.receiverId(), new MessageId(ConnectionId.random(), i)).status());
+        }
+        // the store is still within its limit of one, so the saved assessment survives
+        store.sweep();
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testDistinguishesPeersAndConnections() {
+        var otherPeer = PeerUtils.receiverId();
+        var otherConnection = new MessageId(ConnectionId.random(), messageId.sequenceNumber());
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(otherPeer, otherConnection, Assessment.Status.STRONG_PENALTY), noOp);
+        assertEquals(Assessment.Status.REWARD, store.find(peerId, messageId).status());
+        assertEquals(Assessment.Status.NONE, store.find(otherPeer, messageId).status());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, otherConnection).status());
+        assertEquals(Assessment.Status.STRONG_PENALTY, store.find(otherPeer, otherConnection).status());
+    }
+
     @Test
     void testSaveNoPreexisting() {
         var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
@@ -78,6 +119,136 @@ class InMemoryAssessmentStoreTest {
         ), values);
     }
 
+    @Test
+    void testMaxAgeCountsFromFirstSave() {
+        var clock = new AtomicLong();
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.of(Duration.ofNanos(10)), Optional.empty(), Optional.empty(), Optional.empty()), clock::get);
+        var reward = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(reward, noOp);
+        clock.set(8);
+        var penalty = reward.updateStatus(Assessment.Status.STRONG_PENALTY);
+        store.save(penalty, noOp);
+        clock.set(11);
+        store.sweep();
+        // the evicted assessment's status is kept so it isn't counted again
+        assertEquals(penalty, store.find(peerId, messageId));
+        assertFalse(store.save(reward, callback));
+        verify(callback, never()).update(any(), any());
+    }
+
+    @Test
+    void testMaxCount() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.of(1), Optional.empty(), Optional.empty()));
+        var first = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var other = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD);
+        store.save(first, noOp);
+        store.save(other, noOp);
+        store.sweep();
+        var penalty = first.updateStatus(Assessment.Status.STRONG_PENALTY);
+        assertTrue(store.save(penalty, callback));
+        verify(callback).update(first, penalty);
+        assertEquals(penalty, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testMaxPerConnection() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.of(1), Optional.empty()));
+        var first = new Assessment(peerId, messageId, Assessment.Status.WEAK_PENALTY);
+        var second = new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD);
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(first, noOp);
+        store.save(otherConnection, noOp);
+        // updating an assessment doesn't count against the cap again
+        store.save(first.updateStatus(Assessment.Status.STRONG_PENALTY), noOp);
+        assertEquals(Assessment.Status.STRONG_PENALTY, store.find(peerId, messageId).status());
+        store.save(second, noOp);
+        assertEquals(second, store.find(peerId, second.messageId()));
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+        assertEquals(Assessment.Status.STRONG_PENALTY, store.find(peerId, messageId).status());
+        assertFalse(store.save(first, callback));
+        verify(callback, never()).update(any(), any());
+    }
+
+    @Test
+    void testEvictOnConnectionClose() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        store.save(otherConnection, noOp);
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+        // the assessment was already counted, so saving it again after the close is ignored
+        assertFalse(store.save(assessment, callback));
+        verify(callback, never()).update(any(), any());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+    }
+
+    @Test
+    void testEvictedStatusesDroppedOnConnectionClose() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.of(1), Optional.empty(), Optional.of(true)));
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(otherConnection, noOp);
+        store.sweep();
+        assertEquals(Assessment.Status.REWARD, store.find(peerId, messageId).status());
+        assertEquals(3, store.ordinals());
+
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(2, store.ordinals());
+        assertFalse(store.save(new Assessment(peerId, messageId, Assessment.Status.STRONG_PENALTY), callback));
+        verify(callback, never()).update(any(), any());
+    }
+
+    @Test
+    void testOrdinalsDroppedWithLastAssessment() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD), noOp);
+        store.save(otherConnection, noOp);
+        assertEquals(3, store.ordinals());
+
+        store.connectionClosed(messageId.connectionId());
+        // the peer still has an assessment on the other connection
+        assertEquals(2, store.ordinals());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+
+        store.connectionClosed(otherConnection.messageId().connectionId());
+        assertEquals(0, store.ordinals());
+
+        var next = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.WEAK_PENALTY);
+        store.save(next, noOp);
+        assertEquals(next, store.find(peerId, next.messageId()));
+        assertEquals(2, store.ordinals());
+    }
+
+    @Test
+    void testOrdinalsNotCountedForUpdates() {
+        store = new InMemoryAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.STRONG_PENALTY), noOp);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        var otherConnection = new MessageId(ConnectionId.random(), 0);
+        store.save(new Assessment(peerId, otherConnection, Assessment.Status.REWARD), noOp);
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(2, store.ordinals());
+        store.connectionClosed(otherConnection.connectionId());
+        assertEquals(0, store.ordinals());
+    }
+
+    @Test
+    void testDefaultPolicyKeepsEverything() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        store.connectionClosed(messageId.connectionId());
+        store.sweep();
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
     private record Pair(Assessment.Status existing, Assessment.Status updated) {}
 
 }
\ No newline at end of file
@@ -10,8 +10,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
 
@@ -23,6 +25,10 @@ class InMemoryKeyStoreTest {
             return Bytes.of(new byte[0]);
         }
         @Override
+        public Bytes signHash(Bytes hash) {
+            return Bytes.of(new byte[0]);
+        }
+        @Override
         public String algorithm() {
             return "";
         }
@@ -47,7 +53,7 @@ class InMemoryKeyStoreTest {
         }
         @Override
         public Bytes bytes() {
-            return Bytes.of(new byte[0]);
+            return Bytes.of(new byte[]{(byte) value});
         }
     }
 
@@ -97,4 +103,43 @@ class InMemoryKeyStoreTest {
         assertEquals(List.of(provider), store.providers().toList());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testFindPublicKeyByFingerprint() {
+        var key = new TestPublicKey(1);
+        var key2 = new TestPublicKey(2);
+        store.addPublicKey(PeerUtils.senderId(), key);
+        store.addPublicKey(PeerUtils.senderId(), key2);
+        assertEquals(Optional.of(key), store.findPublicKey(PeerUtils.senderId(), key.fingerprint()));
+        assertEquals(Optional.of(key2), store.findPublicKey(PeerUtils.senderId(), key2.fingerprint()));
+        assertEquals(Optional.empty(), store.findPublicKey(PeerUtils.receiverId(), key.fingerprint()));
+        assertEquals(Optional.empty(), store.findPublicKey(PeerUtils.senderId(), new TestPublicKey(3).fingerprint()));
+    }
+
+    @Test
+    void testFindFingerprint() {
+        var pair = new KeyPair(new TestPublicKey(1), new TestPrivateKey(2));
+        var lone = new TestPrivateKey(3);
+        store.addKeyPair(PeerUtils.senderId(), pair);
+        store.addPrivateKey(PeerUtils.senderId(), lone);
+        assertEquals(Optional.of(pair.publicKey().fingerprint()), store.findFingerprint(PeerUtils.senderId(), pair.privateKey()));
+        assertEquals(Optional.empty(), store.findFingerprint(PeerUtils.senderId(), lone));
+        assertEquals(Optional.empty(), store.findFingerprint(PeerUtils.receiverId(), pair.privateKey()));
+    }
+
+    @Test
+    void testUnknownPeer() {
+        assertEquals(List.of(), store.findPublicKeys(PeerUtils.senderId()));
+        assertEquals(List.of(), store.findPrivateKeys(PeerUtils.senderId()));
+    }
+
+    @Test
+    void testFoundKeysAreSnapshots() {
+        var key = new TestPublicKey(1);
+        store.addPublicKey(PeerUtils.senderId(), key);
+        var keys = store.findPublicKeys(PeerUtils.senderId());
+        store.addPublicKey(PeerUtils.senderId(), new TestPublicKey(2));
+        assertEquals(List.of(key), keys);
+        assertSame(store.findPublicKeys(PeerUtils.senderId()), store.findPublicKeys(PeerUtils.senderId()));
+    }
+
+}
@@ -5,9 +5,14 @@ import com.github.arobie1992.clarinet.core.ConnectionId;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.ExistingMessageIdException;
 import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryMessageStoreTest {
@@ -60,4 +65,130 @@ class InMemoryMessageStoreTest {
         assertTrue(store.find(message.messageId()).isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testAddHash() {
+        var hash = Bytes.of(new byte[]{9, 9});
+        store.add(message);
+        assertTrue(store.findHash(message.messageId(), "SHA-256").isEmpty());
+        store.addHash(message.messageId(), "SHA-256", hash);
+        assertEquals(Optional.of(hash), store.findHash(message.messageId(), "SHA-256"));
+        assertTrue(store.findHash(message.messageId(), "SHA-512").isEmpty());
+    }
+
+    @Test
+    void testAddHashNoMessage() {
+        store.addHash(message.messageId(), "SHA-256", Bytes.of(new byte[]{9, 9}));
+        assertTrue(store.findHash(message.messageId(), "SHA-256").isEmpty());
+        store.add(message);
+        assertTrue(store.findHash(message.messageId(), "SHA-256").isEmpty());
+    }
+
+    @Test
+    void testAddHashNulls() {
+        store.add(message);
+        assertThrows(NullPointerException.class, () -> store.addHash(message.messageId(), null, Bytes.of(new byte[]{9})));
+        assertThrows(NullPointerException.class, () -> store.addHash(message.messageId(), "SHA-256", null));
+        assertTrue(store.findHash(message.messageId(), null).isEmpty());
+    }
+
+    @Test
+    void testDefaultPolicyKeepsEverything() {
+        store.add(message);
+        store.connectionClosed(message.messageId().connectionId());
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isPresent());
+    }
+
+    @Test
+    void testMaxAge() {
+        var clock = new AtomicLong();
+        store = new InMemoryMessageStore(policy(Optional.of(Duration.ofNanos(10)), Optional.empty(), Optional.empty(), Optional.empty()), clock::get);
+        store.add(message);
+        clock.set(5);
+        var newer = message(message.messageId().connectionId(), 1);
+        store.add(newer);
+        clock.set(10);
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isPresent());
+        clock.set(11);
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isEmpty());
+        assertTrue(store.find(newer.messageId()).isPresent());
+    }
+
+    @Test
+    void testMaxCount() {
+        store = new InMemoryMessageStore(policy(Optional.empty(), Optional.of(2), Optional.empty(), Optional.empty()));
+        var connectionId = message.messageId().connectionId();
+        store.add(message);
+        store.add(message(connectionId, 1));
+        store.add(message(connectionId, 2));
+        // only enforced on sweep
+        assertTrue(store.find(message.messageId()).isPresent());
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isEmpty());
+        assertTrue(store.find(new MessageId(connectionId, 1)).isPresent());
+        assertTrue(store.find(new MessageId(connectionId, 2)).isPresent());
+    }
+
+    @Test
+    void testMaxPerConnection() {
+        store = new InMemoryMessageStore(policy(Optional.empty(), Optional.empty(), Optional.of(2), Optional.empty()));
+        var connectionId = message.messageId().connectionId();
+        var other = message(ConnectionId.random(), 0);
+        store.add(message);
+        store.add(other);
+        store.add(message(connectionId, 1));
+        store.add(message(connectionId, 2));
+        assertTrue(store.find(message.messageId()).isEmpty());
+        assertTrue(store.find(new MessageId(connectionId, 1)).isPresent());
+        assertTrue(store.find(new MessageId(connectionId, 2)).isPresent());
+        assertTrue(store.find(other.messageId()).isPresent());
+    }
+
+    @Test
+    void testEvictOnConnectionClose() {
+        store = new InMemoryMessageStore(policy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        var other = message(ConnectionId.random(), 0);
+        store.add(message);
+        store.addHash(message.messageId(), "SHA-256", Bytes.of(new byte[]{9}));
+        store.add(other);
+        store.connectionClosed(message.messageId().connectionId());
+        assertTrue(store.find(message.messageId()).isEmpty());
+        assertTrue(store.findHash(message.messageId(), "SHA-256").isEmpty());
+        assertTrue(store.find(other.messageId()).isPresent());
+    }
+
+    @Test
+    void testNoEvictOnConnectionCloseWhenDisabled() {
+        store = new InMemoryMessageStore(policy(Optional.empty(), Optional.empty(), Optional.of(2), Optional.of(false)));
+        store.add(message);
+        store.connectionClosed(message.messageId().connectionId());
+        assertTrue(store.find(message.messageId()).isPresent());
+    }
+
+    @Test
+    void testReAddedMessageKeepsItsOwnAge() {
+        var clock = new AtomicLong();
+        store = new InMemoryMessageStore(policy(Optional.of(Duration.ofNanos(10)), Optional.empty(), Optional.empty(), Optional.of(true)), clock::get);
+        store.add(message);
+        store.connectionClosed(message.messageId().connectionId());
+        clock.set(8);
+        store.add(message);
+        clock.set(15);
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isPresent());
+        clock.set(19);
+        store.sweep();
+        assertTrue(store.find(message.messageId()).isEmpty());
+    }
+
+    private static DataMessage message(ConnectionId connectionId, long sequenceNumber) {
+        return new DataMessage(new MessageId(connectionId, sequenceNumber), Bytes.of(new byte[]{1}));
+    }
+
+    private static RetentionPolicy policy(Optional<Duration> maxAge, Optional<Integer> maxCount, Optional<Integer> maxPerConnection, Optional<Boolean> evictOnClose) {
+        return new RetentionPolicy(maxAge, maxCount, maxPerConnection, evictOnClose);
+    }
+
+}
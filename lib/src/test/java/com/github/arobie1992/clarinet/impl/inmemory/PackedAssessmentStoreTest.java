@@ -0,0 +1,256 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.message.RetentionPolicy;
+import com.github.arobie1992.clarinet.peer.PeerId;
+import com.github.arobie1992.clarinet.reputation.Assessment;
+import com.github.arobie1992.clarinet.reputation.AssessmentStore;
+import com.github.arobie1992.clarinet.testutils.AsyncAssert;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import com.github.arobie1992.clarinet.testutils.ThreadUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PackedAssessmentStoreTest {
+
+    private final AssessmentStore.ReputationCallback noOp = (a, b) -> {};
+    private final PeerId peerId = PeerUtils.senderId();
+    private final MessageId messageId = new MessageId(ConnectionId.random(), 0);
+    private PackedAssessmentStore store;
+    private AssessmentStore.ReputationCallback callback;
+
+    @BeforeEach
+    void setup() {
+        store = new PackedAssessmentStore();
+        callback = mock(AssessmentStore.ReputationCallback.class);
+    }
+
+    @Test
+    void testFindDefault() {
+        assertEquals(new Assessment(peerId, messageId, Assessment.Status.NONE), store.find(peerId, messageId));
+    }
+
+    @Test
+    void testSaveNoPreexisting() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        assertTrue(store.save(assessment, callback));
+        verify(callback).update(null, assessment);
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testSaveNoneIsPersisted() {
+        var none = new Assessment(peerId, messageId, Assessment.Status.NONE);
+        assertTrue(store.save(none, noOp));
+        var updated = none.updateStatus(Assessment.Status.REWARD);
+        assertTrue(store.save(updated, callback));
+        verify(callback).update(none, updated);
+    }
+
+    @Test
+    void testSaveUpgrade() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        var updated = assessment.updateStatus(Assessment.Status.STRONG_PENALTY);
+        assertTrue(store.save(updated, callback));
+        verify(callback).update(assessment, updated);
+        assertEquals(updated, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testSaveSamePriority() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.WEAK_PENALTY);
+        store.save(assessment, noOp);
+        assertTrue(store.save(assessment, callback));
+        verify(callback).update(assessment, assessment);
+    }
+
+    @Test
+    void testSaveNotPersist() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        assertTrue(store.save(assessment, noOp));
+        assertFalse(store.save(new Assessment(peerId, messageId, Assessment.Status.NONE), callback));
+        verify(callback, never()).update(any(), any());
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testCallbackFailureNotPersisted() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        assertThrows(IllegalStateException.class, () -> store.save(assessment, (e, u) -> {
+            throw new IllegalStateException();
+        }));
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+    }
+
+    @Test
+    void testDistinguishesPeersConnectionsAndSequences() {
+        var otherPeer = PeerUtils.receiverId();
+        var otherConnection = new MessageId(ConnectionId.random(), messageId.sequenceNumber());
+        var nextInPage = new MessageId(messageId.connectionId(), 1);
+        var nextPage = new MessageId(messageId.connectionId(), 256);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(otherPeer, otherConnection, Assessment.Status.STRONG_PENALTY), noOp);
+        store.save(new Assessment(peerId, nextPage, Assessment.Status.WEAK_PENALTY), noOp);
+        assertEquals(Assessment.Status.REWARD, store.find(peerId, messageId).status());
+        assertEquals(Assessment.Status.NONE, store.find(otherPeer, messageId).status());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, otherConnection).status());
+        assertEquals(Assessment.Status.STRONG_PENALTY, store.find(otherPeer, otherConnection).status());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, nextInPage).status());
+        assertEquals(Assessment.Status.WEAK_PENALTY, store.find(peerId, nextPage).status());
+    }
+
+    @Test
+    void testExtremeSequenceNumbers() {
+        for(var sequenceNumber : new long[]{Long.MAX_VALUE, Long.MIN_VALUE, -1}) {
+            var id = new MessageId(messageId.connectionId(), sequenceNumber);
+            var assessment = new Assessment(peerId, id, Assessment.Status.WEAK_PENALTY);
+            assertTrue(store.save(assessment, noOp));
+            assertEquals(assessment, store.find(peerId, id));
+        }
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+    }
+
+    @Test
+    void testAtomicityOfCallbackInvocations() throws Throwable {
+        var values = new ArrayList<Pair>();
+        var latch = new CountDownLatch(1);
+        callback = (e, u) -> {
+            latch.countDown();
+            values.add(new Pair(e == null ? null : e.status(), u.status()));
+            ThreadUtils.sleepUnchecked(1000);
+        };
+        var t1 = AsyncAssert.started(() -> store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), callback));
+        latch.await();
+        store.save(new Assessment(peerId, messageId, Assessment.Status.WEAK_PENALTY), callback);
+        t1.join();
+        assertEquals(Arrays.asList(
+                new Pair(null, Assessment.Status.REWARD),
+                new Pair(Assessment.Status.REWARD, Assessment.Status.WEAK_PENALTY)
+        ), values);
+    }
+
+    @Test
+    void testConcurrentSavesFormAChain() throws InterruptedException {
+        var transitions = Collections.synchronizedList(new ArrayList<Pair>());
+        AssessmentStore.ReputationCallback recording = (e, u) -> transitions.add(new Pair(e == null ? null : e.status(), u.status()));
+        var statuses = Assessment.Status.values();
+        var threads = new ArrayList<Thread>();
+        for(int i = 0; i < 8; i++) {
+            threads.add(Thread.startVirtualThread(() -> {
+                for(int j = 0; j < 100; j++) {
+                    var status = statuses[ThreadLocalRandom.current().nextInt(statuses.length)];
+                    store.save(new Assessment(peerId, messageId, status), recording);
+                }
+            }));
+        }
+        for(var thread : threads) {
+            thread.join();
+        }
+        List<Pair> chain = new ArrayList<>(transitions);
+        assertNull(chain.getFirst().existing());
+        for(int i = 1; i < chain.size(); i++) {
+            assertEquals(chain.get(i - 1).updated(), chain.get(i).existing());
+            assertTrue(chain.get(i).updated().comparePriority(chain.get(i).existing()) >= 0);
+        }
+        assertEquals(chain.getLast().updated(), store.find(peerId, messageId).status());
+    }
+
+    private record Pair(Assessment.Status existing, Assessment.Status updated) {}
+
+    @Test
+    void testUnsupportedRetention() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new PackedAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.of(1), Optional.empty(), Optional.empty())));
+        assertEquals("Only evictOnConnectionClose is supported", ex.getMessage());
+    }
+
+    @Test
+    void testConnectionCloseKeepsByDefault() {
+        var assessment = new Assessment(peerId, messageId, Assessment.Status.REWARD);
+        store.save(assessment, noOp);
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(assessment, store.find(peerId, messageId));
+    }
+
+    @Test
+    void testEvictOnConnectionClose() {
+        store = new PackedAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        var otherConnection = new Assessment(peerId, new MessageId(ConnectionId.random(), 0), Assessment.Status.REWARD);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), 1000), Assessment.Status.REWARD), noOp);
+        store.save(otherConnection, noOp);
+        assertEquals(3, store.pageCount());
+
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, new MessageId(messageId.connectionId(), 1000)).status());
+        assertEquals(otherConnection, store.find(peerId, otherConnection.messageId()));
+        assertEquals(1, store.pageCount());
+        // the peer and the other connection
+        assertEquals(2, store.ordinals());
+
+        // the message was already counted before the close, so saving it again is ignored
+        assertFalse(store.save(new Assessment(peerId, messageId, Assessment.Status.WEAK_PENALTY), callback));
+        verify(callback, never()).update(any(), any());
+        assertEquals(Assessment.Status.NONE, store.find(peerId, messageId).status());
+        assertEquals(1, store.pageCount());
+
+        store.connectionClosed(otherConnection.messageId().connectionId());
+        assertEquals(0, store.pageCount());
+        assertEquals(0, store.ordinals());
+    }
+
+    @Test
+    void testOrdinalsNotCountedForUpdates() {
+        store = new PackedAssessmentStore(new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of(true)));
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.STRONG_PENALTY), noOp);
+        store.save(new Assessment(peerId, messageId, Assessment.Status.REWARD), noOp);
+        store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), 1), Assessment.Status.REWARD), noOp);
+        assertEquals(2, store.ordinals());
+        store.connectionClosed(messageId.connectionId());
+        assertEquals(0, store.ordinals());
+    }
+
+    @Test
+    void testScatteredSequenceNumbersStaySparse() {
+        for(int i = 0; i < 100; i++) {
+            store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), (long) i << 20), Assessment.Status.REWARD), noOp);
+        }
+        assertEquals(100, store.pageCount());
+        assertEquals(0, store.densePageCount());
+        for(int i = 0; i < 100; i++) {
+            assertEquals(Assessment.Status.REWARD, store.find(peerId, new MessageId(messageId.connectionId(), (long) i << 20)).status());
+            assertEquals(Assessment.Status.NONE, store.find(peerId, new MessageId(messageId.connectionId(), ((long) i << 20) + 1)).status());
+        }
+    }
+
+    @Test
+    void testFullPageBecomesDense() {
+        var statuses = Assessment.Status.values();
+        for(int i = 0; i < 256; i++) {
+            store.save(new Assessment(peerId, new MessageId(messageId.connectionId(), i), statuses[i % statuses.length]), noOp);
+            assertEquals(i < 32 ? 0 : 1, store.densePageCount());
+        }
+        assertEquals(1, store.pageCount());
+        for(int i = 0; i < 256; i++) {
+            assertEquals(statuses[i % statuses.length], store.find(peerId, new MessageId(messageId.connectionId(), i)).status());
+        }
+        var updated = new Assessment(peerId, new MessageId(messageId.connectionId(), 0), Assessment.Status.STRONG_PENALTY);
+        assertTrue(store.save(updated, callback));
+        verify(callback).update(new Assessment(peerId, updated.messageId(), statuses[0]), updated);
+        assertEquals(updated, store.find(peerId, updated.messageId()));
+    }
+}
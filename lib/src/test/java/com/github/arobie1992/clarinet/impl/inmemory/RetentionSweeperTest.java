@@ -0,0 +1,51 @@
+package com.github.arobie1992.clarinet.impl.inmemory;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionSweeperTest {
+
+    @Test
+    void testNonPositiveInterval() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new RetentionSweeper(Duration.ZERO));
+        assertEquals("interval must be positive", ex.getMessage());
+        assertThrows(NullPointerException.class, () -> new RetentionSweeper(null));
+    }
+
+    @Test
+    void testSweepsPeriodically() throws InterruptedException {
+        var latch = new CountDownLatch(3);
+        try(var ignored = new RetentionSweeper(Duration.ofMillis(10), latch::countDown)) {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testFailingSweepDoesNotStopOthers() throws InterruptedException {
+        var latch = new CountDownLatch(2);
+        var failures = new AtomicInteger();
+        Runnable failing = () -> {
+            failures.incrementAndGet();
+            throw new IllegalStateException("sweep failed");
+        };
+        try(var ignored = new RetentionSweeper(Duration.ofMillis(10), failing, latch::countDown)) {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        assertTrue(failures.get() >= 2);
+    }
+
+    @Test
+    void testSweepRunsEachOnce() {
+        var count = new AtomicInteger();
+        try(var sweeper = new RetentionSweeper(Duration.ofHours(1), count::incrementAndGet, count::incrementAndGet)) {
+            sweeper.sweep();
+        }
+        assertEquals(2, count.get());
+    }
+}
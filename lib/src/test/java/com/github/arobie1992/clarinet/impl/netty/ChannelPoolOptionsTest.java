@@ -0,0 +1,16 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChannelPoolOptionsTest {
+    @Test
+    void testNoArgsConstructor() {
+        var options = new ChannelPoolOptions();
+        assertEquals(Optional.empty(), options.maxConnections());
+        assertEquals(Optional.empty(), options.idleTimeout());
+    }
+}
@@ -1,11 +1,13 @@
 package com.github.arobie1992.clarinet.impl.netty;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.github.arobie1992.clarinet.core.ConnectionId;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.mock;
@@ -23,4 +25,17 @@ class ConnectionIdDeserializerTest {
         assertEquals(expected, deserializer.deserialize(parser, ctx));
     }
 
+    @Test
+    void testDeserializeBinary() throws IOException {
+        var expected = ConnectionId.random();
+        var deserializer = new ConnectionIdDeserializer();
+        var parser = mock(JsonParser.class);
+        var ctx = mock(DeserializationContext.class);
+        var uuid = expected.asUUID();
+        var bytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+        when(parser.currentToken()).thenReturn(JsonToken.VALUE_EMBEDDED_OBJECT);
+        when(parser.getBinaryValue()).thenReturn(bytes);
+        assertEquals(expected, deserializer.deserialize(parser, ctx));
+    }
+
 }
\ No newline at end of file
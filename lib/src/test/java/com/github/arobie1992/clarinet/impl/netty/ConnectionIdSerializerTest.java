@@ -6,9 +6,11 @@ import com.github.arobie1992.clarinet.core.ConnectionId;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class ConnectionIdSerializerTest {
 
@@ -22,4 +24,17 @@ class ConnectionIdSerializerTest {
         verify(gen).writeString(connectionId.toString());
     }
 
+    @Test
+    void testSerializeBinary() throws IOException {
+        var connectionId = ConnectionId.random();
+        var serializer = new ConnectionIdSerializer();
+        var gen = mock(JsonGenerator.class);
+        when(gen.canWriteBinaryNatively()).thenReturn(true);
+        var serializers = mock(SerializerProvider.class);
+        serializer.serialize(connectionId, gen, serializers);
+        var uuid = connectionId.asUUID();
+        var expected = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        verify(gen).writeBinary(expected.array());
+    }
+
 }
\ No newline at end of file
@@ -3,14 +3,20 @@ package com.github.arobie1992.clarinet.impl.netty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.BatchSigning;
 import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.core.MessageBatch;
 import com.github.arobie1992.clarinet.message.DataMessage;
 import com.github.arobie1992.clarinet.message.MessageId;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 import java.io.IOException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 // test serializer and deserializer together to make sure they work
 class DataMessageSerializationTest {
@@ -41,6 +47,40 @@ class DataMessageSerializationTest {
         verifyMatches(dataMessage, read);
     }
 
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void testWireFormats(WireFormat format) throws IOException {
+        dataMessage.setSenderSignature(Bytes.of(new byte[]{55, 34, 90}));
+        dataMessage.setWitnessSignature(Bytes.of(new byte[]{99, 2, 0}));
+        var mapper = ObjectMappers.forFormat(format);
+        var read = mapper.readValue(mapper.writeValueAsBytes(dataMessage), DataMessage.class);
+        verifyMatches(dataMessage, read);
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void testBatchWireFormats(WireFormat format) throws IOException {
+        dataMessage.setSenderSignature(Bytes.of(new byte[]{55, 34, 90}));
+        var second = new DataMessage(new MessageId(dataMessage.messageId().connectionId(), 1), Bytes.of(new byte[]{1}));
+        var batch = new MessageBatch(dataMessage.messageId().connectionId(), List.of(dataMessage, second), BatchSigning.MERKLE_ROOT);
+        var mapper = ObjectMappers.forFormat(format);
+        var read = mapper.readValue(mapper.writeValueAsBytes(batch), MessageBatch.class);
+        assertEquals(batch.connectionId(), read.connectionId());
+        assertEquals(BatchSigning.MERKLE_ROOT, read.signing());
+        assertEquals(2, read.messages().size());
+        verifyMatches(dataMessage, read.messages().get(0));
+        verifyMatches(second, read.messages().get(1));
+    }
+
+    @Test
+    void testCborSmallerThanJson() throws IOException {
+        dataMessage.setSenderSignature(Bytes.of(new byte[256]));
+        dataMessage.setWitnessSignature(Bytes.of(new byte[256]));
+        var json = ObjectMappers.forFormat(WireFormat.JSON).writeValueAsBytes(dataMessage);
+        var cbor = ObjectMappers.forFormat(WireFormat.CBOR).writeValueAsBytes(dataMessage);
+        assertTrue(cbor.length < json.length);
+    }
+
     private void verifyMatches(DataMessage expected, DataMessage actual) {
         assertEquals(expected.messageId(), actual.messageId());
         assertEquals(expected.data(), actual.data());
@@ -0,0 +1,58 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCodecTest {
+
+    @Test
+    void testRoundTrip() {
+        var channel = new EmbeddedChannel(new FrameCodec());
+        var frame = new Frame(Frame.Type.REQUEST, WireFormat.CBOR, 42, new byte[]{1, 2, 3});
+        assertTrue(channel.writeOutbound(frame));
+        ByteBuf encoded = channel.readOutbound();
+        assertEquals(Frame.HEADER_LENGTH + 3, encoded.readableBytes());
+        assertTrue(channel.writeInbound(encoded));
+        Frame decoded = channel.readInbound();
+        assertEquals(frame.type(), decoded.type());
+        assertEquals(frame.format(), decoded.format());
+        assertEquals(frame.requestId(), decoded.requestId());
+        assertArrayEquals(frame.payload(), decoded.payload());
+    }
+
+    @Test
+    void testDecodeTooShort() {
+        var channel = new EmbeddedChannel(new FrameCodec());
+        var ex = assertThrows(DecoderException.class, () -> channel.writeInbound(Unpooled.wrappedBuffer(new byte[]{1})));
+        assertInstanceOf(CorruptedFrameException.class, ex);
+    }
+
+    @Test
+    void testDecodeUnknownType() {
+        var channel = new EmbeddedChannel(new FrameCodec());
+        var buf = Unpooled.buffer().writeByte(Byte.MAX_VALUE).writeByte(WireFormat.JSON.code()).writeLong(1);
+        var ex = assertThrows(DecoderException.class, () -> channel.writeInbound(buf));
+        assertEquals("Unknown frame type: " + Byte.MAX_VALUE, ex.getCause().getMessage());
+    }
+
+    @Test
+    void testDecodeUnknownFormat() {
+        var channel = new EmbeddedChannel(new FrameCodec());
+        var buf = Unpooled.buffer().writeByte(Frame.Type.SEND.code()).writeByte(Byte.MAX_VALUE).writeLong(1);
+        var ex = assertThrows(DecoderException.class, () -> channel.writeInbound(buf));
+        assertEquals("Unknown wire format: " + Byte.MAX_VALUE, ex.getCause().getMessage());
+    }
+
+    @Test
+    void testTypeFromCode() {
+        for(var type : Frame.Type.values()) {
+            assertEquals(type, Frame.Type.fromCode(type.code()));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandlerDispatcherTest {
+
+    private static Request send(long requestId) {
+        return new Request(false, requestId, WireFormat.JSON, new Request.Envelope("endpoint", PeerUtils.senderId(), List.of(), null));
+    }
+
+    @Test
+    void testSuspendsReadsAtMaxInFlight() {
+        var tasks = new ArrayList<Runnable>();
+        var channel = new EmbeddedChannel(new HandlerDispatcher(Map.of(), tasks::add, 4));
+
+        for(int i = 0; i < 3; i++) {
+            channel.writeInbound(send(i));
+        }
+        assertTrue(channel.config().isAutoRead());
+        channel.writeInbound(send(3));
+        assertFalse(channel.config().isAutoRead());
+
+        tasks.removeFirst().run();
+        channel.runPendingTasks();
+        assertFalse(channel.config().isAutoRead());
+
+        tasks.removeFirst().run();
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    @Test
+    void testDoesNotResumeIfRefilled() {
+        var tasks = new ArrayList<Runnable>();
+        var channel = new EmbeddedChannel(new HandlerDispatcher(Map.of(), tasks::add, 4));
+        for(int i = 0; i < 4; i++) {
+            channel.writeInbound(send(i));
+        }
+
+        tasks.removeFirst().run();
+        tasks.removeFirst().run();
+        // a request that was already read before suspending arrives before the resume runs
+        channel.pipeline().fireChannelRead(send(4));
+        channel.runPendingTasks();
+        assertFalse(channel.config().isAutoRead());
+    }
+
+    @Test
+    void testInvalidMaxInFlight() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new HandlerDispatcher(Map.of(), Runnable::run, 0));
+        assertEquals("maxInFlight must be positive", ex.getMessage());
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import com.github.arobie1992.clarinet.impl.peer.UriAddress;
+import com.github.arobie1992.clarinet.message.MessageId;
+import com.github.arobie1992.clarinet.testutils.PeerUtils;
+import com.github.arobie1992.clarinet.transport.Message;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageDecoderTest {
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void testDecodeDefersContents(WireFormat format) throws IOException, URISyntaxException {
+        var contents = new MessageId(ConnectionId.random(), 7);
+        var address = new UriAddress(new URI("tcp://localhost:1234"));
+        var message = new Message("endpoint", PeerUtils.senderId(), List.of(address), contents);
+        var mapper = ObjectMappers.forFormat(format);
+        var channel = new EmbeddedChannel(new MessageDecoder());
+
+        assertTrue(channel.writeInbound(new Frame(Frame.Type.REQUEST, format, 3, mapper.writeValueAsBytes(message))));
+        Request request = channel.readInbound();
+
+        assertTrue(request.expectsResponse());
+        assertEquals(3, request.requestId());
+        assertEquals(format, request.format());
+        var envelope = request.envelope();
+        assertEquals("endpoint", envelope.endpoint());
+        assertEquals(PeerUtils.senderId(), envelope.sender());
+        assertEquals(List.of(address), envelope.contactAt());
+        try(var parser = envelope.contents().asParser(mapper)) {
+            assertEquals(contents, mapper.readValue(parser, MessageId.class));
+        }
+    }
+
+    @Test
+    void testDecodeSend() throws IOException {
+        var message = new Message("endpoint", PeerUtils.senderId(), List.of(), null);
+        var payload = ObjectMappers.forFormat(WireFormat.JSON).writeValueAsBytes(message);
+        var channel = new EmbeddedChannel(new MessageDecoder());
+        assertTrue(channel.writeInbound(new Frame(Frame.Type.SEND, WireFormat.JSON, 1, payload)));
+        Request request = channel.readInbound();
+        assertFalse(request.expectsResponse());
+        assertNull(request.envelope().contents());
+    }
+
+    @Test
+    void testDecodeUnexpectedType() {
+        var channel = new EmbeddedChannel(new MessageDecoder());
+        var frame = new Frame(Frame.Type.RESPONSE, WireFormat.JSON, 1, new byte[0]);
+        var ex = assertThrows(DecoderException.class, () -> channel.writeInbound(frame));
+        assertEquals("Unexpected frame type: RESPONSE", ex.getMessage());
+    }
+}
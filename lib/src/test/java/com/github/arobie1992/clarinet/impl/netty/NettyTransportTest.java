@@ -19,9 +19,10 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
 import lombok.Lombok;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
@@ -33,6 +34,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -134,6 +137,66 @@ class NettyTransportTest {
         assertEquals(message, sendHandler.receivedMessage);
     }
 
+    @Test
+    void testExchangeAsync() throws Exception {
+        var future = transport.exchangeAsync(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        assertEquals(response, future.get(5, TimeUnit.SECONDS));
+        assertEquals(message, exchangeHandler.receivedMessage);
+    }
+
+    @Test
+    void testSendAsync() throws Exception {
+        transport.sendAsync(address, sendEndpoint, message, TransportUtils.defaultOptions()).get(5, TimeUnit.SECONDS);
+        assertTrue(sendLatch.await(1, TimeUnit.SECONDS));
+        assertEquals(message, sendHandler.receivedMessage);
+    }
+
+    @Test
+    void testExchangeAsyncIOException() throws URISyntaxException {
+        // hopefully nothing is running on this port
+        var address = new UriAddress(new URI("tcp://localhost:9999"));
+        var future = transport.exchangeAsync(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UncheckedIOException.class, ex.getCause());
+    }
+
+    @Test
+    void testExchangeAsyncError() {
+        var future = transport.exchangeAsync(address, "notThere", message, TestMessage.class, TransportUtils.defaultOptions());
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        var cause = assertInstanceOf(ExchangeErrorException.class, ex.getCause());
+        assertEquals("No such endpoint: notThere", cause.error());
+    }
+
+    @Test
+    void testExchangeAsyncNotTcpAddress() throws URISyntaxException {
+        var address = new UriAddress(new URI("udp://localhost"));
+        var future = transport.exchangeAsync(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+    }
+
+    @Test
+    void testSendAsyncIOException() throws URISyntaxException {
+        // hopefully nothing is running on this port
+        var address = new UriAddress(new URI("tcp://localhost:9999"));
+        var future = transport.sendAsync(address, sendEndpoint, message, TransportUtils.defaultOptions());
+        var ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UncheckedIOException.class, ex.getCause());
+    }
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void testExchangeWireFormat(WireFormat wireFormat) throws URISyntaxException {
+        try(var transport = new NettyTransport(PeerUtils.senderId(), TransportUtils.defaultOptions(), new ChannelPoolOptions(), wireFormat)) {
+            var address = transport.add(new UriAddress(new URI("tcp://localhost:0")));
+            transport.add(exchangeEndpoint, exchangeHandler);
+            var resp = transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+            assertEquals(message, exchangeHandler.receivedMessage);
+            assertEquals(response, resp);
+        }
+    }
+
     @Test
     void testExchangeNotTcpAddress() throws URISyntaxException {
         var address = new UriAddress(new URI("udp://localhost"));
@@ -190,10 +253,9 @@ class NettyTransportTest {
         var addrUri = address.asURI();
         try(var sock = new Socket()) {
             sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()), 1000);
-            var out = sock.getOutputStream();
-            out.write(objectMapper.writeValueAsBytes(new Message(exchangeEndpoint, PeerUtils.senderId(), List.of(address), message)));
+            writeFrame(sock, new Message(exchangeEndpoint, PeerUtils.senderId(), List.of(address), message));
             sock.setSoTimeout(1000);
-            var bytes = sock.getInputStream().readAllBytes();
+            var bytes = readFrame(sock);
             assertEquals(response, objectMapper.readValue(bytes, TestMessage.class));
             var expected = new RemoteInformation(
                     new Peer(PeerUtils.senderId(), Set.of(address)),
@@ -208,8 +270,7 @@ class NettyTransportTest {
         var addrUri = address.asURI();
         try(var sock = new Socket()) {
             sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()), 1000);
-            var out = sock.getOutputStream();
-            out.write(objectMapper.writeValueAsBytes(new Message(sendEndpoint, PeerUtils.senderId(), List.of(address), message)));
+            writeFrame(sock, new Message(sendEndpoint, PeerUtils.senderId(), List.of(address), message));
             var expected = new RemoteInformation(
                     new Peer(PeerUtils.senderId(), Set.of(address)),
                     new UriAddress(new URI("tcp://" + sock.getLocalAddress().getHostName() + ":" + sock.getLocalPort()))
@@ -220,6 +281,94 @@ class NettyTransportTest {
         }
     }
 
+    @Test
+    void testHandlerHandlesMultipleMessagesOnOneConnection() throws IOException {
+        var addrUri = address.asURI();
+        try(var sock = new Socket()) {
+            sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()), 1000);
+            sock.setSoTimeout(1000);
+            for(int i = 0; i < 2; i++) {
+                writeFrame(sock, new Message(exchangeEndpoint, PeerUtils.senderId(), List.of(address), message));
+                assertEquals(response, objectMapper.readValue(readFrame(sock), TestMessage.class));
+            }
+        }
+    }
+
+    @Test
+    void testExchangeReusesConnection() {
+        transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        var first = exchangeHandler.remoteInformation.remoteAddress();
+        transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        assertEquals(first, exchangeHandler.remoteInformation.remoteAddress());
+    }
+
+    @Test
+    void testSendAndExchangeShareConnection() throws InterruptedException {
+        transport.send(address, sendEndpoint, message, TransportUtils.defaultOptions());
+        assertTrue(sendLatch.await(1, TimeUnit.SECONDS));
+        transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+        assertEquals(sendHandler.remoteInformation.remoteAddress(), exchangeHandler.remoteInformation.remoteAddress());
+    }
+
+    @Test
+    void testIdleConnectionEvicted() throws URISyntaxException {
+        var poolOptions = new ChannelPoolOptions(Optional.empty(), Optional.of(Duration.ofMillis(100)));
+        try(var transport = new NettyTransport(PeerUtils.senderId(), TransportUtils.defaultOptions(), poolOptions)) {
+            var address = transport.add(new UriAddress(new URI("tcp://localhost:0")));
+            transport.add(exchangeEndpoint, exchangeHandler);
+            transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+            var first = exchangeHandler.remoteInformation.remoteAddress();
+            ThreadUtils.sleepUnchecked(500);
+            transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions());
+            assertNotEquals(first, exchangeHandler.remoteInformation.remoteAddress());
+        }
+    }
+
+    @Test
+    void testConcurrentExchangesMultiplexed() throws Exception {
+        var poolOptions = new ChannelPoolOptions(Optional.of(1), Optional.empty());
+        try(var transport = new NettyTransport(PeerUtils.senderId(), TransportUtils.defaultOptions(), poolOptions)) {
+            var address = transport.add(new UriAddress(new URI("tcp://localhost:0")));
+            // the first exchange can only finish once the second has been handled, so responses must come back out of order
+            var secondHandled = new CountDownLatch(1);
+            var first = new TestMessage("first");
+            var second = new TestMessage("second");
+            exchangeHandler.delegate = message -> {
+                if(first.equals(message)) {
+                    try {
+                        assertTrue(secondHandled.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        throw Lombok.sneakyThrow(e);
+                    }
+                } else {
+                    secondHandled.countDown();
+                }
+                return message;
+            };
+            transport.add(exchangeEndpoint, exchangeHandler);
+            try(var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                var firstResp = executor.submit(() -> transport.exchange(address, exchangeEndpoint, first, TestMessage.class, TransportUtils.defaultOptions()));
+                var secondResp = executor.submit(() -> transport.exchange(address, exchangeEndpoint, second, TestMessage.class, TransportUtils.defaultOptions()));
+                assertEquals(second, secondResp.get(5, TimeUnit.SECONDS));
+                assertEquals(first, firstResp.get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void testLateResponseIgnored() {
+        var options = new TransportOptions(Optional.empty(), Optional.of(Duration.ofMillis(200)));
+        exchangeHandler.delegate = message -> {
+            ThreadUtils.sleepUnchecked(500);
+            return new TestMessage("late");
+        };
+        assertThrows(UncheckedIOException.class, () -> transport.exchange(address, exchangeEndpoint, message, TestMessage.class, options));
+        exchangeHandler.delegate = ignoredMessage -> response;
+        // the late response arrives on the same channel while this exchange is waiting and must not be mistaken for ours
+        ThreadUtils.sleepUnchecked(200);
+        assertEquals(response, transport.exchange(address, exchangeEndpoint, message, TestMessage.class, TransportUtils.defaultOptions()));
+    }
+
     // TODO figure out how to test send timeouts
     @Disabled
     @Test
@@ -306,7 +455,7 @@ class NettyTransportTest {
             var addrUri = address.asURI();
             sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()));
             ThreadUtils.sleepUnchecked(10000);
-            var bytes = sock.getInputStream().readAllBytes();
+            var bytes = readFrame(sock);
             var failureResp = objectMapper.readValue(bytes, ErrorResponse.class);
             assertEquals("Read timeout", failureResp.error());
         }
@@ -323,7 +472,7 @@ class NettyTransportTest {
                 var addrUri = address.asURI();
                 sock.connect(new InetSocketAddress(addrUri.getHost(), addrUri.getPort()));
                 ThreadUtils.sleepUnchecked(5000);
-                var bytes = sock.getInputStream().readAllBytes();
+                var bytes = readFrame(sock);
                 var failureResp = objectMapper.readValue(bytes, ErrorResponse.class);
                 assertEquals("Read timeout", failureResp.error());
             }
@@ -410,6 +559,27 @@ class NettyTransportTest {
         assertTrue(transport.remove(exchangeEndpoint).isEmpty());
     }
 
+    private void writeFrame(Socket sock, Message message) throws IOException {
+        var bytes = objectMapper.writeValueAsBytes(message);
+        var out = new DataOutputStream(sock.getOutputStream());
+        out.writeInt(Frame.HEADER_LENGTH + bytes.length);
+        out.writeByte(Frame.Type.REQUEST.code());
+        out.writeByte(WireFormat.JSON.code());
+        out.writeLong(1);
+        out.write(bytes);
+        out.flush();
+    }
+
+    private byte[] readFrame(Socket sock) throws IOException {
+        var in = new DataInputStream(sock.getInputStream());
+        var bytes = new byte[in.readInt() - Frame.HEADER_LENGTH];
+        in.readByte();
+        assertEquals(WireFormat.JSON, WireFormat.fromCode(in.readByte()));
+        in.readLong();
+        in.readFully(bytes);
+        return bytes;
+    }
+
     @AfterEach
     void tearDown() {
         transport.addresses().forEach(transport::remove);
@@ -424,6 +594,8 @@ class NettyTransportTest {
         assertTrue(workerGroup.isShutdown());
         var bossGroup = ReflectionTestUtils.getFieldValue(transport, "bossGroup", EventLoopGroup.class);
         assertTrue(bossGroup.isShutdown());
+        var clientGroup = ReflectionTestUtils.getFieldValue(transport, "clientGroup", EventLoopGroup.class);
+        assertTrue(clientGroup.isShutdown());
         @SuppressWarnings("unchecked") // Cast is to get around type erasure; should be fine unless we change backing impl.
         var channels = (Map<Address, ChannelFuture>) ReflectionTestUtils.getFieldValue(transport, "channels", Map.class);
         assertTrue(channels.isEmpty());
@@ -0,0 +1,22 @@
+package com.github.arobie1992.clarinet.impl.netty;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatTest {
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    void testFromCode(WireFormat format) {
+        assertEquals(format, WireFormat.fromCode(format.code()));
+    }
+
+    @Test
+    void testFromCodeUnknown() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> WireFormat.fromCode(Byte.MAX_VALUE));
+        assertEquals("Unknown wire format: " + Byte.MAX_VALUE, ex.getMessage());
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.arobie1992.clarinet.message;
+
+import com.github.arobie1992.clarinet.adt.Bytes;
+import com.github.arobie1992.clarinet.core.ConnectionId;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalEncodingTest {
+
+    private final ConnectionId connectionId = ConnectionId.random();
+    private final MessageId messageId = new MessageId(connectionId, 12);
+    private final Bytes data = Bytes.of(new byte[]{1, 2, 3});
+    private final Bytes signature = Bytes.of(new byte[]{9, 8});
+
+    private ByteBuffer header(byte tag, int remaining) {
+        var buffer = ByteBuffer.allocate(1 + 24 + remaining);
+        buffer.put(tag);
+        buffer.putLong(connectionId.asUUID().getMostSignificantBits());
+        buffer.putLong(connectionId.asUUID().getLeastSignificantBits());
+        buffer.putLong(messageId.sequenceNumber());
+        return buffer;
+    }
+
+    @Test
+    void testSenderParts() {
+        var expected = header((byte) 1, 4 + 3).putInt(3).put(new byte[]{1, 2, 3});
+        assertEquals(Bytes.of(expected.array()), CanonicalEncoding.encode(new DataMessage.SenderParts(messageId, data)));
+    }
+
+    @Test
+    void testWitnessParts() {
+        var expected = header((byte) 2, 4 + 3 + 4 + 2).putInt(3).put(new byte[]{1, 2, 3}).putInt(2).put(new byte[]{9, 8});
+        var parts = new DataMessage.WitnessParts(messageId, data, signature);
+        assertEquals(Bytes.of(expected.array()), CanonicalEncoding.encode(parts));
+    }
+
+    @Test
+    void testAbsentFields() {
+        var expected = header((byte) 2, 4 + 3 + 4).putInt(3).put(new byte[]{1, 2, 3}).putInt(-1);
+        var parts = new DataMessage.WitnessParts(messageId, data, null);
+        assertEquals(Bytes.of(expected.array()), CanonicalEncoding.encode(parts));
+    }
+
+    @Test
+    void testMessageSummary() {
+        var alg = "SHA-256".getBytes(StandardCharsets.UTF_8);
+        var expected = header((byte) 4, 4 + 3 + 4 + alg.length + 4 + 2)
+                .putInt(3).put(new byte[]{1, 2, 3})
+                .putInt(alg.length).put(alg)
+                .putInt(2).put(new byte[]{9, 8});
+        var summary = new MessageSummary(messageId, data, "SHA-256", signature);
+        assertEquals(Bytes.of(expected.array()), CanonicalEncoding.encode(summary));
+    }
+
+    @Test
+    void testQueryResponse() {
+        var expected = header((byte) 5, 4 + 3 + 4 + 2 + 4).putInt(3).put(new byte[]{1, 2, 3}).putInt(2).put(new byte[]{9, 8}).putInt(-1);
+        var response = new QueryResponse(new MessageDetails(messageId, data), signature, null);
+        assertEquals(Bytes.of(expected.array()), CanonicalEncoding.encode(response));
+    }
+
+    @Test
+    void testTypesAreDistinguished() {
+        var senderParts = CanonicalEncoding.encode(new DataMessage.SenderParts(messageId, data));
+        var details = CanonicalEncoding.encode(new MessageDetails(messageId, data));
+        assertEquals(senderParts.length(), details.length());
+        assertNotEquals(senderParts, details);
+    }
+
+    @Test
+    void testDeterministic() {
+        var parts = new DataMessage.WitnessParts(messageId, data, signature);
+        var copy = new DataMessage.WitnessParts(new MessageId(ConnectionId.fromUUID(connectionId.asUUID()), 12), Bytes.of(data.bytes()), Bytes.of(signature.bytes()));
+        assertEquals(CanonicalEncoding.encode(parts), CanonicalEncoding.encode(copy));
+    }
+
+    @Test
+    void testDigestMatchesEncoding() throws NoSuchAlgorithmException {
+        var parts = new DataMessage.WitnessParts(messageId, data, signature);
+        var digest = MessageDigest.getInstance("SHA-256");
+        CanonicalEncoding.digest(parts, digest);
+        var expected = MessageDigest.getInstance("SHA-256").digest(CanonicalEncoding.encode(parts).bytes());
+        assertArrayEquals(expected, digest.digest());
+    }
+
+    @Test
+    void testUnsupportedType() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> CanonicalEncoding.encode("parts"));
+        assertEquals("No canonical encoding for java.lang.String", ex.getMessage());
+    }
+
+    @Test
+    void testNull() {
+        assertThrows(NullPointerException.class, () -> CanonicalEncoding.encode(null));
+    }
+}
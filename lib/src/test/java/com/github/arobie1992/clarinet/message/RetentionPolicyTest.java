@@ -0,0 +1,40 @@
+package com.github.arobie1992.clarinet.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionPolicyTest {
+
+    @Test
+    void testNoArgsConstructor() {
+        var policy = new RetentionPolicy();
+        assertTrue(policy.maxAge().isEmpty());
+        assertTrue(policy.maxCount().isEmpty());
+        assertTrue(policy.maxPerConnection().isEmpty());
+        assertTrue(policy.evictOnConnectionClose().isEmpty());
+    }
+
+    @Test
+    void testNonPositiveMaxAge() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(Optional.of(Duration.ZERO), Optional.empty(), Optional.empty(), Optional.empty()));
+        assertEquals("maxAge must be positive", ex.getMessage());
+        ex = assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(Optional.of(Duration.ofSeconds(-1)), Optional.empty(), Optional.empty(), Optional.empty()));
+        assertEquals("maxAge must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveMaxCount() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(Optional.empty(), Optional.of(0), Optional.empty(), Optional.empty()));
+        assertEquals("maxCount must be positive", ex.getMessage());
+    }
+
+    @Test
+    void testNonPositiveMaxPerConnection() {
+        var ex = assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(Optional.empty(), Optional.empty(), Optional.of(0), Optional.empty()));
+        assertEquals("maxPerConnection must be positive", ex.getMessage());
+    }
+}
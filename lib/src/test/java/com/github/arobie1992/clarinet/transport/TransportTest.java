@@ -0,0 +1,58 @@
+package com.github.arobie1992.clarinet.transport;
+
+import com.github.arobie1992.clarinet.testutils.AddressUtils;
+import com.github.arobie1992.clarinet.testutils.TransportUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TransportTest {
+
+    private final String endpoint = "endpoint";
+    private final String message = "message";
+    private Transport transport;
+
+    @BeforeEach
+    void setUp() {
+        transport = mock(Transport.class, CALLS_REAL_METHODS);
+    }
+
+    @Test
+    void testExchangeAsyncDefault() throws Exception {
+        doReturn("response").when(transport)
+                .exchange(AddressUtils.defaultAddress(), endpoint, message, String.class, TransportUtils.defaultOptions());
+        var future = transport.exchangeAsync(AddressUtils.defaultAddress(), endpoint, message, String.class, TransportUtils.defaultOptions());
+        assertEquals("response", future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testExchangeAsyncDefaultFails() {
+        var ex = new IllegalStateException("test");
+        doThrow(ex).when(transport)
+                .exchange(AddressUtils.defaultAddress(), endpoint, message, String.class, TransportUtils.defaultOptions());
+        var future = transport.exchangeAsync(AddressUtils.defaultAddress(), endpoint, message, String.class, TransportUtils.defaultOptions());
+        var thrown = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertSame(ex, thrown.getCause());
+    }
+
+    @Test
+    void testSendAsyncDefault() throws Exception {
+        doNothing().when(transport).send(AddressUtils.defaultAddress(), endpoint, message, TransportUtils.defaultOptions());
+        transport.sendAsync(AddressUtils.defaultAddress(), endpoint, message, TransportUtils.defaultOptions()).get(1, TimeUnit.SECONDS);
+        verify(transport).send(AddressUtils.defaultAddress(), endpoint, message, TransportUtils.defaultOptions());
+    }
+
+    @Test
+    void testSendAsyncDefaultFails() {
+        var ex = new IllegalStateException("test");
+        doThrow(ex).when(transport).send(AddressUtils.defaultAddress(), endpoint, message, TransportUtils.defaultOptions());
+        var future = transport.sendAsync(AddressUtils.defaultAddress(), endpoint, message, TransportUtils.defaultOptions());
+        var thrown = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+        assertSame(ex, thrown.getCause());
+    }
+}